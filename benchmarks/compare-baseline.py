@@ -0,0 +1,111 @@
+#!/usr/bin/env python3
+#
+# Copyright 2018 Mark Adamcin
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+"""Compare a JMH JSON result file against a stored baseline JSON result file.
+
+Usage:
+    compare-baseline.py RESULTS [BASELINE] [--threshold PERCENT] [--update]
+
+Benchmarks are matched by name and parameters. A benchmark is reported as a
+regression when its score is worse than the baseline by more than the
+threshold (default 10 percent), taking the score unit into account: lower is
+better for time-per-operation modes, and higher is better for throughput.
+The script exits with status 1 if any regression is found. With --update, the
+results file is copied over the baseline after the comparison.
+"""
+
+import argparse
+import json
+import os
+import shutil
+import sys
+
+DEFAULT_BASELINE = os.path.join(os.path.dirname(os.path.abspath(__file__)), "baseline.json")
+
+
+def load(path):
+    with open(path) as f:
+        results = json.load(f)
+    scores = {}
+    for result in results:
+        params = result.get("params") or {}
+        key = result["benchmark"] + "".join(
+            ":%s=%s" % (name, params[name]) for name in sorted(params))
+        metric = result["primaryMetric"]
+        scores[key] = (result["mode"], metric["score"], metric.get("scoreError"), metric["scoreUnit"])
+    return scores
+
+
+def change(mode, baseline, current):
+    """Return the relative change, where a positive value is a regression."""
+    if baseline == 0:
+        return 0.0
+    if mode == "thrpt":
+        return (baseline - current) / baseline
+    return (current - baseline) / baseline
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Compare JMH results against a baseline.")
+    parser.add_argument("results", help="JMH result file written with -rf json")
+    parser.add_argument("baseline", nargs="?", default=DEFAULT_BASELINE, help="baseline JMH result file")
+    parser.add_argument("--threshold", type=float, default=10.0, help="regression threshold in percent")
+    parser.add_argument("--update", action="store_true", help="replace the baseline with the results")
+    args = parser.parse_args()
+
+    current = load(args.results)
+    if not os.path.exists(args.baseline):
+        print("no baseline found at %s" % args.baseline)
+        if args.update:
+            shutil.copyfile(args.results, args.baseline)
+            print("stored %s as the new baseline" % args.results)
+        return 0
+
+    baseline = load(args.baseline)
+    regressions = 0
+    print("%-90s %14s %14s %9s" % ("benchmark", "baseline", "current", "change"))
+    for key in sorted(set(baseline) | set(current)):
+        if key not in current:
+            print("%-90s %14s %14s %9s" % (key, "%.3f" % baseline[key][1], "-", "missing"))
+            continue
+        if key not in baseline:
+            print("%-90s %14s %14s %9s" % (key, "-", "%.3f" % current[key][1], "new"))
+            continue
+        mode, base_score, _, unit = baseline[key]
+        cur_mode, cur_score, _, cur_unit = current[key]
+        if mode != cur_mode or unit != cur_unit:
+            print("%-90s %14s %14s %9s" % (key, unit, cur_unit, "unit?"))
+            continue
+        delta = change(mode, base_score, cur_score)
+        flag = ""
+        if delta * 100.0 > args.threshold:
+            flag = " REGRESSION"
+            regressions += 1
+        print("%-90s %14.3f %14.3f %+8.1f%%%s" % (key, base_score, cur_score, delta * 100.0, flag))
+
+    if args.update:
+        shutil.copyfile(args.results, args.baseline)
+        print("stored %s as the new baseline" % args.results)
+
+    if regressions:
+        print("%d benchmark(s) regressed by more than %.1f%%" % (regressions, args.threshold))
+        return 1
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scan of a single large {@link SyntheticPackage}, with binaries and a nested subpackage, using the same checks as
+ * {@link ScanBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LargePackageBenchmark {
+
+    @Param({"10000", "50000"})
+    public long nodeCount;
+
+    @Param({"0", "1048576"})
+    public int binarySize;
+
+    private List<File> packages;
+
+    @Setup
+    public void setup() throws Exception {
+        final SyntheticPackage subpackage = new SyntheticPackage.Builder()
+                .withGroup("benchmarks").withName("scan_sub")
+                .withNodeCount(nodeCount / 10).withDepth(3).withFanOut(10)
+                .build();
+        final SyntheticPackage spec = new SyntheticPackage.Builder()
+                .withGroup("benchmarks").withName("scan_large")
+                .withNodeCount(nodeCount).withDepth(4).withFanOut(20)
+                .withBinaries(binarySize > 0 ? 20 : 0, binarySize)
+                .withFilterLayout(SyntheticPackage.FilterLayout.ROOT_PER_BRANCH)
+                .withSubpackage(subpackage)
+                .build();
+        packages = Collections.singletonList(TestPackageUtil.prepareSyntheticPackage("scan_large.zip", spec));
+    }
+
+    @Benchmark
+    public List<CheckReport> scanLargePackage() throws Exception {
+        return new OakMachine.Builder()
+                .withProgressChecks(ScanBenchmark.newChecks())
+                .build()
+                .scanPackages(packages);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.adamcin.oakpal.core.checks.Rule;
+import net.adamcin.oakpal.core.checks.RuleSet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Last-match {@link Rule} evaluation over a batch of paths, comparing a loop over every rule with {@link RuleSet}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleBenchmark {
+
+    @Param({"10", "400"})
+    public int ruleCount;
+
+    private List<Rule> rules;
+
+    private RuleSet ruleSet;
+
+    private List<String> paths;
+
+    @Setup
+    public void setup() {
+        final JSONArray rulesJson = new JSONArray();
+        rulesJson.put(new JSONObject().put("type", "allow").put("pattern", "/apps/.*"));
+        for (int i = 1; i < ruleCount; i++) {
+            final String pattern = i % 4 == 0
+                    ? String.format("/apps/module%d/(components|templates)/.*", i)
+                    : String.format("/apps/module%d/config(\\..*)?/.*", i);
+            rulesJson.put(new JSONObject().put("type", i % 2 == 0 ? "deny" : "allow").put("pattern", pattern));
+        }
+        rules = Rule.fromJSON(rulesJson);
+        ruleSet = RuleSet.compile(rules);
+
+        paths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            paths.add(String.format("/apps/module%d/%s/item%d", i % (ruleCount * 2),
+                    i % 3 == 0 ? "components" : "config.author", i));
+        }
+    }
+
+    @Benchmark
+    public void loopOverRules(final Blackhole blackhole) {
+        for (String path : paths) {
+            Rule lastMatch = Rule.fuzzyDefaultAllow(rules);
+            for (Rule rule : rules) {
+                if (rule.matches(path)) {
+                    lastMatch = rule;
+                }
+            }
+            blackhole.consume(lastMatch);
+        }
+    }
+
+    @Benchmark
+    public void ruleSet(final Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(ruleSet.lastMatch(path));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.core.ProgressCheck;
+import net.adamcin.oakpal.core.RepositoryProfile;
+import net.adamcin.oakpal.core.checks.JcrProperties;
+import net.adamcin.oakpal.core.checks.Overlaps;
+import net.adamcin.oakpal.core.checks.Paths;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@link OakMachine#scanPackages(List)} over two synthetic packages, with the {@link Paths},
+ * {@link JcrProperties} and {@link Overlaps} checks, for each built-in {@link RepositoryProfile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"10", "100"})
+    public int folders;
+
+    @Param({"50"})
+    public int nodesPerFolder;
+
+    @Param({"full", "lean"})
+    public String profile;
+
+    private List<File> packages;
+
+    @Setup
+    public void setup() throws Exception {
+        packages = Arrays.asList(
+                SyntheticContent.preparePackage("benchmarks", "scan_a", folders, nodesPerFolder),
+                SyntheticContent.preparePackage("benchmarks", "scan_b", folders, nodesPerFolder));
+    }
+
+    @Benchmark
+    public List<CheckReport> scanPackages() throws Exception {
+        return new OakMachine.Builder()
+                .withRepositoryProfile(RepositoryProfile.fromName(profile))
+                .withProgressChecks(newChecks())
+                .build()
+                .scanPackages(packages);
+    }
+
+    static List<ProgressCheck> newChecks() throws Exception {
+        return Arrays.asList(
+                new Paths().newInstance(new JSONObject("{\"rules\":["
+                        + "{\"type\":\"deny\",\"pattern\":\"/apps/.*\"},"
+                        + "{\"type\":\"deny\",\"pattern\":\"/scan_./folder1/.*\"}]}")),
+                new JcrProperties().newInstance(new JSONObject("{"
+                        + "\"scopePaths\":[{\"type\":\"allow\",\"pattern\":\"/scan_.*\"}],"
+                        + "\"properties\":[{\"name\":\"title\",\"denyIfAbsent\":true},"
+                        + "{\"name\":\"category\",\"valueRules\":[{\"type\":\"deny\",\"pattern\":\"category[0-3]\"}]},"
+                        + "{\"name\":\"tags\",\"denyIfMultivalued\":false}]}")),
+                new Overlaps().newInstance(new JSONObject()));
+    }
+}
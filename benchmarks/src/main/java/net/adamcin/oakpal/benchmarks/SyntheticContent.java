@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.jcr.repository.RepositoryImpl;
+
+/**
+ * Generates the synthetic content used by the benchmarks.
+ */
+public final class SyntheticContent {
+
+    private SyntheticContent() {
+        // no instances
+    }
+
+    /**
+     * Build a content package with a single filter root at {@code /<name>}, containing {@code folders} unstructured
+     * folder nodes, each with {@code nodesPerFolder} children carrying a few string properties.
+     *
+     * @param group          the package group
+     * @param name           the package name, also used for the filter root
+     * @param folders        the number of folder nodes
+     * @param nodesPerFolder the number of child nodes per folder
+     * @return the package file
+     * @throws IOException for any failure writing the package
+     */
+    public static File preparePackage(final String group, final String name, final int folders,
+                                      final int nodesPerFolder) throws IOException {
+        final Path srcFolder = Files.createTempDirectory("oakpal-bench-" + name);
+        try {
+            writeProperties(srcFolder, group, name);
+            writeFilter(srcFolder, "/" + name);
+            writeDocView(srcFolder.resolve("jcr_root").resolve(name), folders, nodesPerFolder);
+            return TestPackageUtil.prepareTestPackageFromFolder(name + ".zip", srcFolder.toFile());
+        } finally {
+            deleteRecursively(srcFolder);
+        }
+    }
+
+    /**
+     * Start a minimal in-memory Oak repository.
+     *
+     * @return the repository
+     */
+    public static Repository newRepository() {
+        return new Jcr(new Oak()).createRepository();
+    }
+
+    /**
+     * Login to the repository as admin.
+     *
+     * @param repository the repository
+     * @return the admin session
+     * @throws RepositoryException for login failures
+     */
+    public static Session loginAdmin(final Repository repository) throws RepositoryException {
+        return repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+
+    /**
+     * Logout the session and shutdown the repository.
+     *
+     * @param session    the session, which may be null
+     * @param repository the repository, which may be null
+     */
+    public static void shutdown(final Session session, final Repository repository) {
+        if (session != null) {
+            session.logout();
+        }
+        if (repository instanceof RepositoryImpl) {
+            ((RepositoryImpl) repository).shutdown();
+        }
+    }
+
+    /**
+     * Delete a directory tree.
+     *
+     * @param path the root of the tree
+     * @throws IOException for any deletion failure
+     */
+    public static void deleteRecursively(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void writeProperties(final Path srcFolder, final String group, final String name)
+            throws IOException {
+        final Path vault = srcFolder.resolve("META-INF/vault");
+        Files.createDirectories(vault);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(vault.resolve("properties.xml"),
+                StandardCharsets.UTF_8))) {
+            writer.println("<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\"?>");
+            writer.println("<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">");
+            writer.println("<properties>");
+            writer.printf("    <entry key=\"group\">%s</entry>%n", group);
+            writer.printf("    <entry key=\"name\">%s</entry>%n", name);
+            writer.println("    <entry key=\"version\">1.0</entry>");
+            writer.println("    <entry key=\"packageFormatVersion\">2</entry>");
+            writer.println("</properties>");
+        }
+    }
+
+    private static void writeFilter(final Path srcFolder, final String root) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(
+                srcFolder.resolve("META-INF/vault/filter.xml"), StandardCharsets.UTF_8))) {
+            writer.println("<?xml version=\"1.0\" encoding=\"utf-8\" ?>");
+            writer.println("<workspaceFilter version=\"1.0\">");
+            writer.printf("    <filter root=\"%s\"/>%n", root);
+            writer.println("</workspaceFilter>");
+        }
+    }
+
+    private static void writeDocView(final Path rootFolder, final int folders, final int nodesPerFolder)
+            throws IOException {
+        Files.createDirectories(rootFolder);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(rootFolder.resolve(".content.xml"),
+                StandardCharsets.UTF_8))) {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+                    + "xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\" jcr:primaryType=\"nt:unstructured\">");
+            for (int f = 0; f < folders; f++) {
+                writer.printf("    <folder%d jcr:primaryType=\"nt:unstructured\">%n", f);
+                for (int n = 0; n < nodesPerFolder; n++) {
+                    writer.printf("        <node%d jcr:primaryType=\"nt:unstructured\" title=\"Node %d\" "
+                            + "category=\"category%d\" tags=\"[tag%d,tag%d]\"/>%n", n, n, n % 10, n % 7, n % 3);
+                }
+                writer.printf("    </folder%d>%n", f);
+            }
+            writer.println("</jcr:root>");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import net.adamcin.oakpal.benchmarks.SyntheticContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CNDURLInstaller#register(Session)} for a chain of CND files, each extending a node type declared in the
+ * previous file, and listed in reverse order so that the installer must retry. Each invocation registers into a new
+ * repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CNDURLInstallerBenchmark {
+
+    @Param({"4", "16"})
+    public int cndCount;
+
+    private Path cndFolder;
+
+    private List<URL> cndUrls;
+
+    private Repository repository;
+
+    private Session session;
+
+    @Setup
+    public void setup() throws IOException {
+        cndFolder = Files.createTempDirectory("oakpal-bench-cnd");
+        cndUrls = new ArrayList<>();
+        for (int i = 0; i < cndCount; i++) {
+            final Path cnd = cndFolder.resolve(String.format("bench%d.cnd", i));
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(cnd, StandardCharsets.UTF_8))) {
+                writer.println("<'bench'='http://adamcin.net/oakpal/benchmarks'>");
+                writer.println("<'nt'='http://www.jcp.org/jcr/nt/1.0'>");
+                writer.printf("[bench:type%d] > %s%n", i, i == 0 ? "nt:unstructured" : "bench:type" + (i - 1));
+                writer.printf("  - bench:prop%d (string)%n", i);
+            }
+            cndUrls.add(cnd.toUri().toURL());
+        }
+        Collections.reverse(cndUrls);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticContent.deleteRecursively(cndFolder);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupRepository() throws Exception {
+        repository = SyntheticContent.newRepository();
+        session = SyntheticContent.loginAdmin(repository);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownRepository() {
+        SyntheticContent.shutdown(session, repository);
+    }
+
+    @Benchmark
+    public ErrorListener register() throws Exception {
+        final ErrorListener errorListener = new DefaultErrorListener();
+        new CNDURLInstaller(errorListener, cndUrls, Collections.emptyList()).register(session);
+        return errorListener;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.core;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading {@link CheckReport}s with the {@link ReportMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportMapperBenchmark {
+
+    @Param({"100", "10000"})
+    public int violationCount;
+
+    private List<CheckReport> reports;
+
+    private String json;
+
+    @Setup
+    public void setup() throws Exception {
+        reports = new ArrayList<>();
+        for (int r = 0; r < 5; r++) {
+            final List<Violation> violations = new ArrayList<>();
+            for (int v = 0; v < violationCount / 5; v++) {
+                violations.add(new SimpleViolation(Violation.Severity.values()[v % 3],
+                        String.format("imported path /apps/module%d/item%d matches deny pattern /apps/.*", r, v),
+                        PackageId.fromString(String.format("benchmarks:package%d:1.0", v % 20))));
+            }
+            reports.add(new SimpleReport("check" + r, violations));
+        }
+        json = write(reports);
+    }
+
+    @Benchmark
+    public String writeReports() throws Exception {
+        return write(reports);
+    }
+
+    @Benchmark
+    public List<CheckReport> readReports() throws Exception {
+        return ReportMapper.readReportsFromReader(new StringReader(json));
+    }
+
+    @Benchmark
+    public List<CheckReport> roundTrip() throws Exception {
+        return ReportMapper.readReportsFromReader(new StringReader(write(reports)));
+    }
+
+    private static String write(final List<CheckReport> reports) throws Exception {
+        final StringWriter writer = new StringWriter();
+        ReportMapper.writeReportsToWriter(Collections.unmodifiableList(reports), writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.core.checks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import net.adamcin.oakpal.benchmarks.SyntheticContent;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link JcrPropertyConstraints#evaluate(PackageId, Node)} against a node with a multivalued string property, with a
+ * growing number of value rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JcrPropertyConstraintsBenchmark {
+
+    @Param({"10", "100"})
+    public int valueRuleCount;
+
+    private final PackageId packageId = PackageId.fromString("benchmarks:constraints:1.0");
+
+    private Repository repository;
+
+    private Session session;
+
+    private Node node;
+
+    private List<JcrPropertyConstraints> constraints;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticContent.newRepository();
+        session = SyntheticContent.loginAdmin(repository);
+        node = session.getRootNode().addNode("constraints", "nt:unstructured");
+        node.setProperty("title", "Constraints");
+        node.setProperty("tags", new String[]{"tag0", "tag1", "tag2", "tag3", "tag4", "tag5", "tag6", "tag7"});
+        session.save();
+
+        final JSONArray valueRules = new JSONArray();
+        for (int i = 0; i < valueRuleCount; i++) {
+            valueRules.put(new JSONObject().put("type", i % 2 == 0 ? "allow" : "deny")
+                    .put("pattern", String.format("tag%d[0-9]*", i)));
+        }
+        constraints = JcrPropertyConstraints.fromJSON(new JSONArray()
+                .put(new JSONObject().put("name", "title").put("denyIfAbsent", true))
+                .put(new JSONObject().put("name", "tags").put("valueRules", valueRules)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SyntheticContent.shutdown(session, repository);
+    }
+
+    @Benchmark
+    public void evaluate(final Blackhole blackhole) throws Exception {
+        for (JcrPropertyConstraints constraint : constraints) {
+            blackhole.consume(constraint.evaluate(packageId, node));
+        }
+    }
+}
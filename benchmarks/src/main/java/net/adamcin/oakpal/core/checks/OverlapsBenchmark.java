@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.adamcin.oakpal.core.checks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.adamcin.oakpal.core.Violation;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.filter.DefaultPathFilter;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the linear scan of workspace filters that {@link Overlaps} used to perform for each affected path with the
+ * {@link WorkspaceFilterIndex} lookup, and measures {@link Overlaps.Check#findOverlaps(PackageId, String,
+ * Violation.Severity)} itself, for a release bundle of many packages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OverlapsBenchmark {
+
+    @Param({"10", "150"})
+    public int packageCount;
+
+    private Map<PackageId, WorkspaceFilter> filters;
+
+    private WorkspaceFilterIndex index;
+
+    private List<PackageId> packageIds;
+
+    private List<String> overlappingPaths;
+
+    private List<String> ownPaths;
+
+    private Overlaps.Check check;
+
+    @Setup
+    public void setup() throws Exception {
+        filters = syntheticFilters(packageCount);
+        index = new WorkspaceFilterIndex();
+        filters.forEach(index::put);
+        packageIds = new ArrayList<>(filters.keySet());
+        overlappingPaths = new ArrayList<>();
+        ownPaths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final int p = i % packageCount;
+            overlappingPaths.add(String.format("/apps/bundle/module%d/components/c%d/jcr:content", p, i));
+            ownPaths.add(String.format("/apps/bundle/module%d/templates/t%d/jcr:content", p, i));
+        }
+
+        long linearHits = 0;
+        long indexedHits = 0;
+        for (int i = 0; i < overlappingPaths.size(); i++) {
+            final String path = overlappingPaths.get(i);
+            final PackageId current = packageIds.get(i % packageCount);
+            for (Map.Entry<PackageId, WorkspaceFilter> entry : filters.entrySet()) {
+                if (!entry.getKey().equals(current) && entry.getValue().contains(path)) {
+                    linearHits++;
+                }
+            }
+            indexedHits += index.findContaining(path, current).size();
+        }
+        if (linearHits != indexedHits) {
+            throw new IllegalStateException("index found " + indexedHits + " overlaps, expected " + linearHits);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupCheck() {
+        check = new Overlaps().new Check(true);
+        check.startedScan();
+        filters.forEach(check.filters::put);
+    }
+
+    @Benchmark
+    public void linearScan(final Blackhole blackhole) {
+        for (int i = 0; i < overlappingPaths.size(); i++) {
+            final String path = overlappingPaths.get(i);
+            final PackageId current = packageIds.get(i % packageCount);
+            for (Map.Entry<PackageId, WorkspaceFilter> entry : filters.entrySet()) {
+                if (!entry.getKey().equals(current) && entry.getValue().contains(path)) {
+                    blackhole.consume(entry.getKey());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexLookup(final Blackhole blackhole) {
+        for (int i = 0; i < overlappingPaths.size(); i++) {
+            blackhole.consume(index.findContaining(overlappingPaths.get(i), packageIds.get(i % packageCount)));
+        }
+    }
+
+    /**
+     * Paths that only fall within their own package filter, so that no violations accumulate across invocations.
+     *
+     * @param blackhole the blackhole
+     */
+    @Benchmark
+    public void findOverlaps(final Blackhole blackhole) {
+        for (int i = 0; i < ownPaths.size(); i++) {
+            check.findOverlaps(packageIds.get(i % packageCount), ownPaths.get(i), Violation.Severity.MINOR);
+        }
+        blackhole.consume(check);
+    }
+
+    /**
+     * Each module package owns its own apps and content roots, and every fiftieth package also claims a shared root
+     * above the module roots, including their components.
+     *
+     * @param packageCount the number of packages
+     * @return the workspace filters by package id, in install order
+     * @throws Exception for invalid filter patterns
+     */
+    static Map<PackageId, WorkspaceFilter> syntheticFilters(final int packageCount) throws Exception {
+        final Map<PackageId, WorkspaceFilter> filters = new LinkedHashMap<>();
+        for (int p = 0; p < packageCount; p++) {
+            final DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+            final PathFilterSet apps = new PathFilterSet("/apps/bundle/module" + p);
+            apps.addExclude(new DefaultPathFilter("/apps/bundle/module" + p + "/install(/.*)?"));
+            filter.add(apps);
+            filter.add(new PathFilterSet("/content/bundle/module" + p));
+            filter.add(new PathFilterSet("/conf/bundle/module" + p));
+            if (p % 50 == 0) {
+                final PathFilterSet shared = new PathFilterSet("/apps/bundle");
+                shared.addInclude(new DefaultPathFilter("/apps/bundle/module\\d+/components(/.*)?"));
+                filter.add(shared);
+            }
+            filters.put(PackageId.fromString("bundle:module" + p + ":1.0"), filter);
+        }
+        return filters;
+    }
+}
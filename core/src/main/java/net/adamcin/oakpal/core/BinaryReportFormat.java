@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+
+/**
+ * Compact binary encoding of check reports, as an alternative to the json summary format.
+ * <p>
+ * A file starts with the {@link #MAGIC} bytes, a format version byte and a flags byte. If {@link #FLAG_DEFLATE} is
+ * set, the rest of the file is deflate-compressed. The body is a sequence of tagged records, one per report start,
+ * violation, and report end, terminated by {@link #TAG_END}. Integers are written as unsigned LEB128 varints.
+ * <p>
+ * Check names, package ids and callback names repeat across many violations and come from a small set, so they are
+ * written as references into a string table that is built as the file is written: a reference of zero means null, a
+ * reference to the next unused index is immediately followed by the UTF-8 bytes of a new string, and any other
+ * reference points back to a string that was already defined. This keeps repeated package ids to a byte or two each.
+ * Violation descriptions and phase keys are written inline, as zero for null, or the UTF-8 length plus one followed
+ * by the bytes, so that the string tables of the writer and the reader stay bounded while they stream one violation
+ * at a time.
+ */
+final class BinaryReportFormat {
+    static final byte[] MAGIC = {'O', 'P', 'R', 'B'};
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+
+    static final int TAG_END = 0;
+    static final int TAG_REPORT = 1;
+    static final int TAG_VIOLATION = 2;
+    static final int TAG_REPORT_END = 3;
+    static final int TAG_SCAN_METRICS = 4;
+
+    private BinaryReportFormat() {
+        // no instances
+    }
+
+    /**
+     * Check for the magic bytes at the current position of the stream, which must support mark and reset.
+     *
+     * @param inputStream a stream which supports mark and reset
+     * @return true if the stream starts with the binary format magic bytes
+     * @throws IOException for read failures
+     */
+    static boolean isBinary(final InputStream inputStream) throws IOException {
+        final byte[] head = new byte[MAGIC.length];
+        inputStream.mark(MAGIC.length);
+        try {
+            int read = 0;
+            while (read < head.length) {
+                final int count = inputStream.read(head, read, head.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+            return Arrays.equals(MAGIC, head);
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    /**
+     * Read a binary summary and pass each report to the visitor one violation at a time.
+     *
+     * @param inputStream the input stream, positioned at the magic bytes
+     * @param visitor     the report visitor
+     * @throws IOException for read failures or malformed input
+     */
+    static void read(final InputStream inputStream, final ReportVisitor visitor) throws IOException {
+        final DataInputStream header = new DataInputStream(inputStream);
+        final byte[] magic = new byte[MAGIC.length];
+        header.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a binary oakpal report summary");
+        }
+        final int version = header.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary oakpal report summary version: " + version);
+        }
+        final int flags = header.readUnsignedByte();
+        final InputStream body = (flags & FLAG_DEFLATE) != 0
+                ? new InflaterInputStream(inputStream)
+                : inputStream;
+        new Decoder(new BufferedInputStream(body)).read(visitor);
+    }
+
+    /**
+     * Streams reports to a binary summary.
+     */
+    static final class Encoder implements ReportMapper.ReportEncoder {
+        private final OutputStream target;
+        private final DeflaterOutputStream deflater;
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder(final OutputStream outputStream, final boolean compress) throws IOException {
+            this.target = outputStream;
+            outputStream.write(MAGIC);
+            outputStream.write(VERSION);
+            outputStream.write(compress ? FLAG_DEFLATE : 0);
+            if (compress) {
+                this.deflater = new DeflaterOutputStream(outputStream, new Deflater(Deflater.BEST_SPEED));
+                this.out = new DataOutputStream(new BufferedOutputStream(deflater));
+            } else {
+                this.deflater = null;
+                this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+            }
+        }
+
+        @Override
+        public void startReport(final String checkName) throws IOException {
+            writeVarLong(TAG_REPORT);
+            writeString(checkName);
+        }
+
+        @Override
+        public void visitViolation(final Violation violation) throws IOException {
+            writeVarLong(TAG_VIOLATION);
+            writeVarLong(violation.getSeverity() != null ? violation.getSeverity().ordinal() + 1 : 0);
+            writeInlineString(violation.getDescription());
+            final Collection<PackageId> packages = violation.getPackages() != null
+                    ? violation.getPackages()
+                    : Collections.emptyList();
+            writeVarLong(packages.size());
+            for (PackageId packageId : packages) {
+                writeString(packageId.toString());
+            }
+        }
+
+        @Override
+        public void endReport(final String checkName, final CheckMetrics metrics) throws IOException {
+            writeVarLong(TAG_REPORT_END);
+            if (metrics == null) {
+                writeVarLong(0);
+                return;
+            }
+            final List<CheckMetrics.Callback> callbacks = new ArrayList<>();
+            for (CheckMetrics.Callback callback : CheckMetrics.Callback.values()) {
+                if (metrics.getInvocationCount(callback) > 0) {
+                    callbacks.add(callback);
+                }
+            }
+            writeVarLong(1);
+            writeVarLong(metrics.getViolationCount());
+            writeVarLong(callbacks.size());
+            for (CheckMetrics.Callback callback : callbacks) {
+                writeString(callback.getMethodName());
+                writeVarLong(metrics.getInvocationCount(callback));
+                writeVarLong(metrics.getTotalNanos(callback));
+                writeVarLong(metrics.getMaxNanos(callback));
+            }
+        }
+
+        @Override
+        public void finish(final ScanMetrics scanMetrics) throws IOException {
+            if (scanMetrics != null) {
+                writeVarLong(TAG_SCAN_METRICS);
+                writeVarLong(ScanMetrics.Phase.values().length);
+                for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+                    writeInlineString(phase.getKey());
+                    writeVarLong(scanMetrics.getPhaseNanos(phase));
+                }
+            }
+            writeVarLong(TAG_END);
+            out.flush();
+            if (deflater != null) {
+                deflater.finish();
+            }
+            target.flush();
+        }
+
+        private void writeString(final String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            final Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(index + 1);
+                return;
+            }
+            final int newIndex = strings.size();
+            strings.put(value, newIndex);
+            writeVarLong(newIndex + 1);
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeInlineString(final String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            out.write(bytes);
+        }
+
+        private void writeVarLong(final long value) throws IOException {
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                out.write((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int) remaining);
+        }
+    }
+
+    /**
+     * Reads the tagged records of a binary summary body.
+     */
+    private static final class Decoder {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        private Decoder(final InputStream inputStream) {
+            this.in = new DataInputStream(inputStream);
+        }
+
+        private void read(final ReportVisitor visitor) throws IOException {
+            String checkName = null;
+            while (true) {
+                final int tag = (int) readVarLong();
+                switch (tag) {
+                    case TAG_END:
+                        return;
+                    case TAG_REPORT:
+                        checkName = Optional.ofNullable(readString()).orElse("");
+                        visitor.startReport(checkName);
+                        break;
+                    case TAG_VIOLATION:
+                        visitor.visitViolation(readViolation());
+                        break;
+                    case TAG_REPORT_END:
+                        final String endName = checkName != null ? checkName : "";
+                        visitor.endReport(endName, readCheckMetrics(endName));
+                        checkName = null;
+                        break;
+                    case TAG_SCAN_METRICS:
+                        final long phases = readVarLong();
+                        for (long i = 0; i < phases; i++) {
+                            readInlineString();
+                            readVarLong();
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown record tag in binary oakpal report summary: " + tag);
+                }
+            }
+        }
+
+        private Violation readViolation() throws IOException {
+            final int severityRef = (int) readVarLong();
+            final Violation.Severity[] severities = Violation.Severity.values();
+            if (severityRef > severities.length) {
+                throw new IOException("Unknown severity in binary oakpal report summary: " + severityRef);
+            }
+            final Violation.Severity severity = severityRef > 0
+                    ? severities[severityRef - 1]
+                    : Violation.Severity.MINOR;
+            final String description = readInlineString();
+            final int packageCount = (int) readVarLong();
+            final List<PackageId> packages = new ArrayList<>(packageCount);
+            for (int i = 0; i < packageCount; i++) {
+                final PackageId packageId = PackageId.fromString(readString());
+                if (packageId != null) {
+                    packages.add(packageId);
+                }
+            }
+            return new SimpleViolation(severity, description != null ? description : "", packages);
+        }
+
+        private CheckMetrics readCheckMetrics(final String checkName) throws IOException {
+            if (readVarLong() == 0) {
+                return null;
+            }
+            final CheckMetrics metrics = new CheckMetrics(checkName);
+            metrics.setViolationCount((int) readVarLong());
+            final long callbacks = readVarLong();
+            for (long i = 0; i < callbacks; i++) {
+                final CheckMetrics.Callback callback = CheckMetrics.Callback.byMethodName(readString());
+                final long invocationCount = readVarLong();
+                final long totalNanos = readVarLong();
+                final long maxNanos = readVarLong();
+                if (callback != null) {
+                    metrics.record(callback, invocationCount, totalNanos, maxNanos);
+                }
+            }
+            return metrics;
+        }
+
+        private String readString() throws IOException {
+            final long ref = readVarLong();
+            if (ref == 0) {
+                return null;
+            } else if (ref <= strings.size()) {
+                return strings.get((int) ref - 1);
+            } else if (ref == strings.size() + 1) {
+                final byte[] bytes = new byte[(int) readVarLong()];
+                in.readFully(bytes);
+                final String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+            throw new IOException("Invalid string reference in binary oakpal report summary: " + ref);
+        }
+
+        private String readInlineString() throws IOException {
+            final long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            final byte[] bytes = new byte[(int) (length - 1)];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Unexpected end of binary oakpal report summary");
+                }
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in binary oakpal report summary");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.spi.state.ProxyNodeStore;
+
+/**
+ * A {@link MemoryNodeStore} which writes binaries to a {@link BlobStore}, instead of keeping them on the heap as
+ * byte arrays.
+ */
+final class BlobStoreNodeStore extends ProxyNodeStore implements Observable {
+    private final MemoryNodeStore nodeStore;
+    private final BlobStore blobStore;
+
+    BlobStoreNodeStore(final MemoryNodeStore nodeStore, final BlobStore blobStore) {
+        this.nodeStore = nodeStore;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    protected NodeStore getNodeStore() {
+        return nodeStore;
+    }
+
+    @Override
+    public Closeable addObserver(final Observer observer) {
+        return nodeStore.addObserver(observer);
+    }
+
+    @Override
+    public Blob createBlob(final InputStream inputStream) throws IOException {
+        return new BlobStoreBlob(blobStore, blobStore.writeBlob(inputStream));
+    }
+
+    @Override
+    public Blob getBlob(final String reference) {
+        final String blobId = blobStore.getBlobId(reference);
+        return blobId != null ? new BlobStoreBlob(blobStore, blobId) : null;
+    }
+}
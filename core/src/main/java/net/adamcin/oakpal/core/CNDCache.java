@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jcr.NamespaceException;
+
+import org.apache.jackrabbit.commons.cnd.CompactNodeTypeDefReader;
+import org.apache.jackrabbit.commons.cnd.ParseException;
+import org.apache.jackrabbit.spi.QNodeTypeDefinition;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceMapping;
+import org.apache.jackrabbit.spi.commons.nodetype.QDefinitionBuilderFactory;
+
+/**
+ * Process-wide cache of parsed CND files for the {@link CNDURLInstaller}, keyed by CND URL and the SHA-256 hash of
+ * the CND content. The node types are parsed into repository-independent {@link QNodeTypeDefinition}s along with the
+ * namespaces declared by the CND, so that every scan in the same JVM can register them without parsing the CND again.
+ */
+final class CNDCache {
+    static final int MAX_ENTRIES = 256;
+
+    private static final Map<String, Parsed> PARSED = new LinkedHashMap<String, Parsed>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Parsed> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private CNDCache() {
+        // no instances
+    }
+
+    /**
+     * Read the CND from the URL, and get the parsed form of its content, parsing it on a cache miss.
+     *
+     * @param cndUrl the CND URL
+     * @return the parsed CND
+     * @throws IOException if the CND can't be read
+     */
+    static Parsed load(final URL cndUrl) throws IOException {
+        final byte[] content;
+        try (InputStream is = cndUrl.openStream()) {
+            content = Util.readBytes(is);
+        }
+        final String key = cndUrl.toExternalForm() + "#" + Util.sha256Hex(content);
+        synchronized (PARSED) {
+            final Parsed cached = PARSED.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final Parsed parsed = parse(cndUrl, content);
+        synchronized (PARSED) {
+            final Parsed raced = PARSED.putIfAbsent(key, parsed);
+            return raced != null ? raced : parsed;
+        }
+    }
+
+    /**
+     * Empty the cache.
+     */
+    static void clear() {
+        synchronized (PARSED) {
+            PARSED.clear();
+        }
+    }
+
+    private static Parsed parse(final URL cndUrl, final byte[] content) {
+        return parse(cndUrl, content, null);
+    }
+
+    /**
+     * Parse the CND again, resolving the namespace prefixes it uses but does not declare with the provided mappings,
+     * such as those declared by other CNDs, or registered in a repository. The result is not cached.
+     *
+     * @param cnd        a CND which could not be parsed on its own
+     * @param namespaces the namespace uris by prefix
+     * @return the parsed CND
+     */
+    static Parsed parseWithNamespaces(final Parsed cnd, final Map<String, String> namespaces) {
+        return parse(cnd.url, cnd.content, namespaces);
+    }
+
+    private static Parsed parse(final URL cndUrl, final byte[] content, final Map<String, String> seedNamespaces) {
+        try {
+            final QDefinitionBuilderFactory factory = new QDefinitionBuilderFactory();
+            if (seedNamespaces != null) {
+                final NamespaceMapping seed = new NamespaceMapping(QDefinitionBuilderFactory.NS_DEFAULTS);
+                for (Map.Entry<String, String> nsEntry : seedNamespaces.entrySet()) {
+                    seed.setMapping(nsEntry.getKey(), nsEntry.getValue());
+                }
+                factory.setNamespaceMapping(seed);
+            }
+            final CompactNodeTypeDefReader<QNodeTypeDefinition, NamespaceMapping> reader =
+                    new CompactNodeTypeDefReader<>(new InputStreamReader(new ByteArrayInputStream(content)),
+                            cndUrl.toExternalForm(), factory);
+            final Map<String, String> namespaces =
+                    new LinkedHashMap<>(reader.getNamespaceMapping().getPrefixToURIMapping());
+            return new Parsed(cndUrl, content, Collections.unmodifiableList(reader.getNodeTypeDefinitions()),
+                    Collections.unmodifiableMap(namespaces), null);
+        } catch (final ParseException | NamespaceException e) {
+            // most often a CND that relies on namespace prefixes registered in the repository by other CNDs,
+            // which can only be resolved with the namespaces of those other CNDs.
+            return new Parsed(cndUrl, content, null, Collections.emptyMap(), e);
+        }
+    }
+
+    /**
+     * The content of a CND, and its node type definitions and namespaces, if it could be parsed without a session.
+     */
+    static final class Parsed {
+        private final URL url;
+        private final byte[] content;
+        private final List<QNodeTypeDefinition> definitions;
+        private final Map<String, String> namespaces;
+        private final Exception parseError;
+
+        private Parsed(final URL url, final byte[] content, final List<QNodeTypeDefinition> definitions,
+                       final Map<String, String> namespaces, final Exception parseError) {
+            this.url = url;
+            this.content = content;
+            this.definitions = definitions;
+            this.namespaces = namespaces;
+            this.parseError = parseError;
+        }
+
+        URL getUrl() {
+            return url;
+        }
+
+        /**
+         * Whether the node type definitions were parsed. If not, the CND must be imported with
+         * {@link #newReader()} instead.
+         *
+         * @return true if the definitions were parsed
+         */
+        boolean isParsed() {
+            return definitions != null;
+        }
+
+        /**
+         * The reason the node type definitions could not be parsed.
+         *
+         * @return the parse error, or null if the definitions were parsed
+         */
+        Exception getParseError() {
+            return parseError;
+        }
+
+        List<QNodeTypeDefinition> getDefinitions() {
+            return definitions != null ? definitions : Collections.emptyList();
+        }
+
+        /**
+         * The namespaces declared by the CND.
+         *
+         * @return the namespace uris by prefix
+         */
+        Map<String, String> getNamespaces() {
+            return namespaces;
+        }
+
+        Reader newReader() {
+            return new InputStreamReader(new ByteArrayInputStream(content));
+        }
+    }
+}
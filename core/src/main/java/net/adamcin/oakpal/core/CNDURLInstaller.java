@@ -16,30 +16,58 @@
 package net.adamcin.oakpal.core;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.jcr.NamespaceException;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.ValueFactory;
 import javax.jcr.Workspace;
+import javax.jcr.nodetype.InvalidNodeTypeDefinitionException;
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import javax.jcr.nodetype.NodeDefinition;
+import javax.jcr.nodetype.NodeDefinitionTemplate;
+import javax.jcr.nodetype.NodeTypeDefinition;
 import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.NodeTypeTemplate;
+import javax.jcr.nodetype.PropertyDefinition;
+import javax.jcr.nodetype.PropertyDefinitionTemplate;
 
 import org.apache.jackrabbit.commons.cnd.CndImporter;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.QNodeDefinition;
+import org.apache.jackrabbit.spi.QNodeTypeDefinition;
+import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
+import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.nodetype.NodeTypeDefinitionImpl;
 
 /**
  * Utility class for installation of CNDs by {@link URL}. Inspired by sling mocks.
+ * <p>
+ * CNDs are parsed once per JVM by the {@link CNDCache}. The node types of the unordered CNDs are then registered
+ * together in a single {@link NodeTypeManager#registerNodeTypes(NodeTypeDefinition[], boolean)} call, which resolves
+ * the dependencies between them regardless of order. If any of the unordered CNDs can't be parsed on its own, or if
+ * the bulk registration fails, the node types are sorted by their supertype and required child node type dependencies,
+ * and registered in dependency order, one batch per level of the dependency graph. Node types with undefined
+ * dependencies or cyclic supertypes are reported to the {@link ErrorListener}, along with every node type that depends
+ * on them.
  */
 final class CNDURLInstaller {
 
-    private static final int MAX_ITERATIONS = 5;
-
     private final List<URL> unorderedCnds;
 
     private final List<URL> postInstallCnds;
@@ -77,7 +105,7 @@ final class CNDURLInstaller {
      * @return map of resulting node type errors
      */
     public void register(Session session, List<URL> nodeTypeResources) throws RepositoryException {
-        registerNodeTypes(session, nodeTypeResources);
+        registerNodeTypes(session, loadAll(nodeTypeResources));
     }
 
     /**
@@ -88,26 +116,48 @@ final class CNDURLInstaller {
      * @return map of resulting node type errors
      */
     public void registerByUrl(Session session, List<URL> nodeTypeUrls) throws RepositoryException {
-        registerNodeTypesByUrl(session, nodeTypeUrls);
+        registerNodeTypesByUrl(session, loadAll(nodeTypeUrls));
+    }
+
+    /**
+     * Load the parsed CNDs from the cache, reporting any that can't be read.
+     *
+     * @param nodeTypeUrls the CND urls
+     * @return the parsed CNDs, in the same order
+     */
+    private List<CNDCache.Parsed> loadAll(final List<URL> nodeTypeUrls) {
+        final List<CNDCache.Parsed> cnds = new ArrayList<>(nodeTypeUrls.size());
+        for (URL nodeTypeUrl : nodeTypeUrls) {
+            try {
+                cnds.add(CNDCache.load(nodeTypeUrl));
+            } catch (final IOException e) {
+                errorListener.onNodeTypeRegistrationError(e, nodeTypeUrl);
+            }
+        }
+        return cnds;
     }
 
     /**
      * Registers node types found in classpath in JCR repository.
      *
-     * @param session      Session
-     * @param nodeTypeUrls List of classpath resource URLs pointing to node type definitions
+     * @param session Session
+     * @param cnds    List of parsed CNDs, registered in order
      */
-    private void registerNodeTypesByUrl(Session session, List<URL> nodeTypeUrls) throws RepositoryException {
+    private void registerNodeTypesByUrl(Session session, List<CNDCache.Parsed> cnds) throws RepositoryException {
         final Workspace workspace = session.getWorkspace();
         final NodeTypeManager nodeTypeManager = workspace.getNodeTypeManager();
         final NamespaceRegistry namespaceRegistry = workspace.getNamespaceRegistry();
         final ValueFactory valueFactory = session.getValueFactory();
 
-        for (URL nodeTypeUrl : nodeTypeUrls) {
+        for (CNDCache.Parsed cnd : cnds) {
             try {
-                this.registerNodeTypesFromUrl(nodeTypeUrl, nodeTypeManager, namespaceRegistry, valueFactory);
+                if (cnd.isParsed()) {
+                    registerParsed(session, Collections.singletonList(cnd));
+                } else {
+                    this.registerNodeTypesFromCnd(cnd, nodeTypeManager, namespaceRegistry, valueFactory);
+                }
             } catch (Throwable t) {
-                errorListener.onNodeTypeRegistrationError(t, nodeTypeUrl);
+                errorListener.onNodeTypeRegistrationError(t, cnd.getUrl());
             }
         }
     }
@@ -115,69 +165,498 @@ final class CNDURLInstaller {
     /**
      * Registers node types found in classpath in JCR repository.
      *
-     * @param session           Session
-     * @param nodeTypeResources List of classpath resource URLs pointing to node type definitions
+     * @param session Session
+     * @param cnds    List of parsed CNDs, in no particular order
+     */
+    private void registerNodeTypes(Session session, List<CNDCache.Parsed> cnds) throws RepositoryException {
+        if (cnds.isEmpty()) {
+            return;
+        }
+
+        if (cnds.stream().allMatch(CNDCache.Parsed::isParsed)) {
+            try {
+                registerParsed(session, cnds);
+                return;
+            } catch (final RepositoryException e) {
+                // fall through to register one CND at a time, to attribute errors to specific CNDs.
+            }
+        }
+
+        registerSorted(session, parseAll(session.getWorkspace().getNamespaceRegistry(), cnds));
+    }
+
+    /**
+     * Parse the CNDs which can't be parsed on their own again, using the namespaces registered in the repository and
+     * declared by the other CNDs. A CND may rely on a namespace declared by another CND which also could not be parsed
+     * on its own, so parsing is repeated until no more CNDs can be parsed.
+     *
+     * @param namespaceRegistry the namespace registry
+     * @param cnds              the CNDs
+     * @return the parsed CNDs, in the same order, without those that can't be parsed
+     * @throws RepositoryException if the registered namespaces can't be read
      */
-    private void registerNodeTypes(Session session, List<URL> nodeTypeResources) throws RepositoryException {
-        Workspace workspace = session.getWorkspace();
-        NodeTypeManager nodeTypeManager = workspace.getNodeTypeManager();
-        NamespaceRegistry namespaceRegistry = workspace.getNamespaceRegistry();
-        ValueFactory valueFactory = session.getValueFactory();
-
-        final List<URL> remainingNodeTypeResources = new ArrayList<>(nodeTypeResources);
-
-        // try registering node types multiple times because the exact order is not known
-        int iteration = 0;
-        while (!remainingNodeTypeResources.isEmpty()) {
-            iteration++;
-            if (iteration > MAX_ITERATIONS) {
-                break;
-            } else if (iteration == MAX_ITERATIONS) {
-                tryRegisterNodeTypes(remainingNodeTypeResources, nodeTypeManager,
-                        namespaceRegistry, valueFactory, true);
+    private List<CNDCache.Parsed> parseAll(final NamespaceRegistry namespaceRegistry,
+                                           final List<CNDCache.Parsed> cnds) throws RepositoryException {
+        if (cnds.stream().allMatch(CNDCache.Parsed::isParsed)) {
+            return cnds;
+        }
+
+        final Map<String, String> namespaces = new LinkedHashMap<>();
+        for (String prefix : namespaceRegistry.getPrefixes()) {
+            namespaces.put(prefix, namespaceRegistry.getURI(prefix));
+        }
+        final List<CNDCache.Parsed> attempts = new ArrayList<>(cnds);
+        for (CNDCache.Parsed cnd : cnds) {
+            cnd.getNamespaces().forEach(namespaces::putIfAbsent);
+        }
+
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < attempts.size(); i++) {
+                if (!attempts.get(i).isParsed()) {
+                    final CNDCache.Parsed reparsed = CNDCache.parseWithNamespaces(attempts.get(i), namespaces);
+                    attempts.set(i, reparsed);
+                    if (reparsed.isParsed()) {
+                        reparsed.getNamespaces().forEach(namespaces::putIfAbsent);
+                        progress = true;
+                    }
+                }
+            }
+        }
+
+        final List<CNDCache.Parsed> parsed = new ArrayList<>(attempts.size());
+        for (CNDCache.Parsed attempt : attempts) {
+            if (attempt.isParsed()) {
+                parsed.add(attempt);
             } else {
-                tryRegisterNodeTypes(remainingNodeTypeResources, nodeTypeManager,
-                        namespaceRegistry, valueFactory, false);
+                errorListener.onNodeTypeRegistrationError(attempt.getParseError(), attempt.getUrl());
             }
         }
+        return parsed;
     }
 
     /**
-     * Register node types found in classpath in JCR repository, and remove those that succeeded to register from the list.
+     * Register the node types of the parsed CNDs in dependency order. The node types are the vertices of a graph, with
+     * an edge for each supertype and for each required or default primary type of a child node definition. The
+     * strongly connected components of the graph, which are node types that reference each other through their child
+     * node definitions, must be registered together. Each component is assigned a level one greater than the highest
+     * level of the components it depends on, and all the components of a level are registered in one batch.
      *
-     * @param nodeTypeResources List of nodetype classpath resources
-     * @param nodeTypeManager
-     * @param namespaceRegistry
-     * @param valueFactory
-     */
-    private void tryRegisterNodeTypes(final List<URL> nodeTypeResources,
-                                      final NodeTypeManager nodeTypeManager,
-                                      final NamespaceRegistry namespaceRegistry,
-                                      final ValueFactory valueFactory,
-                                      final boolean logErrors) {
-        Iterator<URL> namedResources = nodeTypeResources.iterator();
-        while (namedResources.hasNext()) {
-            final URL namedResource = namedResources.next();
+     * @param session the session
+     * @param cnds    the parsed CNDs
+     * @throws RepositoryException if the node type manager is not available
+     */
+    private void registerSorted(final Session session, final List<CNDCache.Parsed> cnds) throws RepositoryException {
+        final Workspace workspace = session.getWorkspace();
+        final NamespaceRegistry namespaceRegistry = workspace.getNamespaceRegistry();
+        final NodeTypeManager nodeTypeManager = workspace.getNodeTypeManager();
+        final NamePathResolver resolver = new DefaultNamePathResolver(session);
+
+        for (CNDCache.Parsed cnd : cnds) {
             try {
-                registerNodeTypesFromUrl(namedResource, nodeTypeManager, namespaceRegistry, valueFactory);
-                namedResources.remove();
-            } catch (Throwable ex) {
-                if (logErrors) {
-                    errorListener.onNodeTypeRegistrationError(ex, namedResource);
+                registerNamespaces(namespaceRegistry, cnd);
+            } catch (final RepositoryException e) {
+                errorListener.onNodeTypeRegistrationError(e, cnd.getUrl());
+            }
+        }
+
+        final Map<Name, TypeNode> types = new LinkedHashMap<>();
+        for (CNDCache.Parsed cnd : cnds) {
+            for (QNodeTypeDefinition definition : cnd.getDefinitions()) {
+                if (!types.containsKey(definition.getName())
+                        && !isRegistered(nodeTypeManager, resolver, definition.getName())) {
+                    types.put(definition.getName(), new TypeNode(cnd, definition));
+                }
+            }
+        }
+
+        for (TypeNode type : types.values()) {
+            for (Name supertype : type.definition.getSupertypes()) {
+                final TypeNode dependency = types.get(supertype);
+                if (dependency != null) {
+                    type.dependencies.add(dependency);
+                    type.supertypes.add(dependency);
+                } else if (!isRegistered(nodeTypeManager, resolver, supertype)) {
+                    type.missing.add("undefined supertype " + toJcrName(resolver, supertype));
+                }
+            }
+            for (QNodeDefinition childDefinition : type.definition.getChildNodeDefs()) {
+                final List<Name> childTypes = new ArrayList<>(Arrays.asList(childDefinition.getRequiredPrimaryTypes()));
+                if (childDefinition.getDefaultPrimaryType() != null) {
+                    childTypes.add(childDefinition.getDefaultPrimaryType());
+                }
+                for (Name childType : childTypes) {
+                    final TypeNode dependency = types.get(childType);
+                    if (dependency != null) {
+                        type.dependencies.add(dependency);
+                    } else if (!isRegistered(nodeTypeManager, resolver, childType)) {
+                        type.missing.add("undefined child node type " + toJcrName(resolver, childType));
+                    }
+                }
+            }
+        }
+
+        // Tarjan's algorithm emits each component after every component it depends on.
+        final List<Component> components = new ArrayList<>();
+        final Deque<TypeNode> stack = new ArrayDeque<>();
+        final int[] counter = new int[1];
+        for (TypeNode type : types.values()) {
+            if (type.index < 0) {
+                connect(type, counter, stack, components);
+            }
+        }
+
+        final List<List<Component>> levels = new ArrayList<>();
+        for (Component component : components) {
+            for (TypeNode member : component.members) {
+                for (TypeNode dependency : member.dependencies) {
+                    if (dependency.component != component) {
+                        component.level = Math.max(component.level, dependency.component.level + 1);
+                    }
+                }
+            }
+            while (levels.size() <= component.level) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(component.level).add(component);
+        }
+
+        final ValueFactory valueFactory = session.getValueFactory();
+        for (List<Component> level : levels) {
+            final List<Component> registrable = new ArrayList<>();
+            for (Component component : level) {
+                if (validate(component, resolver)) {
+                    registrable.add(component);
+                }
+            }
+            if (registrable.isEmpty()) {
+                continue;
+            }
+            try {
+                registerComponents(registrable, nodeTypeManager, resolver, valueFactory);
+            } catch (final RepositoryException | RuntimeException e) {
+                if (registrable.size() == 1) {
+                    fail(registrable.get(0), e);
+                } else {
+                    // register each component of the level on its own, to attribute errors to specific CNDs.
+                    for (Component component : registrable) {
+                        try {
+                            registerComponents(Collections.singletonList(component), nodeTypeManager, resolver,
+                                    valueFactory);
+                        } catch (final RepositoryException | RuntimeException componentError) {
+                            fail(component, componentError);
+                        }
+                    }
                 }
             }
         }
     }
 
-    private void registerNodeTypesFromUrl(final URL namedResource,
+    private static void connect(final TypeNode type, final int[] counter, final Deque<TypeNode> stack,
+                                final List<Component> components) {
+        type.index = type.lowLink = counter[0]++;
+        stack.push(type);
+        type.onStack = true;
+        for (TypeNode dependency : type.dependencies) {
+            if (dependency.index < 0) {
+                connect(dependency, counter, stack, components);
+                type.lowLink = Math.min(type.lowLink, dependency.lowLink);
+            } else if (dependency.onStack) {
+                type.lowLink = Math.min(type.lowLink, dependency.index);
+            }
+        }
+        if (type.lowLink == type.index) {
+            final Component component = new Component();
+            TypeNode member;
+            do {
+                member = stack.pop();
+                member.onStack = false;
+                member.component = component;
+                component.members.add(member);
+            } while (member != type);
+            components.add(component);
+        }
+    }
+
+    /**
+     * Report the node types of the component which can't be registered, because they have undefined dependencies,
+     * cyclic supertypes, or depend on a node type that failed to register. The members of a component depend on each
+     * other, so if any member fails, they all fail.
+     *
+     * @param component the component
+     * @param resolver  the name resolver
+     * @return true if the component can be registered
+     */
+    private boolean validate(final Component component, final NamePathResolver resolver) {
+        TypeNode failed = null;
+        for (TypeNode member : component.members) {
+            if (!member.missing.isEmpty()) {
+                fail(member, new NoSuchNodeTypeException(String.format("Node type %s has %s",
+                        toJcrName(resolver, member.definition.getName()), String.join(", ", member.missing))));
+            } else {
+                final List<TypeNode> cycle = findSupertypeCycle(member);
+                if (cycle != null) {
+                    fail(member, new InvalidNodeTypeDefinitionException(String.format(
+                            "Node type %s has a cyclic supertype dependency: %s",
+                            toJcrName(resolver, member.definition.getName()),
+                            cycle.stream().map(type -> toJcrName(resolver, type.definition.getName()))
+                                    .collect(Collectors.joining(" > ")))));
+                } else {
+                    for (TypeNode dependency : member.dependencies) {
+                        if (dependency.failed) {
+                            failDependent(member, dependency, resolver);
+                            break;
+                        }
+                    }
+                }
+            }
+            if (member.failed && failed == null) {
+                failed = member;
+            }
+        }
+        if (failed != null) {
+            for (TypeNode member : component.members) {
+                if (!member.failed) {
+                    failDependent(member, failed, resolver);
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find a path of supertypes from the node type back to itself, through other members of its component.
+     *
+     * @param type the node type
+     * @return the cycle, starting and ending with the node type, or null if there is none
+     */
+    private static List<TypeNode> findSupertypeCycle(final TypeNode type) {
+        final Map<TypeNode, TypeNode> parents = new HashMap<>();
+        final Deque<TypeNode> queue = new ArrayDeque<>();
+        queue.add(type);
+        while (!queue.isEmpty()) {
+            final TypeNode current = queue.poll();
+            for (TypeNode supertype : current.supertypes) {
+                if (supertype == type) {
+                    final LinkedList<TypeNode> cycle = new LinkedList<>();
+                    cycle.addFirst(type);
+                    for (TypeNode step = current; step != type; step = parents.get(step)) {
+                        cycle.addFirst(step);
+                    }
+                    cycle.addFirst(type);
+                    return cycle;
+                } else if (supertype.component == type.component && !parents.containsKey(supertype)) {
+                    parents.put(supertype, current);
+                    queue.add(supertype);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void registerComponents(final List<Component> components,
+                                    final NodeTypeManager nodeTypeManager,
+                                    final NamePathResolver resolver,
+                                    final ValueFactory valueFactory) throws RepositoryException {
+        final List<NodeTypeDefinition> definitions = new ArrayList<>();
+        for (Component component : components) {
+            for (TypeNode member : component.members) {
+                definitions.add(toTemplate(nodeTypeManager,
+                        new NodeTypeDefinitionImpl(member.definition, resolver, valueFactory)));
+            }
+        }
+        nodeTypeManager.registerNodeTypes(definitions.toArray(new NodeTypeDefinition[0]), false);
+    }
+
+    private void fail(final TypeNode type, final Throwable error) {
+        type.failed = true;
+        errorListener.onNodeTypeRegistrationError(error, type.cnd.getUrl());
+    }
+
+    private void fail(final Component component, final Throwable error) {
+        final Set<URL> urls = new LinkedHashSet<>();
+        for (TypeNode member : component.members) {
+            member.failed = true;
+            urls.add(member.cnd.getUrl());
+        }
+        for (URL url : urls) {
+            errorListener.onNodeTypeRegistrationError(error, url);
+        }
+    }
+
+    private void failDependent(final TypeNode type, final TypeNode dependency, final NamePathResolver resolver) {
+        fail(type, new NoSuchNodeTypeException(String.format(
+                "Node type %s depends on node type %s, which failed to register",
+                toJcrName(resolver, type.definition.getName()),
+                toJcrName(resolver, dependency.definition.getName()))));
+    }
+
+    private static boolean isRegistered(final NodeTypeManager nodeTypeManager, final NamePathResolver resolver,
+                                        final Name name) throws RepositoryException {
+        try {
+            return nodeTypeManager.hasNodeType(resolver.getJCRName(name));
+        } catch (final NamespaceException e) {
+            return false;
+        }
+    }
+
+    private static String toJcrName(final NamePathResolver resolver, final Name name) {
+        try {
+            return resolver.getJCRName(name);
+        } catch (final NamespaceException e) {
+            return name.toString();
+        }
+    }
+
+    /**
+     * A node type to register, as a vertex in the dependency graph.
+     */
+    private static final class TypeNode {
+        private final CNDCache.Parsed cnd;
+        private final QNodeTypeDefinition definition;
+        private final Set<TypeNode> dependencies = new LinkedHashSet<>();
+        private final Set<TypeNode> supertypes = new LinkedHashSet<>();
+        private final List<String> missing = new ArrayList<>();
+        private int index = -1;
+        private int lowLink;
+        private boolean onStack;
+        private Component component;
+        private boolean failed;
+
+        private TypeNode(final CNDCache.Parsed cnd, final QNodeTypeDefinition definition) {
+            this.cnd = cnd;
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * A strongly connected component of the dependency graph.
+     */
+    private static final class Component {
+        private final List<TypeNode> members = new ArrayList<>();
+        private int level;
+    }
+
+    /**
+     * Register the namespaces and node types of the parsed CNDs in one pass. Node types which are already registered
+     * are skipped, as they would be by {@link CndImporter}.
+     *
+     * @param session the session
+     * @param cnds    the parsed CNDs
+     * @throws RepositoryException if a namespace or the node types fail to register
+     */
+    private void registerParsed(final Session session, final List<CNDCache.Parsed> cnds) throws RepositoryException {
+        final Workspace workspace = session.getWorkspace();
+        final NamespaceRegistry namespaceRegistry = workspace.getNamespaceRegistry();
+        for (CNDCache.Parsed cnd : cnds) {
+            registerNamespaces(namespaceRegistry, cnd);
+        }
+
+        final NodeTypeManager nodeTypeManager = workspace.getNodeTypeManager();
+        final NamePathResolver resolver = new DefaultNamePathResolver(session);
+        final Map<String, NodeTypeDefinition> definitions = new LinkedHashMap<>();
+        for (CNDCache.Parsed cnd : cnds) {
+            for (QNodeTypeDefinition qDefinition : cnd.getDefinitions()) {
+                final NodeTypeDefinition definition = toTemplate(nodeTypeManager,
+                        new NodeTypeDefinitionImpl(qDefinition, resolver, session.getValueFactory()));
+                if (!definitions.containsKey(definition.getName())
+                        && !nodeTypeManager.hasNodeType(definition.getName())) {
+                    definitions.put(definition.getName(), definition);
+                }
+            }
+        }
+        if (!definitions.isEmpty()) {
+            nodeTypeManager.registerNodeTypes(definitions.values().toArray(new NodeTypeDefinition[0]), false);
+        }
+    }
+
+    /**
+     * Copy the node type definition to a template created by the node type manager. Oak does not preserve residual
+     * item definition names when registering node type definitions of other implementations, so the item definitions
+     * are copied field by field, as the {@link CndImporter} would set them.
+     *
+     * @param nodeTypeManager the node type manager
+     * @param definition      the node type definition
+     * @return the node type template
+     * @throws RepositoryException if a template can't be created
+     */
+    private static NodeTypeTemplate toTemplate(final NodeTypeManager nodeTypeManager,
+                                               final NodeTypeDefinition definition) throws RepositoryException {
+        final NodeTypeTemplate template = nodeTypeManager.createNodeTypeTemplate();
+        template.setName(definition.getName());
+        template.setDeclaredSuperTypeNames(definition.getDeclaredSupertypeNames());
+        template.setAbstract(definition.isAbstract());
+        template.setMixin(definition.isMixin());
+        template.setOrderableChildNodes(definition.hasOrderableChildNodes());
+        template.setQueryable(definition.isQueryable());
+        template.setPrimaryItemName(definition.getPrimaryItemName());
+
+        final List<PropertyDefinitionTemplate> propertyTemplates = template.getPropertyDefinitionTemplates();
+        for (PropertyDefinition propertyDefinition : definition.getDeclaredPropertyDefinitions()) {
+            final PropertyDefinitionTemplate propertyTemplate = nodeTypeManager.createPropertyDefinitionTemplate();
+            propertyTemplate.setName(propertyDefinition.getName());
+            propertyTemplate.setAutoCreated(propertyDefinition.isAutoCreated());
+            propertyTemplate.setMandatory(propertyDefinition.isMandatory());
+            propertyTemplate.setOnParentVersion(propertyDefinition.getOnParentVersion());
+            propertyTemplate.setProtected(propertyDefinition.isProtected());
+            propertyTemplate.setRequiredType(propertyDefinition.getRequiredType());
+            propertyTemplate.setValueConstraints(propertyDefinition.getValueConstraints());
+            propertyTemplate.setDefaultValues(propertyDefinition.getDefaultValues());
+            propertyTemplate.setMultiple(propertyDefinition.isMultiple());
+            propertyTemplate.setAvailableQueryOperators(propertyDefinition.getAvailableQueryOperators());
+            propertyTemplate.setFullTextSearchable(propertyDefinition.isFullTextSearchable());
+            propertyTemplate.setQueryOrderable(propertyDefinition.isQueryOrderable());
+            propertyTemplates.add(propertyTemplate);
+        }
+
+        final List<NodeDefinitionTemplate> nodeTemplates = template.getNodeDefinitionTemplates();
+        for (NodeDefinition nodeDefinition : definition.getDeclaredChildNodeDefinitions()) {
+            final NodeDefinitionTemplate nodeTemplate = nodeTypeManager.createNodeDefinitionTemplate();
+            nodeTemplate.setName(nodeDefinition.getName());
+            nodeTemplate.setAutoCreated(nodeDefinition.isAutoCreated());
+            nodeTemplate.setMandatory(nodeDefinition.isMandatory());
+            nodeTemplate.setOnParentVersion(nodeDefinition.getOnParentVersion());
+            nodeTemplate.setProtected(nodeDefinition.isProtected());
+            nodeTemplate.setRequiredPrimaryTypeNames(nodeDefinition.getRequiredPrimaryTypeNames());
+            nodeTemplate.setDefaultPrimaryTypeName(nodeDefinition.getDefaultPrimaryTypeName());
+            nodeTemplate.setSameNameSiblings(nodeDefinition.allowsSameNameSiblings());
+            nodeTemplates.add(nodeTemplate);
+        }
+        return template;
+    }
+
+    /**
+     * Register the namespaces declared by the CND which are not yet registered.
+     *
+     * @param namespaceRegistry the namespace registry
+     * @param cnd               the parsed CND
+     * @throws RepositoryException if a namespace fails to register
+     */
+    private static void registerNamespaces(final NamespaceRegistry namespaceRegistry, final CNDCache.Parsed cnd)
+            throws RepositoryException {
+        for (Map.Entry<String, String> nsEntry : cnd.getNamespaces().entrySet()) {
+            final String prefix = nsEntry.getKey();
+            final String uri = nsEntry.getValue();
+            if (prefix.isEmpty()) {
+                continue;
+            }
+            try {
+                namespaceRegistry.getPrefix(uri);
+            } catch (final NamespaceException e) {
+                namespaceRegistry.registerNamespace(prefix, uri);
+            }
+        }
+    }
+
+    private void registerNodeTypesFromCnd(final CNDCache.Parsed cnd,
                                           final NodeTypeManager nodeTypeManager,
                                           final NamespaceRegistry namespaceRegistry,
                                           final ValueFactory valueFactory) throws Throwable {
-        try (InputStream is = namedResource.openStream()) {
-            Reader reader = new InputStreamReader(is);
-            CndImporter.registerNodeTypes(reader, namedResource.toExternalForm(), nodeTypeManager, namespaceRegistry,
+        try (Reader reader = cnd.newReader()) {
+            CndImporter.registerNodeTypes(reader, cnd.getUrl().toExternalForm(), nodeTypeManager, namespaceRegistry,
                     valueFactory, false);
         }
     }
 }
-
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.concurrent.TimeUnit;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Invocation counts and latencies of each {@link ProgressCheck} callback, collected for a single check during a scan
+ * with {@link OakMachine.Builder#withMetrics(boolean)} enabled.
+ */
+@ProviderType
+public final class CheckMetrics {
+
+    /**
+     * The instrumented {@link ProgressCheck} callbacks.
+     */
+    public enum Callback {
+        STARTED_SCAN("startedScan"),
+        IDENTIFY_PACKAGE("identifyPackage"),
+        IDENTIFY_SUBPACKAGE("identifySubpackage"),
+        BEFORE_EXTRACT("beforeExtract"),
+        IMPORTED_PATH("importedPath"),
+        DELETED_PATH("deletedPath"),
+        AFTER_EXTRACT("afterExtract"),
+        FINISHED_SCAN("finishedScan");
+
+        private final String methodName;
+
+        Callback(final String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * The name of the {@link ProgressCheck} method, which is also the key used in serialized reports.
+         *
+         * @return the callback method name
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * Find the callback for a {@link ProgressCheck} method name.
+         *
+         * @param methodName the callback method name
+         * @return the callback, or null if the name is not recognized
+         */
+        public static Callback byMethodName(final String methodName) {
+            for (Callback callback : values()) {
+                if (callback.methodName.equals(methodName)) {
+                    return callback;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final String checkName;
+    private final long[] invocationCounts = new long[Callback.values().length];
+    private final long[] totalNanos = new long[Callback.values().length];
+    private final long[] maxNanos = new long[Callback.values().length];
+    private int violationCount;
+
+    CheckMetrics(final String checkName) {
+        this.checkName = checkName;
+    }
+
+    void record(final Callback callback, final long nanos) {
+        final int index = callback.ordinal();
+        invocationCounts[index]++;
+        totalNanos[index] += nanos;
+        maxNanos[index] = Math.max(maxNanos[index], nanos);
+    }
+
+    void record(final Callback callback, final long invocationCount, final long totalNanos, final long maxNanos) {
+        final int index = callback.ordinal();
+        this.invocationCounts[index] += invocationCount;
+        this.totalNanos[index] += totalNanos;
+        this.maxNanos[index] = Math.max(this.maxNanos[index], maxNanos);
+    }
+
+    void setViolationCount(final int violationCount) {
+        this.violationCount = violationCount;
+    }
+
+    /**
+     * The name of the check, as used for its {@link CheckReport}.
+     *
+     * @return the check name
+     */
+    public String getCheckName() {
+        return checkName;
+    }
+
+    /**
+     * The number of times the callback was invoked.
+     *
+     * @param callback the callback
+     * @return the invocation count
+     */
+    public long getInvocationCount(final Callback callback) {
+        return invocationCounts[callback.ordinal()];
+    }
+
+    /**
+     * The total time spent in the callback.
+     *
+     * @param callback the callback
+     * @return total latency in nanoseconds
+     */
+    public long getTotalNanos(final Callback callback) {
+        return totalNanos[callback.ordinal()];
+    }
+
+    /**
+     * The longest single invocation of the callback.
+     *
+     * @param callback the callback
+     * @return max latency in nanoseconds
+     */
+    public long getMaxNanos(final Callback callback) {
+        return maxNanos[callback.ordinal()];
+    }
+
+    /**
+     * The total time spent in all callbacks of the check.
+     *
+     * @return total latency in milliseconds
+     */
+    public long getTotalMillis() {
+        long total = 0L;
+        for (long nanos : totalNanos) {
+            total += nanos;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * The number of violations reported by the check at the end of the scan.
+     *
+     * @return the violation count
+     */
+    public int getViolationCount() {
+        return violationCount;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CheckMetrics{checkName='").append(checkName).append('\'');
+        for (Callback callback : Callback.values()) {
+            if (getInvocationCount(callback) > 0) {
+                sb.append(", ").append(callback.getMethodName()).append("=")
+                        .append(getInvocationCount(callback)).append("x/")
+                        .append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos(callback))).append("ms");
+            }
+        }
+        return sb.append(", violationCount=").append(violationCount).append('}').toString();
+    }
+}
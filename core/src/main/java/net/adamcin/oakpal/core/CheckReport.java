@@ -17,6 +17,7 @@
 package net.adamcin.oakpal.core;
 
 import java.util.Collection;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -52,4 +53,14 @@ public interface CheckReport {
                 && !v.getSeverity().isLessSevereThan(atLeastAsSevere))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * The callback metrics of the check, if the scan was run with {@link OakMachine.Builder#withMetrics(boolean)}
+     * enabled.
+     *
+     * @return the check metrics, or empty if metrics were not collected
+     */
+    default Optional<CheckMetrics> getMetrics() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Optional interface for a {@link ProgressCheck} or {@link ErrorListener} whose state can be saved after each package
+ * of a scan, and restored later. {@link OakMachine} only resumes a scan from a repository checkpoint when the error
+ * listener and every progress check are checkpointable, because a resumed scan does not send the events of the
+ * packages before the checkpoint again.
+ *
+ * @see OakMachine.Builder#withPrefixCheckpoints(boolean)
+ */
+@ConsumerType
+public interface Checkpointable {
+
+    /**
+     * Capture the state accumulated since {@link ScanListener#startedScan()}. The returned object must not be
+     * modified by later events.
+     *
+     * @return the saved state, which may be null
+     */
+    Object saveCheckpoint();
+
+    /**
+     * Replace the current state with a checkpoint previously returned by {@link #saveCheckpoint()}. This is called
+     * immediately after {@link ScanListener#startedScan()}.
+     *
+     * @param checkpoint the saved state
+     */
+    void restoreCheckpoint(Object checkpoint);
+
+    /**
+     * Facades which implement this interface on behalf of a wrapped check return false when the wrapped check does
+     * not.
+     *
+     * @return true if {@link #saveCheckpoint()} and {@link #restoreCheckpoint(Object)} are supported
+     */
+    default boolean isCheckpointable() {
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Process-wide cache of {@link CompiledScript}s for {@link ScriptProgressCheck}s, keyed by script engine instance,
+ * script URL and the SHA-256 hash of the script content, so that a check script is only parsed and compiled once per
+ * engine no matter how many checks and scans are created from it. A compiled script is bound to the engine that
+ * compiled it, so it is never handed to a factory holding a different engine, which may come from a different class
+ * loader. Also shares a {@link ScriptEngineManager} per context class loader, since engine discovery scans the class
+ * path.
+ */
+final class CompiledScriptCache {
+    static final int MAX_ENTRIES = 64;
+
+    private static final Map<Key, CompiledScript> COMPILED = new LinkedHashMap<Key, CompiledScript>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, CompiledScript> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final Map<ClassLoader, SoftReference<ScriptEngineManager>> MANAGERS = new WeakHashMap<>();
+
+    private CompiledScriptCache() {
+        // no instances
+    }
+
+    /**
+     * Get a shared {@link ScriptEngineManager} for the current thread context class loader.
+     *
+     * @return a script engine manager
+     */
+    static ScriptEngineManager getEngineManager() {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            return new ScriptEngineManager();
+        }
+        synchronized (MANAGERS) {
+            final SoftReference<ScriptEngineManager> ref = MANAGERS.get(classLoader);
+            ScriptEngineManager manager = ref != null ? ref.get() : null;
+            if (manager == null) {
+                manager = new ScriptEngineManager(classLoader);
+                MANAGERS.put(classLoader, new SoftReference<>(manager));
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * Read the script content from the URL.
+     *
+     * @param scriptUrl the script URL
+     * @return the script source
+     * @throws IOException if the script can't be read
+     */
+    static Source load(final URL scriptUrl) throws IOException {
+        try (InputStream is = scriptUrl.openStream()) {
+            return new Source(scriptUrl, Util.readBytes(is));
+        }
+    }
+
+    /**
+     * Get the compiled form of the script source for the engine, compiling it with the engine on a cache miss.
+     *
+     * @param engine the script engine
+     * @param source the script source
+     * @return the compiled script, or null if the engine does not implement {@link Compilable}
+     * @throws ScriptException if the script fails to compile
+     */
+    static CompiledScript getOrCompile(final ScriptEngine engine, final Source source) throws ScriptException {
+        if (!(engine instanceof Compilable)) {
+            return null;
+        }
+        final Key key = new Key(engine, source.url.toExternalForm(), source.hash);
+        synchronized (COMPILED) {
+            final CompiledScript cached = COMPILED.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final CompiledScript compiled = ((Compilable) engine).compile(source.newReader());
+        synchronized (COMPILED) {
+            final CompiledScript raced = COMPILED.putIfAbsent(key, compiled);
+            return raced != null ? raced : compiled;
+        }
+    }
+
+    /**
+     * Empty the cache.
+     */
+    static void clear() {
+        synchronized (COMPILED) {
+            COMPILED.clear();
+        }
+    }
+
+    /**
+     * The script content read from a URL, with its SHA-256 hash.
+     */
+    static final class Source {
+        private final URL url;
+        private final byte[] content;
+        private final String hash;
+
+        private Source(final URL url, final byte[] content) {
+            this.url = url;
+            this.content = content;
+            this.hash = Util.sha256Hex(content);
+        }
+
+        InputStreamReader newReader() {
+            return new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+        }
+
+        String getHash() {
+            return hash;
+        }
+    }
+
+    private static final class Key {
+        private final ScriptEngine engine;
+        private final String url;
+        private final String hash;
+
+        private Key(final ScriptEngine engine, final String url, final String hash) {
+            this.engine = engine;
+            this.url = url;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return engine == key.engine && url.equals(key.url) && hash.equals(key.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(engine), url, hash);
+        }
+    }
+}
@@ -23,9 +23,11 @@ import javax.jcr.PathNotFoundException;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 
 /**
- * Default implementation which reports all exceptions as violations.
+ * Default implementation which reports all exceptions as violations. Subclasses are not checkpointable unless they
+ * override {@link #isCheckpointable()}, after making sure that the {@link Checkpointable} methods save any additional
+ * state they keep.
  */
-public class DefaultErrorListener implements ErrorListener {
+public class DefaultErrorListener implements ErrorListener, Checkpointable {
 
     private final ReportCollector collector = new ReportCollector();
 
@@ -38,6 +40,32 @@ public class DefaultErrorListener implements ErrorListener {
         return collector.getReportedViolations();
     }
 
+    @Override
+    public Violation.Severity getHighestReportedSeverity() {
+        return collector.getHighestReportedSeverity();
+    }
+
+    @Override
+    public Object saveCheckpoint() {
+        return collector.saveCheckpoint();
+    }
+
+    @Override
+    public void restoreCheckpoint(final Object checkpoint) {
+        collector.restoreCheckpoint(checkpoint);
+    }
+
+    /**
+     * Only this class itself is checkpointable by default, since a subclass may keep state that the collector of
+     * reported violations doesn't capture.
+     *
+     * @return true if this is not a subclass
+     */
+    @Override
+    public boolean isCheckpointable() {
+        return getClass() == DefaultErrorListener.class;
+    }
+
     @Override
     public void onNodeTypeRegistrationError(final Throwable e, final URL resource) {
         if (e.getCause() != null) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jackrabbit.oak.spi.blob.BlobOptions;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+
+/**
+ * A {@link BlobStore} for scan repositories, which keeps only the length and SHA-256 digest of each binary larger
+ * than the retained size, so that large binaries never occupy the heap or the segment store. Blob ids have the form
+ * {@code <sha256-hex>#<length>}, and serve as the blob references and the content identities that checks can read
+ * through {@code JackrabbitValue.getContentIdentity()}.
+ * <p>
+ * Reading the content of a discarded binary fails with an {@link IOException}. Binaries no larger than the retained
+ * size are kept in full, for the checks that parse small files like {@code .cnd} or OSGi configurations.
+ */
+final class DigestBlobStore implements BlobStore {
+    static final int DEFAULT_RETAINED_SIZE = 16 * 1024;
+    private static final int DIGEST_LENGTH = 32;
+
+    private final int retainedSize;
+    private final Map<String, byte[]> retained = new ConcurrentHashMap<>();
+
+    DigestBlobStore(final int retainedSize) {
+        this.retainedSize = Math.max(0, retainedSize);
+    }
+
+    int getRetainedSize() {
+        return retainedSize;
+    }
+
+    @Override
+    public String writeBlob(final InputStream in) throws IOException {
+        final MessageDigest digest = Util.newSha256Digest();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        long length = 0L;
+        try {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+                length += read;
+                if (content != null) {
+                    if (length > retainedSize) {
+                        content = null;
+                    } else {
+                        content.write(buffer, 0, read);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        final String blobId = Util.toHex(digest.digest()) + "#" + length;
+        if (content != null) {
+            retained.putIfAbsent(blobId, content.toByteArray());
+        }
+        return blobId;
+    }
+
+    @Override
+    public String writeBlob(final InputStream in, final BlobOptions options) throws IOException {
+        return writeBlob(in);
+    }
+
+    @Override
+    public int readBlob(final String blobId, final long pos, final byte[] buff, final int off, final int length)
+            throws IOException {
+        final long blobLength = getBlobLength(blobId);
+        if (pos >= blobLength) {
+            return -1;
+        }
+        final int count = (int) Math.min(length, blobLength - pos);
+        System.arraycopy(getRetained(blobId), (int) pos, buff, off, count);
+        return count;
+    }
+
+    @Override
+    public long getBlobLength(final String blobId) throws IOException {
+        return parseLength(blobId);
+    }
+
+    @Override
+    public InputStream getInputStream(final String blobId) throws IOException {
+        return new ByteArrayInputStream(getRetained(blobId));
+    }
+
+    @Override
+    public String getBlobId(final String reference) {
+        if (reference == null) {
+            return null;
+        }
+        try {
+            parseLength(reference);
+            return reference;
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getReference(final String blobId) {
+        return blobId;
+    }
+
+    private static long parseLength(final String blobId) throws IOException {
+        final int separator = blobId.indexOf('#');
+        if (separator != DIGEST_LENGTH * 2) {
+            throw new IOException("Invalid blob id: " + blobId);
+        }
+        try {
+            return Long.parseLong(blobId.substring(separator + 1));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid blob id: " + blobId, e);
+        }
+    }
+
+    private byte[] getRetained(final String blobId) throws IOException {
+        final byte[] content = retained.get(blobId);
+        if (content == null) {
+            throw new IOException(String.format("Content of binary %s was discarded, because it is larger than the "
+                    + "retained size of %d bytes for hash-only binaries", blobId, retainedSize));
+        }
+        return content;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.plugins.commit.ConflictValidatorProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.property.OrderedPropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.reference.ReferenceEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.reference.ReferenceIndexProvider;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider;
+import org.apache.jackrabbit.oak.plugins.version.VersionHook;
+import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * A {@link RepositoryProfile} composed of a set of {@link RepositoryProfile.Feature}s.
+ */
+final class FeatureRepositoryProfile implements RepositoryProfile {
+    /**
+     * The name of the reference index definition created by {@link org.apache.jackrabbit.oak.InitialContent}.
+     */
+    static final String REFERENCE_INDEX_NAME = "reference";
+
+    private final String name;
+    private final Set<Feature> features;
+
+    FeatureRepositoryProfile(final String name, final EnumSet<Feature> features) {
+        this.name = name;
+        this.features = Collections.unmodifiableSet(features);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    Set<Feature> getFeatures() {
+        return features;
+    }
+
+    @Override
+    public void configure(final Jcr jcr) {
+        if (features.contains(Feature.VERSIONING)) {
+            jcr.with(new VersionHook());
+        }
+        if (features.contains(Feature.CONFLICT_VALIDATION)) {
+            jcr.with(new ConflictValidatorProvider());
+        }
+        if (features.contains(Feature.CHANGE_COLLECTOR)) {
+            jcr.with(new ChangeCollectorProvider());
+        }
+        if (features.contains(Feature.REFERENCE_INDEX)) {
+            jcr.with(new ReferenceIndexProvider());
+            jcr.with(new ReferenceEditorProvider());
+        } else {
+            // without an editor for the index definition, every commit would log a missing index provider and
+            // request a reindex.
+            jcr.with(new RemoveIndexDefinition(REFERENCE_INDEX_NAME));
+        }
+        if (features.contains(Feature.ORDERED_INDEX)) {
+            jcr.with(new OrderedPropertyIndexEditorProvider());
+        }
+        if (features.contains(Feature.ATOMIC_COUNTER)) {
+            jcr.withAtomicCounter();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + features;
+    }
+
+    /**
+     * Removes an index definition created by the initial content. Repository initializers run in the order they are
+     * added, so this must be added after the initial content.
+     */
+    private static final class RemoveIndexDefinition implements RepositoryInitializer {
+        private final String indexName;
+
+        private RemoveIndexDefinition(final String indexName) {
+            this.indexName = indexName;
+        }
+
+        @Override
+        public void initialize(final NodeBuilder builder) {
+            if (builder.hasChildNode(IndexConstants.INDEX_DEFINITIONS_NAME)) {
+                builder.getChildNode(IndexConstants.INDEX_DEFINITIONS_NAME).getChildNode(indexName).remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.filter.DefaultPathFilter;
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageManager;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Installs a package by reading it directly from its file, without uploading it to {@code /etc/packages}. The package
+ * file is opened as a random-access zip, so entries are read on demand. Subpackages are streamed from the parent
+ * archive to temporary files, which are opened the same way, and which are deleted when the outermost package is
+ * closed. Only the {@code .zip} entries under {@code /etc/packages} which are covered by the workspace filter of the
+ * parent package are treated as subpackages. Their paths are excluded from the workspace filter used to extract the
+ * parent package, so no package binary is ever written to the node store.
+ */
+final class FilePackageInstall implements PackageInstall {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilePackageInstall.class);
+    private static final String JCR_ROOT = "/jcr_root";
+    private static final String ZIP_EXTENSION = ".zip";
+    private static final String SNAPSHOT_FOLDER = ".snapshot";
+
+    private final PackageManager packageManager;
+    private final VaultPackage vaultPackage;
+    private final FilePackageInstall outermost;
+    private final File spilledFile;
+    private final Map<PackageId, File> subpackageFiles = new LinkedHashMap<>();
+    private Path spillDirectory;
+
+    private FilePackageInstall(final PackageManager packageManager, final VaultPackage vaultPackage,
+                               final FilePackageInstall outermost, final File spilledFile) {
+        this.packageManager = packageManager;
+        this.vaultPackage = vaultPackage;
+        this.outermost = outermost != null ? outermost : this;
+        this.spilledFile = spilledFile;
+    }
+
+    /**
+     * Open a package file.
+     *
+     * @param packageManager the package manager
+     * @param file           the package file
+     * @return the package install
+     * @throws IOException for errors opening the file
+     */
+    static FilePackageInstall open(final PackageManager packageManager, final File file) throws IOException {
+        return new FilePackageInstall(packageManager, packageManager.open(file), null, null);
+    }
+
+    @Override
+    public VaultPackage getPackage() {
+        return vaultPackage;
+    }
+
+    @Override
+    public List<PackageId> extractSubpackages(final ImportOptions options) throws IOException, PackageException {
+        final Archive archive = vaultPackage.getArchive();
+        if (archive == null) {
+            throw new PackageException("Package is not open: " + vaultPackage.getId());
+        }
+        final Archive.Entry packagesEntry = archive.getEntry(JCR_ROOT + PackageId.ETC_PACKAGES);
+        if (packagesEntry == null) {
+            return Collections.emptyList();
+        }
+
+        final WorkspaceFilter filter = vaultPackage.getMetaInf().getFilter();
+        final Map<String, Archive.Entry> zipEntries = new LinkedHashMap<>();
+        findSubpackageEntries(packagesEntry, PackageId.ETC_PACKAGES, zipEntries);
+        zipEntries.keySet().removeIf(path -> {
+            if (filter == null || !filter.covers(path)) {
+                LOGGER.debug("[extractSubpackages] skipping subpackage {} not covered by the filter of {}", path,
+                        vaultPackage.getId());
+                return true;
+            }
+            return false;
+        });
+        for (Map.Entry<String, Archive.Entry> zipEntry : zipEntries.entrySet()) {
+            final Path spilled = Files.createTempFile(outermost.getSpillDirectory(), "subpackage", ZIP_EXTENSION);
+            try (InputStream input = archive.openInputStream(zipEntry.getValue())) {
+                Files.copy(input, spilled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            final PackageId subpackageId;
+            try (VaultPackage subpackage = packageManager.open(spilled.toFile())) {
+                subpackageId = subpackage.getId();
+            }
+            if (subpackageId == null) {
+                LOGGER.warn("[extractSubpackages] skipping invalid subpackage {} in {}", zipEntry.getKey(),
+                        vaultPackage.getId());
+                Files.deleteIfExists(spilled);
+            } else {
+                subpackageFiles.put(subpackageId, spilled.toFile());
+            }
+        }
+
+        options.setFilter(excludePaths(filter, zipEntries.keySet()));
+        // JcrPackageImpl.extractSubpackages sorts the ids of the subpackages it extracts, so do the same.
+        final List<PackageId> subpackageIds = new ArrayList<>(subpackageFiles.keySet());
+        Collections.sort(subpackageIds);
+        return subpackageIds;
+    }
+
+    @Override
+    public void extract(final Session session, final ImportOptions options)
+            throws PackageException, RepositoryException {
+        vaultPackage.extract(session, options);
+    }
+
+    @Override
+    public PackageInstall openSubpackage(final PackageId packageId) throws IOException, PackageException {
+        final File file = subpackageFiles.remove(packageId);
+        if (file == null) {
+            throw new PackageException("Subpackage not found: " + packageId);
+        }
+        return new FilePackageInstall(packageManager, packageManager.open(file), outermost, file);
+    }
+
+    @Override
+    public void closePackage() {
+        vaultPackage.close();
+    }
+
+    @Override
+    public void close() {
+        vaultPackage.close();
+        if (spilledFile != null && !spilledFile.delete()) {
+            LOGGER.debug("[close] subpackage file {} will be deleted with the outermost package", spilledFile);
+        }
+        if (outermost == this && spillDirectory != null) {
+            try (Stream<Path> paths = Files.walk(spillDirectory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            } catch (final IOException e) {
+                LOGGER.warn("[close] failed to delete subpackage directory {}", spillDirectory, e);
+            }
+        }
+    }
+
+    private Path getSpillDirectory() throws IOException {
+        if (spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory("oakpal-subpackages");
+        }
+        return spillDirectory;
+    }
+
+    private static void findSubpackageEntries(final Archive.Entry entry, final String path,
+                                              final Map<String, Archive.Entry> zipEntries) {
+        for (Archive.Entry child : entry.getChildren()) {
+            final String childPath = path + "/" + PlatformNameFormat.getRepositoryName(child.getName());
+            if (child.isDirectory()) {
+                if (!SNAPSHOT_FOLDER.equals(child.getName())) {
+                    findSubpackageEntries(child, childPath, zipEntries);
+                }
+            } else if (child.getName().endsWith(ZIP_EXTENSION)) {
+                zipEntries.put(childPath, child);
+            }
+        }
+    }
+
+    /**
+     * Copy a workspace filter, excluding each of the paths and their descendants from the filter sets that cover them.
+     * Filter sets rooted at or below one of the paths are dropped, because the importer would otherwise still create
+     * their root as an ancestor of the filtered content.
+     * The original filter is not modified, because it remains visible to checks as part of the package meta-inf.
+     * Filters other than {@link DefaultWorkspaceFilter} are returned as-is.
+     *
+     * @param filter the workspace filter
+     * @param paths  the paths to exclude
+     * @return the filter to import with
+     */
+    static WorkspaceFilter excludePaths(final WorkspaceFilter filter, final Iterable<String> paths) {
+        if (!(filter instanceof DefaultWorkspaceFilter) || !paths.iterator().hasNext()) {
+            return filter;
+        }
+        final List<PathFilterSet> nodeSets = filter.getFilterSets();
+        final List<PathFilterSet> propertySets = ((DefaultWorkspaceFilter) filter).getPropertyFilterSets();
+        final DefaultWorkspaceFilter copy = new DefaultWorkspaceFilter();
+        for (int i = 0; i < nodeSets.size(); i++) {
+            final PathFilterSet nodeSet = nodeSets.get(i);
+            if (isExcludedRoot(nodeSet.getRoot(), paths)) {
+                continue;
+            }
+            final PathFilterSet nodeSetCopy = new PathFilterSet(nodeSet.getRoot());
+            nodeSetCopy.setImportMode(nodeSet.getImportMode());
+            nodeSetCopy.setType(nodeSet.getType());
+            nodeSetCopy.addAll(nodeSet);
+            for (String path : paths) {
+                if (nodeSet.covers(path)) {
+                    nodeSetCopy.addExclude(new DefaultPathFilter(Pattern.quote(path) + "(/.*)?"));
+                }
+            }
+            if (propertySets.size() == nodeSets.size()) {
+                copy.add(nodeSetCopy, propertySets.get(i));
+            } else {
+                copy.add(nodeSetCopy);
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isExcludedRoot(final String root, final Iterable<String> paths) {
+        for (String path : paths) {
+            if (root.equals(path) || root.startsWith(path + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defers the maintenance of the synchronous index definitions under {@code /oak:index} while packages are extracted.
+ * Deferred indexes are disabled by setting their type to {@link IndexConstants#TYPE_DISABLED}, which the index
+ * update hook skips on every commit, and which the query engine ignores, so that queries issued while the indexes are
+ * deferred traverse the repository instead of reading a stale index. The original type is kept in the
+ * {@link #DEFERRED_TYPE} property. When the indexes are flushed, the original types are restored with
+ * {@link IndexConstants#REINDEX_PROPERTY_NAME} set, so the indexes are rebuilt by one traversal in a single commit.
+ * <p>
+ * Unique indexes, like the {@code uuid} index, are always kept synchronous, because the importer relies on them to
+ * resolve identifiers and enforce uniqueness. Because the deferred state is stored in the index definitions, it is
+ * carried over by baseline snapshots and checkpoints. The changes are made with a separate admin session, so that the
+ * pending changes of the importing session are never saved early.
+ */
+final class IndexDeferral {
+    static final String DEFERRED_TYPE = "oakpalDeferredType";
+    private static final String INDEX_ROOT = "/" + IndexConstants.INDEX_DEFINITIONS_NAME;
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexDeferral.class);
+
+    private final Repository repository;
+    private boolean pending = true;
+
+    IndexDeferral(final Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Disable the synchronous, non-unique index definitions.
+     *
+     * @throws RepositoryException for errors updating the index definitions
+     */
+    void defer() throws RepositoryException {
+        final Session session = login();
+        try {
+            if (!session.nodeExists(INDEX_ROOT)) {
+                return;
+            }
+            for (NodeIterator indexes = session.getNode(INDEX_ROOT).getNodes(); indexes.hasNext(); ) {
+                final Node index = indexes.nextNode();
+                if (isDeferrable(index)) {
+                    final String type = index.getProperty(IndexConstants.TYPE_PROPERTY_NAME).getString();
+                    index.setProperty(DEFERRED_TYPE, type);
+                    index.setProperty(IndexConstants.TYPE_PROPERTY_NAME, IndexConstants.TYPE_DISABLED);
+                }
+            }
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    /**
+     * Restore the deferred index definitions and rebuild them, if not already done during this scan.
+     *
+     * @throws RepositoryException for errors updating or rebuilding the indexes
+     */
+    synchronized void flush() throws RepositoryException {
+        if (!pending) {
+            return;
+        }
+        pending = false;
+        final Session session = login();
+        try {
+            if (!session.nodeExists(INDEX_ROOT)) {
+                return;
+            }
+            for (NodeIterator indexes = session.getNode(INDEX_ROOT).getNodes(); indexes.hasNext(); ) {
+                final Node index = indexes.nextNode();
+                if (index.hasProperty(DEFERRED_TYPE)) {
+                    index.setProperty(IndexConstants.TYPE_PROPERTY_NAME, index.getProperty(DEFERRED_TYPE).getString());
+                    index.setProperty(IndexConstants.REINDEX_PROPERTY_NAME, true);
+                    index.getProperty(DEFERRED_TYPE).remove();
+                }
+            }
+            if (session.hasPendingChanges()) {
+                final long start = System.nanoTime();
+                session.save();
+                LOGGER.debug("rebuilt deferred indexes in {} ms", (System.nanoTime() - start) / 1000000L);
+            }
+        } finally {
+            session.logout();
+        }
+    }
+
+    private static boolean isDeferrable(final Node index) throws RepositoryException {
+        if (!index.hasProperty(IndexConstants.TYPE_PROPERTY_NAME)
+                || index.hasProperty(IndexConstants.ASYNC_PROPERTY_NAME)
+                || IndexConstants.TYPE_DISABLED.equals(
+                index.getProperty(IndexConstants.TYPE_PROPERTY_NAME).getString())) {
+            return false;
+        }
+        return !(index.hasProperty(IndexConstants.UNIQUE_PROPERTY_NAME)
+                && index.getProperty(IndexConstants.UNIQUE_PROPERTY_NAME).getBoolean());
+    }
+
+    private Session login() throws RepositoryException {
+        return repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+}
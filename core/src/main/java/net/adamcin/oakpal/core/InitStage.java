@@ -18,6 +18,7 @@ package net.adamcin.oakpal.core;
 
 import static net.adamcin.oakpal.core.OakMachine.NT_UNDECLARED;
 
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -246,6 +247,36 @@ public final class InitStage {
         }
     }
 
+    /**
+     * Add the init stage parameters to a scan cache fingerprint, including the content of the CND urls.
+     *
+     * @param fingerprint the fingerprint
+     * @throws IOException if a CND url can't be read
+     */
+    void fingerprint(final ScanCache.Fingerprint fingerprint) throws IOException {
+        fingerprint.withValue("unorderedCndUrls").withValue(String.valueOf(unorderedCndUrls.size()));
+        for (URL cndUrl : unorderedCndUrls) {
+            fingerprint.withUrl(cndUrl);
+        }
+        fingerprint.withValue("orderedCndUrls").withValue(String.valueOf(orderedCndUrls.size()));
+        for (URL cndUrl : orderedCndUrls) {
+            fingerprint.withUrl(cndUrl);
+        }
+        fingerprint.withValue("namespaces").withValue(String.valueOf(namespaces.size()));
+        for (Map.Entry<String, String> nsEntry : namespaces.entrySet()) {
+            fingerprint.withValue(nsEntry.getValue()).withValue(nsEntry.getKey());
+        }
+        fingerprint.withValue("privileges").withValue(String.valueOf(privileges.size()));
+        for (String privilege : privileges) {
+            fingerprint.withValue(privilege);
+        }
+        fingerprint.withValue("forcedRoots").withValue(String.valueOf(forcedRoots.size()));
+        for (ForcedRoot forcedRoot : forcedRoots.values()) {
+            fingerprint.withValue(forcedRoot.getPath()).withValue(forcedRoot.getPrimaryType())
+                    .withValue(String.valueOf(forcedRoot.getMixinTypes()));
+        }
+    }
+
     void initSession(final Session admin, final ErrorListener errorListener) throws RepositoryException {
         final CNDURLInstaller cndInstaller = new CNDURLInstaller(errorListener,
                 this.unorderedCndUrls, this.orderedCndUrls);
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+
+/**
+ * Installs a package which has been uploaded to {@code /etc/packages} in the scan repository, like the package
+ * manager of a running instance would. Subpackages are uploaded as they are extracted from the parent package.
+ */
+final class JcrPackageInstall implements PackageInstall {
+    private final JcrPackageManager manager;
+    private final JcrPackage jcrPackage;
+
+    JcrPackageInstall(final JcrPackageManager manager, final JcrPackage jcrPackage) {
+        this.manager = manager;
+        this.jcrPackage = jcrPackage;
+    }
+
+    @Override
+    public VaultPackage getPackage() throws IOException, RepositoryException {
+        return jcrPackage.getPackage();
+    }
+
+    @Override
+    public List<PackageId> extractSubpackages(final ImportOptions options)
+            throws IOException, PackageException, RepositoryException {
+        return Arrays.asList(jcrPackage.extractSubpackages(options));
+    }
+
+    @Override
+    public void extract(final Session session, final ImportOptions options)
+            throws IOException, PackageException, RepositoryException {
+        // the package manager session is the session passed in by the machine
+        jcrPackage.extract(options);
+    }
+
+    @Override
+    public PackageInstall openSubpackage(final PackageId packageId) throws PackageException, RepositoryException {
+        final JcrPackage subpackage = manager.open(packageId);
+        if (subpackage == null) {
+            throw new PackageException("Subpackage not found: " + packageId);
+        }
+        return new JcrPackageInstall(manager, subpackage);
+    }
+
+    @Override
+    public void closePackage() {
+        jcrPackage.close();
+    }
+
+    @Override
+    public void close() {
+        jcrPackage.close();
+    }
+}
@@ -17,6 +17,8 @@
 package net.adamcin.oakpal.core;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONObject;
 
@@ -102,6 +104,36 @@ public final class Locator {
         }
     }
 
+    /**
+     * Create a new list of {@link ProgressCheck} instances from a list of {@link CheckSpec}s, such as those returned
+     * by {@link ChecklistPlanner#getEffectiveCheckSpecs(List)}. Skipped specs are ignored, and named specs are wrapped
+     * with their name as an alias.
+     *
+     * @param checkSpecs  the list of check specs
+     * @param classLoader a specific classLoader to use
+     * @return a list of new {@link ProgressCheck} instances, in the same order as the specs
+     * @throws Exception on any error or failure to find a resource for a given spec impl.
+     */
+    public static List<ProgressCheck> loadFromCheckSpecs(final List<CheckSpec> checkSpecs,
+                                                         final ClassLoader classLoader) throws Exception {
+        final List<ProgressCheck> allChecks = new ArrayList<>();
+        for (CheckSpec checkSpec : checkSpecs) {
+            if (checkSpec.isSkip()) {
+                continue;
+            }
+            if (checkSpec.getImpl() == null || checkSpec.getImpl().isEmpty()) {
+                throw new Exception("Please provide an 'impl' value for " + checkSpec.getName());
+            }
+
+            ProgressCheck progressCheck = loadProgressCheck(checkSpec.getImpl(), checkSpec.getConfig(), classLoader);
+            if (checkSpec.getName() != null && !checkSpec.getName().isEmpty()) {
+                progressCheck = wrapWithAlias(progressCheck, checkSpec.getName());
+            }
+            allChecks.add(progressCheck);
+        }
+        return allChecks;
+    }
+
     /**
      * Rename the provided package check with the provided alias.
      *
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+
+/**
+ * Internal facade class which times each callback of the wrapped check, for {@link ScanMetrics}.
+ */
+final class MeteredProgressCheck implements ProgressCheck, PathSubscriber, Checkpointable {
+
+    private final ProgressCheck wrapped;
+    private final CheckMetrics metrics;
+    private final MetricsRecorder recorder;
+
+    MeteredProgressCheck(final ProgressCheck wrapped, final CheckMetrics metrics, final MetricsRecorder recorder) {
+        this.wrapped = wrapped;
+        this.metrics = metrics;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Return the check wrapped by a {@link MeteredProgressCheck}, so that errors are reported against the check
+     * itself, or the check as is.
+     *
+     * @param check a check, which may be metered
+     * @return the unwrapped check
+     */
+    static ProgressCheck unwrap(final ProgressCheck check) {
+        return check instanceof MeteredProgressCheck ? ((MeteredProgressCheck) check).wrapped : check;
+    }
+
+    CheckMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void record(final CheckMetrics.Callback callback, final long start) {
+        final long nanos = System.nanoTime() - start;
+        metrics.record(callback, nanos);
+        if (recorder != null) {
+            recorder.recordCallback(metrics.getCheckName(), callback, nanos);
+        }
+    }
+
+    @Override
+    public String getCheckName() {
+        return wrapped.getCheckName();
+    }
+
+    @Override
+    public boolean isMetadataOnly() {
+        return wrapped.isMetadataOnly();
+    }
+
+    @Override
+    public PathInterests getPathInterests() {
+        return wrapped instanceof PathSubscriber
+                ? ((PathSubscriber) wrapped).getPathInterests()
+                : PathInterests.all();
+    }
+
+    @Override
+    public boolean isCheckpointable() {
+        return wrapped instanceof Checkpointable && ((Checkpointable) wrapped).isCheckpointable();
+    }
+
+    @Override
+    public Object saveCheckpoint() {
+        return ((Checkpointable) wrapped).saveCheckpoint();
+    }
+
+    @Override
+    public void restoreCheckpoint(final Object checkpoint) {
+        ((Checkpointable) wrapped).restoreCheckpoint(checkpoint);
+    }
+
+    @Override
+    public Collection<Violation> getReportedViolations() {
+        return wrapped.getReportedViolations();
+    }
+
+    @Override
+    public Violation.Severity getHighestReportedSeverity() {
+        return wrapped.getHighestReportedSeverity();
+    }
+
+    @Override
+    public void startedScan() {
+        final long start = System.nanoTime();
+        try {
+            wrapped.startedScan();
+        } finally {
+            record(CheckMetrics.Callback.STARTED_SCAN, start);
+        }
+    }
+
+    @Override
+    public void identifyPackage(final PackageId packageId, final File file) {
+        final long start = System.nanoTime();
+        try {
+            wrapped.identifyPackage(packageId, file);
+        } finally {
+            record(CheckMetrics.Callback.IDENTIFY_PACKAGE, start);
+        }
+    }
+
+    @Override
+    public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+        final long start = System.nanoTime();
+        try {
+            wrapped.identifySubpackage(packageId, parentId);
+        } finally {
+            record(CheckMetrics.Callback.IDENTIFY_SUBPACKAGE, start);
+        }
+    }
+
+    @Override
+    public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                              final PackageProperties packageProperties, final MetaInf metaInf,
+                              final List<PackageId> subpackages) throws RepositoryException {
+        final long start = System.nanoTime();
+        try {
+            wrapped.beforeExtract(packageId, inspectSession, packageProperties, metaInf, subpackages);
+        } finally {
+            record(CheckMetrics.Callback.BEFORE_EXTRACT, start);
+        }
+    }
+
+    @Override
+    public void importedPath(final PackageId packageId, final String path, final Node node) throws RepositoryException {
+        final long start = System.nanoTime();
+        try {
+            wrapped.importedPath(packageId, path, node);
+        } finally {
+            record(CheckMetrics.Callback.IMPORTED_PATH, start);
+        }
+    }
+
+    @Override
+    public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
+            throws RepositoryException {
+        final long start = System.nanoTime();
+        try {
+            wrapped.deletedPath(packageId, path, inspectSession);
+        } finally {
+            record(CheckMetrics.Callback.DELETED_PATH, start);
+        }
+    }
+
+    @Override
+    public void afterExtract(final PackageId packageId, final Session inspectSession) throws RepositoryException {
+        final long start = System.nanoTime();
+        try {
+            wrapped.afterExtract(packageId, inspectSession);
+        } finally {
+            record(CheckMetrics.Callback.AFTER_EXTRACT, start);
+        }
+    }
+
+    @Override
+    public void finishedScan() {
+        final long start = System.nanoTime();
+        try {
+            wrapped.finishedScan();
+        } finally {
+            record(CheckMetrics.Callback.FINISHED_SCAN, start);
+        }
+    }
+}
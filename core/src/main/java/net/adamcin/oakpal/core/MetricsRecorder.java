@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * SPI for forwarding scan metrics to an external registry, such as Micrometer or Dropwizard Metrics, as they are
+ * recorded. Register an implementation with {@link OakMachine.Builder#withMetricsRecorder(MetricsRecorder)}.
+ */
+@ConsumerType
+public interface MetricsRecorder {
+
+    /**
+     * Record a single invocation of a check callback.
+     *
+     * @param checkName the check name
+     * @param callback  the callback
+     * @param nanos     the callback latency in nanoseconds
+     */
+    default void recordCallback(String checkName, CheckMetrics.Callback callback, long nanos) {
+
+    }
+
+    /**
+     * Record the time spent in a scan phase. The extract and save phases are recorded once per package.
+     *
+     * @param phase the phase
+     * @param nanos the phase time in nanoseconds
+     */
+    default void recordPhase(ScanMetrics.Phase phase, long nanos) {
+
+    }
+
+    /**
+     * Record the number of violations reported by a check at the end of a scan.
+     *
+     * @param checkName      the check name
+     * @param violationCount the violation count
+     */
+    default void recordViolations(String checkName, int violationCount) {
+
+    }
+}
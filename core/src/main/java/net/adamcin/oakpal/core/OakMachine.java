@@ -20,11 +20,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.PropertyType;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
@@ -34,6 +42,7 @@ import javax.jcr.nodetype.NodeTypeTemplate;
 import javax.jcr.version.OnParentVersionAction;
 
 import aQute.bnd.annotation.ProviderType;
+import net.adamcin.oakpal.core.jcrfacade.LazyNodeFacade;
 import net.adamcin.oakpal.core.jcrfacade.SessionFacade;
 import org.apache.jackrabbit.commons.cnd.DefinitionBuilderFactory;
 import org.apache.jackrabbit.commons.cnd.TemplateBuilderFactory;
@@ -41,19 +50,14 @@ import org.apache.jackrabbit.oak.InitialContent;
 import org.apache.jackrabbit.oak.Oak;
 import org.apache.jackrabbit.oak.jcr.Jcr;
 import org.apache.jackrabbit.oak.jcr.repository.RepositoryImpl;
-import org.apache.jackrabbit.oak.plugins.commit.ConflictValidatorProvider;
 import org.apache.jackrabbit.oak.plugins.commit.JcrConflictHandler;
 import org.apache.jackrabbit.oak.plugins.index.nodetype.NodeTypeIndexProvider;
-import org.apache.jackrabbit.oak.plugins.index.property.OrderedPropertyIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
-import org.apache.jackrabbit.oak.plugins.index.reference.ReferenceEditorProvider;
-import org.apache.jackrabbit.oak.plugins.index.reference.ReferenceIndexProvider;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.plugins.name.NameValidatorProvider;
 import org.apache.jackrabbit.oak.plugins.name.NamespaceEditorProvider;
 import org.apache.jackrabbit.oak.plugins.nodetype.TypeEditorProvider;
-import org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider;
-import org.apache.jackrabbit.oak.plugins.version.VersionHook;
 import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
 import org.apache.jackrabbit.oak.security.user.RandomAuthorizableNodeName;
 import org.apache.jackrabbit.oak.spi.nodetype.NodeTypeConstants;
@@ -64,29 +68,34 @@ import org.apache.jackrabbit.oak.spi.security.user.AuthorizableNodeName;
 import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
 import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
 import org.apache.jackrabbit.oak.spi.security.user.action.AccessControlAction;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
 import org.apache.jackrabbit.oak.spi.xml.ImportBehavior;
 import org.apache.jackrabbit.oak.spi.xml.ProtectedItemImporter;
 import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.io.ImportOptions;
 import org.apache.jackrabbit.vault.packaging.DependencyHandling;
-import org.apache.jackrabbit.vault.packaging.JcrPackage;
 import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
 import org.apache.jackrabbit.vault.packaging.PackageException;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.Packaging;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Entry point for OakPAL Acceptance Library. See {@link ProgressCheck} for the event listener interface.
  */
 @ProviderType
-public final class OakMachine {
+public final class OakMachine implements AutoCloseable {
     public static final String NS_URI_OAKPAL = "oakpaltmp";
     public static final String NS_PREFIX_OAKPAL = "oakpal";
     public static final String LN_UNDECLARED = "Undeclared";
     public static final String NT_UNDECLARED = "{" + NS_URI_OAKPAL + "}" + LN_UNDECLARED;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OakMachine.class);
+
     private static final ErrorListener DEFAULT_ERROR_LISTENER = new DefaultErrorListener();
 
     private final Packaging packagingService;
@@ -99,16 +108,61 @@ public final class OakMachine {
 
     private final List<InitStage> initStages;
 
-    private OakMachine(final Packaging packagingService,
-                       final List<ProgressCheck> progressChecks,
-                       final ErrorListener errorListener,
-                       final List<File> preInstallPackages,
-                       final List<InitStage> initStages) {
-        this.packagingService = packagingService;
-        this.progressChecks = progressChecks;
-        this.errorListener = errorListener;
-        this.preInstallPackages = preInstallPackages;
-        this.initStages = initStages;
+    private final boolean baselineSnapshot;
+
+    private final boolean segmentStore;
+
+    private final File segmentStoreDirectory;
+
+    private final int segmentCacheSize;
+
+    private final boolean metricsEnabled;
+
+    private final MetricsRecorder metricsRecorder;
+
+    private final ScanCache scanCache;
+
+    private final String checksFingerprint;
+
+    private final boolean prefixCheckpoints;
+
+    private final Violation.Severity failFastSeverity;
+
+    private final RepositoryProfile repositoryProfile;
+
+    private final boolean deferredIndexing;
+
+    private final boolean fileBackedPackages;
+
+    private final boolean metadataOnlyScan;
+
+    private final DigestBlobStore blobStore;
+
+    private volatile Baseline baseline;
+
+    private volatile List<Checkpoint> checkpoints = Collections.emptyList();
+
+    private OakMachine(final Builder builder) {
+        this.packagingService = builder.packagingService;
+        this.progressChecks = builder.progressChecks;
+        this.errorListener = builder.errorListener;
+        this.preInstallPackages = builder.preInstallPackages;
+        this.initStages = builder.initStages;
+        this.baselineSnapshot = builder.baselineSnapshot;
+        this.segmentStore = builder.segmentStore;
+        this.segmentStoreDirectory = builder.segmentStoreDirectory;
+        this.segmentCacheSize = builder.segmentCacheSize;
+        this.metricsEnabled = builder.metrics;
+        this.metricsRecorder = builder.metricsRecorder;
+        this.scanCache = builder.scanCache;
+        this.checksFingerprint = builder.checksFingerprint;
+        this.prefixCheckpoints = builder.prefixCheckpoints;
+        this.failFastSeverity = builder.failFastSeverity;
+        this.repositoryProfile = builder.repositoryProfile;
+        this.deferredIndexing = builder.deferredIndexing;
+        this.fileBackedPackages = builder.fileBackedPackages || builder.hashOnlyBinaries;
+        this.metadataOnlyScan = builder.metadataOnlyScan;
+        this.blobStore = builder.hashOnlyBinaries ? new DigestBlobStore(builder.retainedBinarySize) : null;
     }
 
     /**
@@ -125,6 +179,37 @@ public final class OakMachine {
 
         private List<File> preInstallPackages = Collections.emptyList();
 
+        private boolean baselineSnapshot;
+
+        private boolean segmentStore;
+
+        private File segmentStoreDirectory;
+
+        private int segmentCacheSize;
+
+        private boolean metrics;
+
+        private MetricsRecorder metricsRecorder;
+
+        private ScanCache scanCache;
+
+        private String checksFingerprint;
+
+        private boolean prefixCheckpoints;
+
+        private Violation.Severity failFastSeverity;
+
+        private RepositoryProfile repositoryProfile = RepositoryProfile.FULL;
+
+        private boolean deferredIndexing;
+
+        private boolean fileBackedPackages;
+
+        private boolean metadataOnlyScan;
+
+        private boolean hashOnlyBinaries;
+
+        private int retainedBinarySize = DigestBlobStore.DEFAULT_RETAINED_SIZE;
 
         /**
          * Provide a {@link Packaging} service for use in retrieving a {@link JcrPackageManager} for an admin session.
@@ -239,17 +324,240 @@ public final class OakMachine {
             return this;
         }
 
+        /**
+         * Set to true to build the repository baseline (oakpal types, {@link InitStage}s and pre-install packages)
+         * only once, during the first scan, and to freeze the resulting node state as a snapshot. Each following
+         * scan starts from a copy-on-write fork of that snapshot instead of repeating the setup.
+         * <p>
+         * Errors reported to the {@link ErrorListener} while building the baseline are only reported during the
+         * first scan.
+         *
+         * @param baselineSnapshot true to snapshot and fork the baseline
+         * @return my builder self
+         */
+        public Builder withBaselineSnapshot(final boolean baselineSnapshot) {
+            this.baselineSnapshot = baselineSnapshot;
+            return this;
+        }
+
+        /**
+         * Set to true to back each scan repository with a segment-tar store in a temporary directory, instead of the
+         * default in-memory node store, so that heap usage does not grow with the size of the scanned packages. The
+         * segments are memory-mapped, and the directory is deleted when the scan repository is shutdown. When
+         * {@link #withBaselineSnapshot(boolean)} is also enabled, the baseline is kept as a copy of the store files,
+         * which is deleted when the machine is closed, or when the JVM exits.
+         *
+         * @param segmentStore true to use a disk-backed segment store
+         * @return my builder self
+         */
+        public Builder withSegmentStore(final boolean segmentStore) {
+            this.segmentStore = segmentStore;
+            return this;
+        }
+
+        /**
+         * Set the parent directory for the temporary segment store directories. Defaults to the
+         * {@code java.io.tmpdir} directory.
+         *
+         * @param segmentStoreDirectory the scratch directory, or null for the default
+         * @return my builder self
+         * @see #withSegmentStore(boolean)
+         */
+        public Builder withSegmentStoreDirectory(final File segmentStoreDirectory) {
+            this.segmentStoreDirectory = segmentStoreDirectory;
+            return this;
+        }
+
+        /**
+         * Set the size of the segment cache in MB. Defaults to 0, for the Oak default.
+         *
+         * @param segmentCacheSize the segment cache size in MB
+         * @return my builder self
+         * @see #withSegmentStore(boolean)
+         */
+        public Builder withSegmentCacheSize(final int segmentCacheSize) {
+            this.segmentCacheSize = Math.max(0, segmentCacheSize);
+            return this;
+        }
+
+        /**
+         * Set to true to keep only the length and SHA-256 digest of each binary larger than the retained size, instead
+         * of storing its content in the scan repository. {@link javax.jcr.Binary#getSize()} still reports the real
+         * length, and the content identity of a binary value is its digest, but reading the content of a discarded
+         * binary fails with an {@link IOException}. Use this when no check reads the content of large binaries, to keep
+         * renditions and archives off the heap. Because subpackages are stored as binaries too, this also enables
+         * {@link #withFileBackedPackages(boolean)}, so that subpackages are read from the package files instead. With
+         * {@link #withSegmentStore(boolean)}, binaries smaller than the segment inline limit of 16 KB are always stored
+         * in the segments.
+         *
+         * @param hashOnlyBinaries true to discard the content of large binaries
+         * @return my builder self
+         * @see #withRetainedBinarySize(int)
+         */
+        public Builder withHashOnlyBinaries(final boolean hashOnlyBinaries) {
+            this.hashOnlyBinaries = hashOnlyBinaries;
+            return this;
+        }
+
+        /**
+         * Set the size in bytes of the largest binary to keep in full when hash-only binaries are enabled. Defaults
+         * to 16 KB, which keeps the small text files that checks commonly parse.
+         *
+         * @param retainedBinarySize the largest binary size to keep in full
+         * @return my builder self
+         * @see #withHashOnlyBinaries(boolean)
+         */
+        public Builder withRetainedBinarySize(final int retainedBinarySize) {
+            this.retainedBinarySize = Math.max(0, retainedBinarySize);
+            return this;
+        }
+
+        /**
+         * Set to true to time each scan phase, and to count and time each callback of each {@link ProgressCheck}. The
+         * metrics are available from {@link ScanResult#getMetrics()}, and from {@link CheckReport#getMetrics()} for
+         * the report of each check.
+         *
+         * @param metrics true to collect scan metrics
+         * @return my builder self
+         */
+        public Builder withMetrics(final boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Forward the scan metrics to an external registry as they are recorded. Setting a recorder also enables
+         * {@link #withMetrics(boolean)}.
+         *
+         * @param metricsRecorder the metrics recorder
+         * @return my builder self
+         */
+        public Builder withMetricsRecorder(final MetricsRecorder metricsRecorder) {
+            this.metricsRecorder = metricsRecorder;
+            if (metricsRecorder != null) {
+                this.metrics = true;
+            }
+            return this;
+        }
+
+        /**
+         * Skip the scan of a package list that has already been scanned with the same configuration, and return the
+         * reports stored in the {@link ScanCache} instead. The cache key covers the content of the pre-install and
+         * scanned package files, the {@link InitStage}s, the OakPAL version, and the names of the progress checks.
+         * Since a {@link ProgressCheck} can't describe its own configuration, the caller must also provide a
+         * fingerprint of the check configuration, such as one built by
+         * {@link ScanCache.Fingerprint#withCheckSpecs(List)} from the effective {@link CheckSpec}s.
+         * <p>
+         * A scan with {@link #withMetrics(boolean) metrics} enabled is never answered from the cache, because its
+         * timings would not come from the current run. Its reports are still stored, without the metrics.
+         *
+         * @param scanCache         the scan cache, or null to disable caching
+         * @param checksFingerprint a fingerprint of the check configuration
+         * @return my builder self
+         */
+        public Builder withScanCache(final ScanCache scanCache, final String checksFingerprint) {
+            this.scanCache = scanCache;
+            this.checksFingerprint = checksFingerprint;
+            return this;
+        }
+
+        /**
+         * Set to true to checkpoint the repository state and the state of the checks after each package of a scan.
+         * When a later scan by the same {@link OakMachine} begins with packages whose content is identical to the
+         * first packages of the previous scan, it resumes from the checkpoint after the last matching package, and
+         * only installs the packages that follow. The checks do not receive the events of the skipped packages, so
+         * scans are only resumed when the {@link ErrorListener} and every {@link ProgressCheck} implement
+         * {@link Checkpointable}. Not supported with {@link #withSegmentStore(boolean)}.
+         *
+         * @param prefixCheckpoints true to checkpoint after each package
+         * @return my builder self
+         */
+        public Builder withPrefixCheckpoints(final boolean prefixCheckpoints) {
+            this.prefixCheckpoints = prefixCheckpoints;
+            return this;
+        }
+
+        /**
+         * Set a severity to stop the scan as soon as the {@link ErrorListener} or any {@link ProgressCheck} reports a
+         * violation at or above it. The highest reported severity is watched after each path event, and after each
+         * package-level event, and once the threshold is reached, the extraction of the current package is
+         * interrupted and no further packages are installed. The checks still receive
+         * {@link ProgressCheck#finishedScan()}, the repository is shutdown, and the partial reports are returned
+         * with {@link ScanResult#isStoppedEarly()} set to true. Partial results are not stored in the
+         * {@link ScanCache}.
+         *
+         * @param failFastSeverity the severity threshold, or null to always complete the scan (the default)
+         * @return my builder self
+         */
+        public Builder withFailFastSeverity(final Violation.Severity failFastSeverity) {
+            this.failFastSeverity = failFastSeverity;
+            return this;
+        }
+
+        /**
+         * Select the optional features of the repository created for each scan. Every repository is created with the
+         * features required to install packages, and the profile adds the hooks, editors and indexes that only some
+         * checks depend on. Use {@link RepositoryProfile#LEAN} when the checks never query references, version or
+         * use atomic counters, to reduce the cost of each commit.
+         *
+         * @param repositoryProfile the repository profile, or null for {@link RepositoryProfile#FULL} (the default)
+         * @return my builder self
+         */
+        public Builder withRepositoryProfile(final RepositoryProfile repositoryProfile) {
+            this.repositoryProfile = repositoryProfile != null ? repositoryProfile : RepositoryProfile.FULL;
+            return this;
+        }
+
+        /**
+         * Set to true to stop maintaining the synchronous, non-unique indexes on every commit while packages are
+         * installed. The deferred indexes are rebuilt in one pass when a {@link ProgressCheck} first creates a query
+         * through the inspect session. Until then, queries traverse the repository, and referential integrity is not
+         * enforced. Scans whose checks never query never pay for the rebuild.
+         *
+         * @param deferredIndexing true to defer index maintenance
+         * @return my builder self
+         */
+        public Builder withDeferredIndexing(final boolean deferredIndexing) {
+            this.deferredIndexing = deferredIndexing;
+            return this;
+        }
+
+        /**
+         * Set to true to install packages by reading them directly from their files, instead of uploading them to
+         * {@code /etc/packages} in the scan repository. Subpackages are read from their parent archive. No package
+         * binaries are stored in the repository, so checks will not see the package nodes under
+         * {@code /etc/packages}, and no install snapshots are created.
+         *
+         * @param fileBackedPackages true to read packages directly from their files
+         * @return my builder self
+         */
+        public Builder withFileBackedPackages(final boolean fileBackedPackages) {
+            this.fileBackedPackages = fileBackedPackages;
+            return this;
+        }
+
+        /**
+         * Set to true to allow scans whose checks all return true for {@link ProgressCheck#isMetadataOnly()} to be
+         * performed by a {@link PackageMetadataScanner}, which reads the package metadata directly from the package
+         * files without creating a repository. The init stages and pre-install packages only affect the repository, so
+         * they are skipped. Scans with {@link #withMetrics(boolean)} or
+         * {@link #withFailFastSeverity(Violation.Severity)} enabled always use a repository.
+         *
+         * @param metadataOnlyScan true to scan only the package metadata when every check allows it
+         * @return my builder self
+         */
+        public Builder withMetadataOnlyScan(final boolean metadataOnlyScan) {
+            this.metadataOnlyScan = metadataOnlyScan;
+            return this;
+        }
+
         /**
          * Construct a {@link OakMachine} from the {@link Builder} state.
          *
          * @return a {@link OakMachine}
          */
         public OakMachine build() {
-            return new OakMachine(packagingService,
-                    progressChecks,
-                    errorListener,
-                    preInstallPackages,
-                    initStages);
+            return new OakMachine(this);
         }
     }
 
@@ -265,6 +573,25 @@ public final class OakMachine {
         return preInstallPackages;
     }
 
+    public RepositoryProfile getRepositoryProfile() {
+        return repositoryProfile;
+    }
+
+    /**
+     * Discard the baseline snapshot and the prefix checkpoints kept from previous scans, deleting the segment store
+     * snapshot directory if there is one. A later scan starts from a fresh repository again. This must not be called
+     * while a scan is running.
+     */
+    @Override
+    public void close() {
+        final Baseline oldBaseline = this.baseline;
+        this.baseline = null;
+        this.checkpoints = Collections.emptyList();
+        if (oldBaseline != null && oldBaseline.segmentSnapshot != null) {
+            ScratchSegmentStore.release(oldBaseline.segmentSnapshot);
+        }
+    }
+
     public List<CheckReport> scanPackage(File... file) throws AbortedScanException {
         if (file != null) {
             return scanPackages(Arrays.asList(file));
@@ -277,37 +604,181 @@ public final class OakMachine {
      * Execute a scan by installing each of the provided package files in sequence. The scan proceeds in the following
      * order:
      * <ol>
-     * <li>{@link #initRepository()} creates an fresh Oak repository.</li>
+     * <li>{@link #initRepository(NodeStore)} creates an fresh Oak repository.</li>
      * <li>{@link #loginAdmin(Repository)} opens an admin user JCR session.</li>
      * <li>{@link InitStage#initSession(Session, ErrorListener)} is called for each registered {@link InitStage}</li>
-     * <li>{@link #processPackageFile(Session, JcrPackageManager, File, boolean)} is performed for each of the
-     * {@link #preInstallPackages}</li>
+     * <li>{@link #processPackageFile(ScanContext, Session, JcrPackageManager, File, boolean)} is performed for each
+     * of the {@link #preInstallPackages}</li>
      * <li>Each registered {@link ProgressCheck} receives a {@link ProgressCheck#startedScan()} event.</li>
-     * <li>{@link #processPackageFile(Session, JcrPackageManager, File, boolean)} is performed for each of the elements
-     * of the {@code files} array.</li>
+     * <li>{@link #processPackageFile(ScanContext, Session, JcrPackageManager, File, boolean)} is performed for each
+     * of the elements of the {@code files} array.</li>
      * <li>Each registered {@link ProgressCheck} receives a {@link ProgressCheck#finishedScan()} event.</li>
      * <li>The admin session is closed.</li>
      * <li>The repository is shutdown.</li>
      * </ol>
+     * <p>
+     * When {@link Builder#withBaselineSnapshot(boolean)} is enabled, the steps up to and including the pre-install
+     * packages are only performed by the first scan, and following scans fork the repository from the baseline
+     * snapshot it captured.
      *
      * @param files a list of FileVault content package files to be installed in sequence.
      * @return a list of any CheckReports reported during the scan.
      * @throws AbortedScanException for any errors that terminate the scan.
      */
     public List<CheckReport> scanPackages(List<File> files) throws AbortedScanException {
+        return scanPackagesWithResult(files).getReports();
+    }
+
+    /**
+     * Execute a scan exactly like {@link #scanPackages(List)}, but return the reports in a {@link ScanResult} along
+     * with statistics about the repository setup.
+     *
+     * @param files a list of FileVault content package files to be installed in sequence.
+     * @return the scan result
+     * @throws AbortedScanException for any errors that terminate the scan.
+     */
+    public ScanResult scanPackagesWithResult(List<File> files) throws AbortedScanException {
+        if (scanCache == null) {
+            return scanPackagesUncached(files);
+        }
+        final String cacheKey;
+        try {
+            cacheKey = getScanCacheKey(files);
+        } catch (final IOException e) {
+            throw new AbortedScanException(e);
+        }
+        if (!metricsEnabled) {
+            final Optional<List<CheckReport>> cached = scanCache.get(cacheKey);
+            if (cached.isPresent()) {
+                return ScanResult.fromCache(cached.get());
+            }
+        }
+        final ScanResult result = scanPackagesUncached(files);
+        if (result.isStoppedEarly()) {
+            return result;
+        }
+        try {
+            scanCache.put(cacheKey, result.getReports());
+        } catch (final IOException e) {
+            LOGGER.warn("failed to store scan reports in cache: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private String getScanCacheKey(final List<File> files) throws IOException {
+        final ScanCache.Fingerprint fingerprint = new ScanCache.Fingerprint()
+                .withValue(checksFingerprint)
+                .withValue(repositoryProfile.getName())
+                .withValue(getProfileFeatures())
+                .withValue(String.valueOf(fileBackedPackages))
+                .withValue(blobStore != null ? String.valueOf(blobStore.getRetainedSize()) : "")
+                .withValue(String.valueOf(progressChecks.size()));
+        for (ProgressCheck check : progressChecks) {
+            fingerprint.withValue(checkNameOf(check));
+        }
+        fingerprint.withValue(String.valueOf(initStages.size()));
+        for (InitStage initStage : initStages) {
+            fingerprint.withInitStage(initStage);
+        }
+        fingerprint.withValue(String.valueOf(preInstallPackages.size()));
+        for (File file : preInstallPackages) {
+            fingerprint.withFile(file);
+        }
+        final List<File> scanFiles = files != null ? files : Collections.emptyList();
+        fingerprint.withValue(String.valueOf(scanFiles.size()));
+        for (File file : scanFiles) {
+            fingerprint.withFile(file);
+        }
+        return fingerprint.build();
+    }
+
+    /**
+     * Custom profiles can share a name with different features, so the sorted feature names are included in the scan
+     * cache key as well.
+     *
+     * @return the comma-separated feature names of the repository profile, or an empty string
+     */
+    private String getProfileFeatures() {
+        if (repositoryProfile instanceof FeatureRepositoryProfile) {
+            return ((FeatureRepositoryProfile) repositoryProfile).getFeatures().stream()
+                    .map(Enum::name).sorted().collect(Collectors.joining(","));
+        }
+        return "";
+    }
+
+    /**
+     * Return true if {@link Builder#withMetadataOnlyScan(boolean)} is enabled and every check is
+     * {@link ProgressCheck#isMetadataOnly()}, so the scan can be performed by a {@link PackageMetadataScanner} without
+     * a repository.
+     *
+     * @return true to scan the package metadata only
+     */
+    private boolean isMetadataOnlyScan() {
+        return metadataOnlyScan && !metricsEnabled && failFastSeverity == null
+                && PackageMetadataScanner.isMetadataOnly(progressChecks);
+    }
+
+    private ScanResult scanPackagesUncached(List<File> files) throws AbortedScanException {
+        if (isMetadataOnlyScan()) {
+            return new PackageMetadataScanner.Builder()
+                    .withPackagingService(packagingService)
+                    .withProgressChecks(progressChecks)
+                    .withErrorListener(errorListener)
+                    .build()
+                    .scanPackagesWithResult(files);
+        }
         Session admin = null;
         Repository scanRepo = null;
+        ScratchSegmentStore scratchStore = null;
+        final List<String> prefixKeys = getPrefixKeys(files);
+        final List<Checkpoint> scanCheckpoints = new ArrayList<>();
+        final Checkpoint resumeFrom = prefixKeys != null ? findCheckpoint(prefixKeys, scanCheckpoints) : null;
+        final Baseline forkFrom = resumeFrom != null ? resumeFrom.state : baselineSnapshot ? baseline : null;
+        final long setupStart = System.nanoTime();
+        long setupNanos = 0L;
+        final ScanMetrics metrics = metricsEnabled ? new ScanMetrics(metricsRecorder) : null;
+        final ScanContext scan = new ScanContext(metrics);
+        boolean stoppedEarly = false;
         try {
             getErrorListener().startedScan();
+            if (resumeFrom != null) {
+                ((Checkpointable) getErrorListener()).restoreCheckpoint(resumeFrom.errorListenerState);
+            }
+
+            final NodeStore nodeStore;
+            if (segmentStore) {
+                scratchStore = ScratchSegmentStore.open(segmentStoreDirectory, segmentCacheSize,
+                        forkFrom != null ? forkFrom.segmentSnapshot : null, blobStore);
+                nodeStore = scratchStore.getNodeStore();
+            } else {
+                final MemoryNodeStore memoryStore = forkFrom != null
+                        ? new MemoryNodeStore(forkFrom.root)
+                        : new MemoryNodeStore();
+                nodeStore = blobStore != null ? new BlobStoreNodeStore(memoryStore, blobStore) : memoryStore;
+            }
 
-            scanRepo = initRepository();
+            scanRepo = initRepository(nodeStore);
 
             admin = loginAdmin(scanRepo);
 
-            addOakpalTypes(admin);
+            long phaseStart = scan.recordPhase(ScanMetrics.Phase.REPOSITORY_INIT, setupStart);
+
+            if (forkFrom != null) {
+                forkFrom.restoreSessionNamespaces(admin, getErrorListener());
+            } else {
+                addOakpalTypes(admin);
 
-            for (InitStage initStage : this.initStages) {
-                initStage.initSession(admin, getErrorListener());
+                for (InitStage initStage : this.initStages) {
+                    initStage.initSession(admin, getErrorListener());
+                }
+            }
+
+            if (deferredIndexing) {
+                scan.indexDeferral = new IndexDeferral(scanRepo);
+                if (forkFrom == null) {
+                    // forks inherit the deferred index definitions from the baseline.
+                    scan.indexDeferral.defer();
+                }
             }
 
             final JcrPackageManager manager;
@@ -318,27 +789,68 @@ public final class OakMachine {
                 manager = new DefaultPackagingService().getPackageManager(admin);
             }
 
-            for (File file : preInstallPackages) {
-                processPackageFile(admin, manager, file, true);
+            phaseStart = scan.recordPhase(ScanMetrics.Phase.INIT_STAGES, phaseStart);
+
+            if (forkFrom == null) {
+                for (File file : preInstallPackages) {
+                    processPackageFile(scan, admin, manager, file, true);
+                }
+            }
+
+            scan.recordPhase(ScanMetrics.Phase.PRE_INSTALL, phaseStart);
+
+            setupNanos = System.nanoTime() - setupStart;
+
+            if (baselineSnapshot && forkFrom == null) {
+                if (scratchStore != null) {
+                    final File snapshot = scratchStore.snapshot(segmentStoreDirectory);
+                    ScratchSegmentStore.deleteOnShutdown(snapshot);
+                    this.baseline = new Baseline(null, snapshot, Baseline.captureSessionNamespaces(admin),
+                            setupNanos);
+                } else {
+                    this.baseline = new Baseline(nodeStore.getRoot(), null,
+                            Baseline.captureSessionNamespaces(admin), setupNanos);
+                }
+            }
+
+            scan.checks.forEach(ProgressCheck::startedScan);
+
+            if (resumeFrom != null) {
+                for (int i = 0; i < progressChecks.size(); i++) {
+                    ((Checkpointable) progressChecks.get(i)).restoreCheckpoint(resumeFrom.checkStates.get(i));
+                }
             }
 
-            progressChecks.forEach(ProgressCheck::startedScan);
+            scan.pathIndex = PathDispatchIndex.build(scan.checks);
 
             if (files != null) {
-                for (File file : files) {
-                    processPackageFile(admin, manager, file, false);
+                try {
+                    scan.checkSeverity();
+                    for (int i = scanCheckpoints.size(); i < files.size(); i++) {
+                        processPackageFile(scan, admin, manager, files.get(i), false);
+                        if (prefixKeys != null) {
+                            scanCheckpoints.add(saveCheckpoint(prefixKeys.get(i), i + 1, nodeStore, admin));
+                        }
+                    }
+                } catch (final SeverityReachedException e) {
+                    LOGGER.info("stopping scan after a violation was reported at or above severity {}",
+                            failFastSeverity);
+                    stoppedEarly = true;
                 }
             }
-        } catch (RepositoryException e) {
+            if (prefixKeys != null) {
+                this.checkpoints = Collections.unmodifiableList(scanCheckpoints);
+            }
+        } catch (IOException | RepositoryException e) {
             throw new AbortedScanException(e);
         } finally {
-            progressChecks.forEach(ProgressCheck::finishedScan);
+            scan.checks.forEach(ProgressCheck::finishedScan);
 
             if (admin != null) {
                 admin.logout();
             }
 
-            shutdownRepository(scanRepo);
+            shutdownRepository(scanRepo, scratchStore);
 
             getErrorListener().finishedScan();
         }
@@ -346,13 +858,88 @@ public final class OakMachine {
         List<CheckReport> reports = new ArrayList<>();
         reports.add(SimpleReport.generateReport(getErrorListener()));
 
-        List<CheckReport> listenerReports = progressChecks.stream()
-                .map(SimpleReport::generateReport)
-                .collect(Collectors.toList());
+        for (int i = 0; i < progressChecks.size(); i++) {
+            final SimpleReport report = SimpleReport.generateReport(progressChecks.get(i));
+            if (metrics != null) {
+                final CheckMetrics checkMetrics = metrics.getCheckMetrics().get(i);
+                metrics.recordViolations(checkMetrics, report.getViolations().size());
+                reports.add(new SimpleReport(report.getCheckName(), report.getViolations(), checkMetrics));
+            } else {
+                reports.add(report);
+            }
+        }
 
-        reports.addAll(listenerReports);
+        final long savedNanos = forkFrom != null ? Math.max(0L, forkFrom.setupNanos - setupNanos) : 0L;
+        return new ScanResult(reports, forkFrom != null && resumeFrom == null,
+                TimeUnit.NANOSECONDS.toMillis(setupNanos),
+                TimeUnit.NANOSECONDS.toMillis(savedNanos),
+                metrics,
+                resumeFrom != null ? resumeFrom.packageCount : 0,
+                stoppedEarly);
+    }
 
-        return Collections.unmodifiableList(reports);
+    /**
+     * Compute a key for each prefix of the package file list, chaining the content hash of each file to the key of
+     * the prefix before it, if prefix checkpoints are enabled and supported by the error listener and every check.
+     *
+     * @param files the package files to scan
+     * @return the prefix keys, or null if checkpoints are not enabled
+     * @throws AbortedScanException if a package file can't be read
+     */
+    private List<String> getPrefixKeys(final List<File> files) throws AbortedScanException {
+        if (!prefixCheckpoints || segmentStore || files == null || !isCheckpointable(getErrorListener())
+                || !progressChecks.stream().allMatch(OakMachine::isCheckpointable)) {
+            return null;
+        }
+        final List<String> prefixKeys = new ArrayList<>(files.size());
+        String previous = "";
+        for (File file : files) {
+            try {
+                previous = new ScanCache.Fingerprint().withValue(previous).withFile(file).build();
+            } catch (final IOException e) {
+                throw new AbortedScanException(e, file);
+            }
+            prefixKeys.add(previous);
+        }
+        return prefixKeys;
+    }
+
+    private static boolean isCheckpointable(final Object listener) {
+        return listener instanceof Checkpointable && ((Checkpointable) listener).isCheckpointable();
+    }
+
+    /**
+     * Find the checkpoint after the longest prefix of the package list which matches the previous scan.
+     *
+     * @param prefixKeys      the prefix keys of the package list
+     * @param scanCheckpoints the list to add the matching checkpoints to
+     * @return the checkpoint to resume from, or null to start from the beginning
+     */
+    private Checkpoint findCheckpoint(final List<String> prefixKeys, final List<Checkpoint> scanCheckpoints) {
+        final List<Checkpoint> previous = this.checkpoints;
+        for (int i = 0; i < previous.size() && i < prefixKeys.size(); i++) {
+            if (!previous.get(i).prefixKey.equals(prefixKeys.get(i))) {
+                break;
+            }
+            scanCheckpoints.add(previous.get(i));
+        }
+        return scanCheckpoints.isEmpty() ? null : scanCheckpoints.get(scanCheckpoints.size() - 1);
+    }
+
+    private Checkpoint saveCheckpoint(final String prefixKey, final int packageCount, final NodeStore nodeStore,
+                                      final Session admin) throws RepositoryException {
+        final List<Object> checkStates = new ArrayList<>(progressChecks.size());
+        for (ProgressCheck check : progressChecks) {
+            checkStates.add(((Checkpointable) check).saveCheckpoint());
+        }
+        return new Checkpoint(prefixKey,
+                new Baseline(nodeStore.getRoot(), null, Baseline.captureSessionNamespaces(admin), 0L),
+                ((Checkpointable) getErrorListener()).saveCheckpoint(),
+                checkStates, packageCount);
+    }
+
+    private static String checkNameOf(final ProgressCheck check) {
+        return Optional.ofNullable(check.getCheckName()).orElse(check.getClass().getSimpleName());
     }
 
     private void addOakpalTypes(final Session admin) throws RepositoryException {
@@ -394,107 +981,130 @@ public final class OakMachine {
         admin.getWorkspace().getNodeTypeManager().registerNodeType(builder.build(), false);
     }
 
-    private void processPackage(Session admin, JcrPackageManager manager, JcrPackage jcrPackage, final boolean preInstall)
+    private void processPackage(final ScanContext scan, Session admin, PackageInstall install,
+                                final boolean preInstall)
             throws IOException, PackageException, RepositoryException {
 
-        final PackageId packageId = jcrPackage.getPackage().getId();
-        final Session inspectSession = SessionFacade.findBestWrapper(admin, false);
+        final PackageId packageId = install.getPackage().getId();
+        final Session inspectSession = scan.indexDeferral != null
+                ? SessionFacade.findBestWrapper(admin, false, scan.indexDeferral::flush)
+                : SessionFacade.findBestWrapper(admin, false);
         final ProgressTrackerListener tracker =
-                new ImporterListenerAdapter(packageId, progressChecks, inspectSession, preInstall);
+                new ImporterListenerAdapter(scan, packageId, (SessionFacade<?>) inspectSession, preInstall);
 
         ImportOptions options = new ImportOptions();
         options.setNonRecursive(true);
         options.setDependencyHandling(DependencyHandling.IGNORE);
         options.setListener(tracker);
 
-        List<PackageId> subpacks = Arrays.asList(jcrPackage.extractSubpackages(options));
+        final long extractSubpackagesStart = System.nanoTime();
+        List<PackageId> subpacks;
+        try {
+            subpacks = install.extractSubpackages(options);
+        } catch (final PackageException e) {
+            throw SeverityReachedException.unwrap(e);
+        }
+        if (!preInstall) {
+            scan.recordPhase(ScanMetrics.Phase.EXTRACT, extractSubpackagesStart);
+        }
 
-        final VaultPackage vaultPackage = jcrPackage.getPackage();
+        final VaultPackage vaultPackage = install.getPackage();
         if (!vaultPackage.isValid()) {
             throw new PackageException("Package is not valid: " + packageId);
         }
 
         if (!preInstall) {
-            progressChecks.forEach(handler -> {
+            scan.checks.forEach(handler -> {
                 try {
                     handler.beforeExtract(packageId, inspectSession,
                             vaultPackage.getProperties(), vaultPackage.getMetaInf(), subpacks);
                 } catch (final RepositoryException e) {
-                    getErrorListener().onListenerException(e, handler, packageId);
+                    getErrorListener().onListenerException(e, MeteredProgressCheck.unwrap(handler), packageId);
                 }
             });
+            scan.checkSeverity();
         }
 
-        jcrPackage.extract(options);
+        final long extractStart = System.nanoTime();
+        try {
+            install.extract(admin, options);
+        } catch (final PackageException e) {
+            throw SeverityReachedException.unwrap(e);
+        }
+        final long saveStart = preInstall
+                ? extractStart
+                : scan.recordPhase(ScanMetrics.Phase.EXTRACT, extractStart);
         admin.save();
+        if (!preInstall) {
+            scan.recordPhase(ScanMetrics.Phase.SAVE, saveStart);
+        }
 
-        jcrPackage.close();
+        install.closePackage();
 
         if (!preInstall) {
-            progressChecks.forEach(handler -> {
+            scan.checks.forEach(handler -> {
                 try {
                     handler.afterExtract(packageId, inspectSession);
                 } catch (final RepositoryException e) {
-                    errorListener.onListenerException(e, handler, packageId);
+                    errorListener.onListenerException(e, MeteredProgressCheck.unwrap(handler), packageId);
                 }
             });
+            scan.checkSeverity();
         }
 
         for (PackageId subpackId : subpacks) {
-            processSubpackage(admin, manager, subpackId, packageId, preInstall);
+            processSubpackage(scan, admin, install, subpackId, packageId, preInstall);
         }
     }
 
-    private void processSubpackage(Session admin, JcrPackageManager manager, PackageId packageId, PackageId parentId, final boolean preInstall) {
-        JcrPackage jcrPackage = null;
-        try {
-            jcrPackage = manager.open(packageId);
-
+    private void processSubpackage(final ScanContext scan, Session admin, PackageInstall parent, PackageId packageId,
+                                   PackageId parentId, final boolean preInstall) {
+        try (PackageInstall install = parent.openSubpackage(packageId)) {
             if (!preInstall) {
-                progressChecks.forEach(handler -> handler.identifySubpackage(packageId, parentId));
+                scan.checks.forEach(handler -> handler.identifySubpackage(packageId, parentId));
+                scan.checkSeverity();
             }
 
-            processPackage(admin, manager, jcrPackage, preInstall);
+            processPackage(scan, admin, install, preInstall);
 
         } catch (IOException | PackageException | RepositoryException e) {
             getErrorListener().onSubpackageException(e, packageId);
-        } finally {
-            if (jcrPackage != null) {
-                jcrPackage.close();
-            }
         }
     }
 
-    private void processPackageFile(Session admin, JcrPackageManager manager, final File file, final boolean preInstall)
-            throws AbortedScanException {
-        JcrPackage jcrPackage = null;
-
-        try {
-            jcrPackage = manager.upload(file, false, true, null, true);
-            final PackageId packageId = jcrPackage.getPackage().getId();
+    private void processPackageFile(final ScanContext scan, Session admin, JcrPackageManager manager, final File file,
+                                    final boolean preInstall) throws AbortedScanException {
+        try (PackageInstall install = openPackageFile(manager, file)) {
+            final PackageId packageId = install.getPackage().getId();
 
             if (!preInstall) {
-                progressChecks.forEach(handler -> {
+                scan.checks.forEach(handler -> {
                     try {
                         handler.identifyPackage(packageId, file);
                     } catch (Exception e) {
-                        getErrorListener().onListenerException(e, handler, packageId);
+                        getErrorListener().onListenerException(e, MeteredProgressCheck.unwrap(handler), packageId);
                     }
                 });
+                scan.checkSeverity();
             }
 
-            processPackage(admin, manager, jcrPackage, preInstall);
+            processPackage(scan, admin, install, preInstall);
 
         } catch (IOException | PackageException | RepositoryException e) {
             throw new AbortedScanException(e, file);
-        } finally {
-            if (jcrPackage != null) {
-                jcrPackage.close();
-            }
         }
     }
 
-    private Repository initRepository() throws RepositoryException {
+    private PackageInstall openPackageFile(final JcrPackageManager manager, final File file)
+            throws IOException, PackageException, RepositoryException {
+        if (fileBackedPackages) {
+            final Packaging packaging = packagingService != null ? packagingService : new DefaultPackagingService();
+            return FilePackageInstall.open(packaging.getPackageManager(), file);
+        }
+        return new JcrPackageInstall(manager, manager.upload(file, false, true, null, true));
+    }
+
+    private Repository initRepository(final NodeStore nodeStore) throws RepositoryException {
         Properties userProps = new Properties();
         AuthorizableNodeName nameGenerator = new RandomAuthorizableNodeName();
 
@@ -511,34 +1121,32 @@ public final class OakMachine {
         securityProps.put(UserConfiguration.NAME, ConfigurationParameters.of(userProps));
         securityProps.put(AuthorizationConfiguration.NAME, ConfigurationParameters.of(authzProps));
 
-        Oak oak = new Oak();
-        Jcr jcr = new Jcr(oak, false);
-        Repository repository = jcr
+        Oak oak = new Oak(nodeStore);
+        Jcr jcr = new Jcr(oak, false)
                 .with(new SecurityProviderImpl(ConfigurationParameters.of(securityProps)))
-                .with(new VersionHook())
                 .with(new DefaultWhiteboard())
                 .with(new InitialContent())
                 .with(new NameValidatorProvider())
                 .with(new NamespaceEditorProvider())
                 .with(new TypeEditorProvider(true))
-                .with(new ConflictValidatorProvider())
-                .with(new ChangeCollectorProvider())
                 .with(JcrConflictHandler.createJcrConflictHandler())
-                .with(new ReferenceIndexProvider())
                 .with(new PropertyIndexProvider())
                 .with(new NodeTypeIndexProvider())
-                .with(new PropertyIndexEditorProvider())
-                .with(new ReferenceEditorProvider())
-                .with(new OrderedPropertyIndexEditorProvider())
-                .withAtomicCounter()
-                .createRepository();
+                .with(new PropertyIndexEditorProvider());
+        repositoryProfile.configure(jcr);
 
-        return repository;
+        return jcr.createRepository();
     }
 
-    private void shutdownRepository(Repository repository) {
-        if (repository instanceof RepositoryImpl) {
-            ((RepositoryImpl) repository).shutdown();
+    private void shutdownRepository(Repository repository, ScratchSegmentStore scratchStore) {
+        try {
+            if (repository instanceof RepositoryImpl) {
+                ((RepositoryImpl) repository).shutdown();
+            }
+        } finally {
+            if (scratchStore != null) {
+                scratchStore.close();
+            }
         }
     }
 
@@ -546,18 +1154,201 @@ public final class OakMachine {
         return repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
     }
 
+    /**
+     * Frozen repository state captured after the baseline setup steps of a scan, which subsequent scans fork from.
+     */
+    private static final class Baseline {
+        private final NodeState root;
+
+        private final File segmentSnapshot;
+
+        private final Map<String, String> sessionNamespaces;
+
+        private final long setupNanos;
+
+        Baseline(final NodeState root, final File segmentSnapshot, final Map<String, String> sessionNamespaces,
+                 final long setupNanos) {
+            this.root = root;
+            this.segmentSnapshot = segmentSnapshot;
+            this.sessionNamespaces = sessionNamespaces;
+            this.setupNanos = setupNanos;
+        }
+
+        /**
+         * Namespace prefixes remapped locally by {@link Session#setNamespacePrefix(String, String)} during an
+         * {@link InitStage} are not persisted in the node state, so they are captured separately.
+         *
+         * @param admin the baseline admin session
+         * @return the session-local prefix mappings
+         * @throws RepositoryException for namespace lookup failures
+         */
+        static Map<String, String> captureSessionNamespaces(final Session admin) throws RepositoryException {
+            final NamespaceRegistry registry = admin.getWorkspace().getNamespaceRegistry();
+            final Map<String, String> mappings = new LinkedHashMap<>();
+            for (String prefix : admin.getNamespacePrefixes()) {
+                final String uri = admin.getNamespaceURI(prefix);
+                if (!prefix.equals(registry.getPrefix(uri))) {
+                    mappings.put(prefix, uri);
+                }
+            }
+            return Collections.unmodifiableMap(mappings);
+        }
+
+        void restoreSessionNamespaces(final Session admin, final ErrorListener errorListener) {
+            for (Map.Entry<String, String> mapping : sessionNamespaces.entrySet()) {
+                try {
+                    admin.setNamespacePrefix(mapping.getKey(), mapping.getValue());
+                } catch (final Throwable e) {
+                    errorListener.onJcrNamespaceRegistrationError(e, mapping.getKey(), mapping.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The repository and listener state after the package at the end of a prefix of a scanned package list.
+     */
+    private static final class Checkpoint {
+        private final String prefixKey;
+
+        private final Baseline state;
+
+        private final Object errorListenerState;
+
+        private final List<Object> checkStates;
+
+        private final int packageCount;
+
+        Checkpoint(final String prefixKey, final Baseline state, final Object errorListenerState,
+                   final List<Object> checkStates, final int packageCount) {
+            this.prefixKey = prefixKey;
+            this.state = state;
+            this.errorListenerState = errorListenerState;
+            this.checkStates = checkStates;
+            this.packageCount = packageCount;
+        }
+    }
+
+    /**
+     * Thrown through the package importer to stop a fail-fast scan once the severity threshold is reached.
+     */
+    private static final class SeverityReachedException extends RuntimeException {
+        SeverityReachedException() {
+            super(null, null, false, false);
+        }
+
+        /**
+         * The package importer wraps listener exceptions in a {@link PackageException}, which must be unwrapped to
+         * stop the scan instead of aborting it.
+         *
+         * @param e the package exception
+         * @return the same package exception, if it was not caused by reaching the severity threshold
+         * @throws SeverityReachedException if the package exception was caused by reaching the threshold
+         */
+        static PackageException unwrap(final PackageException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SeverityReachedException) {
+                    throw (SeverityReachedException) cause;
+                }
+            }
+            return e;
+        }
+    }
+
+    /**
+     * The state of one scan, which is passed down to the package installation and the importer listeners, so that
+     * nothing but the baseline and the checkpoints is kept in the {@link OakMachine} between scans.
+     */
+    private final class ScanContext {
+        private final List<ProgressCheck> checks;
+
+        private final ScanMetrics metrics;
+
+        private final SeverityWatch severityWatch;
+
+        private PathDispatchIndex pathIndex;
+
+        private IndexDeferral indexDeferral;
+
+        ScanContext(final ScanMetrics metrics) {
+            this.metrics = metrics;
+            this.checks = metrics != null
+                    ? progressChecks.stream().map(check -> metrics.instrument(check, checkNameOf(check)))
+                    .collect(Collectors.toList())
+                    : progressChecks;
+            this.severityWatch = failFastSeverity != null ? new SeverityWatch(failFastSeverity) : null;
+        }
+
+        /**
+         * Record the time since the start of a phase, if metrics are enabled.
+         *
+         * @param phase      the phase
+         * @param phaseStart the {@link System#nanoTime()} at the start of the phase
+         * @return the {@link System#nanoTime()} at the end of the phase
+         */
+        long recordPhase(final ScanMetrics.Phase phase, final long phaseStart) {
+            final long phaseEnd = System.nanoTime();
+            if (metrics != null) {
+                metrics.recordPhase(phase, phaseEnd - phaseStart);
+            }
+            return phaseEnd;
+        }
+
+        /**
+         * Stop the scan if fail-fast is enabled and a violation has been reported at or above the threshold.
+         *
+         * @throws SeverityReachedException to unwind the package installation
+         */
+        void checkSeverity() {
+            if (severityWatch != null) {
+                severityWatch.check();
+            }
+        }
+    }
+
+    /**
+     * Watches the error listener and the checks for a violation at or above the fail-fast severity, by asking each of
+     * them for the {@link ViolationReporter#getHighestReportedSeverity() highest severity} they have reported.
+     */
+    private final class SeverityWatch {
+        private final Violation.Severity threshold;
+
+        SeverityWatch(final Violation.Severity threshold) {
+            this.threshold = threshold;
+        }
+
+        void check() {
+            if (reached(getErrorListener())) {
+                throw new SeverityReachedException();
+            }
+            for (ProgressCheck check : progressChecks) {
+                if (reached(check)) {
+                    throw new SeverityReachedException();
+                }
+            }
+        }
+
+        private boolean reached(final ViolationReporter reporter) {
+            final Violation.Severity highest = reporter.getHighestReportedSeverity();
+            return highest != null && !highest.isLessSevereThan(threshold);
+        }
+    }
+
     private class ImporterListenerAdapter implements ProgressTrackerListener {
+        private final ScanContext scan;
+
         private final PackageId packageId;
 
         private final List<ProgressCheck> handlers;
 
-        private final Session session;
+        private final SessionFacade<?> session;
 
         private final boolean preInstall;
 
-        ImporterListenerAdapter(PackageId packageId, List<ProgressCheck> handlers, Session session, boolean preInstall) {
+        ImporterListenerAdapter(ScanContext scan, PackageId packageId, SessionFacade<?> session, boolean preInstall) {
+            this.scan = scan;
             this.packageId = packageId;
-            this.handlers = handlers;
+            this.handlers = scan.checks;
             this.session = session;
             this.preInstall = preInstall;
         }
@@ -568,28 +1359,48 @@ public final class OakMachine {
                 return;
             }
             if (path != null && path.startsWith("/")) {
+                final BitSet interested = scan.pathIndex != null ? scan.pathIndex.interested(path) : null;
+                if (interested != null && interested.isEmpty()) {
+                    return;
+                }
                 if ("D".equals(action) || "!".equals(action)) {
-                    handlers.forEach(handler -> {
+                    for (int i = 0; i < handlers.size(); i++) {
+                        if (interested != null && !interested.get(i)) {
+                            continue;
+                        }
+                        final ProgressCheck handler = handlers.get(i);
                         try {
                             handler.deletedPath(packageId, path, session);
                         } catch (Exception e) {
-                            OakMachine.this.getErrorListener().onListenerPathException(e, handler, packageId, path);
+                            OakMachine.this.getErrorListener().onListenerPathException(e,
+                                    MeteredProgressCheck.unwrap(handler), packageId, path);
                         }
-                    });
+                    }
                 } else {
+                    // the node is looked up lazily, but only paths which exist are delivered to importedPath
                     try {
-                        Node node = session.getNode(path);
-                        handlers.forEach(handler -> {
-                            try {
-                                handler.importedPath(packageId, path, node);
-                            } catch (Exception e) {
-                                OakMachine.this.getErrorListener().onListenerPathException(e, handler, packageId, path);
-                            }
-                        });
+                        if (!session.nodeExists(path)) {
+                            throw new PathNotFoundException(path);
+                        }
                     } catch (RepositoryException e) {
                         OakMachine.this.getErrorListener().onImporterException(e, packageId, path);
+                        return;
+                    }
+                    final Node node = new LazyNodeFacade<>(path, session);
+                    for (int i = 0; i < handlers.size(); i++) {
+                        if (interested != null && !interested.get(i)) {
+                            continue;
+                        }
+                        final ProgressCheck handler = handlers.get(i);
+                        try {
+                            handler.importedPath(packageId, path, node);
+                        } catch (Exception e) {
+                            OakMachine.this.getErrorListener().onListenerPathException(e,
+                                    MeteredProgressCheck.unwrap(handler), packageId, path);
+                        }
                     }
                 }
+                scan.checkSeverity();
             }
         }
 
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.IOException;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+
+/**
+ * A package being installed by the {@link OakMachine}, which hides whether the package binary was uploaded to the
+ * scan repository or is read directly from its file.
+ */
+interface PackageInstall extends AutoCloseable {
+
+    /**
+     * Get the package.
+     *
+     * @return the vault package
+     * @throws IOException         for errors reading the package
+     * @throws RepositoryException for errors reading an uploaded package
+     */
+    VaultPackage getPackage() throws IOException, RepositoryException;
+
+    /**
+     * Prepare the subpackages of this package for installation, in the order they should be installed. This may
+     * change the {@code options} which are subsequently passed to {@link #extract(Session, ImportOptions)}.
+     *
+     * @param options the import options
+     * @return the ids of the subpackages
+     * @throws IOException         for errors reading the package
+     * @throws PackageException    for errors importing the subpackages
+     * @throws RepositoryException for repository errors
+     */
+    List<PackageId> extractSubpackages(ImportOptions options) throws IOException, PackageException, RepositoryException;
+
+    /**
+     * Extract the package content.
+     *
+     * @param session the session to import with
+     * @param options the import options
+     * @throws IOException         for errors reading the package
+     * @throws PackageException    for errors importing the package
+     * @throws RepositoryException for repository errors
+     */
+    void extract(Session session, ImportOptions options) throws IOException, PackageException, RepositoryException;
+
+    /**
+     * Open a subpackage returned by {@link #extractSubpackages(ImportOptions)}.
+     *
+     * @param packageId the subpackage id
+     * @return the subpackage install
+     * @throws IOException         for errors reading the subpackage
+     * @throws PackageException    if the subpackage was not prepared by this install
+     * @throws RepositoryException for errors reading an uploaded subpackage
+     */
+    PackageInstall openSubpackage(PackageId packageId) throws IOException, PackageException, RepositoryException;
+
+    /**
+     * Release the package archive once the package has been extracted. The subpackages returned by
+     * {@link #extractSubpackages(ImportOptions)} remain available until {@link #close()}.
+     */
+    void closePackage();
+
+    /**
+     * Release the package archive and any resources held for its subpackages.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.jcr.RepositoryException;
+
+import aQute.bnd.annotation.ProviderType;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageManager;
+import org.apache.jackrabbit.vault.packaging.Packaging;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+
+/**
+ * Scans packages for {@link ProgressCheck}s which are {@link ProgressCheck#isMetadataOnly()}, without a repository.
+ * Each package file is opened as a random-access zip, its {@code META-INF/vault} metadata is read, and its embedded
+ * subpackages are opened from the parent archive. Only {@link ProgressCheck#identifyPackage(PackageId, File)},
+ * {@link ProgressCheck#identifySubpackage(PackageId, PackageId)} and
+ * {@link ProgressCheck#beforeExtract} are called, in the same order as an {@link OakMachine} scan, with a null
+ * {@code inspectSession}.
+ * <p>
+ * The package files are read in parallel, a bounded number of packages ahead of the checks, which still receive
+ * their events on the calling thread, one package at a time.
+ */
+@ProviderType
+public final class PackageMetadataScanner {
+
+    private final Packaging packagingService;
+
+    private final List<ProgressCheck> progressChecks;
+
+    private final ErrorListener errorListener;
+
+    private final int maxThreads;
+
+    private PackageMetadataScanner(final Packaging packagingService,
+                                   final List<ProgressCheck> progressChecks,
+                                   final ErrorListener errorListener,
+                                   final int maxThreads) {
+        this.packagingService = packagingService;
+        this.progressChecks = progressChecks;
+        this.errorListener = errorListener;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Use the builder to construct the {@link PackageMetadataScanner}.
+     */
+    public static class Builder {
+        private Packaging packagingService;
+
+        private final List<ProgressCheck> progressChecks = new ArrayList<>();
+
+        private ErrorListener errorListener = new DefaultErrorListener();
+
+        private int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Provide a {@link Packaging} service for opening the package files.
+         *
+         * @param packagingService a specific service to use, configured with alternative package registries.
+         * @return my builder self
+         */
+        public Builder withPackagingService(final Packaging packagingService) {
+            this.packagingService = packagingService;
+            return this;
+        }
+
+        /**
+         * Add a single instance of {@link ProgressCheck} (or more) to the scanner.
+         *
+         * @param progressCheck the progress checks
+         * @return my builder self
+         */
+        public Builder withProgressChecks(final ProgressCheck... progressCheck) {
+            if (progressCheck != null) {
+                return this.withProgressChecks(Arrays.asList(progressCheck));
+            }
+            return this;
+        }
+
+        /**
+         * Add a list of {@link ProgressCheck}s to the scanner.
+         *
+         * @param progressChecks the list of progress checks
+         * @return my builder self
+         */
+        public Builder withProgressChecks(final List<? extends ProgressCheck> progressChecks) {
+            if (progressChecks != null) {
+                this.progressChecks.addAll(progressChecks);
+            }
+            return this;
+        }
+
+        /**
+         * Provide an error listener. Defaults to a new {@link DefaultErrorListener}.
+         *
+         * @param errorListener the error listener
+         * @return my builder self
+         */
+        public Builder withErrorListener(final ErrorListener errorListener) {
+            this.errorListener = errorListener != null ? errorListener : new DefaultErrorListener();
+            return this;
+        }
+
+        /**
+         * Set the maximum number of package files to read at the same time. Defaults to the number of available
+         * processors.
+         *
+         * @param maxThreads the thread pool size
+         * @return my builder self
+         */
+        public Builder withMaxThreads(final int maxThreads) {
+            this.maxThreads = Math.max(1, maxThreads);
+            return this;
+        }
+
+        /**
+         * Construct a {@link PackageMetadataScanner} from the {@link Builder} state.
+         *
+         * @return a {@link PackageMetadataScanner}
+         */
+        public PackageMetadataScanner build() {
+            return new PackageMetadataScanner(packagingService,
+                    new ArrayList<>(progressChecks),
+                    errorListener,
+                    maxThreads);
+        }
+    }
+
+    /**
+     * Return true if the checks can be scanned without a repository, which is when there is at least one check, and
+     * every check is {@link ProgressCheck#isMetadataOnly()}.
+     *
+     * @param progressChecks the checks
+     * @return true if every check is metadata-only
+     */
+    public static boolean isMetadataOnly(final List<? extends ProgressCheck> progressChecks) {
+        return progressChecks != null && !progressChecks.isEmpty()
+                && progressChecks.stream().allMatch(ProgressCheck::isMetadataOnly);
+    }
+
+    public List<ProgressCheck> getProgressChecks() {
+        return progressChecks;
+    }
+
+    public ErrorListener getErrorListener() {
+        return errorListener;
+    }
+
+    /**
+     * Scan the metadata of each of the package files, in order.
+     *
+     * @param files the package files
+     * @return the check reports, beginning with the report of the {@link ErrorListener}
+     * @throws AbortedScanException if a package file can't be read
+     */
+    public List<CheckReport> scanPackages(final List<File> files) throws AbortedScanException {
+        return scanPackagesWithResult(files).getReports();
+    }
+
+    /**
+     * Scan the metadata of each of the package files, in order.
+     *
+     * @param files the package files
+     * @return the scan result
+     * @throws AbortedScanException if a package file can't be read
+     */
+    public ScanResult scanPackagesWithResult(final List<File> files) throws AbortedScanException {
+        final List<File> scanFiles = files != null ? files : Collections.emptyList();
+        final PackageManager packageManager = (packagingService != null
+                ? packagingService
+                : new DefaultPackagingService()).getPackageManager();
+        final ExecutorService pool = scanFiles.isEmpty() ? null
+                : Executors.newFixedThreadPool(Math.min(maxThreads, scanFiles.size()),
+                new ScanExecutor.ScanThreadFactory());
+        final List<Future<PackageMetadata>> futures = new ArrayList<>();
+        int dispatched = 0;
+        try {
+            errorListener.startedScan();
+            progressChecks.forEach(ProgressCheck::startedScan);
+
+            final int readAhead = maxThreads * 2;
+            for (int i = 0; i < scanFiles.size(); i++) {
+                while (futures.size() < scanFiles.size() && futures.size() <= i + readAhead) {
+                    final File file = scanFiles.get(futures.size());
+                    futures.add(pool.submit(newReadTask(packageManager, file)));
+                }
+                try (PackageMetadata metadata = getMetadata(futures.get(i), scanFiles.get(i))) {
+                    dispatched++;
+                    dispatchPackage(metadata, scanFiles.get(i));
+                }
+            }
+        } finally {
+            if (pool != null) {
+                closeRemaining(futures.subList(dispatched, futures.size()));
+                pool.shutdownNow();
+            }
+            progressChecks.forEach(ProgressCheck::finishedScan);
+            errorListener.finishedScan();
+        }
+
+        final List<CheckReport> reports = new ArrayList<>();
+        reports.add(SimpleReport.generateReport(errorListener));
+        for (ProgressCheck check : progressChecks) {
+            reports.add(SimpleReport.generateReport(check));
+        }
+        return new ScanResult(reports, false, 0L, 0L, null, 0, false);
+    }
+
+    private static PackageMetadata getMetadata(final Future<PackageMetadata> future, final File file)
+            throws AbortedScanException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof AbortedScanException) {
+                throw (AbortedScanException) e.getCause();
+            }
+            throw new AbortedScanException(e.getCause(), file);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedScanException(e, file);
+        }
+    }
+
+    private static void closeRemaining(final List<Future<PackageMetadata>> futures) {
+        // wait for the packages read ahead of an aborted scan, to close them.
+        for (Future<PackageMetadata> future : futures) {
+            try {
+                future.get().close();
+            } catch (final ExecutionException e) {
+                // the package was never opened.
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static Callable<PackageMetadata> newReadTask(final PackageManager packageManager, final File file) {
+        return () -> {
+            final FilePackageInstall install;
+            try {
+                install = FilePackageInstall.open(packageManager, file);
+            } catch (final IOException e) {
+                throw new AbortedScanException(e, file);
+            }
+            try {
+                return readPackage(install);
+            } catch (final IOException | PackageException | RepositoryException e) {
+                install.close();
+                throw new AbortedScanException(e, file);
+            } catch (final RuntimeException e) {
+                install.close();
+                throw e;
+            }
+        };
+    }
+
+    private static PackageMetadata readPackage(final PackageInstall install)
+            throws IOException, PackageException, RepositoryException {
+        final PackageMetadata metadata = new PackageMetadata(install);
+        final VaultPackage vaultPackage = install.getPackage();
+        if (!vaultPackage.isValid()) {
+            throw new PackageException("Package is not valid: " + vaultPackage.getId());
+        }
+        metadata.subpackageIds.addAll(install.extractSubpackages(new ImportOptions()));
+        for (PackageId subpackageId : metadata.subpackageIds) {
+            PackageInstall subpackage = null;
+            try {
+                subpackage = install.openSubpackage(subpackageId);
+                metadata.subpackages.add(readPackage(subpackage));
+            } catch (final IOException | PackageException | RepositoryException e) {
+                if (subpackage != null) {
+                    subpackage.close();
+                }
+                metadata.subpackages.add(new PackageMetadata(subpackageId, e));
+            }
+        }
+        return metadata;
+    }
+
+    private void dispatchPackage(final PackageMetadata metadata, final File file) {
+        final PackageId packageId = metadata.packageId;
+        progressChecks.forEach(handler -> {
+            try {
+                handler.identifyPackage(packageId, file);
+            } catch (Exception e) {
+                errorListener.onListenerException(e, handler, packageId);
+            }
+        });
+        dispatchMetadata(packageId, metadata);
+    }
+
+    private void dispatchMetadata(final PackageId packageId, final PackageMetadata metadata) {
+        final VaultPackage vaultPackage;
+        try {
+            vaultPackage = metadata.install.getPackage();
+        } catch (final IOException | RepositoryException e) {
+            errorListener.onSubpackageException(e, packageId);
+            return;
+        }
+        final List<PackageId> subpackageIds = Collections.unmodifiableList(metadata.subpackageIds);
+        progressChecks.forEach(handler -> {
+            try {
+                handler.beforeExtract(packageId, null, vaultPackage.getProperties(), vaultPackage.getMetaInf(),
+                        subpackageIds);
+            } catch (final RepositoryException e) {
+                errorListener.onListenerException(e, handler, packageId);
+            }
+        });
+
+        for (PackageMetadata subpackage : metadata.subpackages) {
+            if (subpackage.error != null) {
+                errorListener.onSubpackageException(subpackage.error, subpackage.packageId);
+                continue;
+            }
+            progressChecks.forEach(handler -> handler.identifySubpackage(subpackage.packageId, packageId));
+            dispatchMetadata(subpackage.packageId, subpackage);
+        }
+    }
+
+    /**
+     * The open package and subpackages read by a read task, which are closed after the events are dispatched.
+     */
+    private static final class PackageMetadata implements AutoCloseable {
+        private final PackageInstall install;
+        private final PackageId packageId;
+        private final Exception error;
+        private final List<PackageId> subpackageIds = new ArrayList<>();
+        private final List<PackageMetadata> subpackages = new ArrayList<>();
+
+        private PackageMetadata(final PackageInstall install) throws IOException, RepositoryException {
+            this.install = install;
+            this.packageId = install.getPackage().getId();
+            this.error = null;
+        }
+
+        private PackageMetadata(final PackageId packageId, final Exception error) {
+            this.install = null;
+            this.packageId = packageId;
+            this.error = error;
+        }
+
+        @Override
+        public void close() {
+            for (PackageMetadata subpackage : subpackages) {
+                subpackage.close();
+            }
+            if (install != null) {
+                install.close();
+            }
+        }
+    }
+}
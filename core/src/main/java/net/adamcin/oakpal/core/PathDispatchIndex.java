@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the {@link PathInterests} of the checks in a scan, so that each path event is only dispatched to the
+ * checks which are interested in it. Prefixes are indexed in a path segment trie, and only the checks which declare
+ * patterns or predicates are evaluated for each path. Checks are identified by their position in the check list.
+ */
+final class PathDispatchIndex {
+    private final int checkCount;
+    private final BitSet always = new BitSet();
+    private final BitSet evaluated = new BitSet();
+    private final PathInterests[] interests;
+    private final TrieNode root = new TrieNode();
+
+    private PathDispatchIndex(final List<? extends ProgressCheck> checks) {
+        this.checkCount = checks.size();
+        this.interests = new PathInterests[checkCount];
+        for (int i = 0; i < checkCount; i++) {
+            final ProgressCheck check = checks.get(i);
+            final PathInterests checkInterests = check instanceof PathSubscriber
+                    ? ((PathSubscriber) check).getPathInterests()
+                    : null;
+            if (checkInterests == null || checkInterests.isAll()) {
+                always.set(i);
+                continue;
+            }
+            interests[i] = checkInterests;
+            if (checkInterests.hasMatchers()) {
+                evaluated.set(i);
+            }
+            for (String prefix : checkInterests.getPrefixes()) {
+                TrieNode node = root;
+                for (String segment : prefix.split("/")) {
+                    if (!segment.isEmpty()) {
+                        node = node.children.computeIfAbsent(segment, key -> new TrieNode());
+                    }
+                }
+                node.ordinals.set(i);
+            }
+        }
+    }
+
+    /**
+     * Build the index for the checks, or return null if every check is interested in every path.
+     *
+     * @param checks the checks in dispatch order
+     * @return the dispatch index, or null if no check declares narrower interests
+     */
+    static PathDispatchIndex build(final List<? extends ProgressCheck> checks) {
+        final PathDispatchIndex index = new PathDispatchIndex(checks);
+        return index.always.cardinality() == index.checkCount ? null : index;
+    }
+
+    /**
+     * Find the checks interested in the path.
+     *
+     * @param path the imported or deleted path
+     * @return the positions of the interested checks
+     */
+    BitSet interested(final String path) {
+        final BitSet result = (BitSet) always.clone();
+        TrieNode node = root;
+        result.or(node.ordinals);
+        int start = 1;
+        while (node != null && start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node != null) {
+                result.or(node.ordinals);
+            }
+            start = end + 1;
+        }
+        for (int i = evaluated.nextSetBit(0); i >= 0; i = evaluated.nextSetBit(i + 1)) {
+            if (!result.get(i) && interests[i].matches(path)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private final BitSet ordinals = new BitSet();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * The paths a {@link PathSubscriber} wants {@link ProgressCheck#importedPath} and {@link ProgressCheck#deletedPath}
+ * events for, declared as subtree prefixes, full-match patterns, and arbitrary predicates. A path is included if it
+ * is within any prefix subtree, or matches any pattern or predicate.
+ */
+@ProviderType
+public final class PathInterests {
+    private static final PathInterests ALL = new PathInterests(true, Collections.emptyList(),
+            Collections.emptyList());
+
+    private final boolean all;
+    private final List<String> prefixes;
+    private final List<Predicate<String>> matchers;
+
+    private PathInterests(final boolean all, final List<String> prefixes, final List<Predicate<String>> matchers) {
+        this.all = all;
+        this.prefixes = Collections.unmodifiableList(prefixes);
+        this.matchers = Collections.unmodifiableList(matchers);
+    }
+
+    /**
+     * Interests which include every path, the same as not implementing {@link PathSubscriber}.
+     *
+     * @return interests in all paths
+     */
+    public static PathInterests all() {
+        return ALL;
+    }
+
+    /**
+     * Use the builder to construct {@link PathInterests}.
+     */
+    public static class Builder {
+        private final List<String> prefixes = new ArrayList<>();
+        private final List<Predicate<String>> matchers = new ArrayList<>();
+
+        /**
+         * Include the subtree rooted at the path, including the path itself.
+         *
+         * @param prefix an absolute path
+         * @return my builder self
+         */
+        public Builder withPrefix(final String prefix) {
+            if (prefix == null || !prefix.startsWith("/")) {
+                throw new IllegalArgumentException("path interest prefix must be an absolute path: " + prefix);
+            }
+            this.prefixes.add(prefix.length() > 1 && prefix.endsWith("/")
+                    ? prefix.substring(0, prefix.length() - 1)
+                    : prefix);
+            return this;
+        }
+
+        /**
+         * Include the paths which match the whole pattern, like an allow {@code Rule}.
+         *
+         * @param pattern the path pattern
+         * @return my builder self
+         */
+        public Builder withPattern(final Pattern pattern) {
+            if (pattern != null) {
+                this.matchers.add(path -> pattern.matcher(path).matches());
+            }
+            return this;
+        }
+
+        /**
+         * Include the paths accepted by the predicate, such as the last-match evaluation of a list of allow and deny
+         * rules. The predicate is only called on the thread importing the package.
+         *
+         * @param predicate the path predicate
+         * @return my builder self
+         */
+        public Builder withPredicate(final Predicate<String> predicate) {
+            if (predicate != null) {
+                this.matchers.add(predicate);
+            }
+            return this;
+        }
+
+        /**
+         * Construct {@link PathInterests} from the {@link Builder} state. With nothing declared, no paths are
+         * included.
+         *
+         * @return the path interests
+         */
+        public PathInterests build() {
+            return new PathInterests(false, new ArrayList<>(prefixes), new ArrayList<>(matchers));
+        }
+    }
+
+    /**
+     * Whether every path is included.
+     *
+     * @return true if all paths are included
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * The subtree prefixes.
+     *
+     * @return the list of absolute prefix paths
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * Whether there are patterns or predicates which must be evaluated for each path.
+     *
+     * @return true if there are any patterns or predicates
+     */
+    boolean hasMatchers() {
+        return !matchers.isEmpty();
+    }
+
+    /**
+     * Whether a path matches any of the patterns or predicates, not considering the prefixes.
+     *
+     * @param path the path
+     * @return true if any pattern or predicate matches
+     */
+    boolean matches(final String path) {
+        for (Predicate<String> matcher : matchers) {
+            if (matcher.test(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the path is included.
+     *
+     * @param path the path
+     * @return true if the path is within a prefix subtree, or matches a pattern or predicate
+     */
+    public boolean includes(final String path) {
+        if (all) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (isWithin(path, prefix)) {
+                return true;
+            }
+        }
+        return matches(path);
+    }
+
+    static boolean isWithin(final String path, final String prefix) {
+        return "/".equals(prefix) || path.equals(prefix)
+                || (path.startsWith(prefix) && path.length() > prefix.length() && path.charAt(prefix.length()) == '/');
+    }
+}
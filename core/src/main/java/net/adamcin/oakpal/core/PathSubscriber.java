@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Optional interface for a {@link ProgressCheck} which only needs {@link ProgressCheck#importedPath} and
+ * {@link ProgressCheck#deletedPath} events for some paths. {@link OakMachine} builds a dispatch index from the
+ * declared {@link PathInterests} of every check, and skips the path events a check is not interested in.
+ */
+@ConsumerType
+public interface PathSubscriber {
+
+    /**
+     * The paths to receive events for. This is read once per scan, after {@link ProgressCheck#startedScan()}.
+     *
+     * @return the path interests, or {@link PathInterests#all()}
+     */
+    PathInterests getPathInterests();
+}
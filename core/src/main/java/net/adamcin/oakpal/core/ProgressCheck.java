@@ -43,6 +43,21 @@ public interface ProgressCheck extends ScanListener, ViolationReporter {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Return true if this check only needs the package metadata, which is delivered by
+     * {@link #identifyPackage(PackageId, File)}, {@link #identifySubpackage(PackageId, PackageId)} and
+     * {@link #beforeExtract(PackageId, Session, PackageProperties, MetaInf, List)}, and never reads the repository.
+     * When every check of a scan is metadata-only, and {@link OakMachine.Builder#withMetadataOnlyScan(boolean)} is
+     * enabled, {@link OakMachine} scans with a {@link PackageMetadataScanner}, which reads the metadata directly from
+     * the package files without installing them, passes a null {@code inspectSession} to {@code beforeExtract}, and
+     * sends no other package events.
+     *
+     * @return true if this check only needs the package metadata
+     */
+    default boolean isMetadataOnly() {
+        return false;
+    }
+
     /**
      * Called after the package is uploaded to the package manager at the beginning of the scan. Track subsequent
      * events using the package ID provided to this method. This method will only be called once for each package
@@ -82,6 +97,10 @@ public interface ProgressCheck extends ScanListener, ViolationReporter {
 
     /**
      * Notified when package importer adds, modifies, or leaves a node untouched.
+     * <p>
+     * The node is looked up in the session the first time one of its methods other than {@link Node#getPath()} is
+     * called, so checks which only need the path should avoid touching the node. A path that does not exist in the
+     * session is reported to the {@link ErrorListener} as an importer exception instead of being passed to the checks.
      *
      * @param packageId the current package
      * @param path      the imported path
@@ -32,7 +32,7 @@ import org.apache.jackrabbit.vault.packaging.PackageProperties;
  * 1) ensure that a configured checkName is actually respected
  * 2) guard {@link ProgressCheckFactory}s from being externally re-configured during a scan
  */
-class ProgressCheckAliasFacade implements ProgressCheck {
+class ProgressCheckAliasFacade implements ProgressCheck, PathSubscriber, Checkpointable {
 
     private final ProgressCheck wrapped;
     private final String alias;
@@ -51,6 +51,33 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         }
     }
 
+    @Override
+    public boolean isMetadataOnly() {
+        return wrapped.isMetadataOnly();
+    }
+
+    @Override
+    public PathInterests getPathInterests() {
+        return wrapped instanceof PathSubscriber
+                ? ((PathSubscriber) wrapped).getPathInterests()
+                : PathInterests.all();
+    }
+
+    @Override
+    public boolean isCheckpointable() {
+        return wrapped instanceof Checkpointable && ((Checkpointable) wrapped).isCheckpointable();
+    }
+
+    @Override
+    public Object saveCheckpoint() {
+        return ((Checkpointable) wrapped).saveCheckpoint();
+    }
+
+    @Override
+    public void restoreCheckpoint(final Object checkpoint) {
+        ((Checkpointable) wrapped).restoreCheckpoint(checkpoint);
+    }
+
     @Override
     public void startedScan() {
         wrapped.startedScan();
@@ -61,6 +88,11 @@ class ProgressCheckAliasFacade implements ProgressCheck {
         return wrapped.getReportedViolations();
     }
 
+    @Override
+    public Violation.Severity getHighestReportedSeverity() {
+        return wrapped.getHighestReportedSeverity();
+    }
+
     @Override
     public void identifyPackage(final PackageId packageId, final File file) {
         wrapped.identifyPackage(packageId, file);
@@ -17,27 +17,289 @@
 package net.adamcin.oakpal.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
 
 /**
  * Simple collector of violations for use by {@link ProgressCheck} implementations.
+ * <p>
+ * A collector built with {@link Builder#withAggregation(boolean)} groups violations by severity, group key, and
+ * packages, and reports each group once, with a count and a bounded sample of the subjects (usually node paths) that
+ * were reported for it. Checks can pass the rule or message template that produced a violation as the group key to
+ * {@link #reportViolation(Violation, String, String)}, so that violations for every node under a denied subtree are
+ * reported as one. Violations reported with {@link #reportViolation(Violation)} are grouped by their description, so
+ * only exact duplicates are merged. A collector built with {@link Builder#withMaxViolations(int)} stops collecting new
+ * violations, or new groups, once the limit is reached, and instead adds one violation at the end with the count and
+ * the highest severity of the violations that were left out.
  */
-public final class ReportCollector implements ViolationReporter {
-    private final List<Violation> violations = new ArrayList<>();
+public final class ReportCollector implements ViolationReporter, Checkpointable {
+    private static final Violation[] NO_VIOLATIONS = new Violation[0];
+    private final boolean aggregate;
+    private final int maxViolations;
+    private final int maxSamples;
+    /**
+     * The collected violations are only ever appended. A slot below {@link #violationCount} is never written again,
+     * and the array is replaced rather than cleared, so a snapshot can share the array instead of copying it.
+     */
+    private Violation[] violations = NO_VIOLATIONS;
+    private int violationCount;
+    private final Map<List<Object>, Group> groups = new LinkedHashMap<>();
+    private int omittedCount;
+    private Violation.Severity omittedSeverity;
+    private Violation.Severity highestSeverity;
+    private Collection<Violation> snapshot;
+
+    public ReportCollector() {
+        this(false, 0, Builder.DEFAULT_MAX_SAMPLES);
+    }
+
+    private ReportCollector(final boolean aggregate, final int maxViolations, final int maxSamples) {
+        this.aggregate = aggregate;
+        this.maxViolations = maxViolations;
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Builder for collectors which aggregate or limit the reported violations.
+     */
+    public static final class Builder {
+        /**
+         * Default number of subjects to keep for each group of aggregated violations.
+         */
+        public static final int DEFAULT_MAX_SAMPLES = 5;
+
+        private boolean aggregate;
+        private int maxViolations;
+        private int maxSamples = DEFAULT_MAX_SAMPLES;
+
+        /**
+         * Set to true to group similar violations, and report each group once with a count and sample subjects.
+         *
+         * @param aggregate true to aggregate violations
+         * @return my builder self
+         */
+        public Builder withAggregation(final boolean aggregate) {
+            this.aggregate = aggregate;
+            return this;
+        }
+
+        /**
+         * Set the max number of violations to collect, or of groups when aggregating. Violations beyond the limit are
+         * counted in a single summary violation instead.
+         *
+         * @param maxViolations the max number of violations, or 0 for no limit (the default)
+         * @return my builder self
+         */
+        public Builder withMaxViolations(final int maxViolations) {
+            this.maxViolations = Math.max(0, maxViolations);
+            return this;
+        }
+
+        /**
+         * Set the max number of subjects to keep as a sample for each group of aggregated violations. Defaults to
+         * {@link #DEFAULT_MAX_SAMPLES}.
+         *
+         * @param maxSamples the max number of sample subjects
+         * @return my builder self
+         */
+        public Builder withMaxSamples(final int maxSamples) {
+            this.maxSamples = Math.max(0, maxSamples);
+            return this;
+        }
+
+        public ReportCollector build() {
+            return new ReportCollector(aggregate, maxViolations, maxSamples);
+        }
+    }
 
     public void reportViolation(Violation violation) {
-        violations.add(violation);
+        reportViolation(violation, violation.getDescription(), null);
+    }
+
+    /**
+     * Report a violation that belongs to a group of similar violations. Without aggregation, this is the same as
+     * {@link #reportViolation(Violation)}.
+     *
+     * @param violation the violation
+     * @param groupKey  the rule or message template that produced the violation
+     * @param subject   the path or other subject of the violation, kept as a sample for the group, or null
+     */
+    public void reportViolation(Violation violation, String groupKey, String subject) {
+        highestSeverity = moreSevere(highestSeverity, violation.getSeverity());
+        snapshot = null;
+        if (!aggregate) {
+            if (isFull(violationCount)) {
+                omit(violation.getSeverity());
+            } else {
+                if (violationCount == violations.length) {
+                    violations = Arrays.copyOf(violations, Math.max(16, violationCount * 2));
+                }
+                violations[violationCount++] = violation;
+            }
+            return;
+        }
+        final List<Object> key = Arrays.asList(violation.getSeverity(), groupKey,
+                new ArrayList<>(violation.getPackages()));
+        Group group = groups.get(key);
+        if (group == null) {
+            if (isFull(groups.size())) {
+                omit(violation.getSeverity());
+                return;
+            }
+            group = new Group(violation);
+            groups.put(key, group);
+        }
+        group.add(subject, maxSamples);
     }
 
     public void clearViolations() {
-        this.violations.clear();
+        this.violations = NO_VIOLATIONS;
+        this.violationCount = 0;
+        this.groups.clear();
+        this.omittedCount = 0;
+        this.omittedSeverity = null;
+        this.highestSeverity = null;
+        this.snapshot = null;
+    }
+
+    /**
+     * Returns the highest severity of the violations reported since the last clear, including the ones that were left
+     * out after reaching the limit, without looking at the collected violations.
+     *
+     * @return the highest reported severity, or null if no violations were reported
+     */
+    @Override
+    public Violation.Severity getHighestReportedSeverity() {
+        return highestSeverity;
     }
 
+    /**
+     * Returns an unmodifiable snapshot of the collected violations, which is not changed by later reports. The
+     * snapshot is kept until the next report, and without aggregation it shares the collected violations instead of
+     * copying them, unless some were left out after reaching the limit.
+     *
+     * @return the reported violations
+     */
     @Override
     public Collection<Violation> getReportedViolations() {
-        List<Violation> toReturn = new ArrayList<>(this.violations);
+        if (snapshot == null) {
+            snapshot = takeSnapshot();
+        }
+        return snapshot;
+    }
+
+    private Collection<Violation> takeSnapshot() {
+        final List<Violation> collected = Arrays.asList(violations).subList(0, violationCount);
+        if (groups.isEmpty() && omittedCount == 0) {
+            return Collections.unmodifiableList(collected);
+        }
+        final List<Violation> toReturn = new ArrayList<>(collected);
+        for (Group group : groups.values()) {
+            toReturn.add(group.copy());
+        }
+        if (omittedCount > 0) {
+            toReturn.add(new SimpleViolation(omittedSeverity,
+                    String.format("%d more violations were not reported after reaching the limit of %d.",
+                            omittedCount, maxViolations)));
+        }
         return Collections.unmodifiableList(toReturn);
     }
+
+    @Override
+    public Object saveCheckpoint() {
+        final Map<List<Object>, Group> savedGroups = new LinkedHashMap<>();
+        for (Map.Entry<List<Object>, Group> entry : groups.entrySet()) {
+            savedGroups.put(entry.getKey(), entry.getValue().copy());
+        }
+        return new Object[]{Arrays.copyOf(violations, violationCount), savedGroups, omittedCount, omittedSeverity,
+                highestSeverity};
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void restoreCheckpoint(final Object checkpoint) {
+        clearViolations();
+        if (checkpoint != null) {
+            final Object[] state = (Object[]) checkpoint;
+            this.violations = (Violation[]) state[0];
+            this.violationCount = this.violations.length;
+            for (Map.Entry<List<Object>, Group> entry : ((Map<List<Object>, Group>) state[1]).entrySet()) {
+                this.groups.put(entry.getKey(), entry.getValue().copy());
+            }
+            this.omittedCount = (Integer) state[2];
+            this.omittedSeverity = (Violation.Severity) state[3];
+            this.highestSeverity = (Violation.Severity) state[4];
+        }
+    }
+
+    private boolean isFull(final int collected) {
+        return maxViolations > 0 && collected >= maxViolations;
+    }
+
+    private void omit(final Violation.Severity severity) {
+        omittedCount++;
+        omittedSeverity = moreSevere(omittedSeverity, severity);
+    }
+
+    private static Violation.Severity moreSevere(final Violation.Severity current, final Violation.Severity severity) {
+        if (current == null || (severity != null && current.isLessSevereThan(severity))) {
+            return severity;
+        }
+        return current;
+    }
+
+    /**
+     * A group of aggregated violations, reported as the first violation of the group, followed by the count and the
+     * sample subjects of the others.
+     */
+    private static final class Group implements Violation {
+        private final Violation first;
+        private final List<String> samples = new ArrayList<>();
+        private int count;
+
+        private Group(final Violation first) {
+            this.first = first;
+        }
+
+        private void add(final String subject, final int maxSamples) {
+            count++;
+            if (count > 1 && subject != null && samples.size() < maxSamples) {
+                samples.add(subject);
+            }
+        }
+
+        private Group copy() {
+            final Group copy = new Group(first);
+            copy.samples.addAll(samples);
+            copy.count = count;
+            return copy;
+        }
+
+        @Override
+        public Severity getSeverity() {
+            return first.getSeverity();
+        }
+
+        @Override
+        public Collection<PackageId> getPackages() {
+            return first.getPackages();
+        }
+
+        @Override
+        public String getDescription() {
+            if (count <= 1) {
+                return first.getDescription();
+            } else if (samples.isEmpty()) {
+                return String.format("%s (reported %d times)", first.getDescription(), count);
+            }
+            return String.format("%s (and %d more, including %s)", first.getDescription(), count - 1,
+                    String.join(", ", samples));
+        }
+    }
 }
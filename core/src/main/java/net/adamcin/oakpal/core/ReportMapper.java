@@ -16,6 +16,7 @@
 
 package net.adamcin.oakpal.core;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -25,6 +26,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -42,7 +44,8 @@ import org.json.JSONString;
 import org.json.JSONTokener;
 
 /**
- * Serialize violations to/from json.
+ * Serialize violations to/from json, or to/from the compact binary format for files ending with
+ * {@value #EXTENSION_BINARY}. Readers detect the binary format by its leading magic bytes, regardless of file name.
  */
 public final class ReportMapper {
     public static final String KEY_REPORTS = "reports";
@@ -51,6 +54,18 @@ public final class ReportMapper {
     public static final String KEY_DESCRIPTION = "description";
     public static final String KEY_SEVERITY = "severity";
     public static final String KEY_PACKAGES = "packages";
+    public static final String KEY_METRICS = "metrics";
+    public static final String KEY_PHASES = "phases";
+    public static final String KEY_CALLBACKS = "callbacks";
+    public static final String KEY_VIOLATION_COUNT = "violationCount";
+    public static final String KEY_INVOCATION_COUNT = "count";
+    public static final String KEY_TOTAL_NANOS = "totalNanos";
+    public static final String KEY_MAX_NANOS = "maxNanos";
+
+    /**
+     * Summary files with this extension are written in the compact binary format.
+     */
+    public static final String EXTENSION_BINARY = ".bin";
 
     private ReportMapper() {
         throw new RuntimeException("No instantiation");
@@ -71,40 +86,181 @@ public final class ReportMapper {
     }
 
     public static List<CheckReport> readReportsFromStream(InputStream inputStream) throws IOException, JSONException {
-        Reader reader = new InputStreamReader(inputStream, "UTF-8");
-
-        return readReportsFromReader(reader);
+        final CollectingVisitor visitor = new CollectingVisitor();
+        readReports(inputStream, visitor);
+        return visitor.getReports();
     }
 
     public static List<CheckReport> readReportsFromReader(Reader reader) throws IOException, JSONException {
-        JSONTokener tokener = new JSONTokener(reader);
-        JSONObject json = new JSONObject(tokener);
+        final CollectingVisitor visitor = new CollectingVisitor();
+        readReports(reader, visitor);
+        return visitor.getReports();
+    }
 
-        List<CheckReport> reports = new ArrayList<>();
-        JSONArray jsonReports = json.optJSONArray(KEY_REPORTS);
+    /**
+     * Read the reports in a summary file one violation at a time.
+     *
+     * @param summaryFile the summary file, in either json or binary format
+     * @param visitor     the report visitor
+     * @throws IOException   for read failures
+     * @throws JSONException for parse failures
+     * @see #readReports(InputStream, ReportVisitor)
+     */
+    public static void readReports(File summaryFile, ReportVisitor visitor) throws IOException, JSONException {
+        try (InputStream is = new FileInputStream(summaryFile)) {
+            readReports(is, visitor);
+        }
+    }
 
-        if (jsonReports != null) {
-            reports = StreamSupport.stream(jsonReports.spliterator(), false)
-                    .filter(v -> v instanceof JSONObject)
-                    .map(v -> reportFromJSON((JSONObject) v))
-                    .collect(Collectors.toList());
+    /**
+     * Read the reports in a summary stream one violation at a time. The binary format is detected by its leading
+     * magic bytes, otherwise the stream is read as UTF-8 json.
+     *
+     * @param inputStream the input stream
+     * @param visitor     the report visitor
+     * @throws IOException   for read failures
+     * @throws JSONException for parse failures
+     * @see #readReports(Reader, ReportVisitor)
+     */
+    public static void readReports(InputStream inputStream, ReportVisitor visitor) throws IOException, JSONException {
+        final InputStream markable = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        if (BinaryReportFormat.isBinary(markable)) {
+            BinaryReportFormat.read(markable, visitor);
+        } else {
+            readReports(new InputStreamReader(markable, "UTF-8"), visitor);
         }
+    }
 
-        return Collections.unmodifiableList(reports);
+    /**
+     * Pull-parse the reports in a summary document and pass them to the visitor one violation at a time, without
+     * building a tree of the whole document. Only a single violation is parsed into memory at once, unless the check
+     * name of a report follows its violations in the document, in which case that report's violations are held until
+     * the end of the report.
+     *
+     * @param reader  the reader
+     * @param visitor the report visitor
+     * @throws IOException   for read failures
+     * @throws JSONException for parse failures
+     */
+    public static void readReports(Reader reader, ReportVisitor visitor) throws IOException, JSONException {
+        final JSONTokener tokener = new JSONTokener(reader);
+        expect(tokener, '{');
+        if (!isEmptyContainer(tokener, '}')) {
+            do {
+                final String key = nextKey(tokener);
+                if (KEY_REPORTS.equals(key)) {
+                    expect(tokener, '[');
+                    if (!isEmptyContainer(tokener, ']')) {
+                        do {
+                            readReport(tokener, visitor);
+                        } while (hasNextMember(tokener, ']'));
+                    }
+                } else {
+                    tokener.nextValue();
+                }
+            } while (hasNextMember(tokener, '}'));
+        }
     }
 
-    private static CheckReport reportFromJSON(JSONObject jsonReport) {
-        String vCheckName = jsonReport.optString(KEY_CHECK_NAME);
-        List<Violation> violations = new ArrayList<>();
-        JSONArray vViolations = jsonReport.optJSONArray(KEY_VIOLATIONS);
-        if (vViolations != null) {
-            violations = StreamSupport.stream(vViolations.spliterator(), false)
-                    .filter(v -> v instanceof JSONObject)
-                    .map(v -> violationFromJSON((JSONObject) v))
-                    .collect(Collectors.toList());
+    private static void readReport(JSONTokener tokener, ReportVisitor visitor) throws JSONException {
+        expect(tokener, '{');
+        String checkName = null;
+        boolean started = false;
+        List<Violation> pending = null;
+        JSONObject jsonMetrics = null;
+        if (!isEmptyContainer(tokener, '}')) {
+            do {
+                final String key = nextKey(tokener);
+                if (KEY_CHECK_NAME.equals(key)) {
+                    checkName = String.valueOf(tokener.nextValue());
+                } else if (KEY_VIOLATIONS.equals(key)) {
+                    if (!started && checkName != null) {
+                        visitor.startReport(checkName);
+                        started = true;
+                    }
+                    expect(tokener, '[');
+                    if (!isEmptyContainer(tokener, ']')) {
+                        do {
+                            final Object value = tokener.nextValue();
+                            if (value instanceof JSONObject) {
+                                final Violation violation = violationFromJSON((JSONObject) value);
+                                if (started) {
+                                    visitor.visitViolation(violation);
+                                } else {
+                                    if (pending == null) {
+                                        pending = new ArrayList<>();
+                                    }
+                                    pending.add(violation);
+                                }
+                            }
+                        } while (hasNextMember(tokener, ']'));
+                    }
+                } else if (KEY_METRICS.equals(key)) {
+                    final Object value = tokener.nextValue();
+                    jsonMetrics = value instanceof JSONObject ? (JSONObject) value : null;
+                } else {
+                    tokener.nextValue();
+                }
+            } while (hasNextMember(tokener, '}'));
+        }
+        final String vCheckName = checkName != null ? checkName : "";
+        if (!started) {
+            visitor.startReport(vCheckName);
+            if (pending != null) {
+                pending.forEach(visitor::visitViolation);
+            }
+        }
+        visitor.endReport(vCheckName, jsonMetrics != null ? checkMetricsFromJSON(vCheckName, jsonMetrics) : null);
+    }
+
+    private static void expect(JSONTokener tokener, char expected) throws JSONException {
+        if (tokener.nextClean() != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    private static boolean isEmptyContainer(JSONTokener tokener, char close) throws JSONException {
+        if (tokener.nextClean() == close) {
+            return true;
+        }
+        tokener.back();
+        return false;
+    }
+
+    private static String nextKey(JSONTokener tokener) throws JSONException {
+        final Object key = tokener.nextValue();
+        if (!(key instanceof String)) {
+            throw tokener.syntaxError("Expected a string key");
         }
+        expect(tokener, ':');
+        return (String) key;
+    }
 
-        return new SimpleReport(vCheckName, violations);
+    private static boolean hasNextMember(JSONTokener tokener, char close) throws JSONException {
+        final char next = tokener.nextClean();
+        if (next == ',') {
+            return true;
+        } else if (next == close) {
+            return false;
+        }
+        throw tokener.syntaxError("Expected ',' or '" + close + "'");
+    }
+
+    private static CheckMetrics checkMetricsFromJSON(String checkName, JSONObject jsonMetrics) {
+        CheckMetrics metrics = new CheckMetrics(checkName);
+        metrics.setViolationCount(jsonMetrics.optInt(KEY_VIOLATION_COUNT));
+        JSONObject jsonCallbacks = jsonMetrics.optJSONObject(KEY_CALLBACKS);
+        if (jsonCallbacks != null) {
+            for (String key : jsonCallbacks.keySet()) {
+                CheckMetrics.Callback callback = CheckMetrics.Callback.byMethodName(key);
+                JSONObject jsonCallback = jsonCallbacks.optJSONObject(key);
+                if (callback != null && jsonCallback != null) {
+                    metrics.record(callback, jsonCallback.optLong(KEY_INVOCATION_COUNT),
+                            jsonCallback.optLong(KEY_TOTAL_NANOS), jsonCallback.optLong(KEY_MAX_NANOS));
+                }
+            }
+        }
+        return metrics;
     }
 
     private static Violation violationFromJSON(JSONObject jsonViolation) {
@@ -123,15 +279,18 @@ public final class ReportMapper {
         return new SimpleViolation(severity, description, packages);
     }
 
+    /**
+     * Write the reports to a summary file, in the binary format if the file name ends with {@value #EXTENSION_BINARY},
+     * otherwise as json.
+     *
+     * @param reports    the reports
+     * @param outputFile the output file
+     * @throws IOException   for write failures
+     * @throws JSONException for serialization failures
+     */
     public static void writeReportsToFile(Collection<CheckReport> reports, File outputFile) throws IOException, JSONException {
-        OutputStream os = null;
-        try {
-            os = new FileOutputStream(outputFile);
-            writeReportsToStream(reports, os);
-        } finally {
-            if (os != null) {
-                os.close();
-            }
+        try (OutputStream os = new FileOutputStream(outputFile)) {
+            writeReports(reports, null, newEncoder(outputFile, os));
         }
     }
 
@@ -141,11 +300,256 @@ public final class ReportMapper {
     }
 
     public static void writeReportsToWriter(Collection<CheckReport> reports, Writer writer) throws IOException, JSONException {
-        JSONArray jsonReports = reportsToJSON(reports);
-        JSONObject rootObj = new JSONObject();
-        rootObj.put(KEY_REPORTS, jsonReports);
-        rootObj.write(writer, 2, 0);
-        writer.flush();
+        writeReports(reports, null, new JsonEncoder(writer));
+    }
+
+    /**
+     * Write the reports in the compact binary format.
+     *
+     * @param reports      the reports
+     * @param outputStream the output stream
+     * @param compress     true to deflate the body of the stream
+     * @throws IOException for write failures
+     */
+    public static void writeReportsToBinaryStream(Collection<CheckReport> reports, OutputStream outputStream,
+                                                  boolean compress) throws IOException {
+        writeReports(reports, null, new BinaryReportFormat.Encoder(outputStream, compress));
+    }
+
+    /**
+     * Write the reports of a scan result, followed by a {@value #KEY_METRICS} object with the phase timings if the
+     * scan was run with metrics enabled. The binary format is used if the file name ends with
+     * {@value #EXTENSION_BINARY}.
+     *
+     * @param scanResult the scan result
+     * @param outputFile the output file
+     * @throws IOException   for write failures
+     * @throws JSONException for serialization failures
+     */
+    public static void writeScanResultToFile(ScanResult scanResult, File outputFile) throws IOException, JSONException {
+        try (OutputStream os = new FileOutputStream(outputFile)) {
+            writeReports(scanResult.getReports(), scanResult.getMetrics().orElse(null), newEncoder(outputFile, os));
+        }
+    }
+
+    /**
+     * Write the reports of a scan result, followed by a {@value #KEY_METRICS} object with the phase timings if the
+     * scan was run with metrics enabled.
+     *
+     * @param scanResult the scan result
+     * @param writer     the writer
+     * @throws IOException   for write failures
+     * @throws JSONException for serialization failures
+     */
+    public static void writeScanResultToWriter(ScanResult scanResult, Writer writer) throws IOException, JSONException {
+        writeReports(scanResult.getReports(), scanResult.getMetrics().orElse(null), new JsonEncoder(writer));
+    }
+
+    /**
+     * Convert a summary file between the json and binary formats, one violation at a time. The source format is
+     * detected by its magic bytes, and the target format is chosen by the target file extension, so this can also be
+     * used to rewrite a file in the same format. Scan phase timings are not read from summary files, and so are not
+     * carried over.
+     *
+     * @param sourceFile the summary file to read
+     * @param targetFile the summary file to write
+     * @throws IOException   for read or write failures
+     * @throws JSONException for parse failures
+     */
+    public static void convertSummaryFile(File sourceFile, File targetFile) throws IOException, JSONException {
+        try (OutputStream os = new FileOutputStream(targetFile)) {
+            final ReportEncoder encoder = newEncoder(targetFile, os);
+            try {
+                readReports(sourceFile, new ReportVisitor() {
+                    @Override
+                    public void startReport(final String checkName) {
+                        try {
+                            encoder.startReport(checkName);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                    @Override
+                    public void visitViolation(final Violation violation) {
+                        try {
+                            encoder.visitViolation(violation);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                    @Override
+                    public void endReport(final String checkName, final CheckMetrics metrics) {
+                        try {
+                            encoder.endReport(checkName, metrics);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+            encoder.finish(null);
+        }
+    }
+
+    /**
+     * Check if a summary file should be written in the binary format.
+     *
+     * @param summaryFile the summary file
+     * @return true if the file name ends with {@value #EXTENSION_BINARY}
+     */
+    public static boolean isBinarySummaryFile(File summaryFile) {
+        return summaryFile.getName().endsWith(EXTENSION_BINARY);
+    }
+
+    private static ReportEncoder newEncoder(File outputFile, OutputStream outputStream) throws IOException {
+        return isBinarySummaryFile(outputFile)
+                ? new BinaryReportFormat.Encoder(outputStream, true)
+                : new JsonEncoder(new OutputStreamWriter(outputStream, "UTF-8"));
+    }
+
+    private static void writeReports(Collection<CheckReport> reports, ScanMetrics scanMetrics, ReportEncoder encoder)
+            throws IOException, JSONException {
+        for (CheckReport report : reports) {
+            encoder.startReport(report.getCheckName());
+            if (report.getViolations() != null) {
+                for (Violation violation : report.getViolations()) {
+                    encoder.visitViolation(violation);
+                }
+            }
+            encoder.endReport(report.getCheckName(), report.getMetrics().orElse(null));
+        }
+        encoder.finish(scanMetrics);
+    }
+
+    /**
+     * Writes a summary one report event at a time. Mirrors {@link ReportVisitor}, but allows write failures.
+     */
+    interface ReportEncoder {
+        void startReport(String checkName) throws IOException;
+
+        void visitViolation(Violation violation) throws IOException;
+
+        void endReport(String checkName, CheckMetrics metrics) throws IOException;
+
+        void finish(ScanMetrics scanMetrics) throws IOException;
+    }
+
+    /**
+     * Streams the summary json document to the writer one violation at a time, without building a tree of the whole
+     * document first.
+     */
+    private static final class JsonEncoder implements ReportEncoder {
+        private final Writer writer;
+        private boolean started;
+        private boolean firstReport = true;
+        private boolean firstViolation;
+
+        private JsonEncoder(final Writer writer) {
+            this.writer = writer;
+        }
+
+        private void startDocument() throws IOException {
+            if (!started) {
+                started = true;
+                writer.write("{\n  ");
+                writer.write(JSONObject.quote(KEY_REPORTS));
+                writer.write(": [");
+            }
+        }
+
+        @Override
+        public void startReport(final String checkName) throws IOException {
+            startDocument();
+            writer.write(firstReport ? "\n    {" : ",\n    {");
+            firstReport = false;
+            if (checkName != null) {
+                writer.write("\n      ");
+                writer.write(JSONObject.quote(KEY_CHECK_NAME));
+                writer.write(": ");
+                writer.write(JSONObject.quote(checkName));
+                writer.write(",");
+            }
+            writer.write("\n      ");
+            writer.write(JSONObject.quote(KEY_VIOLATIONS));
+            writer.write(": [");
+            firstViolation = true;
+        }
+
+        @Override
+        public void visitViolation(final Violation violation) throws IOException {
+            writer.write(firstViolation ? "\n        " : ",\n        ");
+            firstViolation = false;
+            violationToJSON(violation).write(writer, 2, 8);
+        }
+
+        @Override
+        public void endReport(final String checkName, final CheckMetrics metrics) throws IOException {
+            writer.write(firstViolation ? "]" : "\n      ]");
+            if (metrics != null) {
+                writer.write(",\n      ");
+                writer.write(JSONObject.quote(KEY_METRICS));
+                writer.write(": ");
+                checkMetricsToJSON(metrics).write(writer, 2, 6);
+            }
+            writer.write("\n    }");
+        }
+
+        @Override
+        public void finish(final ScanMetrics scanMetrics) throws IOException {
+            startDocument();
+            writer.write(firstReport ? "]" : "\n  ]");
+            if (scanMetrics != null) {
+                writer.write(",\n  ");
+                writer.write(JSONObject.quote(KEY_METRICS));
+                writer.write(": ");
+                scanMetricsToJSON(scanMetrics).write(writer, 2, 2);
+            }
+            writer.write("\n}\n");
+            writer.flush();
+        }
+    }
+
+    /**
+     * Collects the visited reports into a list.
+     */
+    private static final class CollectingVisitor implements ReportVisitor {
+        private final List<CheckReport> reports = new ArrayList<>();
+        private List<Violation> violations;
+
+        @Override
+        public void startReport(final String checkName) {
+            violations = new ArrayList<>();
+        }
+
+        @Override
+        public void visitViolation(final Violation violation) {
+            violations.add(violation);
+        }
+
+        @Override
+        public void endReport(final String checkName, final CheckMetrics metrics) {
+            reports.add(metrics != null
+                    ? new SimpleReport(checkName, violations, metrics)
+                    : new SimpleReport(checkName, violations));
+        }
+
+        private List<CheckReport> getReports() {
+            return Collections.unmodifiableList(reports);
+        }
+    }
+
+    private static JSONObject scanMetricsToJSON(ScanMetrics metrics) throws JSONException {
+        JSONObject jsonPhases = new JSONObject();
+        for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+            jsonPhases.put(phase.getKey(), metrics.getPhaseNanos(phase));
+        }
+        JSONObject jsonMetrics = new JSONObject();
+        jsonMetrics.put(KEY_PHASES, jsonPhases);
+        return jsonMetrics;
     }
 
     public static JSONArray reportsToJSON(Collection<CheckReport> reports) throws JSONException {
@@ -167,9 +571,30 @@ public final class ReportMapper {
             jsonReport.put(KEY_VIOLATIONS, jsonViolations);
         }
 
+        if (report.getMetrics().isPresent()) {
+            jsonReport.put(KEY_METRICS, checkMetricsToJSON(report.getMetrics().get()));
+        }
+
         return jsonReport;
     }
 
+    private static JSONObject checkMetricsToJSON(CheckMetrics metrics) throws JSONException {
+        JSONObject jsonCallbacks = new JSONObject();
+        for (CheckMetrics.Callback callback : CheckMetrics.Callback.values()) {
+            if (metrics.getInvocationCount(callback) > 0) {
+                JSONObject jsonCallback = new JSONObject();
+                jsonCallback.put(KEY_INVOCATION_COUNT, metrics.getInvocationCount(callback));
+                jsonCallback.put(KEY_TOTAL_NANOS, metrics.getTotalNanos(callback));
+                jsonCallback.put(KEY_MAX_NANOS, metrics.getMaxNanos(callback));
+                jsonCallbacks.put(callback.getMethodName(), jsonCallback);
+            }
+        }
+        JSONObject jsonMetrics = new JSONObject();
+        jsonMetrics.put(KEY_VIOLATION_COUNT, metrics.getViolationCount());
+        jsonMetrics.put(KEY_CALLBACKS, jsonCallbacks);
+        return jsonMetrics;
+    }
+
     private static JSONObject violationToJSON(Violation violation) throws JSONException {
         JSONObject jsonViolation = new JSONObject();
         if (violation.getSeverity() != null) {
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Receives the {@link CheckReport}s of a summary document one {@link Violation} at a time, from
+ * {@link ReportMapper#readReports(java.io.Reader, ReportVisitor)}, so that very large summaries can be evaluated
+ * without holding every violation in memory. For each report, {@link #startReport(String)} is called first, followed
+ * by {@link #visitViolation(Violation)} for each violation in order, and then {@link #endReport(String, CheckMetrics)}.
+ */
+@ConsumerType
+public interface ReportVisitor {
+
+    /**
+     * Called at the start of each report.
+     *
+     * @param checkName the check name of the report
+     */
+    default void startReport(final String checkName) {
+
+    }
+
+    /**
+     * Called for each violation of the current report.
+     *
+     * @param violation the violation
+     */
+    void visitViolation(Violation violation);
+
+    /**
+     * Called at the end of each report.
+     *
+     * @param checkName the check name of the report
+     * @param metrics   the check metrics of the report, or null if the report has none
+     */
+    default void endReport(final String checkName, final CheckMetrics metrics) {
+
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+import aQute.bnd.annotation.ConsumerType;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+
+/**
+ * Composes the optional features of the Oak repository created by {@link OakMachine} for each scan. The
+ * {@link OakMachine} always configures the security provider, the initial content, the name, namespace and node type
+ * validators, the JCR conflict handler, and the property and node type indexes, which are needed to install content
+ * packages at all. A profile adds the commit hooks, editors and indexes that only some checks depend on, so that scans
+ * which never query, version or use counters do not pay the commit cost of maintaining them.
+ * <p>
+ * The built-in profiles are {@link #FULL} (the default) and {@link #LEAN}. Custom profiles can select any combination
+ * of {@link Feature}s with {@link #custom(String, Set)}, or implement this interface directly.
+ */
+@ConsumerType
+public interface RepositoryProfile {
+
+    /**
+     * All the optional features. This is the default profile.
+     */
+    RepositoryProfile FULL = new FeatureRepositoryProfile("full", EnumSet.allOf(Feature.class));
+
+    /**
+     * Only versioning and conflict validation. The reference index is removed, so referential integrity is not
+     * enforced, and reference lookups traverse the repository.
+     */
+    RepositoryProfile LEAN = new FeatureRepositoryProfile("lean",
+            EnumSet.of(Feature.VERSIONING, Feature.CONFLICT_VALIDATION));
+
+    /**
+     * The optional repository features.
+     */
+    enum Feature {
+        /**
+         * Create version histories for {@code mix:versionable} nodes.
+         */
+        VERSIONING,
+
+        /**
+         * Reject commits that leave unresolved conflict markers.
+         */
+        CONFLICT_VALIDATION,
+
+        /**
+         * Collect the changed paths and types of each commit for observation filtering.
+         */
+        CHANGE_COLLECTOR,
+
+        /**
+         * Maintain the reference index, which enforces referential integrity and answers reference lookups.
+         */
+        REFERENCE_INDEX,
+
+        /**
+         * Maintain ordered property indexes.
+         */
+        ORDERED_INDEX,
+
+        /**
+         * Support {@code mix:atomicCounter} nodes.
+         */
+        ATOMIC_COUNTER
+    }
+
+    /**
+     * The name of the profile, which is also included in the fingerprint of scans stored in the {@link ScanCache}.
+     * The features of profiles created by {@link #custom(String, Set)} are included as well, so those may share a
+     * name, but profiles that implement this interface directly must use distinct names.
+     *
+     * @return the profile name
+     */
+    String getName();
+
+    /**
+     * Add the optional features to the repository builder. This is called after the {@link OakMachine} has added its
+     * own required configuration.
+     *
+     * @param jcr the repository builder
+     */
+    void configure(Jcr jcr);
+
+    /**
+     * Create a profile with the specified set of features.
+     *
+     * @param name     the profile name
+     * @param features the features to enable
+     * @return the new profile
+     */
+    static RepositoryProfile custom(final String name, final Set<Feature> features) {
+        return new FeatureRepositoryProfile(name, features.isEmpty()
+                ? EnumSet.noneOf(Feature.class) : EnumSet.copyOf(features));
+    }
+
+    /**
+     * Get a profile by name. The name may be {@code full}, {@code lean}, or a comma-separated list of {@link Feature}
+     * names prefixed with {@code custom:}, like {@code custom:versioning,reference_index}. Names are not case
+     * sensitive.
+     *
+     * @param name the profile name
+     * @return the profile
+     * @throws IllegalArgumentException if the name or any feature name is not recognized
+     */
+    static RepositoryProfile fromName(final String name) {
+        final String normalized = name.trim().toLowerCase(Locale.ENGLISH);
+        if (FULL.getName().equals(normalized)) {
+            return FULL;
+        } else if (LEAN.getName().equals(normalized)) {
+            return LEAN;
+        } else if (normalized.startsWith("custom:") || "custom".equals(normalized)) {
+            final Set<Feature> features = EnumSet.noneOf(Feature.class);
+            final String list = normalized.substring("custom".length()).replaceFirst("^:", "");
+            for (String feature : Arrays.asList(list.split(","))) {
+                if (!feature.trim().isEmpty()) {
+                    features.add(Feature.valueOf(feature.trim().toUpperCase(Locale.ENGLISH)));
+                }
+            }
+            return custom(normalized, features);
+        }
+        throw new IllegalArgumentException("unknown repository profile: " + name);
+    }
+}
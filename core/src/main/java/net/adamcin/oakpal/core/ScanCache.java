@@ -0,0 +1,423 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import aQute.bnd.annotation.ProviderType;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A persistent on-disk store of scan {@link CheckReport}s, used by {@link OakMachine} to skip scans of a package list
+ * which has already been scanned with the same configuration. Each entry is keyed by a {@link Fingerprint} of the
+ * SHA-256 hash of every pre-install and scanned package file, the {@link InitStage}s, a fingerprint of the checks
+ * provided by the caller, and the OakPAL version. Entries are evicted when they are older than the max age, or least
+ * recently used when the store holds more than the max number of entries.
+ *
+ * @see OakMachine.Builder#withScanCache(ScanCache, String)
+ */
+@ProviderType
+public final class ScanCache {
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final String ENTRY_SUFFIX = ".json";
+
+    private final File directory;
+
+    private final int maxEntries;
+
+    private final long maxAgeMillis;
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    private final AtomicInteger evictionCount = new AtomicInteger();
+
+    private ScanCache(final File directory, final int maxEntries, final long maxAgeMillis) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Use the builder to construct the {@link ScanCache}.
+     */
+    public static class Builder {
+        private File directory;
+
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+        private long maxAgeMillis;
+
+        /**
+         * Set the directory to store the cache entries in. It is created if it does not exist.
+         *
+         * @param directory the cache directory
+         * @return my builder self
+         */
+        public Builder withDirectory(final File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Set the max number of entries to keep. Defaults to {@link #DEFAULT_MAX_ENTRIES}.
+         *
+         * @param maxEntries the max number of entries, or 0 for no limit
+         * @return my builder self
+         */
+        public Builder withMaxEntries(final int maxEntries) {
+            this.maxEntries = Math.max(0, maxEntries);
+            return this;
+        }
+
+        /**
+         * Set the max age of an entry since it was stored.
+         *
+         * @param maxAgeMillis the max age in milliseconds, or 0 for no limit
+         * @return my builder self
+         */
+        public Builder withMaxAge(final long maxAgeMillis) {
+            this.maxAgeMillis = Math.max(0L, maxAgeMillis);
+            return this;
+        }
+
+        /**
+         * Construct a {@link ScanCache} from the {@link Builder} state.
+         *
+         * @return a {@link ScanCache}
+         * @throws IOException if the cache directory can't be created
+         */
+        public ScanCache build() throws IOException {
+            if (directory == null) {
+                throw new IllegalStateException("a cache directory is required");
+            }
+            Files.createDirectories(directory.toPath());
+            return new ScanCache(directory, maxEntries, maxAgeMillis);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The number of lookups which found an entry.
+     *
+     * @return the hit count
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * The number of lookups which did not find an entry.
+     *
+     * @return the miss count
+     */
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * The number of entries deleted because they were expired or least recently used.
+     *
+     * @return the eviction count
+     */
+    public int getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Look up the reports stored for the key. An expired or unreadable entry is deleted and counted as a miss.
+     *
+     * @param key the entry key, from {@link Fingerprint#build()}
+     * @return the stored reports, if present
+     */
+    public Optional<List<CheckReport>> get(final String key) {
+        final File entry = entryFile(key);
+        if (entry.isFile()) {
+            if (isExpired(entry, System.currentTimeMillis())) {
+                evict(entry);
+            } else {
+                try {
+                    final List<CheckReport> reports = ReportMapper.readReportsFromFile(entry);
+                    // the modification time tracks the last use, for least recently used eviction
+                    entry.setLastModified(System.currentTimeMillis());
+                    hitCount.incrementAndGet();
+                    return Optional.of(reports);
+                } catch (final IOException | JSONException e) {
+                    evict(entry);
+                }
+            }
+        }
+        missCount.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Store the reports for the key, and evict expired and least recently used entries. The {@link CheckMetrics} of
+     * the reports are not stored, because they only describe the scan that produced them.
+     *
+     * @param key     the entry key, from {@link Fingerprint#build()}
+     * @param reports the reports to store
+     * @throws IOException if the entry can't be written
+     */
+    public void put(final String key, final List<CheckReport> reports) throws IOException {
+        final File entry = entryFile(key);
+        final File temp = File.createTempFile(key, ".tmp", directory);
+        try {
+            ReportMapper.writeReportsToFile(reports.stream()
+                    .map(report -> report.getMetrics().isPresent()
+                            ? new SimpleReport(report.getCheckName(), report.getViolations())
+                            : report)
+                    .collect(Collectors.toList()), temp);
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final JSONException e) {
+            throw new IOException(e);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        evictEntries();
+    }
+
+    /**
+     * Delete every entry in the cache.
+     */
+    public void clear() {
+        for (File entry : listEntries()) {
+            evict(entry);
+        }
+    }
+
+    private File entryFile(final String key) {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+    private List<File> listEntries() {
+        final File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        return entries != null ? new ArrayList<>(Arrays.asList(entries)) : Collections.emptyList();
+    }
+
+    private boolean isExpired(final File entry, final long now) {
+        return maxAgeMillis > 0L && now - entry.lastModified() > maxAgeMillis;
+    }
+
+    private void evict(final File entry) {
+        if (entry.delete()) {
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void evictEntries() {
+        final long now = System.currentTimeMillis();
+        final List<File> entries = listEntries();
+        entries.removeIf(entry -> {
+            if (isExpired(entry, now)) {
+                evict(entry);
+                return true;
+            }
+            return false;
+        });
+        if (maxEntries > 0 && entries.size() > maxEntries) {
+            entries.sort(Comparator.comparingLong(File::lastModified).reversed());
+            entries.subList(maxEntries, entries.size()).forEach(this::evict);
+        }
+    }
+
+    /**
+     * Builds a SHA-256 cache key from the inputs of a scan. Every fingerprint begins with the OakPAL version.
+     */
+    public static final class Fingerprint {
+        private final MessageDigest digest = Util.newSha256Digest();
+
+        public Fingerprint() {
+            withValue(OakpalVersion.VERSION);
+        }
+
+        /**
+         * Add a string value.
+         *
+         * @param value the value, which may be null
+         * @return my builder self
+         */
+        public Fingerprint withValue(final String value) {
+            final byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+            return this;
+        }
+
+        /**
+         * Add the SHA-256 hash of the file content.
+         *
+         * @param file the file
+         * @return my builder self
+         * @throws IOException if the file can't be read
+         */
+        public Fingerprint withFile(final File file) throws IOException {
+            try (InputStream is = new FileInputStream(file)) {
+                return withValue(Util.sha256Hex(is));
+            }
+        }
+
+        /**
+         * Add the URL and the SHA-256 hash of its content.
+         *
+         * @param url the url
+         * @return my builder self
+         * @throws IOException if the url can't be read
+         */
+        public Fingerprint withUrl(final URL url) throws IOException {
+            withValue(url.toExternalForm());
+            try (InputStream is = url.openStream()) {
+                return withValue(Util.sha256Hex(is));
+            }
+        }
+
+        /**
+         * Add the effective check specs, with their configs in a canonical form, and the SHA-256 hash of each impl
+         * resource found by the default class loader.
+         *
+         * @param checkSpecs the check specs
+         * @return my builder self
+         * @throws IOException if an impl resource can't be read
+         * @see #withCheckSpecs(List, ClassLoader)
+         */
+        public Fingerprint withCheckSpecs(final List<CheckSpec> checkSpecs) throws IOException {
+            return withCheckSpecs(checkSpecs, Util.getDefaultClassLoader());
+        }
+
+        /**
+         * Add the effective check specs, with their configs in a canonical form, and the SHA-256 hash of each impl
+         * resource, so that editing a check script or recompiling a check class changes the fingerprint. The impl is
+         * resolved the same way as {@link Locator#loadProgressCheck(String, JSONObject, ClassLoader)}, as a class file
+         * first, and then as a script resource.
+         *
+         * @param checkSpecs  the check specs
+         * @param classLoader the class loader which loads the checks
+         * @return my builder self
+         * @throws IOException if an impl resource can't be read
+         */
+        public Fingerprint withCheckSpecs(final List<CheckSpec> checkSpecs, final ClassLoader classLoader)
+                throws IOException {
+            withValue(String.valueOf(checkSpecs.size()));
+            for (CheckSpec checkSpec : checkSpecs) {
+                withValue(checkSpec.getName());
+                withValue(checkSpec.getImpl());
+                withValue(checkSpec.getTemplate());
+                withValue(String.valueOf(checkSpec.isSkip()));
+                withValue(canonical(checkSpec.getConfig()));
+                final URL implResource = checkSpec.isSkip() ? null : findImplResource(checkSpec.getImpl(), classLoader);
+                if (implResource != null) {
+                    try (InputStream is = implResource.openStream()) {
+                        withValue(Util.sha256Hex(is));
+                    }
+                } else {
+                    withValue(null);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add the init stage parameters, including the content of its CND urls.
+         *
+         * @param initStage the init stage
+         * @return my builder self
+         * @throws IOException if a CND url can't be read
+         */
+        public Fingerprint withInitStage(final InitStage initStage) throws IOException {
+            initStage.fingerprint(this);
+            return this;
+        }
+
+        /**
+         * Compute the fingerprint.
+         *
+         * @return the hex-encoded SHA-256 hash of the added values
+         */
+        public String build() {
+            return Util.toHex(cloneDigest().digest());
+        }
+
+        private MessageDigest cloneDigest() {
+            try {
+                return (MessageDigest) digest.clone();
+            } catch (final CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static URL findImplResource(final String impl, final ClassLoader classLoader) {
+            if (impl == null || impl.isEmpty()) {
+                return null;
+            }
+            if (!impl.contains("/") && !impl.contains("\\")) {
+                final URL classResource = classLoader.getResource(impl.replace('.', '/') + ".class");
+                if (classResource != null) {
+                    return classResource;
+                }
+            }
+            return classLoader.getResource(impl);
+        }
+
+        private static String canonical(final Object value) {
+            if (value instanceof JSONObject) {
+                final JSONObject json = (JSONObject) value;
+                final List<String> keys = new ArrayList<>(json.keySet());
+                Collections.sort(keys);
+                final StringBuilder sb = new StringBuilder("{");
+                for (String key : keys) {
+                    sb.append(JSONObject.quote(key)).append(':').append(canonical(json.opt(key))).append(',');
+                }
+                return sb.append('}').toString();
+            } else if (value instanceof JSONArray) {
+                final StringBuilder sb = new StringBuilder("[");
+                for (Object element : (JSONArray) value) {
+                    sb.append(canonical(element)).append(',');
+                }
+                return sb.append(']').toString();
+            } else if (value instanceof String) {
+                return JSONObject.quote((String) value);
+            } else {
+                return String.valueOf(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Runs many independent scans concurrently on a bounded thread pool. Each scan job is a list of package files that is
+ * installed in sequence by its own {@link OakMachine}, with its own in-memory repository, its own
+ * {@link ErrorListener}, and its own {@link ProgressCheck} instances created from the shared {@link CheckSpec}s by the
+ * {@link Locator}.
+ */
+@ProviderType
+public final class ScanExecutor {
+
+    private final List<CheckSpec> checkSpecs;
+
+    private final List<InitStage> initStages;
+
+    private final List<File> preInstallPackages;
+
+    private final Supplier<ErrorListener> errorListenerFactory;
+
+    private final ClassLoader classLoader;
+
+    private final int maxThreads;
+
+    private ScanExecutor(final List<CheckSpec> checkSpecs,
+                         final List<InitStage> initStages,
+                         final List<File> preInstallPackages,
+                         final Supplier<ErrorListener> errorListenerFactory,
+                         final ClassLoader classLoader,
+                         final int maxThreads) {
+        this.checkSpecs = checkSpecs;
+        this.initStages = initStages;
+        this.preInstallPackages = preInstallPackages;
+        this.errorListenerFactory = errorListenerFactory;
+        this.classLoader = classLoader;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Use the builder to construct the {@link ScanExecutor}.
+     */
+    public static class Builder {
+        private final List<CheckSpec> checkSpecs = new ArrayList<>();
+
+        private final List<InitStage> initStages = new ArrayList<>();
+
+        private List<File> preInstallPackages = Collections.emptyList();
+
+        private Supplier<ErrorListener> errorListenerFactory = DefaultErrorListener::new;
+
+        private ClassLoader classLoader;
+
+        private int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Add a list of {@link CheckSpec}s from which each scan job creates its own {@link ProgressCheck}s.
+         *
+         * @param checkSpecs the list of check specs
+         * @return my builder self
+         */
+        public Builder withCheckSpecs(final List<CheckSpec> checkSpecs) {
+            if (checkSpecs != null) {
+                this.checkSpecs.addAll(checkSpecs);
+            }
+            return this;
+        }
+
+        /**
+         * Add a single instance of {@link InitStage} (or more) to each scan job.
+         *
+         * @param initStage the init stage
+         * @return my builder self
+         */
+        public Builder withInitStage(final InitStage... initStage) {
+            if (initStage != null) {
+                return this.withInitStages(Arrays.asList(initStage));
+            }
+            return this;
+        }
+
+        /**
+         * Add a list of {@link InitStage}s to each scan job.
+         *
+         * @param initStages the list of init stages
+         * @return my builder self
+         */
+        public Builder withInitStages(final List<InitStage> initStages) {
+            if (initStages != null) {
+                this.initStages.addAll(initStages);
+            }
+            return this;
+        }
+
+        /**
+         * Provide a list of package files to install before each scan job.
+         *
+         * @param preInstallPackages the list of pre-install package files
+         * @return my builder self
+         * @see OakMachine.Builder#withPreInstallPackages(List)
+         */
+        public Builder withPreInstallPackages(final List<File> preInstallPackages) {
+            if (preInstallPackages != null) {
+                this.preInstallPackages = new ArrayList<>(preInstallPackages);
+            } else {
+                this.preInstallPackages = Collections.emptyList();
+            }
+            return this;
+        }
+
+        /**
+         * Provide a factory for a new {@link ErrorListener} for each scan job. Defaults to creating a new
+         * {@link DefaultErrorListener}.
+         *
+         * @param errorListenerFactory the error listener factory
+         * @return my builder self
+         */
+        public Builder withErrorListenerFactory(final Supplier<ErrorListener> errorListenerFactory) {
+            if (errorListenerFactory != null) {
+                this.errorListenerFactory = errorListenerFactory;
+            } else {
+                this.errorListenerFactory = DefaultErrorListener::new;
+            }
+            return this;
+        }
+
+        /**
+         * Provide a specific class loader for the {@link Locator} to use when loading checks. Defaults to the thread
+         * context class loader at the time {@link #build()} is called.
+         *
+         * @param classLoader the class loader
+         * @return my builder self
+         */
+        public Builder withClassLoader(final ClassLoader classLoader) {
+            this.classLoader = classLoader;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of scan jobs to run at the same time. Defaults to the number of available processors.
+         *
+         * @param maxThreads the thread pool size
+         * @return my builder self
+         */
+        public Builder withMaxThreads(final int maxThreads) {
+            this.maxThreads = Math.max(1, maxThreads);
+            return this;
+        }
+
+        /**
+         * Construct a {@link ScanExecutor} from the {@link Builder} state.
+         *
+         * @return a {@link ScanExecutor}
+         */
+        public ScanExecutor build() {
+            return new ScanExecutor(new ArrayList<>(checkSpecs),
+                    new ArrayList<>(initStages),
+                    preInstallPackages,
+                    errorListenerFactory,
+                    classLoader != null ? classLoader : Util.getDefaultClassLoader(),
+                    maxThreads);
+        }
+    }
+
+    /**
+     * Run each scan job on the thread pool, and return the results in the same order as the jobs. If any job is
+     * aborted, the remaining jobs are cancelled and the exception of the earliest aborted job is thrown.
+     *
+     * @param jobs a list of independent package file lists
+     * @return a list of scan results, one for each job, in job order
+     * @throws AbortedScanException for the first job to abort, or if the executor is interrupted
+     */
+    public List<ScanResult> scanAll(final List<List<File>> jobs) throws AbortedScanException {
+        if (jobs == null || jobs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxThreads, jobs.size()),
+                new ScanThreadFactory());
+        try {
+            final List<Future<ScanResult>> futures = new ArrayList<>(jobs.size());
+            for (List<File> job : jobs) {
+                futures.add(pool.submit(newScanJob(job)));
+            }
+
+            final List<ScanResult> results = new ArrayList<>(jobs.size());
+            for (Future<ScanResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof AbortedScanException) {
+                        throw (AbortedScanException) e.getCause();
+                    }
+                    throw new AbortedScanException(e.getCause());
+                }
+            }
+            return Collections.unmodifiableList(results);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedScanException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Run each scan job on the thread pool, and merge the reports with {@link #mergeReports(List)}.
+     *
+     * @param jobs a list of independent package file lists
+     * @return the merged check reports
+     * @throws AbortedScanException for the first job to abort, or if the executor is interrupted
+     */
+    public List<CheckReport> scanAllAndMerge(final List<List<File>> jobs) throws AbortedScanException {
+        return mergeReports(scanAll(jobs));
+    }
+
+    /**
+     * Merge the reports of many scan results into a single list with one report per check name. Reports are ordered
+     * by the first appearance of each check name, and violations are concatenated in the order of the results, so the
+     * outcome is the same regardless of the order in which the jobs finished. Reports without a check name are merged
+     * into a single report which also has no check name.
+     *
+     * @param results the scan results, in job order
+     * @return the merged check reports
+     */
+    public static List<CheckReport> mergeReports(final List<ScanResult> results) {
+        final Map<String, List<Violation>> merged = new LinkedHashMap<>();
+        for (ScanResult result : results) {
+            for (CheckReport report : result.getReports()) {
+                merged.computeIfAbsent(report.getCheckName(), key -> new ArrayList<>())
+                        .addAll(report.getViolations());
+            }
+        }
+
+        final List<CheckReport> reports = new ArrayList<>(merged.size());
+        for (Map.Entry<String, List<Violation>> entry : merged.entrySet()) {
+            reports.add(new SimpleReport(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableList(reports);
+    }
+
+    private Callable<ScanResult> newScanJob(final List<File> files) {
+        return () -> {
+            final ClassLoader oldCl = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(classLoader);
+                final List<ProgressCheck> checks;
+                try {
+                    checks = Locator.loadFromCheckSpecs(checkSpecs, classLoader);
+                } catch (final Exception e) {
+                    throw new AbortedScanException(e);
+                }
+
+                try (OakMachine machine = new OakMachine.Builder()
+                        .withErrorListener(errorListenerFactory.get())
+                        .withProgressChecks(checks)
+                        .withInitStages(initStages)
+                        .withPreInstallPackages(preInstallPackages)
+                        .build()) {
+                    return machine.scanPackagesWithResult(files);
+                }
+            } finally {
+                Thread.currentThread().setContextClassLoader(oldCl);
+            }
+        };
+    }
+
+    /**
+     * Names the pool threads for easier thread dump inspection.
+     */
+    static final class ScanThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+        private final int poolId = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    String.format("oakpal-scan-%d-%d", poolId, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Phase timings and per-check {@link CheckMetrics} collected during a scan with
+ * {@link OakMachine.Builder#withMetrics(boolean)} enabled.
+ */
+@ProviderType
+public final class ScanMetrics {
+
+    /**
+     * The timed phases of a scan. Extract and save are only timed for the scanned packages and their subpackages, as
+     * the pre-install packages are timed as a whole.
+     */
+    public enum Phase {
+        REPOSITORY_INIT("repositoryInit"),
+        INIT_STAGES("initStages"),
+        PRE_INSTALL("preInstall"),
+        EXTRACT("extract"),
+        SAVE("save");
+
+        private final String key;
+
+        Phase(final String key) {
+            this.key = key;
+        }
+
+        /**
+         * The key used in serialized reports.
+         *
+         * @return the phase key
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final List<CheckMetrics> checkMetrics = new ArrayList<>();
+    private final MetricsRecorder recorder;
+
+    ScanMetrics(final MetricsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    void recordPhase(final Phase phase, final long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+        if (recorder != null) {
+            recorder.recordPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * Wrap a check to record its callback metrics.
+     *
+     * @param check     the check to instrument
+     * @param checkName the name used for the check report
+     * @return the instrumented check
+     */
+    ProgressCheck instrument(final ProgressCheck check, final String checkName) {
+        final CheckMetrics metrics = new CheckMetrics(checkName);
+        checkMetrics.add(metrics);
+        return new MeteredProgressCheck(check, metrics, recorder);
+    }
+
+    void recordViolations(final CheckMetrics metrics, final int violationCount) {
+        metrics.setViolationCount(violationCount);
+        if (recorder != null) {
+            recorder.recordViolations(metrics.getCheckName(), violationCount);
+        }
+    }
+
+    /**
+     * The total time spent in the phase.
+     *
+     * @param phase the phase
+     * @return phase time in nanoseconds
+     */
+    public long getPhaseNanos(final Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * The total time spent in the phase.
+     *
+     * @param phase the phase
+     * @return phase time in milliseconds
+     */
+    public long getPhaseMillis(final Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase));
+    }
+
+    /**
+     * The metrics of each check, in the order the checks were registered.
+     *
+     * @return the list of check metrics
+     */
+    public List<CheckMetrics> getCheckMetrics() {
+        return Collections.unmodifiableList(checkMetrics);
+    }
+
+    /**
+     * Find the metrics of a check by name.
+     *
+     * @param checkName the check name
+     * @return the check metrics, or empty if no check has the name
+     */
+    public Optional<CheckMetrics> getCheckMetrics(final String checkName) {
+        return checkMetrics.stream().filter(metrics -> metrics.getCheckName().equals(checkName)).findFirst();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ScanMetrics{");
+        for (Phase phase : Phase.values()) {
+            sb.append(phase.getKey()).append("=").append(getPhaseMillis(phase)).append("ms, ");
+        }
+        return sb.append("checkMetrics=").append(checkMetrics).append('}').toString();
+    }
+}
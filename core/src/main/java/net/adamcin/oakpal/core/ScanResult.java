@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * The outcome of a single {@link OakMachine} scan, carrying the {@link CheckReport}s along with statistics about how
+ * the scan repository was prepared.
+ */
+@ProviderType
+public final class ScanResult {
+    private final List<CheckReport> reports;
+    private final boolean baselineForked;
+    private final long setupMillis;
+    private final long setupMillisSaved;
+    private final ScanMetrics metrics;
+    private final int resumedPackageCount;
+    private final boolean cached;
+    private final boolean stoppedEarly;
+
+    ScanResult(final List<CheckReport> reports,
+               final boolean baselineForked,
+               final long setupMillis,
+               final long setupMillisSaved,
+               final ScanMetrics metrics,
+               final int resumedPackageCount,
+               final boolean stoppedEarly) {
+        this(reports, baselineForked, setupMillis, setupMillisSaved, metrics, resumedPackageCount,
+                false, stoppedEarly);
+    }
+
+    private ScanResult(final List<CheckReport> reports,
+                       final boolean baselineForked,
+                       final long setupMillis,
+                       final long setupMillisSaved,
+                       final ScanMetrics metrics,
+                       final int resumedPackageCount,
+                       final boolean cached,
+                       final boolean stoppedEarly) {
+        this.reports = Collections.unmodifiableList(reports);
+        this.baselineForked = baselineForked;
+        this.setupMillis = setupMillis;
+        this.setupMillisSaved = setupMillisSaved;
+        this.metrics = metrics;
+        this.resumedPackageCount = resumedPackageCount;
+        this.cached = cached;
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    /**
+     * Create a result for reports found in a {@link ScanCache}.
+     *
+     * @param reports the cached reports
+     * @return a cached scan result
+     */
+    static ScanResult fromCache(final List<CheckReport> reports) {
+        return new ScanResult(reports, false, 0L, 0L, null, 0, true, false);
+    }
+
+    /**
+     * The check reports, beginning with the report of the {@link ErrorListener}.
+     *
+     * @return the list of check reports
+     */
+    public List<CheckReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * Whether the scan repository was forked from a previously built baseline snapshot.
+     *
+     * @return true if the baseline was forked
+     * @see OakMachine.Builder#withBaselineSnapshot(boolean)
+     */
+    public boolean isBaselineForked() {
+        return baselineForked;
+    }
+
+    /**
+     * The time spent preparing the scan repository, from repository initialization through pre-install packages.
+     *
+     * @return setup time in milliseconds
+     */
+    public long getSetupMillis() {
+        return setupMillis;
+    }
+
+    /**
+     * The setup time saved by forking the baseline snapshot instead of building the repository from scratch. This is
+     * always 0 when {@link #isBaselineForked()} is false.
+     *
+     * @return saved setup time in milliseconds
+     */
+    public long getSetupMillisSaved() {
+        return setupMillisSaved;
+    }
+
+    /**
+     * The phase timings and check metrics, if the scan was run with metrics enabled.
+     *
+     * @return the scan metrics, or empty if metrics were not enabled
+     * @see OakMachine.Builder#withMetrics(boolean)
+     */
+    public Optional<ScanMetrics> getMetrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    /**
+     * The number of packages at the start of the package list which were not installed, because the scan resumed
+     * from the checkpoint of a previous scan after those packages.
+     *
+     * @return the number of packages skipped by resuming from a checkpoint
+     * @see OakMachine.Builder#withPrefixCheckpoints(boolean)
+     */
+    public int getResumedPackageCount() {
+        return resumedPackageCount;
+    }
+
+    /**
+     * Whether the reports were found in the {@link ScanCache}, in which case the packages were not scanned.
+     *
+     * @return true if the reports were cached
+     * @see OakMachine.Builder#withScanCache(ScanCache, String)
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Whether the scan was stopped before installing every package, because a violation was reported at or above the
+     * fail-fast severity. The reports only cover the events up to that point.
+     *
+     * @return true if the scan was stopped early
+     * @see OakMachine.Builder#withFailFastSeverity(Violation.Severity)
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+/**
+ * A segment-tar {@link NodeStore} in a temporary directory, using memory-mapped segments, which is deleted when the
+ * store is closed. Used by {@link OakMachine} to keep heap usage flat for scans of very large packages.
+ */
+final class ScratchSegmentStore implements AutoCloseable {
+    private static final String LOCK_FILE = "repo.lock";
+
+    private static final Set<File> PENDING_DELETES = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicBoolean SHUTDOWN_HOOK_REGISTERED = new AtomicBoolean();
+
+    private final File directory;
+
+    private final FileStore fileStore;
+
+    private final NodeStore nodeStore;
+
+    private ScratchSegmentStore(final File directory, final FileStore fileStore) {
+        this.directory = directory;
+        this.fileStore = fileStore;
+        this.nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+    }
+
+    /**
+     * Open a new store in a new temporary directory.
+     *
+     * @param parentDir        the parent of the temporary directory, or null for the default temporary directory
+     * @param segmentCacheSize the segment cache size in MB, or 0 for the Oak default
+     * @param copyFrom         a {@link #snapshot(File)} directory to start from, or null for an empty store
+     * @param blobStore        a blob store for large binaries, or null to store them in the segments
+     * @return the open store
+     * @throws IOException if the store can't be created
+     */
+    static ScratchSegmentStore open(final File parentDir, final int segmentCacheSize, final File copyFrom,
+                                    final BlobStore blobStore) throws IOException {
+        final File directory = createTempDirectory(parentDir, "oakpal-segmentstore-");
+        try {
+            if (copyFrom != null) {
+                copyDirectory(copyFrom.toPath(), directory.toPath());
+            }
+            final FileStoreBuilder builder = FileStoreBuilder.fileStoreBuilder(directory).withMemoryMapping(true);
+            if (segmentCacheSize > 0) {
+                builder.withSegmentCacheSize(segmentCacheSize);
+            }
+            if (blobStore != null) {
+                builder.withBlobStore(blobStore);
+            }
+            return new ScratchSegmentStore(directory, builder.build());
+        } catch (final IOException | InvalidFileStoreVersionException | RuntimeException e) {
+            deleteDirectory(directory);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    NodeStore getNodeStore() {
+        return nodeStore;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Flush the store and copy its files to a new temporary directory, which can be passed to
+     * {@link #open(File, int, File, BlobStore)} to start another store from the current state.
+     *
+     * @param parentDir the parent of the snapshot directory, or null for the default temporary directory
+     * @return the snapshot directory
+     * @throws IOException if the store can't be flushed or copied
+     */
+    File snapshot(final File parentDir) throws IOException {
+        fileStore.flush();
+        final File snapshotDir = createTempDirectory(parentDir, "oakpal-segmentbaseline-");
+        try {
+            copyDirectory(directory.toPath(), snapshotDir.toPath());
+        } catch (final IOException e) {
+            deleteDirectory(snapshotDir);
+            throw e;
+        }
+        return snapshotDir;
+    }
+
+    /**
+     * Close the file store and delete the directory.
+     */
+    @Override
+    public void close() {
+        try {
+            fileStore.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Delete a directory when the JVM exits, for snapshots which live as long as the {@link OakMachine} that took them,
+     * unless it is released first by {@link #release(File)}. A single shutdown hook is shared by every snapshot.
+     *
+     * @param directory the directory to delete
+     */
+    static void deleteOnShutdown(final File directory) {
+        PENDING_DELETES.add(directory);
+        if (SHUTDOWN_HOOK_REGISTERED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                    () -> PENDING_DELETES.forEach(ScratchSegmentStore::deleteDirectory),
+                    "oakpal-segmentstore-cleanup"));
+        }
+    }
+
+    /**
+     * Delete a snapshot directory now, and remove it from the directories to delete when the JVM exits.
+     *
+     * @param directory the directory to delete
+     */
+    static void release(final File directory) {
+        PENDING_DELETES.remove(directory);
+        deleteDirectory(directory);
+    }
+
+    static File createTempDirectory(final File parentDir, final String prefix) throws IOException {
+        if (parentDir != null) {
+            Files.createDirectories(parentDir.toPath());
+            return Files.createTempDirectory(parentDir.toPath(), prefix).toFile();
+        }
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteDirectory(final File directory) {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+        try {
+            Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                        throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc)
+                        throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            // a memory-mapped file may not be deletable until it is unmapped on some platforms.
+            directory.deleteOnExit();
+        }
+    }
+
+    private static void copyDirectory(final Path source, final Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                    throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (!LOCK_FILE.equals(file.getFileName().toString())) {
+                    Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -17,23 +17,24 @@
 package net.adamcin.oakpal.core;
 
 import java.io.File;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
@@ -70,9 +71,17 @@ import org.json.JSONObject;
  * </dl>
  * <p>
  * To report package violations, a {@link ScriptHelper} is bound to the global variable "oakpal".
+ * <p>
+ * A script which only needs path events for part of the repository can call {@code oakpal.subscribePathPrefix(path)}
+ * or {@code oakpal.subscribePathPattern(regex)} when it is evaluated or in {@code startedScan()}, so that the
+ * {@code importedPath} and {@code deletedPath} functions are only invoked for those paths. See {@link PathSubscriber}.
+ * <p>
+ * When the script engine implements {@link javax.script.Compilable}, each script is compiled once and the compiled
+ * form is shared by every check created from the same script content, each evaluated in its own engine scope. The
+ * handler functions are resolved once per check, rather than being looked up by name for every event.
  */
 @ProviderType
-public final class ScriptProgressCheck implements ProgressCheck {
+public final class ScriptProgressCheck implements ProgressCheck, PathSubscriber {
     public static final String BINDING_SCRIPT_HELPER = "oakpal";
     public static final String BINDING_CHECK_CONFIG = "config";
     public static final String INVOKE_ON_STARTED_SCAN = "startedScan";
@@ -85,15 +94,100 @@ public final class ScriptProgressCheck implements ProgressCheck {
     public static final String INVOKE_ON_FINISHED_SCAN = "finishedScan";
     public static final String INVOKE_GET_CHECK_NAME = "getCheckName";
 
+    /**
+     * The GraalJS script engine name, which can be passed to {@link #createScriptCheckFactory(String, URL)} to run
+     * scripts with the GraalJS engine when it is on the class path. Host access is granted to the script bindings so
+     * that scripts can call the {@link ScriptHelper}.
+     */
+    public static final String ENGINE_NAME_GRAAL_JS = "graal.js";
+
     private final Invocable script;
+    private final Object scope;
     private final ScriptHelper helper;
     private final URL scriptUrl;
-    private final Set<String> handlerMissCache = new HashSet<>();
+    private final Map<String, HandlerHandle> handlers = new HashMap<>();
+    private Functions.CheckNameFunction checkNameFunction;
 
-    private ScriptProgressCheck(final Invocable script, final ScriptHelper helper, final URL scriptUrl) {
+    private ScriptProgressCheck(final Invocable script, final Object scope, final ScriptHelper helper,
+                                final URL scriptUrl) {
         this.script = script;
+        this.scope = scope;
         this.helper = helper;
         this.scriptUrl = scriptUrl;
+        if (scope == null || !resolveHandlers()) {
+            bindHandlersByName();
+        }
+    }
+
+    /**
+     * Resolve each handler function once by asking the engine for an implementation of its function interface, so
+     * that events are dispatched without looking up the script function by name.
+     *
+     * @return false if the engine can not implement interfaces on the script scope
+     */
+    private boolean resolveHandlers() {
+        try {
+            checkNameFunction = script.getInterface(scope, Functions.CheckNameFunction.class);
+            bind(INVOKE_ON_STARTED_SCAN, Functions.StartedScanFunction.class,
+                    fn -> args -> fn.startedScan());
+            bind(INVOKE_ON_IDENTIFY_PACKAGE, Functions.IdentifyPackageFunction.class,
+                    fn -> args -> fn.identifyPackage((PackageId) args[0], (File) args[1]));
+            bind(INVOKE_ON_IDENTIFY_SUBPACKAGE, Functions.IdentifySubpackageFunction.class,
+                    fn -> args -> fn.identifySubpackage((PackageId) args[0], (PackageId) args[1]));
+            bind(INVOKE_ON_BEFORE_EXTRACT, Functions.BeforeExtractFunction.class,
+                    fn -> args -> fn.beforeExtract((Session) args[0], (PackageId) args[1],
+                            (PackageProperties) args[2], (MetaInf) args[3], (PackageId[]) args[4]));
+            bind(INVOKE_ON_IMPORTED_PATH, Functions.ImportedPathFunction.class,
+                    fn -> args -> fn.importedPath((PackageId) args[0], (String) args[1], (Node) args[2]));
+            bind(INVOKE_ON_DELETED_PATH, Functions.DeletedPathFunction.class,
+                    fn -> args -> fn.deletedPath((PackageId) args[0], (String) args[1], (Session) args[2]));
+            bind(INVOKE_ON_AFTER_EXTRACT, Functions.AfterExtractFunction.class,
+                    fn -> args -> fn.afterExtract((PackageId) args[0], (Session) args[1]));
+            bind(INVOKE_ON_FINISHED_SCAN, Functions.FinishedScanFunction.class,
+                    fn -> args -> fn.finishedScan());
+            return true;
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            checkNameFunction = null;
+            handlers.clear();
+            return false;
+        }
+    }
+
+    private <T> void bind(final String methodName, final Class<T> functionType,
+                          final Function<T, HandlerHandle> adapter) {
+        final T function = script.getInterface(scope, functionType);
+        if (function != null) {
+            handlers.put(methodName, adapter.apply(function));
+        }
+    }
+
+    /**
+     * Fallback for engines which can't implement interfaces on a script scope. Each handler is invoked by name until
+     * the engine throws a NoSuchMethodException for it.
+     */
+    private void bindHandlersByName() {
+        for (String methodName : Arrays.asList(INVOKE_ON_STARTED_SCAN, INVOKE_ON_IDENTIFY_PACKAGE,
+                INVOKE_ON_IDENTIFY_SUBPACKAGE, INVOKE_ON_BEFORE_EXTRACT, INVOKE_ON_IMPORTED_PATH,
+                INVOKE_ON_DELETED_PATH, INVOKE_ON_AFTER_EXTRACT, INVOKE_ON_FINISHED_SCAN)) {
+            handlers.put(methodName, args -> invokeByName(methodName, args));
+        }
+        checkNameFunction = () -> {
+            try {
+                return invokeByName(INVOKE_GET_CHECK_NAME);
+            } catch (NoSuchMethodException ignored) {
+                return null;
+            } catch (ScriptException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private Object invokeByName(final String methodName, final Object... args)
+            throws NoSuchMethodException, ScriptException {
+        if (scope != null) {
+            return this.script.invokeMethod(scope, methodName, args);
+        }
+        return this.script.invokeFunction(methodName, args);
     }
 
     private String getFilename() {
@@ -107,17 +201,11 @@ public final class ScriptProgressCheck implements ProgressCheck {
 
     @Override
     public String getCheckName() {
-        try {
-            Object result = this.script.invokeFunction(INVOKE_GET_CHECK_NAME);
-            if (result != null) {
-                return String.valueOf(result);
-            } else {
-                return getFilename();
-            }
-        } catch (NoSuchMethodException ignored) {
+        final Object result = checkNameFunction != null ? checkNameFunction.getCheckName() : null;
+        if (result != null) {
+            return String.valueOf(result);
+        } else {
             return getFilename();
-        } catch (ScriptException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -126,7 +214,7 @@ public final class ScriptProgressCheck implements ProgressCheck {
      */
     @FunctionalInterface
     private interface HandlerHandle {
-        void apply(Object... args) throws NoSuchMethodException, ScriptException;
+        void apply(Object... args) throws Exception;
     }
 
     /**
@@ -134,49 +222,58 @@ public final class ScriptProgressCheck implements ProgressCheck {
      */
     @FunctionalInterface
     private interface EventHandlerBody {
-        void apply(HandlerHandle handle) throws NoSuchMethodException, ScriptException;
+        void apply(HandlerHandle handle) throws Exception;
     }
 
     /**
-     * Guards against script handler calls by remembering when NoSuchMethodExceptions are thrown when the script
-     * function named by the {@code methodName} argument is invoked.
+     * Guards against script handler calls by skipping handler functions which the script does not define, and
+     * forgetting handler functions when NoSuchMethodExceptions are thrown when they are invoked.
      *
      * @param methodName the name of the handler function to invoke
      * @param body       the ScriptProgressCheck adapter body logic to execute
      */
     private void guardHandler(final String methodName, final EventHandlerBody body) {
-        if (!handlerMissCache.contains(methodName)) {
+        final HandlerHandle handle = handlers.get(methodName);
+        if (handle != null) {
             try {
-                body.apply((args) -> this.script.invokeFunction(methodName, args));
+                body.apply(handle);
             } catch (NoSuchMethodException ignored) {
-                handlerMissCache.add(methodName);
-            } catch (ScriptException e) {
+                handlers.remove(methodName);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
     /**
-     * Guards against script handler calls by remembering when NoSuchMethodExceptions are thrown when the script
-     * function named by the {@code methodName} argument is invoked.
+     * Guards against script handler calls by skipping handler functions which the script does not define, and
+     * forgetting handler functions when NoSuchMethodExceptions are thrown when they are invoked.
      * Unlike {@link #guardHandler(String, EventHandlerBody)}, this method rethrows RepositoryExceptions to satisfy the
      * contract of some progress check methods.
      *
      * @param methodName the name of the handler function to invoke
      * @param body       the ScriptProgressCheck adapter body logic to execute
-     * @throws RepositoryException if a ScriptException is thrown with a RepositoryException cause
+     * @throws RepositoryException if a RepositoryException is thrown by the handler, or a ScriptException is thrown
+     *                             with a RepositoryException cause
      */
     private void guardSessionHandler(final String methodName, final EventHandlerBody body) throws RepositoryException {
-        if (!handlerMissCache.contains(methodName)) {
+        final HandlerHandle handle = handlers.get(methodName);
+        if (handle != null) {
             try {
-                body.apply((args) -> this.script.invokeFunction(methodName, args));
+                body.apply(handle);
             } catch (NoSuchMethodException ignored) {
-                handlerMissCache.add(methodName);
+                handlers.remove(methodName);
             } catch (ScriptException e) {
                 if (e.getCause() instanceof RepositoryException) {
                     throw new ScriptRepositoryException(e);
                 }
                 throw new RuntimeException(e);
+            } catch (RepositoryException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
         }
     }
@@ -233,8 +330,19 @@ public final class ScriptProgressCheck implements ProgressCheck {
         return this.helper.collector.getReportedViolations();
     }
 
+    @Override
+    public final Violation.Severity getHighestReportedSeverity() {
+        return this.helper.collector.getHighestReportedSeverity();
+    }
+
+    @Override
+    public PathInterests getPathInterests() {
+        return this.helper.pathInterests != null ? this.helper.pathInterests.build() : PathInterests.all();
+    }
+
     public static class ScriptHelper {
         private final ReportCollector collector = new ReportCollector();
+        private PathInterests.Builder pathInterests;
 
         public void minorViolation(String description, PackageId... packageIds) {
             collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, description, packageIds));
@@ -247,37 +355,180 @@ public final class ScriptProgressCheck implements ProgressCheck {
         public void severeViolation(String description, PackageId... packageIds) {
             collector.reportViolation(new SimpleViolation(Violation.Severity.SEVERE, description, packageIds));
         }
+
+        public void subscribePathPrefix(String prefix) {
+            pathInterestsBuilder().withPrefix(prefix);
+        }
+
+        public void subscribePathPattern(String pattern) {
+            pathInterestsBuilder().withPattern(Pattern.compile(pattern));
+        }
+
+        private PathInterests.Builder pathInterestsBuilder() {
+            if (pathInterests == null) {
+                pathInterests = new PathInterests.Builder();
+            }
+            return pathInterests;
+        }
+    }
+
+    /**
+     * The script function signatures which are resolved once per check instance by
+     * {@link Invocable#getInterface(Object, Class)}. Script engines can only implement public interfaces, so they are
+     * public members of this package-private holder.
+     */
+    static final class Functions {
+        private Functions() {
+            // no instances
+        }
+
+        /**
+         * The script's {@code getCheckName} function, which returns the check name, or null to fall back
+         * to the script file name.
+         */
+        public interface CheckNameFunction {
+            Object getCheckName();
+        }
+
+        /**
+         * The script's {@code startedScan} function, called by {@link ProgressCheck#startedScan()}.
+         */
+        public interface StartedScanFunction {
+            void startedScan();
+        }
+
+        /**
+         * The script's {@code identifyPackage} function, called with the same arguments as
+         * {@link ProgressCheck#identifyPackage(PackageId, File)}.
+         */
+        public interface IdentifyPackageFunction {
+            void identifyPackage(PackageId packageId, File file);
+        }
+
+        /**
+         * The script's {@code identifySubpackage} function, called with the same arguments as
+         * {@link ProgressCheck#identifySubpackage(PackageId, PackageId)}.
+         */
+        public interface IdentifySubpackageFunction {
+            void identifySubpackage(PackageId packageId, PackageId parentId);
+        }
+
+        /**
+         * The script's {@code beforeExtract} function. Unlike
+         * {@link ProgressCheck#beforeExtract(PackageId, Session, PackageProperties, MetaInf, List)}, it takes the
+         * session first, and the subpackages as an array.
+         */
+        public interface BeforeExtractFunction {
+            void beforeExtract(Session inspectSession, PackageId packageId, PackageProperties packageProperties,
+                               MetaInf metaInf, PackageId[] subpackages) throws RepositoryException;
+        }
+
+        /**
+         * The script's {@code importedPath} function, called with the same arguments as
+         * {@link ProgressCheck#importedPath(PackageId, String, Node)}.
+         */
+        public interface ImportedPathFunction {
+            void importedPath(PackageId packageId, String path, Node node) throws RepositoryException;
+        }
+
+        /**
+         * The script's {@code deletedPath} function, called with the same arguments as
+         * {@link ProgressCheck#deletedPath(PackageId, String, Session)}.
+         */
+        public interface DeletedPathFunction {
+            void deletedPath(PackageId packageId, String path, Session inspectSession) throws RepositoryException;
+        }
+
+        /**
+         * The script's {@code afterExtract} function, called with the same arguments as
+         * {@link ProgressCheck#afterExtract(PackageId, Session)}.
+         */
+        public interface AfterExtractFunction {
+            void afterExtract(PackageId packageId, Session inspectSession) throws RepositoryException;
+        }
+
+        /**
+         * The script's {@code finishedScan} function, called by {@link ProgressCheck#finishedScan()}.
+         */
+        public interface FinishedScanFunction {
+            void finishedScan();
+        }
     }
 
     /**
-     * Internal {@link ProgressCheckFactory} impl for script check creation.
+     * Internal {@link ProgressCheckFactory} impl for script check creation. The script is read once per factory, and
+     * compiled once per engine and content hash by {@link CompiledScriptCache}. Each new instance evaluates the compiled
+     * script in its own engine scope, so instances created from the same script do not share global state. GraalJS
+     * scripts are evaluated in a new engine per instance instead, and read the check config as a script object.
      */
     private static class ScriptProgressCheckFactory implements ProgressCheckFactory {
 
         private final ScriptEngine engine;
         private final URL scriptUrl;
+        private CompiledScriptCache.Source source;
 
         private ScriptProgressCheckFactory(final ScriptEngine engine, final URL scriptUrl) {
             this.engine = engine;
             this.scriptUrl = scriptUrl;
         }
 
+        private synchronized CompiledScriptCache.Source getSource() throws IOException {
+            if (source == null) {
+                source = CompiledScriptCache.load(scriptUrl);
+            }
+            return source;
+        }
+
         @Override
         public ProgressCheck newInstance(final JSONObject config) throws Exception {
-            try (InputStream is = scriptUrl.openStream()) {
-                Bindings scriptBindings = new SimpleBindings();
-                if (config != null) {
-                    scriptBindings.put(BINDING_CHECK_CONFIG, config.toMap());
-                } else {
-                    scriptBindings.put(BINDING_CHECK_CONFIG, Collections.<String, Object>emptyMap());
-                }
-                final ScriptHelper helper = new ScriptHelper();
-                scriptBindings.put(BINDING_SCRIPT_HELPER, helper);
+            final CompiledScriptCache.Source scriptSource = getSource();
+            final ScriptHelper helper = new ScriptHelper();
+            if (isGraalJs(engine)) {
+                // GraalJS only invokes script functions in the engine's own context, so each instance evaluates the
+                // script in a new engine from the same factory.
+                final ScriptEngine instanceEngine = engine.getFactory().getScriptEngine();
+                bindScope(instanceEngine, instanceEngine.getBindings(ScriptContext.ENGINE_SCOPE), config, helper);
+                instanceEngine.eval(scriptSource.newReader());
+                return new ScriptProgressCheck((Invocable) instanceEngine, null, helper, scriptUrl);
+            }
+            final CompiledScript compiled = CompiledScriptCache.getOrCompile(engine, scriptSource);
+            if (compiled != null) {
+                final Bindings scope = engine.createBindings();
+                bindScope(engine, scope, config, helper);
+                compiled.eval(scope);
+                return new ScriptProgressCheck((Invocable) engine, scope, helper, scriptUrl);
+            }
+
+            Bindings scriptBindings = new SimpleBindings();
+            bindScope(engine, scriptBindings, config, helper);
+            engine.setBindings(scriptBindings, ScriptContext.ENGINE_SCOPE);
+            engine.eval(scriptSource.newReader());
+            return new ScriptProgressCheck((Invocable) engine, null, helper, scriptUrl);
+        }
 
-                engine.setBindings(scriptBindings, ScriptContext.ENGINE_SCOPE);
-                engine.eval(new InputStreamReader(is, Charset.forName("UTF-8")));
-                return new ScriptProgressCheck((Invocable) engine, helper, scriptUrl);
+        private static void bindScope(final ScriptEngine engine, final Bindings scope, final JSONObject config,
+                                      final ScriptHelper helper) throws ScriptException {
+            if (isGraalJs(engine)) {
+                grantHostAccess(scope);
+                // GraalJS does not read java.util.Map entries as properties, so parse the config into a script object
+                scope.put(BINDING_CHECK_CONFIG, config != null ? config.toString() : "{}");
+                engine.eval(BINDING_CHECK_CONFIG + " = JSON.parse(" + BINDING_CHECK_CONFIG + ");", scope);
+            } else if (config != null) {
+                scope.put(BINDING_CHECK_CONFIG, config.toMap());
+            } else {
+                scope.put(BINDING_CHECK_CONFIG, Collections.<String, Object>emptyMap());
             }
+            scope.put(BINDING_SCRIPT_HELPER, helper);
+        }
+
+        private static boolean isGraalJs(final ScriptEngine engine) {
+            return ENGINE_NAME_GRAAL_JS.equals(engine.getFactory().getEngineName())
+                    || engine.getFactory().getNames().contains(ENGINE_NAME_GRAAL_JS);
+        }
+
+        private static void grantHostAccess(final Bindings scope) {
+            scope.put("polyglot.js.allowHostAccess", true);
+            scope.put("polyglot.js.allowHostClassLookup", true);
         }
     }
 
@@ -288,7 +539,7 @@ public final class ScriptProgressCheck implements ProgressCheck {
                     + scriptUrl.toString());
         }
         final String ext = scriptUrl.getPath().substring(lastPeriod + 1);
-        ScriptEngine engine = new ScriptEngineManager().getEngineByExtension(ext);
+        final ScriptEngine engine = CompiledScriptCache.getEngineManager().getEngineByExtension(ext);
         if (engine == null) {
             throw new Exception("Failed to find a ScriptEngine for URL extension: " + scriptUrl.toString());
         }
@@ -297,7 +548,7 @@ public final class ScriptProgressCheck implements ProgressCheck {
 
     public static ProgressCheckFactory createScriptCheckFactory(final String engineName, final URL scriptUrl)
             throws Exception {
-        ScriptEngine engine = new ScriptEngineManager().getEngineByName(engineName);
+        ScriptEngine engine = CompiledScriptCache.getEngineManager().getEngineByName(engineName);
         if (engine == null) {
             throw new Exception("Failed to load ScriptEngine by name: " + engineName);
         }
@@ -19,7 +19,20 @@ package net.adamcin.oakpal.core;
 import java.util.Collection;
 
 public class SimpleProgressCheck implements ProgressCheck {
-    protected final ReportCollector collector = new ReportCollector();
+    protected final ReportCollector collector;
+
+    public SimpleProgressCheck() {
+        this(new ReportCollector());
+    }
+
+    /**
+     * Use a collector built with {@link ReportCollector.Builder} to aggregate or limit the reported violations.
+     *
+     * @param collector the report collector
+     */
+    protected SimpleProgressCheck(final ReportCollector collector) {
+        this.collector = collector;
+    }
 
     protected void reportViolation(final Violation violation) {
         collector.reportViolation(violation);
@@ -34,4 +47,9 @@ public class SimpleProgressCheck implements ProgressCheck {
     public Collection<Violation> getReportedViolations() {
         return collector.getReportedViolations();
     }
+
+    @Override
+    public Violation.Severity getHighestReportedSeverity() {
+        return collector.getHighestReportedSeverity();
+    }
 }
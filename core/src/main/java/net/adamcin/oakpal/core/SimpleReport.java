@@ -28,10 +28,16 @@ public class SimpleReport implements CheckReport {
 
     private final String checkName;
     private final Collection<Violation> violations;
+    private final CheckMetrics metrics;
 
     public SimpleReport(final String checkName, Collection<Violation> violations) {
+        this(checkName, violations, null);
+    }
+
+    public SimpleReport(final String checkName, Collection<Violation> violations, final CheckMetrics metrics) {
         this.checkName = checkName;
         this.violations = Collections.unmodifiableCollection(violations);
+        this.metrics = metrics;
     }
 
     @Override
@@ -44,6 +50,11 @@ public class SimpleReport implements CheckReport {
         return violations;
     }
 
+    @Override
+    public Optional<CheckMetrics> getMetrics() {
+        return Optional.ofNullable(metrics);
+    }
+
     public static SimpleReport generateReport(final ProgressCheck reporter) {
         return new SimpleReport(Optional.ofNullable(reporter.getCheckName())
                 .orElse(reporter.getClass().getSimpleName()),
@@ -16,12 +16,15 @@
 
 package net.adamcin.oakpal.core;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
@@ -41,6 +44,8 @@ import org.slf4j.LoggerFactory;
 
 public final class Util {
     private static final Logger LOGGER = LoggerFactory.getLogger(Util.class);
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     private Util() {
         // do nothing
@@ -115,6 +120,78 @@ public final class Util {
                 : Util.class.getClassLoader();
     }
 
+    /**
+     * Create a new SHA-256 digest, which every Java platform is required to support.
+     *
+     * @return a new digest
+     */
+    static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is a required MessageDigest algorithm", e);
+        }
+    }
+
+    /**
+     * Encode the bytes as lowercase hex.
+     *
+     * @param bytes the bytes
+     * @return the hex string
+     */
+    static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Get the hex-encoded SHA-256 hash of the content.
+     *
+     * @param content the content
+     * @return the hash
+     */
+    static String sha256Hex(final byte[] content) {
+        return toHex(newSha256Digest().digest(content));
+    }
+
+    /**
+     * Get the hex-encoded SHA-256 hash of the rest of the stream, without buffering it. The stream is not closed.
+     *
+     * @param is the stream
+     * @return the hash
+     * @throws IOException if the stream can't be read
+     */
+    static String sha256Hex(final InputStream is) throws IOException {
+        final MessageDigest digest = newSha256Digest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Read the rest of the stream into a byte array. The stream is not closed.
+     *
+     * @param is the stream
+     * @return the content
+     * @throws IOException if the stream can't be read
+     */
+    static byte[] readBytes(final InputStream is) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
     public static <T> Predicate<T> debugFilter(final Logger logger, final String format) {
         if (logger.isDebugEnabled()) {
             return item -> {
@@ -27,5 +27,22 @@ public interface ViolationReporter {
      */
     Collection<Violation> getReportedViolations();
 
+    /**
+     * Called after each event when a scan has a fail-fast severity, to find out whether a violation at or above it has
+     * been reported. The default implementation looks at every reported violation, so reporters that collect their
+     * violations in a {@link ReportCollector} should return {@link ReportCollector#getHighestReportedSeverity()}.
+     *
+     * @return the highest severity of the reported violations, or null if there are none
+     */
+    default Violation.Severity getHighestReportedSeverity() {
+        Violation.Severity highest = null;
+        for (Violation violation : getReportedViolations()) {
+            final Violation.Severity severity = violation.getSeverity();
+            if (highest == null || (severity != null && highest.isLessSevereThan(severity))) {
+                highest = severity;
+            }
+        }
+        return highest;
+    }
 
 }
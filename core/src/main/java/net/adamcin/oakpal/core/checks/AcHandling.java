@@ -31,6 +31,7 @@ import java.util.stream.StreamSupport;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
@@ -114,7 +115,7 @@ public class AcHandling implements ProgressCheckFactory {
         }
     }
 
-    class Check extends SimpleProgressCheck {
+    class Check extends SimpleProgressCheck implements Checkpointable {
         final ACHandlingLevelSet levelSet;
         final List<AccessControlHandling> allowedModes;
 
@@ -129,6 +130,21 @@ public class AcHandling implements ProgressCheckFactory {
             return AcHandling.this.getClass().getSimpleName();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return collector.saveCheckpoint();
+        }
+
+        @Override
+        public void restoreCheckpoint(final Object checkpoint) {
+            collector.restoreCheckpoint(checkpoint);
+        }
+
+        @Override
+        public boolean isMetadataOnly() {
+            return true;
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
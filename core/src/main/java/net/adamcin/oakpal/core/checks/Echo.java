@@ -24,6 +24,7 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.Violation;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
@@ -33,13 +34,23 @@ import org.apache.jackrabbit.vault.packaging.PackageProperties;
 /**
  * Simple verbose package check that logs all scan events to standard out.
  */
-public class Echo implements ProgressCheck {
+public class Echo implements ProgressCheck, Checkpointable {
 
     @Override
     public Collection<Violation> getReportedViolations() {
         return Collections.emptyList();
     }
 
+    @Override
+    public Object saveCheckpoint() {
+        return null;
+    }
+
+    @Override
+    public void restoreCheckpoint(final Object checkpoint) {
+        echo("restoreCheckpoint()");
+    }
+
     protected void echo(final String message, Object... formatArgs) {
         System.out.println("[ECHO] " + String.format(message, formatArgs));
     }
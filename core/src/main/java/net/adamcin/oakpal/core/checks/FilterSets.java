@@ -20,6 +20,7 @@ import java.util.List;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
@@ -60,7 +61,7 @@ public class FilterSets implements ProgressCheckFactory {
     public static final String CONFIG_ALLOW_ROOT_FILTER = "allowRootFilter";
     public static final Violation.Severity DEFAULT_IMPORT_MODE_SEVERITY = Violation.Severity.MINOR;
 
-    class Check extends SimpleProgressCheck {
+    class Check extends SimpleProgressCheck implements Checkpointable {
         final Violation.Severity importModeSeverity;
         final boolean allowEmptyFilter;
         final boolean allowRootFilter;
@@ -76,6 +77,21 @@ public class FilterSets implements ProgressCheckFactory {
             return FilterSets.this.getClass().getSimpleName();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return collector.saveCheckpoint();
+        }
+
+        @Override
+        public void restoreCheckpoint(final Object checkpoint) {
+            collector.restoreCheckpoint(checkpoint);
+        }
+
+        @Override
+        public boolean isMetadataOnly() {
+            return true;
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
@@ -20,6 +20,7 @@ import static java.util.Optional.ofNullable;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -28,8 +29,12 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeTypeDefinition;
 
+import net.adamcin.oakpal.core.Checkpointable;
+import net.adamcin.oakpal.core.PathInterests;
+import net.adamcin.oakpal.core.PathSubscriber;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
+import net.adamcin.oakpal.core.ReportCollector;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
 import net.adamcin.oakpal.core.SimpleViolation;
 import net.adamcin.oakpal.core.Violation;
@@ -57,6 +62,10 @@ import org.json.JSONObject;
  * apply to.</dd>
  * <dt>{@code properties}</dt>
  * <dd>A list of {@link JcrPropertyConstraints} definitions.</dd>
+ * <dt>{@code aggregateViolations}, {@code maxViolations}, {@code maxViolationSamples}</dt>
+ * <dd>Set {@code aggregateViolations} to true to report the violations for each denied node type or property
+ * constraint once per package, with a count and a sample of up to {@code maxViolationSamples} paths, instead of once
+ * per node. Set {@code maxViolations} to limit the number of violations (or groups) that are reported.</dd>
  * </dl>
  * <pre>
  *     "config": {
@@ -99,8 +108,8 @@ public class JcrProperties implements ProgressCheckFactory {
     public static final String CONFIG_SCOPE_NODE_TYPES = "scopeNodeTypes";
     public static final String CONFIG_PROPERTIES = "properties";
 
-    class Check extends SimpleProgressCheck {
-        private final List<Rule> scopePaths;
+    class Check extends SimpleProgressCheck implements PathSubscriber, Checkpointable {
+        private final RuleSet scopePaths;
         private final List<String> denyNodeTypes;
         private final List<String> scopeNodeTypes;
         private final List<JcrPropertyConstraints> propertyChecks;
@@ -110,7 +119,16 @@ public class JcrProperties implements ProgressCheckFactory {
                      final List<String> denyNodeTypes,
                      final List<String> scopeNodeTypes,
                      final List<JcrPropertyConstraints> propertyChecks) {
-            this.scopePaths = scopePaths;
+            this(scopePaths, denyNodeTypes, scopeNodeTypes, propertyChecks, new ReportCollector());
+        }
+
+        Check(final List<Rule> scopePaths,
+              final List<String> denyNodeTypes,
+              final List<String> scopeNodeTypes,
+              final List<JcrPropertyConstraints> propertyChecks,
+              final ReportCollector collector) {
+            super(collector);
+            this.scopePaths = RuleSet.compile(scopePaths);
             this.denyNodeTypes = denyNodeTypes;
             this.scopeNodeTypes = scopeNodeTypes;
             this.propertyChecks = propertyChecks;
@@ -121,6 +139,23 @@ public class JcrProperties implements ProgressCheckFactory {
             return JcrProperties.this.getClass().getSimpleName();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return collector.saveCheckpoint();
+        }
+
+        @Override
+        public void restoreCheckpoint(final Object checkpoint) {
+            collector.restoreCheckpoint(checkpoint);
+        }
+
+        @Override
+        public PathInterests getPathInterests() {
+            return new PathInterests.Builder()
+                    .withPredicate(path -> scopePaths.lastMatch(path).isAllow())
+                    .build();
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
@@ -134,12 +169,7 @@ public class JcrProperties implements ProgressCheckFactory {
                 return;
             }
 
-            Rule lastMatch = Rule.fuzzyDefaultAllow(scopePaths);
-            for (Rule rule : scopePaths) {
-                if (rule.matches(path)) {
-                    lastMatch = rule;
-                }
-            }
+            Rule lastMatch = scopePaths.lastMatch(path);
             if (lastMatch.isAllow()) {
                 this.checkNode(packageId, node);
             }
@@ -156,7 +186,7 @@ public class JcrProperties implements ProgressCheckFactory {
                                             .map(NodeTypeDefinition::getName)
                                             .collect(Collectors.toList()),
                                     denyNodeType),
-                            packageId));
+                            packageId), "denied node type " + denyNodeType, node.getPath());
                     return;
                 }
             }
@@ -169,7 +199,10 @@ public class JcrProperties implements ProgressCheckFactory {
             }
             if (isInScope) {
                 for (JcrPropertyConstraints check : propertyChecks) {
-                    check.evaluate(packageId, node).ifPresent(collector::reportViolation);
+                    final Optional<Violation> violation = check.evaluate(packageId, node);
+                    if (violation.isPresent()) {
+                        collector.reportViolation(violation.get(), "property " + check.getName(), node.getPath());
+                    }
                 }
             }
         }
@@ -188,6 +221,7 @@ public class JcrProperties implements ProgressCheckFactory {
                 .orElse(Collections.emptyList());
         List<JcrPropertyConstraints> propertyChecks = JcrPropertyConstraints
                 .fromJSON(config.optJSONArray(CONFIG_PROPERTIES));
-        return new Check(pathScope, denyNodeTypes, nodeTypeScope, propertyChecks);
+        return new Check(pathScope, denyNodeTypes, nodeTypeScope, propertyChecks,
+                ReportLimits.collectorFromJSON(config));
     }
 }
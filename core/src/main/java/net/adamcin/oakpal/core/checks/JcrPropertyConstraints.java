@@ -73,6 +73,7 @@ public final class JcrPropertyConstraints {
     private final boolean denyIfMultivalued;
     private final String requireType;
     private final List<Rule> valueRules;
+    private final RuleSet valueRuleSet;
     private final Violation.Severity severity;
 
     public JcrPropertyConstraints(final String name,
@@ -88,6 +89,7 @@ public final class JcrPropertyConstraints {
         this.denyIfMultivalued = denyIfMultivalued;
         this.requireType = requireType;
         this.valueRules = valueRules;
+        this.valueRuleSet = RuleSet.compile(valueRules);
         this.severity = severity;
     }
 
@@ -166,12 +168,7 @@ public final class JcrPropertyConstraints {
             }
 
             for (String value : values) {
-                Rule lastMatch = Rule.fuzzyDefaultAllow(getValueRules());
-                for (Rule rule : getValueRules()) {
-                    if (rule.matches(value)) {
-                        lastMatch = rule;
-                    }
-                }
+                Rule lastMatch = valueRuleSet.lastMatch(value);
                 if (lastMatch.isDeny()) {
                     return Optional.of(constructViolation(packageId, node,
                             String.format("value %s denied by pattern %s",
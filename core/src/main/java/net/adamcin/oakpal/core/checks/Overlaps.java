@@ -19,12 +19,11 @@ package net.adamcin.oakpal.core.checks;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
@@ -38,7 +37,9 @@ import org.json.JSONObject;
 
 /**
  * The {@code overlaps} check keeps track of installed package workspace filters, and checks every affected path going
- * forward against previous workspace filters for overlap, using {@link WorkspaceFilter#contains(String)}. Overlapping
+ * forward against previous workspace filters for overlap, using {@link WorkspaceFilter#contains(String)}. The filter
+ * roots of previous packages are indexed by path, so each affected path is only checked against the workspace filters
+ * of packages with a filter root at or above it. Overlapping
  * deletions are reported as {@link net.adamcin.oakpal.core.Violation.Severity#MAJOR}, whereas other affected paths are
  * reported as {@link net.adamcin.oakpal.core.Violation.Severity#MINOR}.
  * <p>
@@ -57,9 +58,9 @@ import org.json.JSONObject;
 public class Overlaps implements ProgressCheckFactory {
     public static final String CONFIG_REPORT_ALL_OVERLAPS = "reportAllOverlaps";
 
-    class Check extends SimpleProgressCheck {
+    class Check extends SimpleProgressCheck implements Checkpointable {
 
-        final Map<PackageId, WorkspaceFilter> filters = new HashMap<>();
+        final WorkspaceFilterIndex filters = new WorkspaceFilterIndex();
         final Map<PackageId, Violation.Severity> reported = new HashMap<>();
 
         final boolean reportAllOverlaps;
@@ -80,6 +81,22 @@ public class Overlaps implements ProgressCheckFactory {
             reported.clear();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return new Object[]{collector.saveCheckpoint(), filters.getFilters(), new HashMap<>(reported)};
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restoreCheckpoint(final Object checkpoint) {
+            final Object[] state = (Object[]) checkpoint;
+            collector.restoreCheckpoint(state[0]);
+            filters.clear();
+            ((Map<PackageId, WorkspaceFilter>) state[1]).forEach(filters::put);
+            reported.clear();
+            reported.putAll((Map<PackageId, Violation.Severity>) state[2]);
+        }
+
         @Override
         public void beforeExtract(final PackageId packageId, final Session inspectSession,
                                   final PackageProperties packageProperties, final MetaInf metaInf,
@@ -87,10 +104,6 @@ public class Overlaps implements ProgressCheckFactory {
             filters.put(packageId, metaInf.getFilter());
         }
 
-        Predicate<? super Map.Entry<PackageId, WorkspaceFilter>> overlaps(final String path) {
-            return entry -> entry.getValue().contains(path);
-        }
-
         public void findOverlaps(final PackageId currentPackageId, final String path,
                                  final Violation.Severity severity) {
             // fast escape! no need to belabor the point.
@@ -101,12 +114,7 @@ public class Overlaps implements ProgressCheckFactory {
             }
 
             // find any overlapping filters, looking forward.
-            List<PackageId> overlapping = filters.entrySet().stream()
-                    .filter(entry -> !entry.getKey().equals(currentPackageId))
-                    .filter(overlaps(path))
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-
+            List<PackageId> overlapping = filters.findContaining(path, currentPackageId);
 
             if (!overlapping.isEmpty()) {
                 if (!reportAllOverlaps) {
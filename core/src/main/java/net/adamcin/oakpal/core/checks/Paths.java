@@ -21,8 +21,10 @@ import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
+import net.adamcin.oakpal.core.ReportCollector;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
 import net.adamcin.oakpal.core.SimpleViolation;
 import net.adamcin.oakpal.core.Violation;
@@ -57,18 +59,27 @@ import org.json.JSONObject;
  * of the change. Set this true to also report a violation if ANY delete is detected, because that is generally
  * indicative of an existing path (forced root or preInstallPackage) being inadvertently captured by this package's
  * workspace filter.</dd>
+ * <dt>{@code aggregateViolations}, {@code maxViolations}, {@code maxViolationSamples}</dt>
+ * <dd>Set {@code aggregateViolations} to true to report the violations for each rule once per package, with a count
+ * and a sample of up to {@code maxViolationSamples} paths, instead of once per path. Set {@code maxViolations} to
+ * limit the number of violations (or groups) that are reported.</dd>
  * </dl>
  */
 public class Paths implements ProgressCheckFactory {
     public static final String CONFIG_RULES = "rules";
     public static final String CONFIG_DENY_ALL_DELETES = "denyAllDeletes";
 
-    public class Check extends SimpleProgressCheck {
-        private final List<Rule> rules;
+    public class Check extends SimpleProgressCheck implements Checkpointable {
+        private final RuleSet rules;
         private final boolean denyAllDeletes;
 
         public Check(final List<Rule> rules, final boolean denyAllDeletes) {
-            this.rules = rules;
+            this(rules, denyAllDeletes, new ReportCollector());
+        }
+
+        Check(final List<Rule> rules, final boolean denyAllDeletes, final ReportCollector collector) {
+            super(collector);
+            this.rules = RuleSet.compile(rules);
             this.denyAllDeletes = denyAllDeletes;
         }
 
@@ -77,21 +88,27 @@ public class Paths implements ProgressCheckFactory {
             return Paths.this.getClass().getSimpleName();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return collector.saveCheckpoint();
+        }
+
+        @Override
+        public void restoreCheckpoint(final Object checkpoint) {
+            collector.restoreCheckpoint(checkpoint);
+        }
+
         @Override
         public void importedPath(final PackageId packageId, final String path, final Node node)
                 throws RepositoryException {
 
-            Rule lastMatch = Rule.fuzzyDefaultAllow(rules);
-            for (Rule rule : rules) {
-                if (rule.matches(path)) {
-                    lastMatch = rule;
-                }
-            }
+            Rule lastMatch = rules.lastMatch(path);
 
             if (lastMatch.isDeny()) {
-                reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
+                collector.reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
                         String.format("imported path %s matches deny pattern %s", path,
-                                lastMatch.getPattern().pattern()), packageId));
+                                lastMatch.getPattern().pattern()), packageId),
+                        "imported " + lastMatch.getPattern().pattern(), path);
             }
         }
 
@@ -99,20 +116,17 @@ public class Paths implements ProgressCheckFactory {
         public void deletedPath(final PackageId packageId, final String path, final Session inspectSession)
                 throws RepositoryException {
             if (this.denyAllDeletes) {
-                reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
-                        String.format("deleted path %s. All deletions are denied.", path), packageId));
+                collector.reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
+                        String.format("deleted path %s. All deletions are denied.", path), packageId),
+                        "deleted", path);
             } else {
-                Rule lastMatch = Rule.fuzzyDefaultAllow(rules);
-                for (Rule rule : rules) {
-                    if (rule.matches(path)) {
-                        lastMatch = rule;
-                    }
-                }
+                Rule lastMatch = rules.lastMatch(path);
 
                 if (lastMatch.isDeny()) {
-                    reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
+                    collector.reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
                             String.format("deleted path %s matches deny rule %s", path,
-                                    lastMatch.getPattern().pattern()), packageId));
+                                    lastMatch.getPattern().pattern()), packageId),
+                            "deleted " + lastMatch.getPattern().pattern(), path);
                 }
             }
         }
@@ -125,6 +139,6 @@ public class Paths implements ProgressCheckFactory {
         final boolean denyAllDeletes = config.has(CONFIG_DENY_ALL_DELETES)
                 && config.optBoolean(CONFIG_DENY_ALL_DELETES);
 
-        return new Check(rules, denyAllDeletes);
+        return new Check(rules, denyAllDeletes, ReportLimits.collectorFromJSON(config));
     }
 }
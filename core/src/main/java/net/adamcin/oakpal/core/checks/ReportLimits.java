@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.checks;
+
+import net.adamcin.oakpal.core.ReportCollector;
+import org.json.JSONObject;
+
+/**
+ * Reads the violation aggregation and limit options shared by checks which can report a violation for every node
+ * under a path, like {@link Paths} and {@link JcrProperties}.
+ * <dl>
+ * <dt>{@code aggregateViolations}</dt>
+ * <dd>Set to true to report similar violations once per rule and package, with a count and a sample of paths.</dd>
+ * <dt>{@code maxViolations}</dt>
+ * <dd>The max number of violations (or groups, when aggregating) to report. Any more are counted in a single
+ * violation at the end of the report.</dd>
+ * <dt>{@code maxViolationSamples}</dt>
+ * <dd>The max number of sample paths to list for each group of aggregated violations.</dd>
+ * </dl>
+ */
+final class ReportLimits {
+    static final String CONFIG_AGGREGATE_VIOLATIONS = "aggregateViolations";
+    static final String CONFIG_MAX_VIOLATIONS = "maxViolations";
+    static final String CONFIG_MAX_VIOLATION_SAMPLES = "maxViolationSamples";
+
+    private ReportLimits() {
+        // no instances
+    }
+
+    static ReportCollector collectorFromJSON(final JSONObject config) {
+        final ReportCollector.Builder builder = new ReportCollector.Builder()
+                .withAggregation(config.has(CONFIG_AGGREGATE_VIOLATIONS)
+                        && config.optBoolean(CONFIG_AGGREGATE_VIOLATIONS));
+        if (config.has(CONFIG_MAX_VIOLATIONS)) {
+            builder.withMaxViolations(config.optInt(CONFIG_MAX_VIOLATIONS));
+        }
+        if (config.has(CONFIG_MAX_VIOLATION_SAMPLES)) {
+            builder.withMaxSamples(config.optInt(CONFIG_MAX_VIOLATION_SAMPLES));
+        }
+        return builder.build();
+    }
+}
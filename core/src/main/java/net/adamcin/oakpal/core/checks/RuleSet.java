@@ -0,0 +1,315 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A list of {@link Rule}s compiled for fast "last match wins" evaluation, which is how every check in this package
+ * interprets a rules list.
+ * <p>
+ * The literal prefix of each rule pattern (the leading characters before any regex syntax) is indexed in a trie, so
+ * that rules which cannot match a value are skipped without running their patterns. The rules that remain for a
+ * given trie node are merged into a single alternation in reverse rule order, so one {@link Matcher#matches()} call
+ * finds the last matching rule: the first alternative to produce a full match wins, and its capturing group
+ * identifies the rule. Patterns with flags, back references or named groups can not be safely merged, and are
+ * matched one at a time instead, from the last rule to the first.
+ */
+public final class RuleSet {
+    private final List<Rule> rules;
+    private final Rule defaultRule;
+    private final TrieNode root;
+
+    private RuleSet(final List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.defaultRule = Rule.fuzzyDefaultAllow(this.rules);
+        this.root = new TrieNode(new int[0]);
+        for (int i = 0; i < this.rules.size(); i++) {
+            root.insert(literalPrefix(this.rules.get(i).getPattern()), 0, i);
+        }
+        root.seal(new int[0]);
+    }
+
+    /**
+     * Compile a list of rules.
+     *
+     * @param rules the rules, in order of increasing precedence
+     * @return the compiled rule set
+     */
+    public static RuleSet compile(final List<Rule> rules) {
+        return new RuleSet(rules != null ? rules : Collections.emptyList());
+    }
+
+    /**
+     * The compiled rules.
+     *
+     * @return the list of rules
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Return the index of the last rule that matches the value.
+     *
+     * @param value the value to match
+     * @return the index of the last matching rule, or -1 if no rule matches
+     */
+    public int lastMatchIndex(final String value) {
+        TrieNode node = root;
+        TrieNode deepest = root;
+        for (int i = 0; i < value.length(); i++) {
+            node = node.children.get(value.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.ownRules > 0) {
+                deepest = node;
+            }
+        }
+        return deepest.matcher(rules).lastMatchIndex(value);
+    }
+
+    /**
+     * Return the last rule that matches the value, or {@link Rule#fuzzyDefaultAllow(List)} for the rules list if no
+     * rule matches.
+     *
+     * @param value the value to match
+     * @return the last matching rule, or the default rule
+     */
+    public Rule lastMatch(final String value) {
+        final int index = lastMatchIndex(value);
+        return index >= 0 ? rules.get(index) : defaultRule;
+    }
+
+    /**
+     * Return the literal characters a value must start with for the pattern to match it. This is conservative: an
+     * empty string is returned for patterns with top-level alternation, and a literal followed by a quantifier is
+     * left out.
+     *
+     * @param pattern the rule pattern
+     * @return the literal prefix, which may be empty
+     */
+    static String literalPrefix(final Pattern pattern) {
+        final String regex = pattern.pattern();
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.LITERAL | Pattern.COMMENTS | Pattern.CANON_EQ)) != 0
+                || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if ("?*+{".indexOf(c) >= 0) {
+                if (prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            } else if ("\\[]().^$|".indexOf(c) >= 0) {
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    static boolean hasTopLevelAlternation(final String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Patterns with flags, back references, or named groups change meaning when their groups are renumbered in a
+     * merged alternation, and so must be matched separately.
+     *
+     * @param pattern the rule pattern
+     * @return true if the pattern can be merged
+     */
+    static boolean isMergeable(final Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return false;
+        }
+        final String regex = pattern.pattern();
+        for (int i = 0; i < regex.length() - 1; i++) {
+            final char c = regex.charAt(i);
+            final char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if (Character.isDigit(next) || next == 'k' || next == 'Q') {
+                    return false;
+                }
+                i++;
+            } else if (c == '(' && next == '?' && i + 3 < regex.length() && regex.charAt(i + 2) == '<'
+                    && regex.charAt(i + 3) != '=' && regex.charAt(i + 3) != '!') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Node of the literal prefix trie. The candidates are the indexes of the rules whose prefixes end at this node or
+     * at any of its ancestors, in ascending order.
+     */
+    private static final class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private int[] candidates;
+        private int ownRules;
+        private volatile CandidateMatcher matcher;
+
+        private TrieNode(final int[] candidates) {
+            this.candidates = candidates;
+        }
+
+        void insert(final String prefix, final int offset, final int ruleIndex) {
+            if (offset == prefix.length()) {
+                candidates = Arrays.copyOf(candidates, candidates.length + 1);
+                candidates[candidates.length - 1] = ruleIndex;
+                ownRules++;
+            } else {
+                children.computeIfAbsent(prefix.charAt(offset), key -> new TrieNode(new int[0]))
+                        .insert(prefix, offset + 1, ruleIndex);
+            }
+        }
+
+        void seal(final int[] inherited) {
+            final int[] own = candidates;
+            candidates = new int[inherited.length + own.length];
+            System.arraycopy(inherited, 0, candidates, 0, inherited.length);
+            System.arraycopy(own, 0, candidates, inherited.length, own.length);
+            Arrays.sort(candidates);
+            for (TrieNode child : children.values()) {
+                child.seal(candidates);
+            }
+        }
+
+        CandidateMatcher matcher(final List<Rule> rules) {
+            CandidateMatcher result = matcher;
+            if (result == null) {
+                result = new CandidateMatcher(rules, candidates);
+                matcher = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Matches a set of candidate rules with a single merged pattern, plus any rules that could not be merged.
+     */
+    private static final class CandidateMatcher {
+        private final List<Rule> rules;
+        private final Pattern merged;
+        private final int[] mergedGroups;
+        private final int[] mergedRules;
+        private final int[] separateRules;
+
+        CandidateMatcher(final List<Rule> rules, final int[] candidates) {
+            this.rules = rules;
+
+            final List<Integer> mergeable = new ArrayList<>();
+            final List<Integer> separate = new ArrayList<>();
+            for (int i = candidates.length - 1; i >= 0; i--) {
+                if (isMergeable(rules.get(candidates[i]).getPattern())) {
+                    mergeable.add(candidates[i]);
+                } else {
+                    separate.add(candidates[i]);
+                }
+            }
+
+            Pattern mergedPattern = null;
+            final int[] groups = new int[mergeable.size()];
+            if (mergeable.size() > 1) {
+                final StringBuilder regex = new StringBuilder();
+                int group = 1;
+                for (int i = 0; i < mergeable.size(); i++) {
+                    final Pattern pattern = rules.get(mergeable.get(i)).getPattern();
+                    if (i > 0) {
+                        regex.append('|');
+                    }
+                    regex.append('(').append(pattern.pattern()).append(')');
+                    groups[i] = group;
+                    group += 1 + pattern.matcher("").groupCount();
+                }
+                try {
+                    mergedPattern = Pattern.compile(regex.toString());
+                } catch (final PatternSyntaxException e) {
+                    mergedPattern = null;
+                }
+            }
+            if (mergedPattern == null) {
+                separate.addAll(mergeable);
+                separate.sort(Collections.reverseOrder());
+                mergeable.clear();
+            }
+
+            this.merged = mergedPattern;
+            this.mergedGroups = mergedPattern != null ? groups : new int[0];
+            this.mergedRules = mergeable.stream().mapToInt(Integer::intValue).toArray();
+            this.separateRules = separate.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int lastMatchIndex(final String value) {
+            int mergedMatch = -1;
+            if (merged != null) {
+                final Matcher matcher = merged.matcher(value);
+                if (matcher.matches()) {
+                    for (int i = 0; i < mergedGroups.length; i++) {
+                        if (matcher.start(mergedGroups[i]) >= 0) {
+                            mergedMatch = mergedRules[i];
+                            break;
+                        }
+                    }
+                }
+            }
+            // separate rules are in descending order, so stop at the first one that is outranked by the merged match
+            for (int ruleIndex : separateRules) {
+                if (ruleIndex < mergedMatch) {
+                    break;
+                }
+                if (rules.get(ruleIndex).matches(value)) {
+                    return ruleIndex;
+                }
+            }
+            return mergedMatch;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package net.adamcin.oakpal.core.checks;
 
 import java.util.List;
 
+import net.adamcin.oakpal.core.Checkpointable;
 import net.adamcin.oakpal.core.ProgressCheck;
 import net.adamcin.oakpal.core.ProgressCheckFactory;
 import net.adamcin.oakpal.core.SimpleProgressCheck;
@@ -60,12 +61,12 @@ public class Subpackages implements ProgressCheckFactory {
     public static final String CONFIG_RULES = "rules";
     public static final String CONFIG_DENY_ALL = "denyAll";
 
-    class Check extends SimpleProgressCheck {
-        private final List<Rule> rules;
+    class Check extends SimpleProgressCheck implements Checkpointable {
+        private final RuleSet rules;
         private final boolean denyAll;
 
         public Check(final List<Rule> rules, final boolean denyAll) {
-            this.rules = rules;
+            this.rules = RuleSet.compile(rules);
             this.denyAll = denyAll;
         }
 
@@ -74,6 +75,21 @@ public class Subpackages implements ProgressCheckFactory {
             return Subpackages.this.getClass().getSimpleName();
         }
 
+        @Override
+        public Object saveCheckpoint() {
+            return collector.saveCheckpoint();
+        }
+
+        @Override
+        public void restoreCheckpoint(final Object checkpoint) {
+            collector.restoreCheckpoint(checkpoint);
+        }
+
+        @Override
+        public boolean isMetadataOnly() {
+            return true;
+        }
+
         @Override
         public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
             if (denyAll) {
@@ -81,15 +97,7 @@ public class Subpackages implements ProgressCheckFactory {
                         String.format("subpackage %s included by %s. no subpackages are allowed.",
                                 packageId, parentId), packageId));
             } else {
-                Rule lastMatch = Rule.fuzzyDefaultAllow(rules);
-                for (Rule rule : rules) {
-                    System.out.printf("packageId: %s, pattern: %s, matches: %s\n", packageId.toString(),
-                            rule.getPattern().pattern(), rule.matches(packageId.toString()));
-
-                    if (rule.matches(packageId.toString())) {
-                        lastMatch = rule;
-                    }
-                }
+                Rule lastMatch = rules.lastMatch(packageId.toString());
 
                 if (lastMatch.isDeny()) {
                     reportViolation(new SimpleViolation(Violation.Severity.MAJOR,
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.checks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+
+/**
+ * Indexes the {@link PathFilterSet} roots of many package {@link WorkspaceFilter}s in a path trie, so that finding the
+ * filters which contain a path only calls {@link WorkspaceFilter#contains(String)} for the packages that have a filter
+ * root at or above that path. Filters other than {@link DefaultWorkspaceFilter} may not honor their filter set roots,
+ * and are always checked.
+ */
+final class WorkspaceFilterIndex {
+    private final Map<PackageId, WorkspaceFilter> filters = new LinkedHashMap<>();
+    private final List<PackageId> ordered = new ArrayList<>();
+    private final BitSet unindexed = new BitSet();
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * Add the workspace filter for a package, replacing any filter previously added for the same package id.
+     *
+     * @param packageId the package id
+     * @param filter    the package workspace filter
+     */
+    void put(final PackageId packageId, final WorkspaceFilter filter) {
+        if (filters.containsKey(packageId)) {
+            filters.put(packageId, filter);
+            rebuild();
+        } else {
+            filters.put(packageId, filter);
+            index(packageId, filter);
+        }
+    }
+
+    WorkspaceFilter get(final PackageId packageId) {
+        return filters.get(packageId);
+    }
+
+    /**
+     * Copy the indexed workspace filters.
+     *
+     * @return the workspace filters by package id, in the order they were added
+     */
+    Map<PackageId, WorkspaceFilter> getFilters() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(filters));
+    }
+
+    void clear() {
+        filters.clear();
+        ordered.clear();
+        unindexed.clear();
+        root.children.clear();
+        root.ordinals.clear();
+    }
+
+    /**
+     * Find the packages, other than the excluded package, whose workspace filters contain the path.
+     *
+     * @param path    the path to look up
+     * @param exclude the current package id to exclude
+     * @return the matching package ids, in the order they were added
+     */
+    List<PackageId> findContaining(final String path, final PackageId exclude) {
+        final BitSet candidates = (BitSet) unindexed.clone();
+        TrieNode node = root;
+        candidates.or(node.ordinals);
+        if (path.startsWith("/")) {
+            int start = 1;
+            while (node != null && start < path.length()) {
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = path.length();
+                }
+                node = node.children.get(path.substring(start, end));
+                if (node != null) {
+                    candidates.or(node.ordinals);
+                }
+                start = end + 1;
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<PackageId> containing = new ArrayList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final PackageId packageId = ordered.get(i);
+            if (!packageId.equals(exclude) && filters.get(packageId).contains(path)) {
+                containing.add(packageId);
+            }
+        }
+        return containing;
+    }
+
+    private void rebuild() {
+        final Map<PackageId, WorkspaceFilter> copy = new LinkedHashMap<>(filters);
+        clear();
+        for (Map.Entry<PackageId, WorkspaceFilter> entry : copy.entrySet()) {
+            filters.put(entry.getKey(), entry.getValue());
+            index(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void index(final PackageId packageId, final WorkspaceFilter filter) {
+        final int ordinal = ordered.size();
+        ordered.add(packageId);
+        if (!(filter instanceof DefaultWorkspaceFilter)) {
+            unindexed.set(ordinal);
+            return;
+        }
+        for (PathFilterSet filterSet : filter.getFilterSets()) {
+            final String filterRoot = filterSet.getRoot();
+            if (filterRoot == null || !filterRoot.startsWith("/")) {
+                unindexed.set(ordinal);
+                return;
+            }
+        }
+        for (PathFilterSet filterSet : filter.getFilterSets()) {
+            TrieNode node = root;
+            for (String segment : filterSet.getRoot().split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.children.computeIfAbsent(segment, key -> new TrieNode());
+                }
+            }
+            node.ordinals.set(ordinal);
+        }
+    }
+
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private final BitSet ordinals = new BitSet();
+    }
+}
@@ -38,29 +38,38 @@ public class ItemFacade<J extends Item, S extends Session> implements Item {
         this.session = session;
     }
 
+    /**
+     * Get the wrapped item. Subclasses which look up the item lazily override this.
+     *
+     * @return the wrapped item
+     */
+    protected J getDelegate() {
+        return delegate;
+    }
+
     @Override
     public String getPath() throws RepositoryException {
-        return delegate.getPath();
+        return getDelegate().getPath();
     }
 
     @Override
     public String getName() throws RepositoryException {
-        return delegate.getName();
+        return getDelegate().getName();
     }
 
     @Override
     public Item getAncestor(int depth) throws RepositoryException {
-        return ItemFacade.ensureBestWrapper(delegate.getAncestor(depth), session);
+        return ItemFacade.ensureBestWrapper(getDelegate().getAncestor(depth), session);
     }
 
     @Override
     public Node getParent() throws RepositoryException {
-        return NodeFacade.wrap(delegate.getParent(), session);
+        return NodeFacade.wrap(getDelegate().getParent(), session);
     }
 
     @Override
     public int getDepth() throws RepositoryException {
-        return delegate.getDepth();
+        return getDelegate().getDepth();
     }
 
     @Override
@@ -70,27 +79,27 @@ public class ItemFacade<J extends Item, S extends Session> implements Item {
 
     @Override
     public boolean isNode() {
-        return delegate.isNode();
+        return getDelegate().isNode();
     }
 
     @Override
     public boolean isNew() {
-        return delegate.isNew();
+        return getDelegate().isNew();
     }
 
     @Override
     public boolean isModified() {
-        return delegate.isModified();
+        return getDelegate().isModified();
     }
 
     @Override
     public boolean isSame(Item otherItem) throws RepositoryException {
-        return delegate.isSame(unwrap(otherItem));
+        return getDelegate().isSame(unwrap(otherItem));
     }
 
     @Override
     public void accept(ItemVisitor visitor) throws RepositoryException {
-        delegate.accept(new ItemWrappingVisitor<>(visitor, session));
+        getDelegate().accept(new ItemWrappingVisitor<>(visitor, session));
     }
 
     @Override
@@ -122,7 +131,7 @@ public class ItemFacade<J extends Item, S extends Session> implements Item {
 
     public static Item unwrap(Item item) {
         if (item instanceof ItemFacade) {
-            return ((ItemFacade) item).delegate;
+            return ((ItemFacade<?, ?>) item).getDelegate();
         } else {
             return item;
         }
@@ -21,6 +21,7 @@ import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 
+import net.adamcin.oakpal.core.jcrfacade.query.QueryManagerFacade;
 import net.adamcin.oakpal.core.jcrfacade.security.user.UserManagerFacade;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
@@ -35,6 +36,11 @@ class JackrabbitSessionFacade extends SessionFacade<JackrabbitSession> implement
         super(delegate, notProtected);
     }
 
+    JackrabbitSessionFacade(JackrabbitSession delegate, boolean notProtected,
+                            QueryManagerFacade.BeforeQuery beforeQuery) {
+        super(delegate, notProtected, beforeQuery);
+    }
+
     @Override
     public boolean hasPermission(final String absPath, final String... actions) throws RepositoryException {
         return delegate.hasPermission(absPath, actions);
@@ -18,6 +18,8 @@ package net.adamcin.oakpal.core.jcrfacade;
 
 import javax.jcr.Session;
 
+import net.adamcin.oakpal.core.jcrfacade.query.QueryManagerFacade;
+
 /**
  * Wraps a {@link javax.jcr.Session} to guards against writes by listeners.
  */
@@ -26,4 +28,8 @@ class JcrSessionFacade extends SessionFacade<Session> implements Session {
     JcrSessionFacade(Session delegate, boolean notProtected) {
         super(delegate, notProtected);
     }
+
+    JcrSessionFacade(Session delegate, boolean notProtected, QueryManagerFacade.BeforeQuery beforeQuery) {
+        super(delegate, notProtected, beforeQuery);
+    }
 }
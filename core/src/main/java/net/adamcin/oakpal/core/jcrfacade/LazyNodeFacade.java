@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.jcrfacade;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * A {@link NodeFacade} for a node path which only looks up the node the first time a method other than
+ * {@link #getPath()} or {@link #isNode()} is called. Checks that only look at the path of an imported node never pay
+ * for the lookup. The node must exist when the facade is created; if it has been removed by the time it is looked
+ * up, an {@link IllegalStateException} is thrown.
+ */
+public final class LazyNodeFacade<S extends Session> extends NodeFacade<Node, S> {
+
+    private final String path;
+
+    private Node node;
+
+    public LazyNodeFacade(final String path, final SessionFacade<S> session) {
+        super(null, session);
+        this.path = path;
+    }
+
+    /**
+     * Whether the node has been looked up.
+     *
+     * @return true if the node has been looked up
+     */
+    public boolean isResolved() {
+        return node != null;
+    }
+
+    @Override
+    protected Node getDelegate() {
+        if (node == null) {
+            try {
+                node = session.delegate.getNode(path);
+            } catch (final RepositoryException e) {
+                throw new IllegalStateException("Failed to look up node at " + path, e);
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean isNode() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyNodeFacade[" + path + "]";
+    }
+}
@@ -145,129 +145,129 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public Node getNode(String relPath) throws RepositoryException {
-        Node internalNode = delegate.getNode(relPath);
+        Node internalNode = getDelegate().getNode(relPath);
         return new NodeFacade<>(internalNode, session);
     }
 
     @Override
     public NodeIterator getNodes() throws RepositoryException {
-        NodeIterator internal = delegate.getNodes();
+        NodeIterator internal = getDelegate().getNodes();
         return new NodeIteratorFacade(internal, session);
     }
 
     @Override
     public NodeIterator getNodes(String namePattern) throws RepositoryException {
-        NodeIterator internal = delegate.getNodes();
+        NodeIterator internal = getDelegate().getNodes();
         return new NodeIteratorFacade(internal, session);
     }
 
     @Override
     public NodeIterator getNodes(String[] nameGlobs) throws RepositoryException {
-        NodeIterator internal = delegate.getNodes();
+        NodeIterator internal = getDelegate().getNodes();
         return new NodeIteratorFacade(internal, session);
     }
 
     @Override
     public Property getProperty(String relPath) throws RepositoryException {
-        Property internal = delegate.getProperty(relPath);
+        Property internal = getDelegate().getProperty(relPath);
         return new PropertyFacade<>(internal, session);
     }
 
     @Override
     public PropertyIterator getProperties() throws RepositoryException {
-        PropertyIterator internal = delegate.getProperties();
+        PropertyIterator internal = getDelegate().getProperties();
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public PropertyIterator getProperties(String namePattern) throws RepositoryException {
-        PropertyIterator internal = delegate.getProperties(namePattern);
+        PropertyIterator internal = getDelegate().getProperties(namePattern);
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public PropertyIterator getProperties(String[] nameGlobs) throws RepositoryException {
-        PropertyIterator internal = delegate.getProperties(nameGlobs);
+        PropertyIterator internal = getDelegate().getProperties(nameGlobs);
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public Item getPrimaryItem() throws RepositoryException {
-        return ensureBestWrapper(delegate.getPrimaryItem(), session);
+        return ensureBestWrapper(getDelegate().getPrimaryItem(), session);
     }
 
     @Override
     public String getUUID() throws RepositoryException {
-        return delegate.getUUID();
+        return getDelegate().getUUID();
     }
 
     @Override
     public String getIdentifier() throws RepositoryException {
-        return delegate.getIdentifier();
+        return getDelegate().getIdentifier();
     }
 
     @Override
     public int getIndex() throws RepositoryException {
-        return delegate.getIndex();
+        return getDelegate().getIndex();
     }
 
     @Override
     public PropertyIterator getReferences() throws RepositoryException {
-        PropertyIterator internal = delegate.getReferences();
+        PropertyIterator internal = getDelegate().getReferences();
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public PropertyIterator getReferences(String name) throws RepositoryException {
-        PropertyIterator internal = delegate.getReferences(name);
+        PropertyIterator internal = getDelegate().getReferences(name);
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public PropertyIterator getWeakReferences() throws RepositoryException {
-        PropertyIterator internal = delegate.getWeakReferences();
+        PropertyIterator internal = getDelegate().getWeakReferences();
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public PropertyIterator getWeakReferences(String name) throws RepositoryException {
-        PropertyIterator internal = delegate.getWeakReferences(name);
+        PropertyIterator internal = getDelegate().getWeakReferences(name);
         return new PropertyIteratorFacade(internal, session);
     }
 
     @Override
     public boolean hasNode(String relPath) throws RepositoryException {
-        return delegate.hasNode(relPath);
+        return getDelegate().hasNode(relPath);
     }
 
     @Override
     public boolean hasProperty(String relPath) throws RepositoryException {
-        return delegate.hasProperty(relPath);
+        return getDelegate().hasProperty(relPath);
     }
 
     @Override
     public boolean hasNodes() throws RepositoryException {
-        return delegate.hasNodes();
+        return getDelegate().hasNodes();
     }
 
     @Override
     public boolean hasProperties() throws RepositoryException {
-        return delegate.hasProperties();
+        return getDelegate().hasProperties();
     }
 
     @Override
     public NodeType getPrimaryNodeType() throws RepositoryException {
-        return delegate.getPrimaryNodeType();
+        return getDelegate().getPrimaryNodeType();
     }
 
     @Override
     public NodeType[] getMixinNodeTypes() throws RepositoryException {
-        return delegate.getMixinNodeTypes();
+        return getDelegate().getMixinNodeTypes();
     }
 
     @Override
     public boolean isNodeType(String nodeTypeName) throws RepositoryException {
-        return delegate.isNodeType(nodeTypeName);
+        return getDelegate().isNodeType(nodeTypeName);
     }
 
     @Override
@@ -287,12 +287,12 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public boolean canAddMixin(String mixinName) throws RepositoryException {
-        return delegate.canAddMixin(mixinName);
+        return getDelegate().canAddMixin(mixinName);
     }
 
     @Override
     public NodeDefinition getDefinition() throws RepositoryException {
-        return delegate.getDefinition();
+        return getDelegate().getDefinition();
     }
 
     @Override
@@ -327,12 +327,12 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public String getCorrespondingNodePath(String workspaceName) throws RepositoryException {
-        return delegate.getCorrespondingNodePath(workspaceName);
+        return getDelegate().getCorrespondingNodePath(workspaceName);
     }
 
     @Override
     public NodeIterator getSharedSet() throws RepositoryException {
-        NodeIterator internal = delegate.getSharedSet();
+        NodeIterator internal = getDelegate().getSharedSet();
         return new NodeIteratorFacade(internal, session);
     }
 
@@ -348,7 +348,7 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public boolean isCheckedOut() throws RepositoryException {
-        return delegate.isCheckedOut();
+        return getDelegate().isCheckedOut();
     }
 
     @Override
@@ -373,12 +373,12 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public VersionHistory getVersionHistory() throws RepositoryException {
-        return new VersionHistoryFacade<>(delegate.getVersionHistory(), session);
+        return new VersionHistoryFacade<>(getDelegate().getVersionHistory(), session);
     }
 
     @Override
     public Version getBaseVersion() throws RepositoryException {
-        return new VersionFacade<>(delegate.getBaseVersion(), session);
+        return new VersionFacade<>(getDelegate().getBaseVersion(), session);
     }
 
     @Override
@@ -388,7 +388,7 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public Lock getLock() throws RepositoryException {
-        Lock internal = delegate.getLock();
+        Lock internal = getDelegate().getLock();
         return new LockFacade<>(internal, session);
     }
 
@@ -399,12 +399,12 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public boolean holdsLock() throws RepositoryException {
-        return delegate.holdsLock();
+        return getDelegate().holdsLock();
     }
 
     @Override
     public boolean isLocked() throws RepositoryException {
-        return delegate.isLocked();
+        return getDelegate().isLocked();
     }
 
     @Override
@@ -414,7 +414,7 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     @Override
     public String[] getAllowedLifecycleTransistions() throws RepositoryException {
-        return delegate.getAllowedLifecycleTransistions();
+        return getDelegate().getAllowedLifecycleTransistions();
     }
 
     public static Node wrap(Node primaryItem, SessionFacade<?> session) {
@@ -431,7 +431,7 @@ public class NodeFacade<N extends Node, S extends Session> extends ItemFacade<N,
 
     public static Node unwrap(Node node) {
         if (node instanceof NodeFacade) {
-            return (Node) ((NodeFacade) node).delegate;
+            return ((NodeFacade<?, ?>) node).getDelegate();
         } else {
             return node;
         }
@@ -33,6 +33,7 @@ import javax.jcr.retention.RetentionManager;
 import javax.jcr.security.AccessControlManager;
 
 import net.adamcin.oakpal.core.ListenerReadOnlyException;
+import net.adamcin.oakpal.core.jcrfacade.query.QueryManagerFacade;
 import net.adamcin.oakpal.core.jcrfacade.retention.RetentionManagerFacade;
 import net.adamcin.oakpal.core.jcrfacade.security.AccessControlManagerFacade;
 import org.apache.jackrabbit.api.JackrabbitSession;
@@ -49,24 +50,48 @@ public abstract class SessionFacade<S extends Session> implements Session {
     private final WorkspaceFacade<S> workspace;
     private final RepositoryFacade repository;
     private boolean notProtected;
+    private final QueryManagerFacade.BeforeQuery beforeQuery;
 
     protected SessionFacade(S delegate, boolean notProtected) {
+        this(delegate, notProtected, null);
+    }
+
+    protected SessionFacade(S delegate, boolean notProtected, QueryManagerFacade.BeforeQuery beforeQuery) {
         this.delegate = delegate;
+        this.beforeQuery = beforeQuery;
         this.workspace = new WorkspaceFacade<>(delegate.getWorkspace(), this);
         this.repository = new RepositoryFacade(delegate.getRepository());
         this.notProtected = notProtected;
     }
 
     public static Session findBestWrapper(final Session session, final boolean notProtected) {
+        return findBestWrapper(session, notProtected, null);
+    }
+
+    /**
+     * Wrap the session with a facade which calls {@code beforeQuery} before each query is created through its
+     * {@link javax.jcr.query.QueryManager}.
+     *
+     * @param session      the session to wrap
+     * @param notProtected true to allow writes
+     * @param beforeQuery  the query callback, which may be null
+     * @return the wrapped session, or null if the session is null
+     */
+    public static Session findBestWrapper(final Session session, final boolean notProtected,
+                                          final QueryManagerFacade.BeforeQuery beforeQuery) {
         if (session instanceof JackrabbitSession) {
-            return new JackrabbitSessionFacade((JackrabbitSession) session, notProtected);
+            return new JackrabbitSessionFacade((JackrabbitSession) session, notProtected, beforeQuery);
         } else if (session != null) {
-            return new JcrSessionFacade(session, notProtected);
+            return new JcrSessionFacade(session, notProtected, beforeQuery);
         } else {
             return null;
         }
     }
 
+    public QueryManagerFacade.BeforeQuery getBeforeQuery() {
+        return beforeQuery;
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends Session> SessionFacade<T> wrap(final T session, final Class<T> sessionType,
                                                             final boolean notProtected) {
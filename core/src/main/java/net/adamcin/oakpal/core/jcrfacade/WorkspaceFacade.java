@@ -93,7 +93,7 @@ public class WorkspaceFacade<S extends Session> implements Workspace {
     @Override
     public QueryManager getQueryManager() throws RepositoryException {
         QueryManager internal = delegate.getQueryManager();
-        return new QueryManagerFacade<>(internal, session);
+        return new QueryManagerFacade<>(internal, session, session.getBeforeQuery());
     }
 
     @Override
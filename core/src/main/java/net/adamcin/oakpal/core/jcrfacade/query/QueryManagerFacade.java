@@ -32,14 +32,35 @@ import net.adamcin.oakpal.core.jcrfacade.NodeFacade;
 public class QueryManagerFacade<S extends Session> implements QueryManager {
     private final QueryManager delegate;
     private final SessionFacade<S> session;
+    private final BeforeQuery beforeQuery;
+
+    /**
+     * Called before each query is created through the facade, to bring the repository up to date for queries.
+     */
+    @FunctionalInterface
+    public interface BeforeQuery {
+        void beforeQuery() throws RepositoryException;
+    }
 
     public QueryManagerFacade(QueryManager delegate, SessionFacade<S> session) {
+        this(delegate, session, null);
+    }
+
+    public QueryManagerFacade(QueryManager delegate, SessionFacade<S> session, BeforeQuery beforeQuery) {
         this.delegate = delegate;
         this.session = session;
+        this.beforeQuery = beforeQuery;
+    }
+
+    private void beforeQuery() throws RepositoryException {
+        if (beforeQuery != null) {
+            beforeQuery.beforeQuery();
+        }
     }
 
     @Override
     public Query createQuery(String statement, String language) throws RepositoryException {
+        beforeQuery();
         Query internal = delegate.createQuery(statement, language);
         return new QueryFacade<>(internal, session);
     }
@@ -51,6 +72,7 @@ public class QueryManagerFacade<S extends Session> implements QueryManager {
 
     @Override
     public Query getQuery(Node node) throws RepositoryException {
+        beforeQuery();
         Query internal = delegate.getQuery(NodeFacade.unwrap(node));
         return new QueryFacade(internal, session);
     }
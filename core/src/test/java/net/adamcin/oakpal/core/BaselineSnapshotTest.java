@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class BaselineSnapshotTest {
+
+    @Test
+    public void testBaselineSnapshot() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File package10 = TestPackageUtil.prepareTestPackage("package_1.0.zip");
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+
+                final List<Boolean> forcedRootExists = new ArrayList<>();
+                ProgressCheck check = new SimpleProgressCheck() {
+                    @Override
+                    public void afterExtract(final PackageId packageId, final Session inspectSession)
+                            throws RepositoryException {
+                        forcedRootExists.add(inspectSession.nodeExists("/apps/acme/docs"));
+                    }
+                };
+
+                OakMachine machine = new OakMachine.Builder()
+                        .withBaselineSnapshot(true)
+                        .withInitStage(new InitStage.Builder().withForcedRoot("/apps/acme/docs").build())
+                        .withPreInstallPackage(package10)
+                        .withProgressChecks(check).build();
+
+                ScanResult first = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertFalse("first scan builds the baseline", first.isBaselineForked());
+                assertEquals("no time saved building the baseline", 0L, first.getSetupMillisSaved());
+
+                ScanResult second = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertTrue("second scan forks the baseline", second.isBaselineForked());
+                assertEquals("same number of reports", first.getReports().size(), second.getReports().size());
+                assertEquals("forced root exists in both scans", Arrays.asList(true, true), forcedRootExists);
+            }
+        });
+    }
+}
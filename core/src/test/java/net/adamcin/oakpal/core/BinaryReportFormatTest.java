@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.describeReports;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class BinaryReportFormatTest {
+
+    @Test
+    public void testBinaryReports() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                final PackageId pid = PackageId.fromString("my_packages:tmp_foo:1.0");
+                final List<Violation> violations = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    violations.add(new SimpleViolation(Violation.Severity.values()[i % 3], "violation " + i, pid));
+                }
+                final List<CheckReport> reports = Arrays.asList(
+                        new SimpleReport("empty", Collections.emptyList()),
+                        new SimpleReport("many", violations));
+
+                File outputDir = new File("target/test-output/binaryreports");
+                outputDir.mkdirs();
+                File jsonFile = new File(outputDir, "oakpal-summary.json");
+                File binFile = new File(outputDir, "oakpal-summary" + ReportMapper.EXTENSION_BINARY);
+                File convertedFile = new File(outputDir, "converted.json");
+                ReportMapper.writeReportsToFile(reports, jsonFile);
+                ReportMapper.convertSummaryFile(jsonFile, binFile);
+                ReportMapper.convertSummaryFile(binFile, convertedFile);
+                assertTrue("binary is smaller than json", binFile.length() < jsonFile.length() / 10);
+                assertEquals("json survives a binary round trip",
+                        describeReports(ReportMapper.readReportsFromFile(jsonFile)),
+                        describeReports(ReportMapper.readReportsFromFile(convertedFile)));
+                assertEquals("binary is detected by magic bytes",
+                        describeReports(reports), describeReports(ReportMapper.readReportsFromFile(binFile)));
+
+                ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+                ReportMapper.writeReportsToBinaryStream(reports, uncompressed, false);
+                assertEquals("uncompressed binary is readable from a stream", describeReports(reports),
+                        describeReports(ReportMapper.readReportsFromStream(
+                                new ByteArrayInputStream(uncompressed.toByteArray()))));
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.junit.Test;
+
+public class CNDCacheTest {
+
+    @Test
+    public void testCachedCnds() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                URL child = getClass().getResource("/cnds/a_child.cnd");
+                URL base = getClass().getResource("/cnds/b_base.cnd");
+                URL undeclared = getClass().getResource("/cnds/c_undeclared.cnd");
+                assertTrue("declared namespaces are parsed without a session", CNDCache.load(child).isParsed());
+                assertFalse("undeclared namespaces need a session", CNDCache.load(undeclared).isParsed());
+                assertSame("parsed cnds are cached", CNDCache.load(base), CNDCache.load(base));
+
+                for (List<URL> unordered : Arrays.asList(Arrays.asList(child, base),
+                        Arrays.asList(undeclared, child, base))) {
+                    final List<String> registered = new ArrayList<>();
+                    final DefaultErrorListener errorListener = new DefaultErrorListener();
+                    new OakMachine.Builder()
+                            .withErrorListener(errorListener)
+                            .withInitStage(new InitStage.Builder().withUnorderedCndUrls(unordered).build())
+                            .withProgressChecks(new SimpleProgressCheck() {
+                                @Override
+                                public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                                          final PackageProperties packageProperties,
+                                                          final MetaInf metaInf, final List<PackageId> subpackages)
+                                        throws RepositoryException {
+                                    for (String type : Arrays.asList("acme:Base", "acme:Child", "acme:Other")) {
+                                        if (inspectSession.getWorkspace().getNodeTypeManager().hasNodeType(type)) {
+                                            registered.add(type);
+                                        }
+                                    }
+                                }
+                            }).build().scanPackage(foo);
+                    assertEquals("no registration errors", Collections.emptyList(),
+                            new ArrayList<>(errorListener.getReportedViolations()));
+                    assertTrue("dependent types are registered regardless of order: " + registered,
+                            registered.containsAll(Arrays.asList("acme:Base", "acme:Child")));
+                    assertEquals("undeclared namespace cnd is registered by fallback",
+                            unordered.contains(undeclared), registered.contains("acme:Other"));
+                }
+            }
+        });
+    }
+}
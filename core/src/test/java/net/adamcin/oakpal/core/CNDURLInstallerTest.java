@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.junit.Test;
+
+public class CNDURLInstallerTest {
+
+    @Test
+    public void testSortedCnds() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                URL base = getClass().getResource("/cnds/b_base.cnd");
+                URL broken = getClass().getResource("/cnds/d_broken.cnd");
+
+                // a chain of supertypes deeper than any fixed number of retries, listed in reverse order, each in a
+                // CND which relies on the acme namespace declared by another CND.
+                final Path deepDir = Files.createTempDirectory("oakpal-deep-cnds");
+                final List<URL> unordered = new ArrayList<>();
+                for (int i = 8; i > 0; i--) {
+                    final Path cnd = deepDir.resolve("deep_" + i + ".cnd");
+                    Files.write(cnd, String.format("[acme:Deep%d] > %s%n", i,
+                            i > 1 ? "acme:Deep" + (i - 1) : "acme:Base").getBytes(StandardCharsets.UTF_8));
+                    unordered.add(cnd.toUri().toURL());
+                }
+                unordered.add(broken);
+                unordered.add(base);
+
+                final List<String> registered = new ArrayList<>();
+                final DefaultErrorListener errorListener = new DefaultErrorListener();
+                new OakMachine.Builder()
+                        .withErrorListener(errorListener)
+                        .withInitStage(new InitStage.Builder().withUnorderedCndUrls(unordered).build())
+                        .withProgressChecks(new SimpleProgressCheck() {
+                            @Override
+                            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                                      final PackageProperties packageProperties,
+                                                      final MetaInf metaInf, final List<PackageId> subpackages)
+                                    throws RepositoryException {
+                                for (String type : Arrays.asList("acme:Deep8", "acme:Folder", "acme:Orphan",
+                                        "acme:OrphanChild", "acme:LoopA", "acme:LoopB")) {
+                                    if (inspectSession.getWorkspace().getNodeTypeManager().hasNodeType(type)) {
+                                        registered.add(type);
+                                    }
+                                }
+                            }
+                        }).build().scanPackage(foo);
+
+                final List<String> errors = errorListener.getReportedViolations().stream()
+                        .map(Violation::getDescription).collect(Collectors.toList());
+                assertEquals("deep chain and self-referencing types are registered: " + errors,
+                        Arrays.asList("acme:Deep8", "acme:Folder"), registered);
+                assertEquals("one error per unregistered type: " + errors, 4, errors.size());
+                assertTrue("missing supertype is named: " + errors, errors.stream().anyMatch(error ->
+                        error.contains("acme:Orphan has undefined supertype acme:Missing")));
+                assertTrue("dependent type is reported: " + errors, errors.stream().anyMatch(error ->
+                        error.contains("acme:OrphanChild depends on node type acme:Orphan")));
+                assertTrue("cycle is named: " + errors, errors.stream().anyMatch(error ->
+                        error.contains("acme:LoopA has a cyclic supertype dependency: "
+                                + "acme:LoopA > acme:LoopB > acme:LoopA")));
+                assertTrue("all errors are attributed to the broken cnd: " + errors,
+                        errors.stream().allMatch(error -> error.contains(broken.toString())));
+                FileUtils.deleteDirectory(deepDir.toFile());
+            }
+        });
+    }
+}
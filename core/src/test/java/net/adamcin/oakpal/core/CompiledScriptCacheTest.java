@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CompiledScriptCacheTest {
+
+    @Test
+    public void testCompiledScript() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+                final URL scriptUrl = getClass().getResource("/subscribedHandler.js");
+                final ScriptEngine engine = new ScriptEngineManager().getEngineByExtension("js");
+                final CompiledScriptCache.Source source = CompiledScriptCache.load(scriptUrl);
+                assertSame("compiled once per content hash", CompiledScriptCache.getOrCompile(engine, source),
+                        CompiledScriptCache.getOrCompile(engine, CompiledScriptCache.load(scriptUrl)));
+                final ScriptEngine otherEngine = new ScriptEngineManager().getEngineByExtension("js");
+                final CompiledScript otherCompiled = CompiledScriptCache.getOrCompile(otherEngine, source);
+                assertNotSame("compiled again for another engine", CompiledScriptCache.getOrCompile(engine, source),
+                        otherCompiled);
+                assertSame("bound to the engine that asked for it", otherEngine, otherCompiled.getEngine());
+
+                ProgressCheck tmpCheck = ScriptProgressCheck.createScriptCheckFactory(scriptUrl)
+                        .newInstance(new JSONObject("{\"prefix\":\"/tmp\"}"));
+                ProgressCheck otherCheck = ScriptProgressCheck.createScriptCheckFactory(scriptUrl)
+                        .newInstance(new JSONObject("{\"prefix\":\"/apps\"}"));
+                assertEquals("falls back to the script file name", "subscribedHandler.js",
+                        tmpCheck.getCheckName());
+
+                new OakMachine.Builder().withProgressChecks(tmpCheck, otherCheck).build()
+                        .scanPackage(fullcoverage);
+                assertFalse("first instance sees its own config",
+                        tmpCheck.getReportedViolations().isEmpty());
+                assertTrue("second instance does not share the first instance scope",
+                        otherCheck.getReportedViolations().isEmpty());
+            }
+        });
+    }
+}
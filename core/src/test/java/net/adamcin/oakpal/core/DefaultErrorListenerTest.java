@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DefaultErrorListenerTest {
+
+    @Test
+    public void testIsCheckpointable() {
+        assertTrue("default listener is checkpointable", new DefaultErrorListener().isCheckpointable());
+        assertFalse("subclasses are not checkpointable by default", new DefaultErrorListener() {
+        }.isCheckpointable());
+        assertTrue("subclasses may opt in", new DefaultErrorListener() {
+            @Override
+            public boolean isCheckpointable() {
+                return true;
+            }
+        }.isCheckpointable());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.jcr.Binary;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.api.JackrabbitValue;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class DigestBlobStoreTest {
+
+    @Test
+    public void testWriteBlob() throws IOException {
+        final DigestBlobStore store = new DigestBlobStore(4);
+        final byte[] small = "abc".getBytes(StandardCharsets.UTF_8);
+        final byte[] large = "abcdefgh".getBytes(StandardCharsets.UTF_8);
+
+        final String smallId = store.writeBlob(new ByteArrayInputStream(small));
+        assertEquals("blob id is the digest and length", Util.sha256Hex(small) + "#3", smallId);
+        assertEquals("length from the blob id", 3L, store.getBlobLength(smallId));
+        assertArrayEquals("small content is retained", small, Util.readBytes(store.getInputStream(smallId)));
+        final byte[] buff = new byte[2];
+        assertEquals("partial read", 2, store.readBlob(smallId, 1L, buff, 0, 2));
+        assertArrayEquals("bytes from the position", "bc".getBytes(StandardCharsets.UTF_8), buff);
+        assertEquals("read past the end", -1, store.readBlob(smallId, 3L, buff, 0, 2));
+
+        final String largeId = store.writeBlob(new ByteArrayInputStream(large));
+        assertEquals("length of a discarded blob", 8L, store.getBlobLength(largeId));
+        try {
+            store.getInputStream(largeId);
+            fail("content of a discarded blob can't be read");
+        } catch (final IOException expected) {
+            // expected
+        }
+
+        assertEquals("blob ids are their own references", largeId, store.getBlobId(store.getReference(largeId)));
+        assertNull("invalid references are rejected", store.getBlobId("not-a-blob-id"));
+    }
+
+    @Test
+    public void testHashOnlyBinaries() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("hash-only")
+                        .withNodeCount(20).withFanOut(4).withBinaries(4, 20000).build();
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("hash-only.zip", spec);
+                final String binaryPath = spec.getContentRoot() + "/branch3/binary3.bin/jcr:content/jcr:data";
+
+                final List<String> full = new ArrayList<>();
+                new OakMachine.Builder().withProgressChecks(binaryCheck(binaryPath, full)).build()
+                        .scanPackage(synthetic);
+
+                final List<String> retained = new ArrayList<>();
+                new OakMachine.Builder().withHashOnlyBinaries(true).withRetainedBinarySize(32768)
+                        .withProgressChecks(binaryCheck(binaryPath, retained)).build().scanPackage(synthetic);
+
+                final List<String> hashed = new ArrayList<>();
+                new OakMachine.Builder().withHashOnlyBinaries(true).withRetainedBinarySize(1024)
+                        .withProgressChecks(binaryCheck(binaryPath, hashed)).build().scanPackage(synthetic);
+
+                final List<String> segment = new ArrayList<>();
+                new OakMachine.Builder().withHashOnlyBinaries(true).withRetainedBinarySize(1024)
+                        .withSegmentStore(true)
+                        .withProgressChecks(binaryCheck(binaryPath, segment)).build().scanPackage(synthetic);
+
+                assertEquals("full binary size", "size:20000", full.get(0));
+                final String sha256 = full.get(1).substring("content:".length());
+                assertEquals("retained binary", Arrays.asList("size:20000", full.get(1),
+                        "identity:" + sha256 + "#20000"), retained);
+                assertEquals("hashed binary size", "size:20000", hashed.get(0));
+                assertEquals("hashed binary content is discarded", "content:discarded", hashed.get(1));
+                assertEquals("hashed binary identity", "identity:" + sha256 + "#20000", hashed.get(2));
+                assertEquals("hashed binary in segment store", hashed, segment);
+            }
+
+            private ProgressCheck binaryCheck(final String binaryPath, final List<String> events) {
+                return new SimpleProgressCheck() {
+                    @Override
+                    public void afterExtract(final PackageId packageId, final Session inspectSession)
+                            throws RepositoryException {
+                        final Value value = inspectSession.getProperty(binaryPath).getValue();
+                        final Binary binary = value.getBinary();
+                        events.add("size:" + binary.getSize());
+                        try (InputStream content = binary.getStream()) {
+                            events.add("content:" + Util.sha256Hex(content));
+                        } catch (final IOException | RuntimeException e) {
+                            Throwable cause = e;
+                            while (cause.getCause() != null) {
+                                cause = cause.getCause();
+                            }
+                            if (!(cause instanceof IOException)) {
+                                throw new RepositoryException(e);
+                            }
+                            events.add("content:discarded");
+                        } finally {
+                            binary.dispose();
+                        }
+                        events.add("identity:" + ((JackrabbitValue) value).getContentIdentity());
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testHashOnlySubpackages() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage subpackage = new SyntheticPackage.Builder().withName("hash-only-sub")
+                        .withContentRoot("/tmp/hash-only-sub")
+                        .withNodeCount(8).withFanOut(2).withBinaries(2, 20000).build();
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("hash-only-parent")
+                        .withNodeCount(4).withFanOut(2).withSubpackage(subpackage).build();
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("hash-only-parent.zip", spec);
+                File subpackageFile = TestPackageUtil.prepareSyntheticPackage("hash-only-sub.zip", subpackage);
+                assertTrue("subpackage is larger than the retained size", subpackageFile.length() > 1024L);
+
+                final List<String> fullEvents = new ArrayList<>();
+                new OakMachine.Builder().withFileBackedPackages(true)
+                        .withProgressChecks(recordingCheck(fullEvents)).build().scanPackage(synthetic);
+
+                final List<String> hashedEvents = new ArrayList<>();
+                new OakMachine.Builder().withHashOnlyBinaries(true).withRetainedBinarySize(1024)
+                        .withErrorListener(new DefaultErrorListener() {
+                            @Override
+                            public void onImporterException(final Exception e, final PackageId packageId,
+                                                            final String path) {
+                                if (!(e instanceof PathNotFoundException)) {
+                                    throw new AssertionError("unexpected importer exception at " + path, e);
+                                }
+                            }
+                        })
+                        .withProgressChecks(recordingCheck(hashedEvents)).build().scanPackage(synthetic);
+
+                assertTrue("subpackage content is imported", fullEvents.stream()
+                        .anyMatch(event -> event.contains(subpackage.getContentRoot())));
+                assertEquals("subpackages larger than the retained size install from the package file",
+                        fullEvents, hashedEvents);
+            }
+        });
+    }
+}
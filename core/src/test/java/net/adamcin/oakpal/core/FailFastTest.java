@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.denyAllPaths;
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.junit.Test;
+
+public class FailFastTest {
+
+    @Test
+    public void testFailFast() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                File fooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+
+                final List<String> events = new ArrayList<>();
+                ScanResult stopped = new OakMachine.Builder()
+                        .withErrorListener(new DefaultErrorListener())
+                        .withFailFastSeverity(Violation.Severity.MAJOR)
+                        .withProgressChecks(recordingCheck(events), denyAllPaths()).build()
+                        .scanPackagesWithResult(Arrays.asList(foo, fooBar));
+                assertTrue("scan is stopped early", stopped.isStoppedEarly());
+                assertEquals("stopped after the first violation", 1,
+                        stopped.getReports().get(2).getViolations().size());
+                assertFalse("first package is not finished: " + events,
+                        events.stream().anyMatch(event -> event.startsWith("after ")));
+
+                ScanResult complete = new OakMachine.Builder()
+                        .withErrorListener(new DefaultErrorListener())
+                        .withFailFastSeverity(Violation.Severity.SEVERE)
+                        .withProgressChecks(denyAllPaths()).build()
+                        .scanPackagesWithResult(Arrays.asList(foo, fooBar));
+                assertFalse("scan below the threshold completes", complete.isStoppedEarly());
+                assertTrue("every package is scanned",
+                        complete.getReports().get(1).getViolations().size() > 2);
+            }
+        });
+    }
+}
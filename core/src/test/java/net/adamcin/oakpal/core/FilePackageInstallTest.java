@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.countUnstructured;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageManager;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.junit.Test;
+
+public class FilePackageInstallTest {
+
+    @Test
+    public void testSubpackageOrder() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage.Builder parent = new SyntheticPackage.Builder().withName("ordered")
+                        .withNodeCount(4).withFanOut(2);
+                for (String[] groupName : new String[][]{{"zeta", "sub"}, {"alpha", "sub-extra"}, {"alpha", "sub"},
+                        {"mid", "sub"}}) {
+                    parent.withSubpackage(new SyntheticPackage.Builder().withGroup(groupName[0])
+                            .withName(groupName[1]).withContentRoot("/tmp/" + groupName[0] + "/" + groupName[1])
+                            .withNodeCount(3).withFanOut(2).build());
+                }
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("ordered.zip", parent.build());
+
+                final List<String> uploaded = new ArrayList<>();
+                new OakMachine.Builder().withErrorListener(new DefaultErrorListener())
+                        .withProgressChecks(orderCheck(uploaded)).build().scanPackage(synthetic);
+
+                final List<String> fileBacked = new ArrayList<>();
+                new OakMachine.Builder().withErrorListener(new DefaultErrorListener()).withFileBackedPackages(true)
+                        .withProgressChecks(orderCheck(fileBacked)).build().scanPackage(synthetic);
+
+                assertEquals("subpackages are not extracted in archive order",
+                        "before:oakpal-synthetic:ordered:1.0[alpha:sub:1.0, alpha:sub-extra:1.0, mid:sub:1.0, "
+                                + "zeta:sub:1.0]", uploaded.get(0));
+                assertEquals("same subpackage order as uploaded packages", uploaded, fileBacked);
+            }
+        });
+    }
+
+    @Test
+    public void testUncoveredSubpackages() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage covered = new SyntheticPackage.Builder().withName("covered")
+                        .withContentRoot("/tmp/covered").withNodeCount(3).withFanOut(2).build();
+                SyntheticPackage uncovered = new SyntheticPackage.Builder().withName("uncovered")
+                        .withContentRoot("/tmp/uncovered").withNodeCount(3).withFanOut(2).build();
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("partly-covered")
+                        .withNodeCount(4).withFanOut(2).withSubpackage(covered).withSubpackage(uncovered).build();
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("partly-covered.zip", spec);
+                File partlyCovered = new File(synthetic.getParentFile(), "partly-covered-filter.zip");
+                removeFilterRoot(synthetic, partlyCovered, uncovered.getSubpackagePath());
+
+                final PackageManager manager = new DefaultPackagingService().getPackageManager();
+                try (FilePackageInstall install = FilePackageInstall.open(manager, partlyCovered)) {
+                    final ImportOptions options = new ImportOptions();
+                    assertEquals("only the covered subpackage is extracted",
+                            Collections.singletonList(PackageId.fromString("oakpal-synthetic:covered:1.0")),
+                            install.extractSubpackages(options));
+                    assertFalse("covered subpackage is excluded from the import",
+                            options.getFilter().contains(covered.getSubpackagePath()));
+                }
+            }
+        });
+    }
+
+    private static void removeFilterRoot(final File source, final File target, final String root)
+            throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(source));
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if ("META-INF/vault/filter.xml".equals(entry.getName())) {
+                    final String filter = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+                    out.write(filter.replace("<filter root=\"" + root + "\"/>", "")
+                            .getBytes(StandardCharsets.UTF_8));
+                } else {
+                    IOUtils.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static ProgressCheck orderCheck(final List<String> events) {
+        return new SimpleProgressCheck() {
+            @Override
+            public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+                events.add("identify:" + packageId);
+            }
+
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) {
+                events.add("before:" + packageId + subpackages);
+            }
+        };
+    }
+
+    @Test
+    public void testFileBackedPackages() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage sub = new SyntheticPackage.Builder().withName("file-backed-sub")
+                        .withNodeCount(10).withFanOut(3).build();
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("file-backed")
+                        .withNodeCount(50).withFanOut(4).withBinaries(2, 1024)
+                        .withSubpackage(sub).build();
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("file-backed.zip", spec);
+
+                final List<String> uploaded = new ArrayList<>();
+                new OakMachine.Builder().withErrorListener(new DefaultErrorListener())
+                        .withProgressChecks(eventCheck(uploaded, sub)).build().scanPackage(synthetic);
+
+                final List<String> events = new ArrayList<>();
+                final DefaultErrorListener errorListener = new DefaultErrorListener();
+                new OakMachine.Builder().withErrorListener(errorListener).withFileBackedPackages(true)
+                        .withProgressChecks(eventCheck(events, sub)).build().scanPackage(synthetic);
+
+                assertEquals("no errors", Collections.emptyList(),
+                        new ArrayList<>(errorListener.getReportedViolations()));
+                assertTrue("uploaded packages are stored: " + uploaded, uploaded.contains("stored:true"));
+                assertTrue("uploaded subpackage is imported: " + uploaded,
+                        uploaded.contains("imported:" + sub.getSubpackagePath() + "/jcr:content"));
+                assertEquals("same events without the package binaries",
+                        uploaded.stream().filter(event -> !event.startsWith("imported:/etc/packages"))
+                                .map(event -> event.equals("stored:true") ? "stored:false" : event)
+                                .collect(Collectors.toList()), events);
+            }
+
+            private ProgressCheck eventCheck(final List<String> events, final SyntheticPackage sub) {
+                return new SimpleProgressCheck() {
+                    @Override
+                    public void identifyPackage(final PackageId packageId, final File file) {
+                        events.add("identify:" + packageId);
+                    }
+
+                    @Override
+                    public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+                        events.add("identify:" + packageId + "<" + parentId);
+                    }
+
+                    @Override
+                    public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                              final PackageProperties packageProperties, final MetaInf metaInf,
+                                              final List<PackageId> subpackages) {
+                        events.add("before:" + packageId + subpackages);
+                    }
+
+                    @Override
+                    public void importedPath(final PackageId packageId, final String path, final Node node) {
+                        if (path.startsWith("/etc/packages")) {
+                            events.add("imported:" + path);
+                        }
+                    }
+
+                    @Override
+                    public void afterExtract(final PackageId packageId, final Session inspectSession)
+                            throws RepositoryException {
+                        events.add("after:" + packageId + ":" + countUnstructured(inspectSession.getRootNode()));
+                        if (packageId.getName().equals(sub.getName())) {
+                            events.add("stored:" + inspectSession.nodeExists(sub.getSubpackagePath()));
+                        }
+                    }
+                };
+            }
+        });
+    }
+}
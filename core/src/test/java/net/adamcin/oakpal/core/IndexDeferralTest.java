@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class IndexDeferralTest {
+
+    @Test
+    public void testDeferredIndexing() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                File fooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+
+                final List<String> synchronous = new ArrayList<>();
+                new OakMachine.Builder()
+                        .withErrorListener(new DefaultErrorListener())
+                        .withProgressChecks(indexCheck(synchronous)).build().scanPackages(Arrays.asList(foo, fooBar));
+
+                final List<String> events = new ArrayList<>();
+                final DefaultErrorListener errorListener = new DefaultErrorListener();
+                new OakMachine.Builder()
+                        .withErrorListener(errorListener)
+                        .withDeferredIndexing(true)
+                        .withProgressChecks(indexCheck(events)).build().scanPackages(Arrays.asList(foo, fooBar));
+
+                assertEquals("no errors", Collections.emptyList(),
+                        new ArrayList<>(errorListener.getReportedViolations()));
+                assertTrue("query finds the imported nodes: " + synchronous, synchronous.contains("rows:4"));
+                assertEquals("indexes are deferred until the first query, except unique indexes",
+                        Arrays.asList("nodetype:disabled", "uuid:property",
+                                "nodetype:disabled", "uuid:property",
+                                "rows:4", "nodetype:property"), events);
+            }
+
+            private ProgressCheck indexCheck(final List<String> events) {
+                return new SimpleProgressCheck() {
+                    @Override
+                    public void afterExtract(final PackageId packageId, final Session inspectSession)
+                            throws RepositoryException {
+                        events.add("nodetype:" + indexType(inspectSession, "nodetype"));
+                        events.add("uuid:" + indexType(inspectSession, "uuid"));
+                        if (packageId.getName().equals("tmp_foo_bar")) {
+                            final QueryResult result = inspectSession.getWorkspace().getQueryManager()
+                                    .createQuery("select * from [sling:OrderedFolder]", Query.JCR_SQL2)
+                                    .execute();
+                            events.add("rows:" + result.getNodes().getSize());
+                            inspectSession.refresh(true);
+                            events.add("nodetype:" + indexType(inspectSession, "nodetype"));
+                        }
+                    }
+                };
+            }
+
+            private String indexType(final Session session, final String index) throws RepositoryException {
+                return session.getNode("/oak:index/" + index).getProperty("type").getString();
+            }
+        });
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.core.checks.Subpackages;
+import net.adamcin.oakpal.testing.SyntheticPackage;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class PackageMetadataScannerTest {
+
+    @Test
+    public void testIsMetadataOnly() throws Exception {
+        final ProgressCheck subpackages = new Subpackages().newInstance(new JSONObject());
+        assertTrue("metadata-only check", PackageMetadataScanner.isMetadataOnly(
+                Collections.singletonList(subpackages)));
+        assertFalse("a check which reads the repository", PackageMetadataScanner.isMetadataOnly(
+                Arrays.asList(subpackages, new SimpleProgressCheck())));
+        assertFalse("no checks", PackageMetadataScanner.isMetadataOnly(Collections.emptyList()));
+    }
+
+    @Test
+    public void testScanPackages() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                final List<File> files = prepareFiles();
+
+                final List<String> full = new ArrayList<>();
+                new OakMachine.Builder().withProgressChecks(metadataCheck(full)).build().scanPackages(files);
+
+                final List<String> fast = new ArrayList<>();
+                new PackageMetadataScanner.Builder().withMaxThreads(2)
+                        .withProgressChecks(metadataCheck(fast)).build().scanPackages(files);
+
+                assertTrue("full scan has a session: " + full, full.contains("session:true"));
+                assertEquals("metadata-only scan has the same events without a session",
+                        full.stream().map(event -> event.equals("session:true") ? "session:false" : event)
+                                .collect(Collectors.toList()), fast);
+                assertTrue("subpackage is identified: " + fast,
+                        fast.contains("identify:oakpal-synthetic:metadata-sub:1.0<oakpal-synthetic:metadata:1.0"));
+
+                final ProgressCheck denyAll = new Subpackages().newInstance(new JSONObject("{\"denyAll\":true}"));
+                final List<CheckReport> fullReports = new OakMachine.Builder()
+                        .withErrorListener(new DefaultErrorListener())
+                        .withProgressChecks(denyAll).build().scanPackages(files);
+                final List<CheckReport> fastReports = new PackageMetadataScanner.Builder().withMaxThreads(2)
+                        .withProgressChecks(denyAll).build().scanPackages(files);
+                assertEquals("same subpackage violations", 1, fastReports.get(1).getViolations().size());
+                assertEquals("same subpackage violations",
+                        fullReports.get(1).getViolations().iterator().next().getDescription(),
+                        fastReports.get(1).getViolations().iterator().next().getDescription());
+            }
+        });
+    }
+
+    @Test
+    public void testOakMachineMetadataOnlyScan() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                final List<File> files = prepareFiles();
+
+                final List<String> enabled = new ArrayList<>();
+                new OakMachine.Builder().withMetadataOnlyScan(true)
+                        .withProgressChecks(metadataCheck(enabled)).build().scanPackages(files);
+                assertTrue("enabled metadata-only scan has no session: " + enabled,
+                        enabled.contains("session:false") && !enabled.contains("session:true"));
+
+                final List<String> failFast = new ArrayList<>();
+                new OakMachine.Builder().withMetadataOnlyScan(true)
+                        .withFailFastSeverity(Violation.Severity.SEVERE)
+                        .withProgressChecks(metadataCheck(failFast)).build().scanPackages(files);
+                assertFalse("fail-fast scans use a repository: " + failFast, failFast.contains("session:false"));
+
+                final List<String> mixed = new ArrayList<>();
+                new OakMachine.Builder().withMetadataOnlyScan(true)
+                        .withProgressChecks(metadataCheck(mixed), new SimpleProgressCheck()).build()
+                        .scanPackages(files);
+                assertFalse("checks which read the repository need one: " + mixed, mixed.contains("session:false"));
+            }
+        });
+    }
+
+    private static List<File> prepareFiles() throws Exception {
+        SyntheticPackage sub = new SyntheticPackage.Builder().withName("metadata-sub")
+                .withNodeCount(10).withFanOut(3).build();
+        SyntheticPackage spec = new SyntheticPackage.Builder().withName("metadata")
+                .withNodeCount(30).withFanOut(4).withSubpackage(sub).build();
+        return Arrays.asList(
+                TestPackageUtil.prepareSyntheticPackage("metadata.zip", spec),
+                TestPackageUtil.prepareTestPackage("tmp_foo.zip"),
+                TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip"));
+    }
+
+    private static ProgressCheck metadataCheck(final List<String> events) {
+        return new SimpleProgressCheck() {
+            @Override
+            public boolean isMetadataOnly() {
+                return true;
+            }
+
+            @Override
+            public void identifyPackage(final PackageId packageId, final File file) {
+                events.add("identify:" + packageId + "@" + file.getName());
+            }
+
+            @Override
+            public void identifySubpackage(final PackageId packageId, final PackageId parentId) {
+                events.add("identify:" + packageId + "<" + parentId);
+            }
+
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) {
+                events.add("before:" + packageId + subpackages + packageProperties.getId()
+                        + metaInf.getFilter().getFilterSets().size());
+                events.add("session:" + (inspectSession != null));
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class PathInterestsTest {
+
+    @Test
+    public void testPathSubscriber() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+
+                final List<String> allEvents = new ArrayList<>();
+                new OakMachine.Builder().withProgressChecks(recordingCheck(allEvents)).build()
+                        .scanPackage(fullcoverage);
+
+                final PathInterests interests = new PathInterests.Builder()
+                        .withPrefix("/apps/")
+                        .withPattern(Pattern.compile("/etc/.*"))
+                        .build();
+                assertTrue("prefix includes itself", interests.includes("/apps"));
+                assertTrue("prefix includes descendants", interests.includes("/apps/acme"));
+                assertFalse("prefix excludes siblings", interests.includes("/apps2"));
+                assertFalse("pattern must match the whole path", interests.includes("/etc"));
+
+                final List<String> expected = allEvents.stream()
+                        .filter(event -> !event.startsWith("imported ") && !event.startsWith("deleted ")
+                                || interests.includes(event.substring(event.indexOf(' ') + 1)))
+                        .collect(Collectors.toList());
+                assertTrue("some events are filtered", expected.size() < allEvents.size());
+
+                final List<String> subscribedEvents = new ArrayList<>();
+                final List<String> unfilteredEvents = new ArrayList<>();
+                new OakMachine.Builder()
+                        .withProgressChecks(subscribingCheck(subscribedEvents, interests),
+                                recordingCheck(unfilteredEvents)).build()
+                        .scanPackage(fullcoverage);
+                assertEquals("only subscribed paths", expected, subscribedEvents);
+                assertEquals("other checks get every path", allEvents, unfilteredEvents);
+
+                ProgressCheck script = ScriptProgressCheck.createScriptCheckFactory(
+                        getClass().getResource("/subscribedHandler.js"))
+                        .newInstance(new JSONObject("{\"prefix\":\"/tmp/fullcoverage\"}"));
+                List<String> scriptPaths = new OakMachine.Builder().withProgressChecks(script).build()
+                        .scanPackage(fullcoverage).get(1).getViolations().stream()
+                        .map(violation -> violation.getDescription().substring("imported ".length()))
+                        .collect(Collectors.toList());
+                assertFalse("script receives subscribed paths", scriptPaths.isEmpty());
+                assertTrue("script only receives subscribed paths", scriptPaths.stream()
+                        .allMatch(path -> PathInterests.isWithin(path, "/tmp/fullcoverage")));
+            }
+        });
+    }
+
+    private static ProgressCheck subscribingCheck(final List<String> events, final PathInterests interests) {
+        final ProgressCheck recording = recordingCheck(events);
+        class SubscribingCheck extends ProgressCheckAliasFacade implements PathSubscriber {
+            SubscribingCheck() {
+                super(recording, null);
+            }
+
+            @Override
+            public PathInterests getPathInterests() {
+                return interests;
+            }
+        }
+        return new SubscribingCheck();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.denyAllPaths;
+import static net.adamcin.oakpal.core.TestChecks.describeReports;
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class PrefixCheckpointsTest {
+
+    @Test
+    public void testPrefixCheckpoints() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                File fooBar = TestPackageUtil.prepareTestPackage("tmp_foo_bar.zip");
+                File fooBarTest = TestPackageUtil.prepareTestPackage("tmp_foo_bar_test.zip");
+
+                OakMachine machine = new OakMachine.Builder().withPrefixCheckpoints(true)
+                        .withProgressChecks(denyAllPaths(),
+                                new net.adamcin.oakpal.core.checks.Overlaps().newInstance(new JSONObject()))
+                        .build();
+
+                ScanResult first = machine.scanPackagesWithResult(Arrays.asList(foo, fooBar, fooBarTest));
+                assertEquals("first scan installs every package", 0, first.getResumedPackageCount());
+
+                ScanResult same = machine.scanPackagesWithResult(Arrays.asList(foo, fooBar, fooBarTest));
+                assertEquals("identical scan resumes after the last package", 3, same.getResumedPackageCount());
+                assertEquals("identical scan has the same violations",
+                        describeReports(first.getReports()), describeReports(same.getReports()));
+
+                ScanResult changedTail = machine.scanPackagesWithResult(Arrays.asList(foo, fooBarTest));
+                assertEquals("changed tail resumes after the first package", 1,
+                        changedTail.getResumedPackageCount());
+                List<CheckReport> expected = new OakMachine.Builder()
+                        .withProgressChecks(denyAllPaths(),
+                                new net.adamcin.oakpal.core.checks.Overlaps().newInstance(new JSONObject()))
+                        .build().scanPackages(Arrays.asList(foo, fooBarTest));
+                assertFalse("overlap is reported", describeReports(expected).get(2).isEmpty());
+                assertEquals("resumed scan has the same violations as a full scan",
+                        describeReports(expected), describeReports(changedTail.getReports()));
+
+                OakMachine unsupported = new OakMachine.Builder().withPrefixCheckpoints(true)
+                        .withProgressChecks(recordingCheck(new ArrayList<>())).build();
+                unsupported.scanPackages(Arrays.asList(foo, fooBar));
+                assertEquals("checks which are not checkpointable disable resuming", 0,
+                        unsupported.scanPackagesWithResult(Arrays.asList(foo, fooBar)).getResumedPackageCount());
+            }
+        });
+    }
+}
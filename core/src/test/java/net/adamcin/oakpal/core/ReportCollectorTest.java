@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+public class ReportCollectorTest {
+
+    @Test
+    public void testHighestReportedSeverity() {
+        final ReportCollector collector = new ReportCollector.Builder().withMaxViolations(1).build();
+        assertNull("nothing reported", collector.getHighestReportedSeverity());
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "minor"));
+        final Object checkpoint = collector.saveCheckpoint();
+        collector.reportViolation(new SimpleViolation(Violation.Severity.SEVERE, "severe"));
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MAJOR, "major"));
+        assertEquals("omitted violations count", Violation.Severity.SEVERE, collector.getHighestReportedSeverity());
+        assertEquals("same as the reported violations", Violation.Severity.SEVERE,
+                ((ViolationReporter) collector::getReportedViolations).getHighestReportedSeverity());
+
+        collector.restoreCheckpoint(checkpoint);
+        assertEquals("restored from the checkpoint", Violation.Severity.MINOR,
+                collector.getHighestReportedSeverity());
+        collector.clearViolations();
+        assertNull("cleared", collector.getHighestReportedSeverity());
+    }
+
+    @Test
+    public void testReportedViolationsAreSnapshots() {
+        final ReportCollector collector = new ReportCollector();
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "first"));
+        final Collection<Violation> reported = collector.getReportedViolations();
+        assertSame("snapshot is kept until the next report", reported, collector.getReportedViolations());
+        final Object checkpoint = collector.saveCheckpoint();
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "second"));
+        assertEquals("snapshot is not changed by later reports", 1, reported.size());
+        assertEquals("new snapshot after a report", 2, collector.getReportedViolations().size());
+
+        collector.restoreCheckpoint(checkpoint);
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "third"));
+        assertEquals("restored collector appends after the checkpoint", "third",
+                collector.getReportedViolations().stream().skip(1).findFirst().get().getDescription());
+        assertEquals("snapshot is not changed by restored reports", 1, reported.size());
+        collector.clearViolations();
+        collector.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "fourth"));
+        assertEquals("snapshot is not changed after clearing", "first", reported.iterator().next().getDescription());
+
+        final ReportCollector aggregating = new ReportCollector.Builder().withAggregation(true).build();
+        aggregating.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "denied"), "rule", "/a");
+        final Violation group = aggregating.getReportedViolations().iterator().next();
+        final String description = group.getDescription();
+        aggregating.reportViolation(new SimpleViolation(Violation.Severity.MINOR, "denied"), "rule", "/b");
+        assertEquals("copied groups are not changed by later reports", description, group.getDescription());
+        assertNotEquals("the collector counts the later report", description,
+                aggregating.getReportedViolations().iterator().next().getDescription());
+    }
+}
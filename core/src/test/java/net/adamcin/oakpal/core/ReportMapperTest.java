@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ReportMapperTest {
+
+    @Test
+    public void testStreamingReports() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                final PackageId pid = PackageId.fromString("my_packages:tmp_foo:1.0");
+                final List<CheckReport> reports = Arrays.asList(
+                        new SimpleReport("empty", Collections.emptyList()),
+                        new SimpleReport("check \"quoted\"", Arrays.asList(
+                                new SimpleViolation(Violation.Severity.MINOR, "first"),
+                                new SimpleViolation(Violation.Severity.MAJOR, "second", pid))));
+
+                StringWriter json = new StringWriter();
+                ReportMapper.writeReportsToWriter(reports, json);
+                assertEquals("stream is valid json", 2,
+                        new JSONObject(json.toString()).getJSONArray(ReportMapper.KEY_REPORTS).length());
+
+                final List<String> events = new ArrayList<>();
+                ReportMapper.readReports(new StringReader(json.toString()), new ReportVisitor() {
+                    @Override
+                    public void startReport(final String checkName) {
+                        events.add("start " + checkName);
+                    }
+
+                    @Override
+                    public void visitViolation(final Violation violation) {
+                        events.add(violation.getSeverity() + " " + violation.getDescription()
+                                + " " + violation.getPackages());
+                    }
+
+                    @Override
+                    public void endReport(final String checkName, final CheckMetrics metrics) {
+                        events.add("end " + checkName);
+                    }
+                });
+                assertEquals("visited in document order", Arrays.asList("start empty", "end empty",
+                        "start check \"quoted\"", "MINOR first []", "MAJOR second [" + pid + "]",
+                        "end check \"quoted\""), events);
+
+                final List<CheckReport> trailingName = ReportMapper.readReportsFromReader(new StringReader(
+                        "{\"reports\":[{\"violations\":[{\"severity\":\"SEVERE\",\"description\":\"x\"}],"
+                                + "\"unknown\":{\"a\":[1,2]},\"checkName\":\"late\"}],\"extra\":true}"));
+                assertEquals("check name may follow violations", "late", trailingName.get(0).getCheckName());
+                assertEquals("violations are held until the name is read", Violation.Severity.SEVERE,
+                        trailingName.get(0).getViolations().iterator().next().getSeverity());
+            }
+        });
+    }
+}
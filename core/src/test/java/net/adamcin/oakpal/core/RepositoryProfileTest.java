@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.junit.Test;
+
+public class RepositoryProfileTest {
+
+    @Test
+    public void testRepositoryProfiles() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File foo = TestPackageUtil.prepareTestPackage("tmp_foo.zip");
+                for (RepositoryProfile profile : Arrays.asList(RepositoryProfile.FULL, RepositoryProfile.LEAN,
+                        RepositoryProfile.fromName("custom:"))) {
+                    final List<Boolean> referenceIndex = new ArrayList<>();
+                    final DefaultErrorListener errorListener = new DefaultErrorListener();
+                    List<CheckReport> reports = new OakMachine.Builder()
+                            .withErrorListener(errorListener)
+                            .withRepositoryProfile(profile)
+                            .withProgressChecks(new SimpleProgressCheck() {
+                                @Override
+                                public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                                          final PackageProperties packageProperties,
+                                                          final MetaInf metaInf, final List<PackageId> subpackages)
+                                        throws RepositoryException {
+                                    referenceIndex.add(inspectSession.nodeExists("/oak:index/reference"));
+                                }
+                            }).build().scanPackage(foo);
+                    assertEquals("package installs with profile " + profile.getName(), Collections.emptyList(),
+                            new ArrayList<>(errorListener.getReportedViolations()));
+                    assertEquals("reports for profile " + profile.getName(), 2, reports.size());
+                    assertEquals("reference index only with the full profile",
+                            Collections.singletonList(profile == RepositoryProfile.FULL), referenceIndex);
+                }
+
+                assertSame(RepositoryProfile.LEAN, RepositoryProfile.fromName(" Lean "));
+                assertEquals(EnumSet.of(RepositoryProfile.Feature.VERSIONING,
+                        RepositoryProfile.Feature.REFERENCE_INDEX),
+                        ((FeatureRepositoryProfile) RepositoryProfile.fromName("custom:versioning,reference_index"))
+                                .getFeatures());
+                try {
+                    RepositoryProfile.fromName("minimal");
+                    fail("unknown profile names are rejected");
+                } catch (final IllegalArgumentException expected) {
+                    // expected
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.denyAllPaths;
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.junit.Test;
+
+public class ScanCacheTest {
+
+    @Test
+    public void testFingerprintImplResources() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File scriptDir = new File("target/test-output/fingerprint-scripts");
+                ScratchSegmentStore.deleteDirectory(scriptDir);
+                File script = new File(scriptDir, "checks/fingerprinted.js");
+                script.getParentFile().mkdirs();
+
+                CheckSpec scriptSpec = new CheckSpec();
+                scriptSpec.setName("fingerprinted");
+                scriptSpec.setImpl("checks/fingerprinted.js");
+                final List<CheckSpec> specs = Collections.singletonList(scriptSpec);
+
+                try (URLClassLoader classLoader = new URLClassLoader(new URL[]{scriptDir.toURI().toURL()}, null)) {
+                    Files.write(script.toPath(), "function importedPath() {}".getBytes(StandardCharsets.UTF_8));
+                    final String first = new ScanCache.Fingerprint().withCheckSpecs(specs, classLoader).build();
+                    assertEquals("same script, same fingerprint", first,
+                            new ScanCache.Fingerprint().withCheckSpecs(specs, classLoader).build());
+
+                    Files.write(script.toPath(), "function deletedPath() {}".getBytes(StandardCharsets.UTF_8));
+                    assertNotEquals("edited script changes the fingerprint", first,
+                            new ScanCache.Fingerprint().withCheckSpecs(specs, classLoader).build());
+                }
+
+                CheckSpec classSpec = new CheckSpec();
+                classSpec.setImpl("net.adamcin.oakpal.core.checks.Paths");
+                final List<CheckSpec> classSpecs = Collections.singletonList(classSpec);
+                try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+                    assertNotEquals("class file content is included",
+                            new ScanCache.Fingerprint().withCheckSpecs(classSpecs, classLoader).build(),
+                            new ScanCache.Fingerprint().withCheckSpecs(classSpecs).build());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testScanCache() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+                File cacheDir = new File("target/test-output/scancache");
+                ScratchSegmentStore.deleteDirectory(cacheDir);
+                ScanCache cache = new ScanCache.Builder().withDirectory(cacheDir).withMaxEntries(1).build();
+
+                final List<String> events = new ArrayList<>();
+                final String checksFingerprint = new ScanCache.Fingerprint()
+                        .withCheckSpecs(Collections.emptyList()).build();
+                OakMachine machine = new OakMachine.Builder()
+                        .withScanCache(cache, checksFingerprint)
+                        .withProgressChecks(recordingCheck(events), denyAllPaths()).build();
+
+                ScanResult first = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertFalse("first scan is not cached", first.isCached());
+                assertFalse("first scan sends events", events.isEmpty());
+                events.clear();
+
+                ScanResult second = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertTrue("second scan is cached", second.isCached());
+                assertTrue("cached scan sends no events", events.isEmpty());
+                assertEquals("same reports", first.getReports().size(), second.getReports().size());
+                for (int i = 0; i < first.getReports().size(); i++) {
+                    assertEquals("same check name", first.getReports().get(i).getCheckName(),
+                            second.getReports().get(i).getCheckName());
+                    assertEquals("same violations", first.getReports().get(i).getViolations().size(),
+                            second.getReports().get(i).getViolations().size());
+                }
+                assertEquals("one hit", 1, cache.getHitCount());
+                assertEquals("one miss", 1, cache.getMissCount());
+
+                OakMachine reconfigured = new OakMachine.Builder()
+                        .withScanCache(cache, new ScanCache.Fingerprint().withValue("other").build())
+                        .withProgressChecks(recordingCheck(events), denyAllPaths()).build();
+                assertFalse("different check fingerprint misses",
+                        reconfigured.scanPackagesWithResult(Collections.singletonList(fullcoverage)).isCached());
+                assertEquals("least recently used entry evicted", 1, cache.getEvictionCount());
+                assertEquals("one entry left", 1, cacheDir.listFiles((dir, name) -> name.endsWith(".json")).length);
+
+                final RepositoryProfile versioning = RepositoryProfile.custom("custom",
+                        EnumSet.of(RepositoryProfile.Feature.VERSIONING));
+                final RepositoryProfile references = RepositoryProfile.custom("custom",
+                        EnumSet.of(RepositoryProfile.Feature.REFERENCE_INDEX));
+                for (RepositoryProfile profile : Arrays.asList(versioning, references)) {
+                    assertFalse("profile features are part of the key: " + profile, new OakMachine.Builder()
+                            .withScanCache(cache, checksFingerprint).withRepositoryProfile(profile)
+                            .withProgressChecks(denyAllPaths()).build()
+                            .scanPackagesWithResult(Collections.singletonList(fullcoverage)).isCached());
+                }
+                assertTrue("same profile features hit", new OakMachine.Builder()
+                        .withScanCache(cache, checksFingerprint).withRepositoryProfile(references)
+                        .withProgressChecks(denyAllPaths()).build()
+                        .scanPackagesWithResult(Collections.singletonList(fullcoverage)).isCached());
+            }
+        });
+    }
+
+    @Test
+    public void testScanCacheWithMetrics() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+                File cacheDir = new File("target/test-output/scancache-metrics");
+                ScratchSegmentStore.deleteDirectory(cacheDir);
+                ScanCache cache = new ScanCache.Builder().withDirectory(cacheDir).build();
+                final String checksFingerprint = new ScanCache.Fingerprint()
+                        .withCheckSpecs(Collections.emptyList()).build();
+
+                OakMachine metered = new OakMachine.Builder()
+                        .withScanCache(cache, checksFingerprint)
+                        .withMetrics(true)
+                        .withProgressChecks(denyAllPaths()).build();
+                for (int i = 0; i < 2; i++) {
+                    ScanResult result = metered.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                    assertFalse("metered scan is never cached", result.isCached());
+                    assertTrue("metered scan has metrics", result.getMetrics().isPresent());
+                    assertTrue("metered check report has metrics", result.getReports().get(1).getMetrics().isPresent());
+                }
+                assertEquals("metered scans don't look up the cache", 0,
+                        cache.getHitCount() + cache.getMissCount());
+
+                ScanResult cached = new OakMachine.Builder()
+                        .withScanCache(cache, checksFingerprint)
+                        .withProgressChecks(denyAllPaths()).build()
+                        .scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertTrue("unmetered scan hits the stored reports", cached.isCached());
+                assertTrue("stored reports have no metrics", cached.getReports().stream()
+                        .noneMatch(report -> report.getMetrics().isPresent()));
+            }
+        });
+    }
+}
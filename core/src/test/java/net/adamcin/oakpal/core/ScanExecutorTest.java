@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ScanExecutorTest {
+
+    @Test
+    public void testScanAllAndMerge() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File package10 = TestPackageUtil.prepareTestPackage("package_1.0.zip");
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+
+                CheckSpec paths = new CheckSpec();
+                paths.setName("paths");
+                paths.setImpl("net.adamcin.oakpal.core.checks.Paths");
+                paths.setConfig(new JSONObject("{\"rules\":[{\"type\":\"deny\",\"pattern\":\"/.*\"}]}"));
+
+                List<List<File>> jobs = Arrays.asList(
+                        Collections.singletonList(fullcoverage),
+                        Collections.singletonList(package10),
+                        Arrays.asList(package10, fullcoverage));
+
+                ScanExecutor executor = new ScanExecutor.Builder()
+                        .withCheckSpecs(Collections.singletonList(paths))
+                        .withMaxThreads(3)
+                        .build();
+
+                List<ScanResult> results = executor.scanAll(jobs);
+                assertEquals("one result per job", jobs.size(), results.size());
+
+                List<CheckReport> merged = ScanExecutor.mergeReports(results);
+                assertEquals("error listener and paths reports", 2, merged.size());
+                assertEquals("paths report is second", "paths", merged.get(1).getCheckName());
+
+                int expectedViolations = results.stream()
+                        .mapToInt(result -> result.getReports().get(1).getViolations().size())
+                        .sum();
+                assertEquals("violations are concatenated", expectedViolations,
+                        merged.get(1).getViolations().size());
+
+                List<String> firstOrder = descriptions(merged.get(1));
+                List<String> secondOrder = descriptions(executor.scanAllAndMerge(jobs).get(1));
+                assertEquals("merge order is deterministic", firstOrder, secondOrder);
+            }
+        });
+    }
+
+    @Test
+    public void testMergeReportsWithoutCheckName() {
+        final PackageId packageId = PackageId.fromString("my_packages:unnamed:1.0");
+        final Violation first = new SimpleViolation(Violation.Severity.MINOR, "first", packageId);
+        final Violation second = new SimpleViolation(Violation.Severity.MINOR, "second", packageId);
+        final List<ScanResult> results = Arrays.asList(
+                new ScanResult(Arrays.asList(new SimpleReport(null, Collections.singletonList(first)),
+                        new SimpleReport("null", Collections.emptyList())), false, 0L, 0L, null, 0, false),
+                new ScanResult(Collections.singletonList(new SimpleReport(null, Collections.singletonList(second))),
+                        false, 0L, 0L, null, 0, false));
+
+        final List<CheckReport> merged = ScanExecutor.mergeReports(results);
+        assertEquals("unnamed reports are not merged with a check named null", 2, merged.size());
+        assertNull("unnamed report keeps a null check name", merged.get(0).getCheckName());
+        assertEquals("unnamed violations are merged", Arrays.asList("first", "second"), descriptions(merged.get(0)));
+        assertEquals("named report", "null", merged.get(1).getCheckName());
+    }
+
+    private static List<String> descriptions(final CheckReport report) {
+        return report.getViolations().stream().map(Violation::getDescription).collect(Collectors.toList());
+    }
+}
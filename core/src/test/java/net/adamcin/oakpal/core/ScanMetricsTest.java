@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.denyAllPaths;
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void testMetrics() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+
+                final List<String> events = new ArrayList<>();
+                final List<ScanMetrics.Phase> recordedPhases = new ArrayList<>();
+                final AtomicLong recordedImports = new AtomicLong();
+                MetricsRecorder recorder = new MetricsRecorder() {
+                    @Override
+                    public void recordCallback(final String checkName, final CheckMetrics.Callback callback,
+                                               final long nanos) {
+                        if ("recording".equals(checkName) && callback == CheckMetrics.Callback.IMPORTED_PATH) {
+                            recordedImports.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public void recordPhase(final ScanMetrics.Phase phase, final long nanos) {
+                        recordedPhases.add(phase);
+                    }
+                };
+
+                ProgressCheck recording = new ProgressCheckAliasFacade(recordingCheck(events), "recording");
+                ScanResult result = new OakMachine.Builder()
+                        .withMetricsRecorder(recorder)
+                        .withProgressChecks(recording, denyAllPaths()).build()
+                        .scanPackagesWithResult(Collections.singletonList(fullcoverage));
+
+                assertTrue("scan metrics are present", result.getMetrics().isPresent());
+                ScanMetrics metrics = result.getMetrics().get();
+                assertTrue("every phase is recorded",
+                        recordedPhases.containsAll(Arrays.asList(ScanMetrics.Phase.values())));
+                assertTrue("extract time is recorded", metrics.getPhaseNanos(ScanMetrics.Phase.EXTRACT) > 0L);
+
+                CheckMetrics recordingMetrics = metrics.getCheckMetrics("recording").get();
+                long importCount = events.stream().filter(event -> event.startsWith("imported ")).count();
+                assertEquals("importedPath invocations", importCount,
+                        recordingMetrics.getInvocationCount(CheckMetrics.Callback.IMPORTED_PATH));
+                assertEquals("recorder sees each invocation", importCount, recordedImports.get());
+                assertEquals("one beforeExtract", 1L,
+                        recordingMetrics.getInvocationCount(CheckMetrics.Callback.BEFORE_EXTRACT));
+                assertTrue("max latency is within total",
+                        recordingMetrics.getMaxNanos(CheckMetrics.Callback.IMPORTED_PATH)
+                                <= recordingMetrics.getTotalNanos(CheckMetrics.Callback.IMPORTED_PATH));
+
+                CheckReport pathsReport = result.getReports().get(2);
+                assertTrue("report carries metrics", pathsReport.getMetrics().isPresent());
+                assertEquals("violation count", pathsReport.getViolations().size(),
+                        pathsReport.getMetrics().get().getViolationCount());
+
+                StringWriter json = new StringWriter();
+                ReportMapper.writeScanResultToWriter(result, json);
+                assertTrue("phases are written", new JSONObject(json.toString())
+                        .getJSONObject(ReportMapper.KEY_METRICS).getJSONObject(ReportMapper.KEY_PHASES)
+                        .has(ScanMetrics.Phase.SAVE.getKey()));
+                List<CheckReport> readReports = ReportMapper.readReportsFromReader(new StringReader(json.toString()));
+                CheckMetrics readMetrics = readReports.get(1).getMetrics().get();
+                assertEquals("metrics survive a round trip",
+                        recordingMetrics.getTotalNanos(CheckMetrics.Callback.IMPORTED_PATH),
+                        readMetrics.getTotalNanos(CheckMetrics.Callback.IMPORTED_PATH));
+                assertFalse("no metrics for the error listener", readReports.get(0).getMetrics().isPresent());
+            }
+        });
+    }
+}
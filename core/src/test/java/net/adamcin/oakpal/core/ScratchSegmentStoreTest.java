@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static net.adamcin.oakpal.core.TestChecks.denyAllPaths;
+import static net.adamcin.oakpal.core.TestChecks.recordingCheck;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.junit.Test;
+
+public class ScratchSegmentStoreTest {
+
+    @Test
+    public void testSegmentStore() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File package10 = TestPackageUtil.prepareTestPackage("package_1.0.zip");
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+                File scratchDir = new File("target/test-output/segmentstore");
+                ScratchSegmentStore.deleteDirectory(scratchDir);
+
+                final List<String> events = new ArrayList<>();
+                OakMachine machine = new OakMachine.Builder()
+                        .withSegmentStore(true)
+                        .withSegmentStoreDirectory(scratchDir)
+                        .withSegmentCacheSize(16)
+                        .withBaselineSnapshot(true)
+                        .withInitStage(new InitStage.Builder().withForcedRoot("/apps/acme/docs").build())
+                        .withPreInstallPackage(package10)
+                        .withProgressChecks(recordingCheck(events), denyAllPaths()).build();
+
+                ScanResult first = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                File[] afterFirst = scratchDir.listFiles();
+                assertEquals("only the baseline snapshot is left after the scan",
+                        1, afterFirst != null ? afterFirst.length : 0);
+                assertTrue("baseline snapshot directory",
+                        afterFirst[0].getName().startsWith("oakpal-segmentbaseline-"));
+
+                ScanResult second = machine.scanPackagesWithResult(Collections.singletonList(fullcoverage));
+                assertTrue("second scan forks the baseline", second.isBaselineForked());
+                assertEquals("still only the baseline snapshot", 1, scratchDir.listFiles().length);
+                machine.close();
+                assertEquals("baseline snapshot is deleted on close", 0, scratchDir.listFiles().length);
+
+                final List<String> memoryEvents = new ArrayList<>();
+                List<CheckReport> memoryReports = new OakMachine.Builder()
+                        .withInitStage(new InitStage.Builder().withForcedRoot("/apps/acme/docs").build())
+                        .withPreInstallPackage(package10)
+                        .withProgressChecks(recordingCheck(memoryEvents), denyAllPaths()).build()
+                        .scanPackage(fullcoverage);
+
+                assertEquals("same events as the memory store for both scans",
+                        memoryEvents, events.subList(0, memoryEvents.size()));
+                assertEquals("same events in the forked scan",
+                        memoryEvents, events.subList(memoryEvents.size(), events.size()));
+                assertEquals("same paths violations", memoryReports.get(2).getViolations().size(),
+                        first.getReports().get(2).getViolations().size());
+                assertEquals("same paths violations when forked", memoryReports.get(2).getViolations().size(),
+                        second.getReports().get(2).getViolations().size());
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.script.ScriptEngine;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ScriptProgressCheckTest {
+
+    @Test
+    public void testGraalJs() {
+        final ScriptEngine graalJs = CompiledScriptCache.getEngineManager()
+                .getEngineByName(ScriptProgressCheck.ENGINE_NAME_GRAAL_JS);
+        assumeNotNull(graalJs);
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+                ProgressCheckFactory factory = ScriptProgressCheck.createScriptCheckFactory(
+                        ScriptProgressCheck.ENGINE_NAME_GRAAL_JS, getClass().getResource("/subscribedHandler.js"));
+                ProgressCheck check = factory.newInstance(new JSONObject("{\"prefix\":\"/tmp\"}"));
+                ProgressCheck otherCheck = factory.newInstance(new JSONObject("{\"prefix\":\"/apps\"}"));
+                assertEquals("falls back to the script file name", "subscribedHandler.js", check.getCheckName());
+
+                new OakMachine.Builder().withProgressChecks(check, otherCheck).build().scanPackage(fullcoverage);
+                List<String> descriptions = check.getReportedViolations().stream()
+                        .map(Violation::getDescription).collect(Collectors.toList());
+                assertFalse("script reports through the helper", descriptions.isEmpty());
+                assertTrue("script only sees its subscribed prefix",
+                        descriptions.stream().allMatch(description -> description.startsWith("imported /tmp")));
+                assertTrue("second instance does not share the first instance scope",
+                        otherCheck.getReportedViolations().isEmpty());
+            }
+        });
+    }
+}
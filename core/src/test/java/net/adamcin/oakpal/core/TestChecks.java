@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.json.JSONObject;
+
+/**
+ * Checks and report helpers shared by the scan tests.
+ */
+final class TestChecks {
+
+    private TestChecks() {
+        // no instances
+    }
+
+    static ProgressCheck recordingCheck(final List<String> events) {
+        return new SimpleProgressCheck() {
+            @Override
+            public void beforeExtract(final PackageId packageId, final Session inspectSession,
+                                      final PackageProperties packageProperties, final MetaInf metaInf,
+                                      final List<PackageId> subpackages) {
+                events.add("before " + packageId);
+            }
+
+            @Override
+            public void importedPath(final PackageId packageId, final String path, final Node node)
+                    throws RepositoryException {
+                events.add("imported " + node.getPath());
+            }
+
+            @Override
+            public void deletedPath(final PackageId packageId, final String path, final Session inspectSession) {
+                events.add("deleted " + path);
+            }
+
+            @Override
+            public void afterExtract(final PackageId packageId, final Session inspectSession) {
+                events.add("after " + packageId);
+            }
+        };
+    }
+
+    static ProgressCheck denyAllPaths() throws Exception {
+        return new net.adamcin.oakpal.core.checks.Paths()
+                .newInstance(new JSONObject("{\"rules\":[{\"type\":\"deny\",\"pattern\":\"/.*\"}]}"));
+    }
+
+    static List<List<String>> describeReports(final List<CheckReport> reports) {
+        return reports.stream()
+                .map(report -> report.getViolations().stream()
+                        .map(violation -> violation.getSeverity() + " " + violation.getDescription() + " "
+                                + violation.getPackages())
+                        .sorted().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    static long countUnstructured(final Node node) throws RepositoryException {
+        long count = 0L;
+        for (NodeIterator children = node.getNodes(); children.hasNext(); ) {
+            Node child = children.nextNode();
+            if (child.isNodeType("nt:unstructured")) {
+                count += 1L + countUnstructured(child);
+            }
+        }
+        return count;
+    }
+}
@@ -16,11 +16,15 @@
 
 package net.adamcin.oakpal.core;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.jar.Manifest;
 
@@ -48,4 +52,14 @@ public class UtilTest {
         }
 
     }
+
+    @Test
+    public void testSha256Hex() throws IOException {
+        final byte[] content = "abc".getBytes(StandardCharsets.UTF_8);
+        final String expected = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        assertEquals("hash of bytes", expected, Util.sha256Hex(content));
+        assertEquals("hash of stream", expected, Util.sha256Hex(new ByteArrayInputStream(content)));
+        assertEquals("leading zeros are kept", "000fff", Util.toHex(new byte[]{0, 15, -1}));
+        assertArrayEquals("bytes are read", content, Util.readBytes(new ByteArrayInputStream(content)));
+    }
 }
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import net.adamcin.commons.testing.junit.TestBody;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.ProgressCheck;
+import net.adamcin.oakpal.core.Violation;
 import org.json.JSONObject;
 import org.junit.Test;
 
@@ -141,4 +142,39 @@ public class JcrPropertiesTest extends ProgressCheckTestBase {
             }
         });
     }
+
+    @Test
+    public void testAggregateViolations() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                final String denyAll = "\"denyNodeTypes\":[\"nt:base\"],"
+                        + "\"scopePaths\":[{\"pattern\":\"/.*\",\"type\":\"allow\"}]";
+                CheckReport each = scanWithCheck(new JcrProperties().newInstance(
+                        new JSONObject("{" + denyAll + "}")), "fullcoverage.zip");
+                final int count = each.getViolations().size();
+                assertTrue("many violations", count > 3);
+
+                CheckReport aggregated = scanWithCheck(new JcrProperties().newInstance(
+                        new JSONObject("{" + denyAll + ",\"aggregateViolations\":true,"
+                                + "\"maxViolationSamples\":2}")), "fullcoverage.zip");
+                logViolations("aggregated", aggregated);
+                assertEquals("one group", 1, aggregated.getViolations().size());
+                final String description = aggregated.getViolations().iterator().next().getDescription();
+                assertTrue("group counts the others: " + description,
+                        description.contains(String.format("and %d more, including ", count - 1)));
+                assertEquals("samples are bounded", 2,
+                        description.substring(description.indexOf("including ")).split(", ").length);
+
+                CheckReport limited = scanWithCheck(new JcrProperties().newInstance(
+                        new JSONObject("{" + denyAll + ",\"maxViolations\":2}")), "fullcoverage.zip");
+                assertEquals("limited violations plus summary", 3, limited.getViolations().size());
+                final Violation summary = new ArrayList<>(limited.getViolations()).get(2);
+                assertEquals("summary counts omitted violations",
+                        String.format("%d more violations were not reported after reaching the limit of 2.",
+                                count - 2), summary.getDescription());
+                assertEquals("summary keeps severity", Violation.Severity.MAJOR, summary.getSeverity());
+            }
+        });
+    }
 }
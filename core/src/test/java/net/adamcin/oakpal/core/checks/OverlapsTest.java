@@ -19,9 +19,20 @@ package net.adamcin.oakpal.core.checks;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import net.adamcin.commons.testing.junit.TestBody;
 import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.ProgressCheck;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.filter.DefaultPathFilter;
+import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.json.JSONObject;
 import org.junit.Test;
 
@@ -62,4 +73,48 @@ public class OverlapsTest extends ProgressCheckTestBase {
             }
         });
     }
+
+    @Test
+    public void testFilterIndex() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                Map<PackageId, WorkspaceFilter> filters = new LinkedHashMap<>();
+                filters.put(PackageId.fromString("test:root:1.0"), filter("/"));
+                filters.put(PackageId.fromString("test:apps:1.0"), filter("/apps/acme", "/apps/acme/config"));
+                filters.put(PackageId.fromString("test:content:1.0"), filter("/content/acme", "/content/acme/dam"));
+                filters.put(PackageId.fromString("test:deep:1.0"), filter("/apps/acme/components/page"));
+                filters.put(PackageId.fromString("test:sibling:1.0"), filter("/apps/acme-other"));
+
+                WorkspaceFilterIndex index = new WorkspaceFilterIndex();
+                filters.forEach(index::put);
+
+                List<String> paths = Arrays.asList("/", "/apps", "/apps/acme", "/apps/acme/config",
+                        "/apps/acme/config/foo", "/apps/acme/components/page/jcr:content", "/apps/acme-other",
+                        "/content/acme/en", "/content/acme/dam/asset", "/content/other", "/var");
+                for (PackageId current : filters.keySet()) {
+                    for (String path : paths) {
+                        List<PackageId> expected = new ArrayList<>();
+                        for (Map.Entry<PackageId, WorkspaceFilter> entry : filters.entrySet()) {
+                            if (!entry.getKey().equals(current) && entry.getValue().contains(path)) {
+                                expected.add(entry.getKey());
+                            }
+                        }
+                        assertEquals("same overlaps for " + path + " from " + current,
+                                expected, index.findContaining(path, current));
+                    }
+                }
+            }
+        });
+    }
+
+    private static WorkspaceFilter filter(final String root, final String... excludes) throws Exception {
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        PathFilterSet filterSet = new PathFilterSet(root);
+        for (String exclude : excludes) {
+            filterSet.addExclude(new DefaultPathFilter(exclude + "(/.*)?"));
+        }
+        filter.add(filterSet);
+        return filter;
+    }
 }
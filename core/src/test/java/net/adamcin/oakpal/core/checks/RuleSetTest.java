@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+public class RuleSetTest {
+
+    private static final List<String> VALUES = Arrays.asList("", "/", "/apps", "/apps/", "/app",
+            "/apps/acme", "/apps/acme/components", "/apps/acme/config.author", "/apps/acme/config",
+            "/content/acme/en", "/content/dam", "/etc/packages/acme.zip", "/libs/foo/foo", "/libs/foo/bar",
+            "/var/acl", "/APPS/acme", "my_packages:sub_a:1.0");
+
+    @Test
+    public void testLastMatchEquivalence() {
+        final List<Rule> rules = Rule.fromJSON(new JSONArray("[" +
+                "{\"type\":\"allow\",\"pattern\":\"/apps(/.*)?\"}," +
+                "{\"type\":\"deny\",\"pattern\":\"/apps/acme/config(\\\\..*)?\"}," +
+                "{\"type\":\"deny\",\"pattern\":\"/content/.*|/etc/.*\"}," +
+                "{\"type\":\"allow\",\"pattern\":\"/content/dam\"}," +
+                "{\"type\":\"deny\",\"pattern\":\"/libs/([^/]+)/\\\\1\"}," +
+                "{\"type\":\"allow\",\"pattern\":\"(?i)/apps/acme\"}," +
+                "{\"type\":\"deny\",\"pattern\":\"/apps?/acme/components\"}," +
+                "{\"type\":\"deny\",\"pattern\":\"/var(?<name>/.*)\"}," +
+                "{\"type\":\"allow\",\"pattern\":\"my_packages:sub_.*\"}" +
+                "]"));
+
+        final RuleSet ruleSet = RuleSet.compile(rules);
+        for (String value : VALUES) {
+            assertSame("same last match for " + value, naiveLastMatch(rules, value), ruleSet.lastMatch(value));
+        }
+    }
+
+    @Test
+    public void testDefaultRule() {
+        assertSame("empty rules default to allow", Rule.DEFAULT_ALLOW,
+                RuleSet.compile(null).lastMatch("/apps"));
+        assertSame("leading allow defaults to deny", Rule.DEFAULT_DENY,
+                RuleSet.compile(Rule.fromJSON(new JSONArray("[{\"type\":\"allow\",\"pattern\":\"/apps\"}]")))
+                        .lastMatch("/content"));
+        assertEquals("no match index", -1,
+                RuleSet.compile(Rule.fromJSON(new JSONArray("[{\"type\":\"allow\",\"pattern\":\"/apps\"}]")))
+                        .lastMatchIndex("/content"));
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/apps/acme/", RuleSet.literalPrefix(Pattern.compile("/apps/acme/.*")));
+        assertEquals("/app", RuleSet.literalPrefix(Pattern.compile("/apps?/acme")));
+        assertEquals("", RuleSet.literalPrefix(Pattern.compile("/content/.*|/etc/.*")));
+        assertEquals("/content/", RuleSet.literalPrefix(Pattern.compile("/content/(dam|acme)")));
+        assertEquals("/apps", RuleSet.literalPrefix(Pattern.compile("/apps\\..*")));
+        assertEquals("", RuleSet.literalPrefix(Pattern.compile("/apps", Pattern.CASE_INSENSITIVE)));
+    }
+
+    private static Rule naiveLastMatch(final List<Rule> rules, final String value) {
+        Rule lastMatch = Rule.fuzzyDefaultAllow(rules);
+        for (Rule rule : rules) {
+            if (rule.matches(value)) {
+                lastMatch = rule;
+            }
+        }
+        return lastMatch;
+    }
+}
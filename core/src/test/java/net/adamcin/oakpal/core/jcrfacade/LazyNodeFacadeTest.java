@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.core.jcrfacade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.oakpal.core.OakMachine;
+import net.adamcin.oakpal.core.ProgressCheck;
+import net.adamcin.oakpal.core.SimpleProgressCheck;
+import net.adamcin.oakpal.testing.TestPackageUtil;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class LazyNodeFacadeTest {
+
+    @Test
+    public void testLazyLookup() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                File fullcoverage = TestPackageUtil.prepareTestPackage("fullcoverage.zip");
+
+                final List<Boolean> resolved = new ArrayList<>();
+                final List<String> failures = new ArrayList<>();
+                ProgressCheck check = new SimpleProgressCheck() {
+                    @Override
+                    public void importedPath(final PackageId packageId, final String path, final Node node)
+                            throws RepositoryException {
+                        if (resolved.isEmpty()) {
+                            assertTrue("imported nodes are lazy", node instanceof LazyNodeFacade);
+                            final LazyNodeFacade<?> lazy = (LazyNodeFacade<?>) node;
+                            assertEquals("path without lookup", path, lazy.getPath());
+                            assertTrue("isNode without lookup", lazy.isNode());
+                            resolved.add(lazy.isResolved());
+                            lazy.getPrimaryNodeType();
+                            resolved.add(lazy.isResolved());
+                        }
+                    }
+
+                    @Override
+                    public void afterExtract(final PackageId packageId, final Session inspectSession)
+                            throws RepositoryException {
+                        final SessionFacade<?> facade = (SessionFacade<?>) inspectSession;
+                        final Node root = new LazyNodeFacade<>("/", facade);
+                        assertTrue("lazy node is the same as the root", root.isSame(inspectSession.getRootNode()));
+                        assertTrue("root is the same as the lazy node", inspectSession.getRootNode().isSame(root));
+                        assertFalse("unwraps to the resolved node", NodeFacade.unwrap(root) instanceof NodeFacade);
+
+                        final LazyNodeFacade<?> missing = new LazyNodeFacade<>("/missing/node", facade);
+                        assertEquals("/missing/node", missing.getPath());
+                        try {
+                            missing.getName();
+                        } catch (final IllegalStateException e) {
+                            failures.add(e.getMessage());
+                        }
+                        assertFalse("missing node is not resolved", missing.isResolved());
+                    }
+                };
+
+                new OakMachine.Builder().withProgressChecks(check).build().scanPackage(fullcoverage);
+                assertEquals("node looked up on first access", Arrays.asList(false, true), resolved);
+                assertEquals("missing node fails to look up",
+                        Collections.singletonList("Failed to look up node at /missing/node"), failures);
+            }
+        });
+    }
+}
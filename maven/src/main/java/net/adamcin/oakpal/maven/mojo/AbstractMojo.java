@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.ReportVisitor;
 import net.adamcin.oakpal.core.Violation;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.maven.artifact.Artifact;
@@ -87,7 +88,8 @@ abstract class AbstractMojo extends org.apache.maven.plugin.AbstractMojo {
     protected boolean skipTests;
 
     /**
-     * The summary file to read integration test results from.
+     * The summary file to read integration test results from. Summary files are written in a compact binary format
+     * if the file name ends with {@code .bin}, and in either case, the format is detected when the file is read.
      */
     @Parameter(defaultValue = "${project.build.directory}/oakpal-reports/oakpal-summary.json", required = true)
     protected File summaryFile;
@@ -186,36 +188,62 @@ abstract class AbstractMojo extends org.apache.maven.plugin.AbstractMojo {
     }
 
     protected void reactToReports(List<CheckReport> reports) throws MojoFailureException {
-        String errorMessage = String.format("** Violations were reported at or above severity: %s **", failOnSeverity);
-
-        List<CheckReport> nonEmptyReports = reports.stream()
-                .filter(r -> !r.getViolations().isEmpty())
-                .collect(Collectors.toList());
-        boolean shouldFail = nonEmptyReports.stream().anyMatch(r -> !r.getViolations(failOnSeverity).isEmpty());
+        final ReportReactor reactor = new ReportReactor();
+        for (CheckReport r : reports) {
+            reactor.startReport(r.getCheckName());
+            r.getViolations().forEach(reactor::visitViolation);
+        }
+        reactor.finish();
+    }
 
-        if (!nonEmptyReports.isEmpty()) {
-            getLog().info("OakPAL Check Reports");
+    /**
+     * Logs each violation as it is visited, and fails the build at the end if any violation was reported at or above
+     * the {@code failOnSeverity} threshold. Report headers are only logged for reports with violations, so that
+     * summary files can be streamed through this visitor without first collecting the non-empty reports.
+     */
+    final class ReportReactor implements ReportVisitor {
+        private boolean loggedHeader;
+        private String checkName;
+        private boolean loggedCheckName;
+        private boolean shouldFail;
+
+        @Override
+        public void startReport(final String checkName) {
+            this.checkName = checkName;
+            this.loggedCheckName = false;
         }
-        for (CheckReport r : nonEmptyReports) {
-            getLog().info(String.format("  %s", String.valueOf(r.getCheckName())));
-            for (Violation v : r.getViolations()) {
-                Set<String> packageIds = v.getPackages().stream()
-                        .map(PackageId::getDownloadName)
-                        .collect(Collectors.toSet());
-                String violLog = !packageIds.isEmpty()
-                        ? String.format("   +- <%s> %s %s", v.getSeverity(), v.getDescription(), packageIds)
-                        : String.format("   +- <%s> %s", v.getSeverity(), v.getDescription());
-                if (v.getSeverity().isLessSevereThan(failOnSeverity)) {
-                    getLog().info(" " + violLog);
-                } else {
-                    getLog().error("" + violLog);
-                }
+
+        @Override
+        public void visitViolation(final Violation v) {
+            if (!loggedHeader) {
+                getLog().info("OakPAL Check Reports");
+                loggedHeader = true;
+            }
+            if (!loggedCheckName) {
+                getLog().info(String.format("  %s", String.valueOf(checkName)));
+                loggedCheckName = true;
+            }
+            Set<String> packageIds = v.getPackages().stream()
+                    .map(PackageId::getDownloadName)
+                    .collect(Collectors.toSet());
+            String violLog = !packageIds.isEmpty()
+                    ? String.format("   +- <%s> %s %s", v.getSeverity(), v.getDescription(), packageIds)
+                    : String.format("   +- <%s> %s", v.getSeverity(), v.getDescription());
+            if (v.getSeverity().isLessSevereThan(failOnSeverity)) {
+                getLog().info(" " + violLog);
+            } else {
+                shouldFail = true;
+                getLog().error("" + violLog);
             }
         }
 
-        if (shouldFail) {
-            getLog().error(errorMessage);
-            throw new MojoFailureException(errorMessage);
+        void finish() throws MojoFailureException {
+            if (shouldFail) {
+                String errorMessage = String.format("** Violations were reported at or above severity: %s **",
+                        failOnSeverity);
+                getLog().error(errorMessage);
+                throw new MojoFailureException(errorMessage);
+            }
         }
     }
 
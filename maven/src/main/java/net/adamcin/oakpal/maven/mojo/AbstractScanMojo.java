@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import net.adamcin.oakpal.core.CheckSpec;
 import net.adamcin.oakpal.core.ChecklistPlanner;
@@ -36,6 +37,8 @@ import net.adamcin.oakpal.core.JcrNs;
 import net.adamcin.oakpal.core.Locator;
 import net.adamcin.oakpal.core.OakMachine;
 import net.adamcin.oakpal.core.ProgressCheck;
+import net.adamcin.oakpal.core.RepositoryProfile;
+import net.adamcin.oakpal.core.ScanCache;
 import net.adamcin.oakpal.core.SlingNodetypesScanner;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -278,6 +281,105 @@ abstract class AbstractScanMojo extends AbstractMojo {
     @Parameter
     protected boolean deferBuildFailure;
 
+    /**
+     * Specify a directory to keep a persistent cache of scan reports in. When the same list of package files is
+     * scanned again with the same checks, checklists, init parameters and OakPAL version, the scan is skipped and the
+     * cached reports are used instead. Package files are matched by the SHA-256 hash of their content. The cache is
+     * disabled when no directory is specified.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.scanCache.directory")
+    protected File scanCacheDirectory;
+
+    /**
+     * The max number of scans to keep in the {@code scanCacheDirectory}. The least recently used entries are evicted
+     * first. Set to 0 for no limit.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.scanCache.maxEntries", defaultValue = "256")
+    protected int scanCacheMaxEntries = ScanCache.DEFAULT_MAX_ENTRIES;
+
+    /**
+     * The max age in days of an entry in the {@code scanCacheDirectory}. Set to 0 for no limit.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.scanCache.maxAgeDays", defaultValue = "0")
+    protected int scanCacheMaxAgeDays;
+
+    /**
+     * Stop the scan as soon as a violation is reported at or above the {@code failOnSeverity} threshold, instead of
+     * installing every package first. The build still fails the same way, but the reports only include the
+     * violations found up to that point.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.failFast")
+    protected boolean failFast;
+
+    /**
+     * Select the optional features of the repository created for each scan. Use {@code full} (the default) for every
+     * feature, {@code lean} to skip the reference and ordered indexes, the change collector and atomic counters, or
+     * {@code custom:} followed by a comma-separated list of features, like {@code custom:versioning,reference_index}.
+     * The features are {@code versioning}, {@code conflict_validation}, {@code change_collector},
+     * {@code reference_index}, {@code ordered_index} and {@code atomic_counter}.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.repositoryProfile", defaultValue = "full")
+    protected String repositoryProfile = RepositoryProfile.FULL.getName();
+
+    /**
+     * Stop maintaining the non-unique repository indexes on every commit while packages are installed, and rebuild
+     * them in one pass when a check first creates a query. Scans whose checks never query skip the index maintenance
+     * entirely.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.deferredIndexing")
+    protected boolean deferredIndexing;
+
+    /**
+     * Read packages directly from their files instead of uploading them to {@code /etc/packages} in the scan
+     * repository, which avoids storing a copy of each package and subpackage binary. Checks will not see the package
+     * nodes under {@code /etc/packages}.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.fileBackedPackages")
+    protected boolean fileBackedPackages;
+
+    /**
+     * Read only the package metadata, without creating a scan repository, when every check only needs the metadata,
+     * like the filterSets, acHandling and subpackages checks. Ignored when {@code failFast} is enabled.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.metadataOnlyScan")
+    protected boolean metadataOnlyScan;
+
+    /**
+     * Keep only the length and SHA-256 digest of each binary larger than {@link #retainedBinarySize}, instead of its
+     * content, to reduce heap usage for packages with many large binaries. Checks that read the content of large
+     * binaries will not see the real content.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.hashOnlyBinaries")
+    protected boolean hashOnlyBinaries;
+
+    /**
+     * The size in bytes of the largest binary to keep in full when {@link #hashOnlyBinaries} is enabled.
+     *
+     * @since 1.1.13
+     */
+    @Parameter(property = "oakpal.retainedBinarySize", defaultValue = "16384")
+    protected int retainedBinarySize = 16384;
+
+    private ScanCache scanCache;
+
     /**
      * Construct an init stage purely from the relevant mojo parameters.
      *
@@ -348,7 +450,8 @@ abstract class AbstractScanMojo extends AbstractMojo {
         final ChecklistPlanner checklistPlanner = new ChecklistPlanner(checklists);
         checklistPlanner.discoverChecklists();
 
-        for (CheckSpec checkSpec : checklistPlanner.getEffectiveCheckSpecs(checks)) {
+        final List<CheckSpec> effectiveCheckSpecs = checklistPlanner.getEffectiveCheckSpecs(checks);
+        for (CheckSpec checkSpec : effectiveCheckSpecs) {
             if (StringUtils.isEmpty(checkSpec.getImpl())) {
                 throw new MojoExecutionException("Please provide an 'impl' value for " + checkSpec.getName());
             }
@@ -391,8 +494,49 @@ abstract class AbstractScanMojo extends AbstractMojo {
                 .withInitStage(getMojoInitStage())
                 // followed by the checklist init stages
                 .withInitStages(checklistPlanner.getInitStages())
-                .withPreInstallPackages(preInstall);
+                .withPreInstallPackages(preInstall)
+                .withFailFastSeverity(failFast ? failOnSeverity : null)
+                .withDeferredIndexing(deferredIndexing)
+                .withFileBackedPackages(fileBackedPackages)
+                .withMetadataOnlyScan(metadataOnlyScan)
+                .withHashOnlyBinaries(hashOnlyBinaries)
+                .withRetainedBinarySize(retainedBinarySize);
+
+        try {
+            machineBuilder.withRepositoryProfile(RepositoryProfile.fromName(repositoryProfile));
+        } catch (final IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid repositoryProfile " + repositoryProfile, e);
+        }
+
+        if (scanCacheDirectory != null) {
+            try {
+                scanCache = new ScanCache.Builder()
+                        .withDirectory(scanCacheDirectory)
+                        .withMaxEntries(scanCacheMaxEntries)
+                        .withMaxAge(TimeUnit.DAYS.toMillis(scanCacheMaxAgeDays))
+                        .build();
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Failed to create scan cache directory " + scanCacheDirectory, e);
+            }
+            try {
+                machineBuilder.withScanCache(scanCache,
+                        new ScanCache.Fingerprint().withCheckSpecs(effectiveCheckSpecs).build());
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Failed to read check impl resources for the scan cache", e);
+            }
+        }
 
         return machineBuilder;
     }
+
+    /**
+     * Log the hit and miss counts of the scan cache, if it is enabled.
+     */
+    protected void logScanCacheStats() {
+        if (scanCache != null) {
+            getLog().info(String.format("Scan cache %s: %d hits, %d misses, %d evictions",
+                    scanCache.getDirectory().getPath(), scanCache.getHitCount(), scanCache.getMissCount(),
+                    scanCache.getEvictionCount()));
+        }
+    }
 }
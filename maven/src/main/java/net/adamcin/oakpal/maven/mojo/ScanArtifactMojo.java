@@ -23,6 +23,7 @@ import java.util.Optional;
 
 import net.adamcin.oakpal.core.AbortedScanException;
 import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.OakMachine;
 import net.adamcin.oakpal.core.ReportMapper;
 import net.adamcin.oakpal.maven.component.OakpalComponentConfigurator;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -60,8 +61,9 @@ public class ScanArtifactMojo extends AbstractScanMojo {
                 .flatMap(a -> Optional.ofNullable(a.getFile()));
         if (packageArtifact.isPresent() && packageArtifact.get().exists()) {
             List<CheckReport> reports;
-            try {
-                reports = getBuilder().build().scanPackage(packageArtifact.get());
+            try (OakMachine machine = getBuilder().build()) {
+                reports = machine.scanPackage(packageArtifact.get());
+                logScanCacheStats();
             } catch (AbortedScanException e) {
                 String currentFilePath = e.getCurrentPackageFile()
                         .map(f -> "Failed package: " + f.getAbsolutePath()).orElse("");
@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
 
 import net.adamcin.oakpal.core.AbortedScanException;
 import net.adamcin.oakpal.core.CheckReport;
+import net.adamcin.oakpal.core.OakMachine;
 import net.adamcin.oakpal.core.ReportMapper;
 import net.adamcin.oakpal.maven.component.OakpalComponentConfigurator;
 import org.apache.maven.artifact.Artifact;
@@ -144,8 +145,9 @@ public class ScanManyArtifactsMojo extends AbstractScanMojo {
         }
 
         List<CheckReport> reports;
-        try {
-            reports = getBuilder().build().scanPackages(resolvedArtifacts);
+        try (OakMachine machine = getBuilder().build()) {
+            reports = machine.scanPackages(resolvedArtifacts);
+            logScanCacheStats();
         } catch (AbortedScanException e) {
             String currentFilePath = e.getCurrentPackageFile()
                     .map(f -> "Failed package: " + f.getAbsolutePath()).orElse("");
@@ -18,11 +18,10 @@ package net.adamcin.oakpal.maven.mojo;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import net.adamcin.oakpal.core.CheckReport;
 import net.adamcin.oakpal.core.ReportMapper;
+import net.adamcin.oakpal.core.ReportVisitor;
 import net.adamcin.oakpal.maven.component.OakpalComponentConfigurator;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -62,26 +61,24 @@ public class VerifyMojo extends AbstractMojo {
 
     @Override
     void executeGuardedIntegrationTest() throws MojoExecutionException, MojoFailureException {
-        List<CheckReport> reports;
+        final ReportReactor reactor = new ReportReactor();
         try {
-            reports = new ArrayList<>(readReportsFromFile(summaryFile));
+            readReportsFromFile(summaryFile, reactor);
             if (summaryFiles != null) {
                 for (File file : summaryFiles) {
-                    reports.addAll(readReportsFromFile(file));
+                    readReportsFromFile(file, reactor);
                 }
             }
         } catch (final Exception e) {
             throw new MojoExecutionException("Failed to read check report summary file.", e);
         }
 
-        reactToReports(reports);
+        reactor.finish();
     }
 
-    private List<CheckReport> readReportsFromFile(final File summaryFile) throws Exception {
+    private void readReportsFromFile(final File summaryFile, final ReportVisitor visitor) throws Exception {
         if (summaryFile != null && summaryFile.exists()) {
-            return ReportMapper.readReportsFromFile(summaryFile);
-        } else {
-            return Collections.emptyList();
+            ReportMapper.readReports(summaryFile, visitor);
         }
     }
 }
@@ -0,0 +1,536 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.testing;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Specification of a synthetic FileVault content package of arbitrary size, for load testing. The package is written
+ * straight to a {@link JarOutputStream} as the node tree is walked, so neither the tree nor the package contents are
+ * ever held on disk or in memory. The same specification always produces the same content.
+ * <p>
+ * The generated content is a tree of {@code nt:unstructured} nodes under the {@link Builder#withContentRoot(String)
+ * content root}. Each child of the content root is a branch, serialized as its own {@code .content.xml} file. Binary
+ * files are spread across the branches as {@code nt:file} nodes, and subpackages are written under
+ * {@code /etc/packages}.
+ */
+public final class SyntheticPackage {
+    private static final int DEFAULT_WRITE_BUFFER = 8192;
+
+    private final String group;
+    private final String name;
+    private final String version;
+    private final String contentRoot;
+    private final long nodeCount;
+    private final int depth;
+    private final int fanOut;
+    private final int stringProperties;
+    private final int longProperties;
+    private final int multiValueProperties;
+    private final int binaryCount;
+    private final int binarySize;
+    private final FilterLayout filterLayout;
+    private final List<SyntheticPackage> subpackages;
+
+    /**
+     * How the workspace filter of the package is laid out.
+     */
+    public enum FilterLayout {
+        /**
+         * A single filter root at the content root.
+         */
+        SINGLE_ROOT,
+
+        /**
+         * One filter root for each branch under the content root.
+         */
+        ROOT_PER_BRANCH
+    }
+
+    private SyntheticPackage(final Builder builder) {
+        this.group = builder.group;
+        this.name = builder.name;
+        this.version = builder.version;
+        this.contentRoot = builder.contentRoot;
+        this.nodeCount = builder.nodeCount;
+        this.depth = builder.depth;
+        this.fanOut = builder.fanOut;
+        this.stringProperties = builder.stringProperties;
+        this.longProperties = builder.longProperties;
+        this.multiValueProperties = builder.multiValueProperties;
+        this.binaryCount = builder.binaryCount;
+        this.binarySize = builder.binarySize;
+        this.filterLayout = builder.filterLayout;
+        this.subpackages = Collections.unmodifiableList(new ArrayList<>(builder.subpackages));
+    }
+
+    /**
+     * Use the builder to construct the {@link SyntheticPackage}.
+     */
+    public static class Builder {
+        private String group = "oakpal-synthetic";
+        private String name = "synthetic";
+        private String version = "1.0";
+        private String contentRoot;
+        private long nodeCount = 1000L;
+        private int depth = 3;
+        private int fanOut = 10;
+        private int stringProperties = 2;
+        private int longProperties = 1;
+        private int multiValueProperties = 1;
+        private int binaryCount;
+        private int binarySize;
+        private FilterLayout filterLayout = FilterLayout.SINGLE_ROOT;
+        private final List<SyntheticPackage> subpackages = new ArrayList<>();
+
+        /**
+         * Set the package group. Defaults to {@code oakpal-synthetic}.
+         *
+         * @param group the package group
+         * @return my builder self
+         */
+        public Builder withGroup(final String group) {
+            this.group = group;
+            return this;
+        }
+
+        /**
+         * Set the package name. Defaults to {@code synthetic}.
+         *
+         * @param name the package name
+         * @return my builder self
+         */
+        public Builder withName(final String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Set the package version. Defaults to {@code 1.0}.
+         *
+         * @param version the package version
+         * @return my builder self
+         */
+        public Builder withVersion(final String version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Set the absolute path of the content root node. Defaults to {@code /synthetic/<name>}. Ancestors of the root
+         * that do not exist are created as unstructured nodes.
+         *
+         * @param contentRoot the content root path
+         * @return my builder self
+         */
+        public Builder withContentRoot(final String contentRoot) {
+            this.contentRoot = contentRoot;
+            return this;
+        }
+
+        /**
+         * Set the number of nodes to generate below the content root. The count is capped by the number of nodes
+         * that the {@link #withDepth(int) depth} and {@link #withFanOut(int) fan-out} allow. Defaults to 1000.
+         *
+         * @param nodeCount the node count
+         * @return my builder self
+         */
+        public Builder withNodeCount(final long nodeCount) {
+            this.nodeCount = Math.max(0L, nodeCount);
+            return this;
+        }
+
+        /**
+         * Set the maximum depth of the tree below the content root. Defaults to 3.
+         *
+         * @param depth the tree depth
+         * @return my builder self
+         */
+        public Builder withDepth(final int depth) {
+            this.depth = Math.max(1, depth);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of children of each node, including the number of branches under the content root.
+         * Nodes are spread evenly across the tree. Defaults to 10.
+         *
+         * @param fanOut the fan-out
+         * @return my builder self
+         */
+        public Builder withFanOut(final int fanOut) {
+            this.fanOut = Math.max(1, fanOut);
+            return this;
+        }
+
+        /**
+         * Set the number of string, long and multivalued string properties on each node. Defaults to 2, 1 and 1.
+         *
+         * @param stringProperties     the number of single-valued string properties
+         * @param longProperties       the number of long properties
+         * @param multiValueProperties the number of multivalued string properties
+         * @return my builder self
+         */
+        public Builder withPropertyMix(final int stringProperties, final int longProperties,
+                                       final int multiValueProperties) {
+            this.stringProperties = Math.max(0, stringProperties);
+            this.longProperties = Math.max(0, longProperties);
+            this.multiValueProperties = Math.max(0, multiValueProperties);
+            return this;
+        }
+
+        /**
+         * Add {@code nt:file} nodes with pseudo-random binary content, which is incompressible, so that the package
+         * size on disk grows with the binary size. Binary files are spread across the branches under the content
+         * root, and are not counted in the {@link #withNodeCount(long) node count}. Defaults to none.
+         *
+         * @param binaryCount the number of binary files
+         * @param binarySize  the size of each binary, in bytes
+         * @return my builder self
+         */
+        public Builder withBinaries(final int binaryCount, final int binarySize) {
+            this.binaryCount = Math.max(0, binaryCount);
+            this.binarySize = Math.max(0, binarySize);
+            return this;
+        }
+
+        /**
+         * Set the layout of the workspace filter. Defaults to {@link FilterLayout#SINGLE_ROOT}.
+         *
+         * @param filterLayout the filter layout
+         * @return my builder self
+         */
+        public Builder withFilterLayout(final FilterLayout filterLayout) {
+            this.filterLayout = filterLayout != null ? filterLayout : FilterLayout.SINGLE_ROOT;
+            return this;
+        }
+
+        /**
+         * Embed a subpackage, which may embed subpackages of its own. Subpackages are written to
+         * {@code /etc/packages/<group>/<name>-<version>.zip}, with a filter root for each one.
+         *
+         * @param subpackage the subpackage
+         * @return my builder self
+         */
+        public Builder withSubpackage(final SyntheticPackage subpackage) {
+            if (subpackage != null) {
+                this.subpackages.add(subpackage);
+            }
+            return this;
+        }
+
+        /**
+         * Construct a {@link SyntheticPackage} from the {@link Builder} state.
+         *
+         * @return a {@link SyntheticPackage}
+         */
+        public SyntheticPackage build() {
+            if (contentRoot == null) {
+                contentRoot = "/synthetic/" + name;
+            }
+            if (!contentRoot.startsWith("/") || contentRoot.length() < 2 || contentRoot.endsWith("/")) {
+                throw new IllegalArgumentException("contentRoot must be an absolute path below the root node: "
+                        + contentRoot);
+            }
+            return new SyntheticPackage(this);
+        }
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getContentRoot() {
+        return contentRoot;
+    }
+
+    /**
+     * The number of nodes that will actually be generated below the content root, which is the requested node count
+     * capped by the capacity of the tree.
+     *
+     * @return the effective node count
+     */
+    public long getEffectiveNodeCount() {
+        return Math.min(nodeCount, capacity(depth));
+    }
+
+    /**
+     * The path of this package when embedded as a subpackage.
+     *
+     * @return the subpackage path under {@code /etc/packages}
+     */
+    public String getSubpackagePath() {
+        return String.format("/etc/packages/%s/%s-%s.zip", group, name, version);
+    }
+
+    public List<SyntheticPackage> getSubpackages() {
+        return subpackages;
+    }
+
+    /**
+     * Write the package to a file.
+     *
+     * @param file the target file, which is overwritten
+     * @return the file
+     * @throws IOException for write failures
+     */
+    public File writeToFile(final File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), DEFAULT_WRITE_BUFFER * 8)) {
+            writeTo(out);
+        }
+        return file;
+    }
+
+    /**
+     * Write the package to an output stream. The stream is finished but not closed.
+     *
+     * @param out the output stream
+     * @throws IOException for write failures
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final JarOutputStream jar = new JarOutputStream(new NonClosingOutputStream(out));
+        writeProperties(jar);
+        writeFilter(jar);
+        writeAncestors(jar);
+        writeContent(jar);
+        for (SyntheticPackage subpackage : subpackages) {
+            jar.putNextEntry(new JarEntry("jcr_root" + subpackage.getSubpackagePath()));
+            subpackage.writeTo(jar);
+            jar.closeEntry();
+        }
+        jar.finish();
+    }
+
+    private void writeProperties(final JarOutputStream jar) throws IOException {
+        jar.putNextEntry(new JarEntry("META-INF/vault/properties.xml"));
+        final Writer writer = entryWriter(jar);
+        writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\"?>\n");
+        writer.write("<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n");
+        writer.write("<properties>\n");
+        writer.write("    <comment>FileVault Package Properties</comment>\n");
+        writer.write("    <entry key=\"group\">" + escape(group) + "</entry>\n");
+        writer.write("    <entry key=\"name\">" + escape(name) + "</entry>\n");
+        writer.write("    <entry key=\"version\">" + escape(version) + "</entry>\n");
+        writer.write("    <entry key=\"packageFormatVersion\">2</entry>\n");
+        writer.write("</properties>\n");
+        writer.flush();
+        jar.closeEntry();
+    }
+
+    private void writeFilter(final JarOutputStream jar) throws IOException {
+        jar.putNextEntry(new JarEntry("META-INF/vault/filter.xml"));
+        final Writer writer = entryWriter(jar);
+        writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
+        writer.write("<workspaceFilter version=\"1.0\">\n");
+        if (filterLayout == FilterLayout.ROOT_PER_BRANCH) {
+            final int branches = (int) Math.min(fanOut, getEffectiveNodeCount());
+            for (int b = 0; b < branches; b++) {
+                writer.write("    <filter root=\"" + escape(contentRoot + "/" + branchName(b)) + "\"/>\n");
+            }
+        } else {
+            writer.write("    <filter root=\"" + escape(contentRoot) + "\"/>\n");
+        }
+        for (SyntheticPackage subpackage : subpackages) {
+            writer.write("    <filter root=\"" + escape(subpackage.getSubpackagePath()) + "\"/>\n");
+        }
+        writer.write("</workspaceFilter>\n");
+        writer.flush();
+        jar.closeEntry();
+    }
+
+    private void writeAncestors(final JarOutputStream jar) throws IOException {
+        String folder = "jcr_root";
+        for (String segment : contentRoot.substring(1).split("/")) {
+            folder = folder + "/" + segment;
+            jar.putNextEntry(new JarEntry(folder + "/.content.xml"));
+            final Writer writer = entryWriter(jar);
+            writer.write(DOCVIEW_HEADER);
+            writer.write("<jcr:root " + DOCVIEW_NAMESPACES + " jcr:primaryType=\"nt:unstructured\"/>\n");
+            writer.flush();
+            jar.closeEntry();
+        }
+    }
+
+    private void writeContent(final JarOutputStream jar) throws IOException {
+        final String rootFolder = "jcr_root" + contentRoot;
+        final long total = getEffectiveNodeCount();
+        final int branches = (int) Math.min(fanOut, total);
+        final long branchCapacity = capacity(depth - 1) + 1L;
+        long remaining = total;
+        long nodeIndex = 0L;
+        for (int b = 0; b < branches; b++) {
+            final long share = Math.min(branchCapacity, ceilDiv(remaining, branches - b));
+            final String branchFolder = rootFolder + "/" + branchName(b);
+            jar.putNextEntry(new JarEntry(branchFolder + "/.content.xml"));
+            final Writer writer = entryWriter(jar);
+            writer.write(DOCVIEW_HEADER);
+            writer.write("<jcr:root " + DOCVIEW_NAMESPACES + " jcr:primaryType=\"nt:unstructured\"");
+            writeProperties(writer, nodeIndex++);
+            writer.write(">\n");
+            nodeIndex = writeChildren(writer, depth - 1, share - 1, nodeIndex, 1);
+            writer.write("</jcr:root>\n");
+            writer.flush();
+            jar.closeEntry();
+            remaining -= share;
+
+            for (int f = b; f < binaryCount; f += branches) {
+                jar.putNextEntry(new JarEntry(branchFolder + "/" + String.format("binary%d.bin", f)));
+                writeBinary(jar, f);
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private long writeChildren(final Writer writer, final int remainingDepth, final long budget,
+                               final long firstIndex, final int indent) throws IOException {
+        if (remainingDepth <= 0 || budget <= 0) {
+            return firstIndex;
+        }
+        long nodeIndex = firstIndex;
+        final int children = (int) Math.min(fanOut, budget);
+        final long childCapacity = capacity(remainingDepth - 1) + 1L;
+        long remaining = budget;
+        for (int c = 0; c < children; c++) {
+            final long share = Math.min(childCapacity, ceilDiv(remaining, children - c));
+            indent(writer, indent);
+            writer.write("<node" + c + " jcr:primaryType=\"nt:unstructured\"");
+            writeProperties(writer, nodeIndex++);
+            if (share > 1 && remainingDepth > 1) {
+                writer.write(">\n");
+                nodeIndex = writeChildren(writer, remainingDepth - 1, share - 1, nodeIndex, indent + 1);
+                indent(writer, indent);
+                writer.write("</node" + c + ">\n");
+            } else {
+                writer.write("/>\n");
+            }
+            remaining -= share;
+        }
+        return nodeIndex;
+    }
+
+    private void writeProperties(final Writer writer, final long nodeIndex) throws IOException {
+        for (int i = 0; i < stringProperties; i++) {
+            writer.write(String.format(" string%d=\"value %d-%d\"", i, nodeIndex, i));
+        }
+        for (int i = 0; i < longProperties; i++) {
+            writer.write(String.format(" long%d=\"{Long}%d\"", i, nodeIndex * 31 + i));
+        }
+        for (int i = 0; i < multiValueProperties; i++) {
+            writer.write(String.format(" multi%d=\"[tag%d,tag%d,tag%d]\"", i,
+                    nodeIndex % 7, nodeIndex % 11, (nodeIndex + i) % 13));
+        }
+    }
+
+    private void writeBinary(final OutputStream out, final int fileIndex) throws IOException {
+        final Random random = new Random(((long) name.hashCode() << 32) ^ fileIndex);
+        final byte[] buffer = new byte[DEFAULT_WRITE_BUFFER];
+        int remaining = binarySize;
+        while (remaining > 0) {
+            random.nextBytes(buffer);
+            final int count = Math.min(buffer.length, remaining);
+            out.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * The number of nodes in a full tree of the given depth below a node, not counting that node.
+     */
+    private long capacity(final int levels) {
+        long total = 0L;
+        long level = 1L;
+        for (int i = 0; i < levels; i++) {
+            if (level > Long.MAX_VALUE / fanOut) {
+                return Long.MAX_VALUE;
+            }
+            level *= fanOut;
+            if (total > Long.MAX_VALUE - level) {
+                return Long.MAX_VALUE;
+            }
+            total += level;
+        }
+        return total;
+    }
+
+    private static long ceilDiv(final long dividend, final long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static String branchName(final int branch) {
+        return "branch" + branch;
+    }
+
+    private static void indent(final Writer writer, final int indent) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            writer.write("    ");
+        }
+    }
+
+    private static Writer entryWriter(final OutputStream entryStream) {
+        return new OutputStreamWriter(new NonClosingOutputStream(entryStream), StandardCharsets.UTF_8);
+    }
+
+    private static String escape(final String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static final String DOCVIEW_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private static final String DOCVIEW_NAMESPACES = "xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+            + "xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\"";
+
+    /**
+     * Keeps entry writers and nested package streams from closing the enclosing jar stream.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
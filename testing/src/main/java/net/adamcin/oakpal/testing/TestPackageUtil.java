@@ -88,6 +88,23 @@ public class TestPackageUtil {
         return file;
     }
 
+    /**
+     * Stream a {@link SyntheticPackage} to a file in the test packages folder.
+     *
+     * @param filename the package filename
+     * @param spec     the synthetic package specification
+     * @return the package file
+     * @throws IOException for write failures
+     */
+    public static File prepareSyntheticPackage(final String filename, final SyntheticPackage spec)
+            throws IOException {
+        File file = new File(testPackagesRoot.toFile(), filename);
+        if (file.exists()) {
+            file.delete();
+        }
+        return spec.writeToFile(file);
+    }
+
     private static void add(final File root, final File source, final JarOutputStream target) throws IOException {
         if (root == null || source == null) {
             throw new IllegalArgumentException("Cannot add from a null file");
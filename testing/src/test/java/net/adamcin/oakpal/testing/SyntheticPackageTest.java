@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Mark Adamcin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.adamcin.oakpal.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
+import org.apache.jackrabbit.vault.packaging.PackagingService;
+import org.junit.Test;
+
+public class SyntheticPackageTest {
+
+    @Test
+    public void testInstallSyntheticPackage() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage sub = new SyntheticPackage.Builder().withName("synthetic-install-sub")
+                        .withNodeCount(10).withFanOut(3).build();
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("synthetic-install")
+                        .withNodeCount(150).withDepth(3).withFanOut(6)
+                        .withPropertyMix(2, 1, 1)
+                        .withBinaries(4, 4096)
+                        .withFilterLayout(SyntheticPackage.FilterLayout.ROOT_PER_BRANCH)
+                        .withSubpackage(sub).build();
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("synthetic-install.zip", spec);
+
+                Repository repository = new Jcr(new Oak()).createRepository();
+                Session session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+                try {
+                    JcrPackageManager manager = PackagingService.getPackageManager(session);
+                    try (JcrPackage jcrPackage = manager.upload(synthetic, false, true, null, true)) {
+                        jcrPackage.install(new ImportOptions());
+                    }
+
+                    assertEquals("outer node count", spec.getEffectiveNodeCount(),
+                            countUnstructured(session.getNode(spec.getContentRoot())));
+                    assertEquals("subpackage node count", sub.getEffectiveNodeCount(),
+                            countUnstructured(session.getNode(sub.getContentRoot())));
+                    assertEquals("binary size", 4096L, session
+                            .getProperty(spec.getContentRoot() + "/branch3/binary3.bin/jcr:content/jcr:data")
+                            .getLength());
+                    assertTrue("subpackage is uploaded", session.nodeExists(sub.getSubpackagePath()));
+                } finally {
+                    session.logout();
+                    ((JackrabbitRepository) repository).shutdown();
+                }
+            }
+        });
+    }
+
+    private static long countUnstructured(final Node node) throws RepositoryException {
+        long count = 0L;
+        for (NodeIterator children = node.getNodes(); children.hasNext(); ) {
+            Node child = children.nextNode();
+            if (child.isNodeType("nt:unstructured")) {
+                count += 1L + countUnstructured(child);
+            }
+        }
+        return count;
+    }
+}
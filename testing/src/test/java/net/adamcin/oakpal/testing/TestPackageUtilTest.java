@@ -69,4 +69,45 @@ public class TestPackageUtilTest {
         });
     }
 
+    @Test
+    public void testPrepareSyntheticPackage() {
+        TestBody.test(new TestBody() {
+            @Override
+            protected void execute() throws Exception {
+                SyntheticPackage sub = new SyntheticPackage.Builder().withName("synthetic-sub")
+                        .withNodeCount(5).withFanOut(2).build();
+                SyntheticPackage spec = new SyntheticPackage.Builder().withName("synthetic-outer")
+                        .withNodeCount(100).withDepth(2).withFanOut(4)
+                        .withBinaries(3, 20000)
+                        .withFilterLayout(SyntheticPackage.FilterLayout.ROOT_PER_BRANCH)
+                        .withSubpackage(sub).build();
+                assertEquals("node count is capped by depth and fan-out", 20L, spec.getEffectiveNodeCount());
+
+                File synthetic = TestPackageUtil.prepareSyntheticPackage("synthetic-outer.zip", spec);
+                assertTrue("synthetic-outer.zip should exist", synthetic.exists());
+
+                Set<String> entryNames = new HashSet<>();
+                try (JarFile syntheticJar = new JarFile(synthetic)) {
+                    for (Enumeration<JarEntry> entries = syntheticJar.entries(); entries.hasMoreElements(); ) {
+                        JarEntry entry = entries.nextElement();
+                        entryNames.add(entry.getName());
+                        if (entry.getName().endsWith(".bin")) {
+                            assertEquals("binary size", 20000L, entry.getSize());
+                        }
+                    }
+                }
+
+                assertTrue("must contain properties.xml", entryNames.contains("META-INF/vault/properties.xml"));
+                assertTrue("must contain filter.xml", entryNames.contains("META-INF/vault/filter.xml"));
+                for (int b = 0; b < 4; b++) {
+                    assertTrue("must contain branch" + b, entryNames.contains(
+                            "jcr_root/synthetic/synthetic-outer/branch" + b + "/.content.xml"));
+                }
+                assertTrue("must contain binary2.bin",
+                        entryNames.contains("jcr_root/synthetic/synthetic-outer/branch2/binary2.bin"));
+                assertTrue("must contain subpackage", entryNames.contains("jcr_root" + sub.getSubpackagePath()));
+            }
+        });
+    }
+
 }